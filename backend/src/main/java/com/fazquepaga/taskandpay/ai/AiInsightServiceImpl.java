@@ -1,16 +1,14 @@
 package com.fazquepaga.taskandpay.ai;
 
-import com.fazquepaga.taskandpay.allowance.Transaction;
-import com.fazquepaga.taskandpay.allowance.TransactionRepository;
+import com.fazquepaga.taskandpay.allowance.LedgerSummary;
+import com.fazquepaga.taskandpay.allowance.LedgerSummaryRepository;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
@@ -20,54 +18,42 @@ import org.springframework.stereotype.Service;
 @Service
 public class AiInsightServiceImpl implements AiInsightService {
 
-    private final TransactionRepository transactionRepository;
+    private final LedgerSummaryRepository ledgerSummaryRepository;
     private final UserRepository userRepository;
+    private final FamilyTimeZoneService familyTimeZoneService;
     private final ChatModel chatModel;
 
     public AiInsightServiceImpl(
-            TransactionRepository transactionRepository,
+            LedgerSummaryRepository ledgerSummaryRepository,
             UserRepository userRepository,
+            FamilyTimeZoneService familyTimeZoneService,
             ChatModel chatModel) {
-        this.transactionRepository = transactionRepository;
+        this.ledgerSummaryRepository = ledgerSummaryRepository;
         this.userRepository = userRepository;
+        this.familyTimeZoneService = familyTimeZoneService;
         this.chatModel = chatModel;
     }
 
     @Override
     public String getInsights(String childId) {
         try {
-            // Fetch child and transactions
-            User child = userRepository.findByIdSync(childId);
+            // Fetch child and the running totals of its ledger. The child is read fresh so the
+            // balance includes postings made on other instances.
+            User child = userRepository.findByIdFresh(childId);
             if (child == null) {
                 return "Não foi possível gerar insights no momento.";
             }
 
-            List<QueryDocumentSnapshot> documents =
-                    transactionRepository.findByChildId(childId).getDocuments();
-            List<Transaction> transactions =
-                    documents.stream()
-                            .map(doc -> doc.toObject(Transaction.class))
-                            .collect(Collectors.toList());
+            LedgerSummary summary = ledgerSummaryRepository.findOrRebuild(childId);
 
             // If no transactions, return a motivational message
-            if (transactions.isEmpty()) {
+            if (summary.getTransactionCount() == 0) {
                 return "Comece a completar tarefas para ganhar sua mesada e acompanhar seu"
                         + " progresso financeiro!";
             }
 
-            // Calculate financial statistics
-            BigDecimal totalCredits =
-                    transactions.stream()
-                            .filter(t -> t.getType() == Transaction.TransactionType.CREDIT)
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal totalDebits =
-                    transactions.stream()
-                            .filter(t -> t.getType() == Transaction.TransactionType.DEBIT)
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
+            BigDecimal totalCredits = summary.getTotalCredits();
+            BigDecimal totalDebits = summary.getTotalDebits();
             BigDecimal balance = child.getBalance() != null ? child.getBalance() : BigDecimal.ZERO;
 
             // Calculate savings rate
@@ -91,6 +77,7 @@ public class AiInsightServiceImpl implements AiInsightService {
                             - Saldo atual: R$ {balance}
                             - Taxa de economia: {savingsRate}%
                             - Número de transações: {transactionCount}
+                            - Última movimentação: {lastActivity}
 
                             A mensagem deve ser positiva, motivadora e dar uma dica prática. Use emojis se apropriado.
                             """);
@@ -109,7 +96,16 @@ public class AiInsightServiceImpl implements AiInsightService {
                                                     .toString(),
                                     "balance", balance.setScale(2, RoundingMode.HALF_UP).toString(),
                                     "savingsRate", savingsRate,
-                                    "transactionCount", transactions.size()));
+                                    "transactionCount", summary.getTransactionCount(),
+                                    "lastActivity",
+                                            summary.getLastActivity() != null
+                                                    ? summary.getLastActivity()
+                                                            .atZone(
+                                                                    familyTimeZoneService.zoneOf(
+                                                                            childId))
+                                                            .toLocalDate()
+                                                            .toString()
+                                                    : "-"));
 
             ChatResponse response = chatModel.call(prompt);
             return response.getResult().getOutput().getText().trim();
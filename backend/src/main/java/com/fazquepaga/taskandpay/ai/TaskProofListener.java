@@ -2,7 +2,7 @@ package com.fazquepaga.taskandpay.ai;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fazquepaga.taskandpay.tasks.Task;
-import com.fazquepaga.taskandpay.tasks.TaskRepository;
+import com.fazquepaga.taskandpay.tasks.TaskService;
 import com.fazquepaga.taskandpay.whatsapp.events.ProofSubmittedEvent;
 import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
 import com.google.cloud.spring.pubsub.support.GcpPubSubHeaders;
@@ -22,13 +22,13 @@ public class TaskProofListener {
 
     private final ObjectMapper objectMapper;
     private final AiValidator aiValidator;
-    private final TaskRepository taskRepository;
+    private final TaskService taskService;
 
     public TaskProofListener(
-            ObjectMapper objectMapper, AiValidator aiValidator, TaskRepository taskRepository) {
+            ObjectMapper objectMapper, AiValidator aiValidator, TaskService taskService) {
         this.objectMapper = objectMapper;
         this.aiValidator = aiValidator;
-        this.taskRepository = taskRepository;
+        this.taskService = taskService;
     }
 
     @Bean(name = "proofListener")
@@ -60,22 +60,29 @@ public class TaskProofListener {
         // This is a simplified implementation. In a real application, you would
         // download the image
         // from the URL and pass the bytes to the validator.
-        Task task =
-                taskRepository
-                        .findById(event.getChildId(), event.getTaskId())
-                        .get()
-                        .toObject(Task.class);
+        Task task;
+        try {
+            task =
+                    taskService.submitProof(
+                            event.getChildId(),
+                            event.getTaskId(),
+                            proofTask ->
+                                    aiValidator.validateTaskCompletionImage(
+                                            new byte[0], proofTask.getDescription()));
+        } catch (IllegalStateException e) {
+            logger.warn(
+                    "Proof for task '{}' of child '{}' not recorded: {}",
+                    event.getTaskId(),
+                    event.getChildId(),
+                    e.getMessage());
+            return;
+        }
         if (task != null) {
-            boolean isValid =
-                    aiValidator.validateTaskCompletionImage(new byte[0], task.getDescription());
-            task.setAiValidated(isValid);
-            task.setStatus(Task.TaskStatus.PENDING_APPROVAL);
-            taskRepository.save(event.getChildId(), task);
             logger.info(
                     "Task '{}' for child '{}' has been AI validated with result: {}",
                     task.getDescription(),
                     event.getChildId(),
-                    isValid);
+                    task.getAiValidated());
         } else {
             logger.warn(
                     "Task with ID '{}' not found for child '{}'",
@@ -7,6 +7,22 @@ public interface AllowanceCalculator {
             java.util.List<com.fazquepaga.taskandpay.tasks.Task> allTasksForMonth,
             java.time.YearMonth yearMonth);
 
+    /**
+     * Values of several tasks by task ID, computing the month's total points only once. Each value
+     * is the same as {@link #calculateTaskValue} would return for that task.
+     */
+    java.util.Map<String, java.math.BigDecimal> calculateTaskValues(
+            java.util.Collection<com.fazquepaga.taskandpay.tasks.Task> tasks,
+            java.math.BigDecimal monthlyAllowance,
+            java.util.List<com.fazquepaga.taskandpay.tasks.Task> allTasksForMonth,
+            java.time.YearMonth yearMonth);
+
+    /** What one point is worth this month, at scale 4; zero when there is nothing to split. */
+    java.math.BigDecimal calculateValuePerPoint(
+            java.math.BigDecimal monthlyAllowance,
+            java.util.List<com.fazquepaga.taskandpay.tasks.Task> allTasksForMonth,
+            java.time.YearMonth yearMonth);
+
     long calculateTotalPointsPossible(
             java.util.List<com.fazquepaga.taskandpay.tasks.Task> tasks,
             java.time.YearMonth yearMonth);
@@ -1,13 +1,22 @@
 package com.fazquepaga.taskandpay.allowance;
 
 import com.fazquepaga.taskandpay.tasks.Task;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.springframework.stereotype.Component;
 
+/**
+ * Splits the monthly allowance by points. Amounts are worked out in whole ten-thousandths with
+ * {@code long} arithmetic, which gives exactly the results of dividing with {@link BigDecimal} at
+ * scale 4 and rounding the task value to cents, both half-even, without allocating per task.
+ */
 @Component
 public class AllowanceCalculatorImpl implements AllowanceCalculator {
 
@@ -15,56 +24,71 @@ public class AllowanceCalculatorImpl implements AllowanceCalculator {
     private static final int POINTS_MEDIUM = 5;
     private static final int POINTS_HIGH = 20;
 
+    private static final int VALUE_PER_POINT_SCALE = 4;
+    private static final long TEN_THOUSANDTHS_PER_CENT = 100;
+    private static final BigDecimal ZERO = BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
+
+    private static final long CALENDAR_CACHE_MAX_SIZE = 240; // Twenty years of months
+
+    // Month -> occurrences of each ISO day of week (index 1 = Monday ... 7 = Sunday)
+    private final LoadingCache<YearMonth, int[]> calendars =
+            Caffeine.newBuilder()
+                    .maximumSize(CALENDAR_CACHE_MAX_SIZE)
+                    .build(AllowanceCalculatorImpl::countDaysOfWeek);
+
     @Override
     public BigDecimal calculateTaskValue(
             Task task,
             BigDecimal monthlyAllowance,
             List<Task> allTasksForMonth,
             YearMonth yearMonth) {
-        if (monthlyAllowance == null || monthlyAllowance.compareTo(BigDecimal.ZERO) <= 0) {
-            return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
-        }
-
-        if (allTasksForMonth == null || allTasksForMonth.isEmpty()) {
-            return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
-        }
-
-        long totalPointsPossible = calculateTotalPointsPossible(allTasksForMonth, yearMonth);
+        long valuePerPoint = valuePerPoint(monthlyAllowance, allTasksForMonth, yearMonth);
+        return valuePerPoint > 0 ? toCents(valuePerPoint, task) : ZERO;
+    }
 
-        if (totalPointsPossible == 0) {
-            return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
+    @Override
+    public Map<String, BigDecimal> calculateTaskValues(
+            Collection<Task> tasks,
+            BigDecimal monthlyAllowance,
+            List<Task> allTasksForMonth,
+            YearMonth yearMonth) {
+        long valuePerPoint = valuePerPoint(monthlyAllowance, allTasksForMonth, yearMonth);
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (Task task : tasks) {
+            values.put(task.getId(), valuePerPoint > 0 ? toCents(valuePerPoint, task) : ZERO);
         }
+        return values;
+    }
 
-        BigDecimal valuePerPoint =
-                monthlyAllowance.divide(
-                        BigDecimal.valueOf(totalPointsPossible), 4, RoundingMode.HALF_EVEN);
-        int taskPoints = getPointsForWeight(task.getWeight());
-
-        return valuePerPoint
-                .multiply(BigDecimal.valueOf(taskPoints))
-                .setScale(2, RoundingMode.HALF_EVEN);
+    @Override
+    public BigDecimal calculateValuePerPoint(
+            BigDecimal monthlyAllowance, List<Task> allTasksForMonth, YearMonth yearMonth) {
+        return BigDecimal.valueOf(
+                valuePerPoint(monthlyAllowance, allTasksForMonth, yearMonth),
+                VALUE_PER_POINT_SCALE);
     }
 
     @Override
     public long calculateTotalPointsPossible(List<Task> tasks, YearMonth yearMonth) {
-        long totalPoints = 0;
+        int[] daysOfWeek = calendars.get(yearMonth);
         int daysInMonth = yearMonth.lengthOfMonth();
+        long totalPoints = 0;
 
         for (Task t : tasks) {
-            int points = getPointsForWeight(t.getWeight());
-            long occurrences = 0;
-
             if (t.getType() == null) {
                 continue;
             }
+            long occurrences;
             switch (t.getType()) {
                 case DAILY:
                     occurrences = daysInMonth;
                     break;
                 case WEEKLY:
-                    if (t.getDayOfWeek() != null) {
-                        occurrences = countDayOfWeekInMonth(t.getDayOfWeek(), yearMonth);
-                    }
+                    Integer dayOfWeek = t.getDayOfWeek();
+                    occurrences =
+                            dayOfWeek != null && dayOfWeek >= 1 && dayOfWeek <= 7
+                                    ? daysOfWeek[dayOfWeek]
+                                    : 0;
                     break;
                 case ONE_TIME:
                     occurrences = 1;
@@ -73,7 +97,7 @@ public class AllowanceCalculatorImpl implements AllowanceCalculator {
                     occurrences = 0;
                     break;
             }
-            totalPoints += (points * occurrences);
+            totalPoints += getPointsForWeight(t.getWeight()) * occurrences;
         }
         return totalPoints;
     }
@@ -93,17 +117,50 @@ public class AllowanceCalculatorImpl implements AllowanceCalculator {
         }
     }
 
-    private long countDayOfWeekInMonth(int dayOfWeekIso, YearMonth yearMonth) {
-        long count = 0;
-        LocalDate date = yearMonth.atDay(1);
-        int daysInMonth = yearMonth.lengthOfMonth();
+    /** Value of one point in ten-thousandths, or 0 when there is nothing to split. */
+    private long valuePerPoint(
+            BigDecimal monthlyAllowance, List<Task> allTasksForMonth, YearMonth yearMonth) {
+        if (monthlyAllowance == null || monthlyAllowance.compareTo(BigDecimal.ZERO) <= 0) {
+            return 0;
+        }
+        if (allTasksForMonth == null || allTasksForMonth.isEmpty()) {
+            return 0;
+        }
+        long totalPointsPossible = calculateTotalPointsPossible(allTasksForMonth, yearMonth);
+        if (totalPointsPossible == 0) {
+            return 0;
+        }
+        long allowance =
+                monthlyAllowance
+                        .setScale(VALUE_PER_POINT_SCALE, RoundingMode.HALF_EVEN)
+                        .unscaledValue()
+                        .longValueExact();
+        return divideHalfEven(allowance, totalPointsPossible);
+    }
 
-        for (int i = 0; i < daysInMonth; i++) {
-            if (date.getDayOfWeek().getValue() == dayOfWeekIso) {
-                count++;
-            }
-            date = date.plusDays(1);
+    private BigDecimal toCents(long valuePerPoint, Task task) {
+        long value = valuePerPoint * getPointsForWeight(task.getWeight());
+        return BigDecimal.valueOf(divideHalfEven(value, TEN_THOUSANDTHS_PER_CENT), 2);
+    }
+
+    /** Divides two non-negative numbers, rounding half to even like {@link RoundingMode}. */
+    static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long twiceRemainder = (dividend % divisor) * 2;
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+            quotient++;
+        }
+        return quotient;
+    }
+
+    /** A month has four of every day of the week, plus one more of its first few days. */
+    static int[] countDaysOfWeek(YearMonth yearMonth) {
+        int[] counts = new int[8];
+        java.util.Arrays.fill(counts, 1, 8, 4);
+        int first = yearMonth.atDay(1).getDayOfWeek().getValue();
+        for (int i = 0; i < yearMonth.lengthOfMonth() - 28; i++) {
+            counts[(first - 1 + i) % 7 + 1]++;
         }
-        return count;
+        return counts;
     }
 }
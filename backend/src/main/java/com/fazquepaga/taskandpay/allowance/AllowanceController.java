@@ -1,14 +1,20 @@
 package com.fazquepaga.taskandpay.allowance;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/allowance")
@@ -18,16 +24,19 @@ public class AllowanceController {
     private final LedgerService ledgerService;
     private final WithdrawalService withdrawalService;
     private final com.fazquepaga.taskandpay.identity.IdentityService identityService;
+    private final LedgerExportService ledgerExportService;
 
     public AllowanceController(
             AllowanceService allowanceService,
             LedgerService ledgerService,
             WithdrawalService withdrawalService,
-            com.fazquepaga.taskandpay.identity.IdentityService identityService) {
+            com.fazquepaga.taskandpay.identity.IdentityService identityService,
+            LedgerExportService ledgerExportService) {
         this.allowanceService = allowanceService;
         this.ledgerService = ledgerService;
         this.withdrawalService = withdrawalService;
         this.identityService = identityService;
+        this.ledgerExportService = ledgerExportService;
     }
 
     private com.fazquepaga.taskandpay.identity.User getAuthenticatedUser() {
@@ -61,7 +70,9 @@ public class AllowanceController {
 
     @GetMapping("/children/{childId}/ledger")
     public ResponseEntity<LedgerResponse> getLedger(
-            @PathVariable String childId)
+            @PathVariable String childId,
+            @RequestParam(value = "page_size", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor)
             throws ExecutionException, InterruptedException {
         com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
         if (user == null) {
@@ -79,12 +90,28 @@ public class AllowanceController {
             parentId = user.getParentId();
         }
 
-        LedgerResponse response = ledgerService.getTransactions(childId, parentId);
-        return ResponseEntity.ok(response);
+        // Without paging, keep returning the whole history for older clients
+        if (pageSize == null && cursor == null) {
+            return ResponseEntity.ok(ledgerService.getTransactions(childId, parentId));
+        }
+
+        LedgerResponse response =
+                ledgerService.getTransactionsPage(
+                        childId,
+                        parentId,
+                        pageSize != null ? pageSize : LedgerService.DEFAULT_PAGE_SIZE,
+                        cursor);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (response.getNextCursor() != null) {
+            builder.header(
+                    com.fazquepaga.taskandpay.shared.PaginationHeaders.NEXT_CURSOR,
+                    response.getNextCursor());
+        }
+        return builder.body(response);
     }
 
-    @GetMapping("/children/{childId}/ledger/insights")
-    public ResponseEntity<Map<String, String>> getLedgerInsights(
+    @GetMapping("/children/{childId}/ledger/checkpoints")
+    public ResponseEntity<java.util.List<LedgerCheckpoint>> getLedgerCheckpoints(
             @PathVariable String childId)
             throws ExecutionException, InterruptedException {
         com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
@@ -95,7 +122,6 @@ public class AllowanceController {
         String parentId;
         if (user.getRole() == com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
             parentId = user.getId();
-            identityService.getChild(childId, parentId);
         } else {
             if (!user.getId().equals(childId)) {
                 return ResponseEntity.status(org.springframework.http.HttpStatus.FORBIDDEN).build();
@@ -103,8 +129,84 @@ public class AllowanceController {
             parentId = user.getParentId();
         }
 
-        // Validate that the child belongs to the parent (redundant but safe)
-        ledgerService.getTransactions(childId, parentId); 
+        return ResponseEntity.ok(ledgerService.getCheckpoints(childId, parentId));
+    }
+
+    /**
+     * Streams a statement of one child's ledger, or of every child of the authenticated parent
+     * when {@code child_id} is omitted. {@code from} and {@code to} are inclusive dates.
+     */
+    @GetMapping("/ledger/export")
+    public ResponseEntity<StreamingResponseBody> exportLedger(
+            @RequestParam(value = "child_id", required = false) String childId,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "from", required = false)
+                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false)
+                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate to,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.UNAUTHORIZED).build();
+        }
+
+        String parentId;
+        java.util.List<com.fazquepaga.taskandpay.identity.User> children;
+        if (user.getRole() == com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            parentId = user.getId();
+            children =
+                    childId == null
+                            ? identityService.getChildren(parentId)
+                            : java.util.List.of(identityService.getChild(childId, parentId));
+        } else {
+            if (childId != null && !user.getId().equals(childId)) {
+                return ResponseEntity.status(org.springframework.http.HttpStatus.FORBIDDEN).build();
+            }
+            // The principal only carries token claims; the statement needs the child's name
+            com.fazquepaga.taskandpay.identity.User child =
+                    identityService.getUserById(user.getId());
+            parentId = child.getParentId();
+            children = java.util.List.of(child);
+        }
+
+        LedgerExportService.Format exportFormat = LedgerExportService.Format.fromParam(format);
+        StreamingResponseBody body =
+                ledgerExportService.export(parentId, children, from, to, exportFormat, gzip);
+
+        String filename =
+                "ledger-"
+                        + (childId != null ? childId : "family")
+                        + "."
+                        + exportFormat.getExtension()
+                        + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(
+                        MediaType.parseMediaType(
+                                gzip ? "application/gzip" : exportFormat.getContentType()))
+                .body(body);
+    }
+
+    @GetMapping("/children/{childId}/ledger/insights")
+    public ResponseEntity<Map<String, String>> getLedgerInsights(
+            @PathVariable String childId)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.UNAUTHORIZED).build();
+        }
+
+        if (user.getRole() == com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            identityService.getChild(childId, user.getId());
+        } else if (!user.getId().equals(childId)) {
+            return ResponseEntity.status(org.springframework.http.HttpStatus.FORBIDDEN).build();
+        }
+
         String insights = ledgerService.getInsights(childId);
         return ResponseEntity.ok(Map.of("insight", insights));
     }
@@ -0,0 +1,35 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The value of every task of a child for one month, stored at {@code
+ * users/{childId}/metadata/allowancePlan}. {@code version} is bumped whenever the tasks or the
+ * allowance change; the values are current only while {@code planVersion} still matches it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AllowancePlan {
+
+    private Long version;
+    private Long planVersion; // Version the values were computed at
+    private String month; // yyyy-MM
+    private BigDecimal monthlyAllowance;
+    private BigDecimal valuePerPoint;
+    private Map<String, BigDecimal> taskValues; // taskId -> value
+
+    public boolean isCurrent(YearMonth yearMonth) {
+        return planVersion != null
+                && planVersion.equals(version)
+                && yearMonth.toString().equals(month)
+                && taskValues != null;
+    }
+}
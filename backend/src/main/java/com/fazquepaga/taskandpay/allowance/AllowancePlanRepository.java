@@ -0,0 +1,123 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class AllowancePlanRepository {
+
+    private static final String VERSION_FIELD = "version";
+    // childId -> marker of task values not yet redistributed since the last invalidation
+    private static final String STALE_VALUES_COLLECTION = "staleTaskValues";
+    private static final String STALE_SINCE_FIELD = "staleSince";
+
+    private final Firestore firestore;
+
+    public AllowancePlanRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    public ApiFuture<DocumentSnapshot> find(String childId) {
+        return getPlanDocument(childId).get();
+    }
+
+    /**
+     * Marks the stored plan as out of date, creating the document if it does not exist yet, and
+     * marks the child's task values as stale in the same batch. The marker outlives the instance
+     * that queued the redistribution, so work lost in a restart is found again.
+     */
+    public ApiFuture<List<WriteResult>> invalidate(String childId) {
+        WriteBatch batch = firestore.batch();
+        batch.set(
+                getPlanDocument(childId),
+                Map.of(VERSION_FIELD, FieldValue.increment(1)),
+                SetOptions.merge());
+        batch.set(
+                getStaleValuesDocument(childId),
+                Map.of(STALE_SINCE_FIELD, FieldValue.serverTimestamp()));
+        return batch.commit();
+    }
+
+    public ApiFuture<DocumentSnapshot> findStaleValues(String childId) {
+        return getStaleValuesDocument(childId).get();
+    }
+
+    /**
+     * Clears the stale marker read as {@code marker}, unless the values were invalidated again
+     * since; that newer marker stays for the run it asked for.
+     */
+    public ApiFuture<WriteResult> clearStaleValues(DocumentSnapshot marker) {
+        return marker.getReference().delete(Precondition.updatedAt(marker.getUpdateTime()));
+    }
+
+    /** Children whose task values were marked stale before {@code before}, oldest first. */
+    public List<String> findStaleChildIds(Timestamp before, int limit)
+            throws ExecutionException, InterruptedException {
+        List<QueryDocumentSnapshot> documents =
+                firestore
+                        .collection(STALE_VALUES_COLLECTION)
+                        .whereLessThan(STALE_SINCE_FIELD, before)
+                        .orderBy(STALE_SINCE_FIELD)
+                        .limit(limit)
+                        .select(FieldPath.documentId())
+                        .get()
+                        .get()
+                        .getDocuments();
+        List<String> childIds = new ArrayList<>(documents.size());
+        for (QueryDocumentSnapshot document : documents) {
+            childIds.add(document.getId());
+        }
+        return childIds;
+    }
+
+    /**
+     * Stores a plan computed at {@code plan.getPlanVersion()}, unless the plan was invalidated
+     * while it was being computed. Returns whether it was stored.
+     */
+    public boolean saveIfCurrent(String childId, AllowancePlan plan)
+            throws ExecutionException, InterruptedException {
+        DocumentReference document = getPlanDocument(childId);
+        return firestore
+                .runTransaction(
+                        transaction -> {
+                            DocumentSnapshot snapshot = transaction.get(document).get();
+                            Long version =
+                                    snapshot.exists() ? snapshot.getLong(VERSION_FIELD) : null;
+                            long current = version != null ? version : 0L;
+                            if (current != plan.getPlanVersion()) {
+                                return false;
+                            }
+                            plan.setVersion(current);
+                            transaction.set(document, plan);
+                            return true;
+                        })
+                .get();
+    }
+
+    private DocumentReference getStaleValuesDocument(String childId) {
+        return firestore.collection(STALE_VALUES_COLLECTION).document(childId);
+    }
+
+    private DocumentReference getPlanDocument(String childId) {
+        return firestore
+                .collection("users")
+                .document(childId)
+                .collection("metadata")
+                .document("allowancePlan");
+    }
+}
@@ -1,15 +1,23 @@
 package com.fazquepaga.taskandpay.allowance;
 
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.fazquepaga.taskandpay.tasks.Task;
 import com.fazquepaga.taskandpay.tasks.TaskService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.cloud.firestore.DocumentSnapshot;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.YearMonth;
 import java.time.ZoneId;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -18,47 +26,136 @@ public class AllowanceService {
     private final AllowanceCalculator allowanceCalculator;
     private final TaskService taskService;
     private final UserRepository userRepository;
+    private final AllowancePlanRepository allowancePlanRepository;
+    private final FamilyTimeZoneService familyTimeZoneService;
+
+    // childId -> plan; an invalidation made on another instance shows up after the TTL
+    private final Cache<String, AllowancePlan> plans;
 
     public AllowanceService(
             AllowanceCalculator allowanceCalculator,
             TaskService taskService,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            AllowancePlanRepository allowancePlanRepository,
+            FamilyTimeZoneService familyTimeZoneService,
+            @Value("${allowance.plan-cache.ttl-seconds:30}") long planCacheTtlSeconds,
+            @Value("${allowance.plan-cache.max-size:10000}") long planCacheMaxSize) {
         this.allowanceCalculator = allowanceCalculator;
         this.taskService = taskService;
         this.userRepository = userRepository;
+        this.allowancePlanRepository = allowancePlanRepository;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.plans =
+                Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofSeconds(planCacheTtlSeconds))
+                        .maximumSize(planCacheMaxSize)
+                        .build();
     }
 
     public BigDecimal calculateValueForTask(String childId, String taskId)
             throws ExecutionException, InterruptedException {
+        return calculateValuesForTasks(childId, List.of(taskId)).get(taskId);
+    }
+
+    /** Values of several tasks of a child, read from the child's allowance plan. */
+    public Map<String, BigDecimal> calculateValuesForTasks(
+            String childId, java.util.Collection<String> taskIds)
+            throws ExecutionException, InterruptedException {
+        ZoneId zone = familyTimeZoneService.zoneOf(childId);
+        YearMonth currentMonth = YearMonth.now(zone); // The family's month, not the server's
+        AllowancePlan plan = getAllowancePlan(childId, currentMonth, zone);
+        if (!plan.getTaskValues().keySet().containsAll(taskIds)) {
+            // A task created on another instance may not be in a locally cached plan yet
+            plan =
+                    buildAllowancePlan(
+                            childId,
+                            currentMonth,
+                            zone,
+                            allowancePlanRepository.find(childId).get());
+        }
+
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (String taskId : taskIds) {
+            BigDecimal value = plan.getTaskValues().get(taskId);
+            if (value == null) {
+                throw new IllegalArgumentException("Task not found");
+            }
+            values.put(taskId, value);
+        }
+        return values;
+    }
+
+    /**
+     * Drops the child's allowance plan so the next lookup recomputes it. Call after tasks are
+     * created or archived, or the monthly allowance changes.
+     */
+    public void invalidateAllowancePlan(String childId)
+            throws ExecutionException, InterruptedException {
+        allowancePlanRepository.invalidate(childId).get();
+        plans.invalidate(childId);
+    }
+
+    private AllowancePlan getAllowancePlan(String childId, YearMonth month, ZoneId zone)
+            throws ExecutionException, InterruptedException {
+        AllowancePlan cached = plans.getIfPresent(childId);
+        if (cached != null && cached.isCurrent(month)) {
+            return cached;
+        }
+
+        DocumentSnapshot snapshot = allowancePlanRepository.find(childId).get();
+        AllowancePlan stored = snapshot.exists() ? snapshot.toObject(AllowancePlan.class) : null;
+        if (stored != null && stored.isCurrent(month)) {
+            plans.put(childId, stored);
+            return stored;
+        }
+        return buildAllowancePlan(childId, month, zone, snapshot);
+    }
+
+    /**
+     * Computes the plan from the child and its tasks. {@code snapshot} is the plan document read
+     * before them, so an invalidation made while computing keeps this plan from being saved.
+     */
+    private AllowancePlan buildAllowancePlan(
+            String childId, YearMonth month, ZoneId zone, DocumentSnapshot snapshot)
+            throws ExecutionException, InterruptedException {
+        Long version = snapshot.exists() ? snapshot.getLong("version") : null;
+
         User child = userRepository.findByIdSync(childId);
         if (child == null) {
             throw new IllegalArgumentException("Child not found");
         }
 
         List<Task> allTasks = taskService.getTasksByUserId(childId);
-        Task targetTask =
-                allTasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
-
-        YearMonth currentMonth = YearMonth.now(); // Default to current month
 
         // Filter tasks relevant for this month
         List<Task> activeTasks =
                 allTasks.stream()
-                        .filter(t -> isTaskActiveForMonth(t, currentMonth))
+                        .filter(t -> isTaskActiveForMonth(t, month, zone))
                         .collect(Collectors.toList());
 
-        return allowanceCalculator.calculateTaskValue(
-                targetTask, child.getMonthlyAllowance(), activeTasks, currentMonth);
+        AllowancePlan plan =
+                AllowancePlan.builder()
+                        .version(version != null ? version : 0L)
+                        .planVersion(version != null ? version : 0L)
+                        .month(month.toString())
+                        .monthlyAllowance(child.getMonthlyAllowance())
+                        .valuePerPoint(
+                                allowanceCalculator.calculateValuePerPoint(
+                                        child.getMonthlyAllowance(), activeTasks, month))
+                        .taskValues(
+                                allowanceCalculator.calculateTaskValues(
+                                        allTasks, child.getMonthlyAllowance(), activeTasks, month))
+                        .build();
+        if (allowancePlanRepository.saveIfCurrent(childId, plan)) {
+            plans.put(childId, plan);
+        }
+        return plan;
     }
 
-    private boolean isTaskActiveForMonth(Task task, YearMonth yearMonth) {
+    private boolean isTaskActiveForMonth(Task task, YearMonth yearMonth, ZoneId zone) {
         if (task.getType() == Task.TaskType.ONE_TIME) {
             if (task.getScheduledDate() == null) return false;
-            YearMonth taskMonth =
-                    YearMonth.from(task.getScheduledDate().atZone(ZoneId.systemDefault()));
+            YearMonth taskMonth = YearMonth.from(task.getScheduledDate().atZone(zone));
             return taskMonth.equals(yearMonth);
         }
         // DAILY and WEEKLY are assumed active if they exist
@@ -72,8 +169,11 @@ public class AllowanceService {
             throw new IllegalArgumentException("Child not found");
         }
 
-        List<Task> allTasks = taskService.getTasksByUserId(childId);
+        return calculatePredictedAllowance(child, taskService.getTasksByUserId(childId));
+    }
 
+    /** Predicted allowance of a child whose document and active tasks are already loaded. */
+    public BigDecimal calculatePredictedAllowance(User child, List<Task> allTasks) {
         // Start with current balance (already includes approved/completed tasks)
         BigDecimal currentBalance =
                 child.getBalance() != null ? child.getBalance() : BigDecimal.ZERO;
@@ -103,26 +203,26 @@ public class AllowanceService {
 
     /**
      * Recalculates task values based on monthly allowance, weight, and type. Redistributes the
-     * allowance proportionally among all tasks.
+     * allowance proportionally among all tasks and returns the new value of each task by ID.
      */
-    public void recalculateTaskValues(String childId)
+    public Map<String, BigDecimal> recalculateTaskValues(String childId)
             throws ExecutionException, InterruptedException {
         User child = userRepository.findByIdSync(childId);
         if (child == null || child.getMonthlyAllowance() == null) {
-            return; // No allowance = no calculation
+            return Map.of(); // No allowance = no calculation
         }
 
         BigDecimal monthlyAllowance = child.getMonthlyAllowance();
         List<Task> allTasks = taskService.getTasksByUserId(childId);
 
         if (allTasks.isEmpty()) {
-            return; // No tasks = no distribution
+            return Map.of(); // No tasks = no distribution
         }
 
         // Calculate total points
         int totalPoints = calculateTotalPoints(allTasks);
         if (totalPoints == 0) {
-            return;
+            return Map.of();
         }
 
         // Value per point
@@ -130,18 +230,27 @@ public class AllowanceService {
                 monthlyAllowance.divide(
                         BigDecimal.valueOf(totalPoints), 4, java.math.RoundingMode.HALF_EVEN);
 
-        // Distribute value to each task
+        // Distribute value to each task, writing only the ones that changed
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        Map<String, BigDecimal> changedValues = new LinkedHashMap<>();
+        Map<String, BigDecimal> valueChanges = new LinkedHashMap<>();
         for (Task task : allTasks) {
             int taskPoints = calculateTaskPoints(task);
             BigDecimal taskValue =
                     valuePerPoint
                             .multiply(BigDecimal.valueOf(taskPoints))
                             .setScale(2, java.math.RoundingMode.HALF_EVEN);
+            if (task.getValue() == null || task.getValue().compareTo(taskValue) != 0) {
+                changedValues.put(task.getId(), taskValue);
+                BigDecimal oldValue = task.getValue() != null ? task.getValue() : BigDecimal.ZERO;
+                valueChanges.put(task.getId(), taskValue.subtract(oldValue));
+            }
             task.setValue(taskValue);
-
-            // Save task with new value
-            taskService.updateTaskValue(childId, task);
+            values.put(task.getId(), taskValue);
         }
+
+        taskService.updateTaskValues(childId, changedValues, valueChanges);
+        return values;
     }
 
     private int calculateTotalPoints(List<Task> tasks) {
@@ -0,0 +1,26 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Where the balance reconciliation of a child stopped, stored at {@code
+ * users/{childId}/metadata/balanceReconciliation}. The next run only folds entries dated from
+ * {@code reconciledThrough} on.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceReconciliation {
+
+    private Instant reconciledThrough; // Entries dated before this are folded into ledgerTotal
+    private BigDecimal ledgerTotal; // Credits minus debits of those entries
+    private Instant checkedAt;
+    private BigDecimal drift; // Balance minus expected balance at the last check
+    private boolean repaired;
+}
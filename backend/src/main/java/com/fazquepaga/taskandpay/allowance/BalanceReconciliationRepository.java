@@ -0,0 +1,37 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteResult;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class BalanceReconciliationRepository {
+
+    private final Firestore firestore;
+
+    public BalanceReconciliationRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    public BalanceReconciliation find(String childId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = getReconciliationDocument(childId).get().get();
+        return snapshot.exists() ? snapshot.toObject(BalanceReconciliation.class) : null;
+    }
+
+    public ApiFuture<WriteResult> save(String childId, BalanceReconciliation reconciliation) {
+        return getReconciliationDocument(childId).set(reconciliation);
+    }
+
+    private DocumentReference getReconciliationDocument(String childId) {
+        return firestore
+                .collection("users")
+                .document(childId)
+                .collection("metadata")
+                .document("balanceReconciliation");
+    }
+}
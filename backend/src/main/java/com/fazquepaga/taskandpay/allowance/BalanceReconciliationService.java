@@ -0,0 +1,331 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.fazquepaga.taskandpay.giftcard.GiftCardTransaction;
+import com.fazquepaga.taskandpay.giftcard.GiftCardTransactionRepository;
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks that each child's balance equals its ledger (credits minus debits) minus the gift cards
+ * issued to it, and reports or repairs the difference.
+ *
+ * <p>Children are read in partitions of {@code partition-size} IDs and reconciled {@code
+ * parallelism} at a time. Each child's entries are folded a page at a time, so memory does not
+ * grow with the size of the ledger. Every run starts from where the child's last run stopped, and
+ * stops {@code settle-seconds} before its start so entries still being committed are left for the
+ * next run. An apparent drift is measured again inside a transaction before it is reported, and
+ * repaired in that transaction when {@code repair} is on.
+ */
+@Service
+public class BalanceReconciliationService {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(BalanceReconciliationService.class);
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final GiftCardTransactionRepository giftCardTransactionRepository;
+    private final BalanceReconciliationRepository reconciliationRepository;
+    private final Firestore firestore;
+    private final int partitionSize;
+    private final int parallelism;
+    private final int pageSize;
+    private final Duration settle;
+    private final boolean repair;
+
+    private final Counter checked;
+    private final Counter drifted;
+    private final Counter repaired;
+    private final Counter failures;
+
+    public BalanceReconciliationService(
+            UserRepository userRepository,
+            TransactionRepository transactionRepository,
+            GiftCardTransactionRepository giftCardTransactionRepository,
+            BalanceReconciliationRepository reconciliationRepository,
+            Firestore firestore,
+            MeterRegistry meterRegistry,
+            @Value("${ledger.reconciliation.partition-size:200}") int partitionSize,
+            @Value("${ledger.reconciliation.parallelism:8}") int parallelism,
+            @Value("${ledger.reconciliation.page-size:500}") int pageSize,
+            @Value("${ledger.reconciliation.settle-seconds:300}") long settleSeconds,
+            @Value("${ledger.reconciliation.repair:false}") boolean repair) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.giftCardTransactionRepository = giftCardTransactionRepository;
+        this.reconciliationRepository = reconciliationRepository;
+        this.firestore = firestore;
+        this.partitionSize = partitionSize;
+        this.parallelism = parallelism;
+        this.pageSize = pageSize;
+        this.settle = Duration.ofSeconds(settleSeconds);
+        this.repair = repair;
+
+        this.checked = meterRegistry.counter("ledger.reconciliation.checked");
+        this.drifted = meterRegistry.counter("ledger.reconciliation.drifted");
+        this.repaired = meterRegistry.counter("ledger.reconciliation.repaired");
+        this.failures = meterRegistry.counter("ledger.reconciliation.failures");
+    }
+
+    /** Counts of one run over every child. */
+    public static final class Result {
+
+        private final AtomicInteger checked = new AtomicInteger();
+        private final AtomicInteger drifted = new AtomicInteger();
+        private final AtomicInteger repaired = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        public int getChecked() {
+            return checked.get();
+        }
+
+        public int getDrifted() {
+            return drifted.get();
+        }
+
+        public int getRepaired() {
+            return repaired.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+    }
+
+    @Scheduled(cron = "${ledger.reconciliation.cron:-}", zone = "UTC")
+    public void runScheduled() {
+        try {
+            reconcileAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Balance reconciliation run failed", e);
+        }
+    }
+
+    public Result reconcileAll() throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        Instant through = Instant.now().minus(settle);
+        Result result = new Result();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            DocumentSnapshot cursor = null;
+            List<QueryDocumentSnapshot> partition;
+            do {
+                partition = userRepository.findChildIdsPage(partitionSize, cursor).getDocuments();
+                List<Future<?>> running = new ArrayList<>(partition.size());
+                for (QueryDocumentSnapshot child : partition) {
+                    String childId = child.getId();
+                    running.add(executor.submit(() -> reconcileQuietly(childId, through, result)));
+                }
+                // One partition in flight at a time keeps memory flat over the whole user base
+                for (Future<?> future : running) {
+                    future.get();
+                }
+                cursor = partition.isEmpty() ? null : partition.get(partition.size() - 1);
+            } while (partition.size() == partitionSize);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info(
+                "Balance reconciliation checked {} children in {} ms: {} drifted, {} repaired,"
+                        + " {} failed",
+                result.getChecked(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis(),
+                result.getDrifted(),
+                result.getRepaired(),
+                result.getFailed());
+        return result;
+    }
+
+    private void reconcileQuietly(String childId, Instant through, Result result) {
+        try {
+            BalanceReconciliation reconciliation = reconcile(childId, through);
+            result.checked.incrementAndGet();
+            checked.increment();
+            if (reconciliation.getDrift().signum() != 0) {
+                result.drifted.incrementAndGet();
+                drifted.increment();
+            }
+            if (reconciliation.isRepaired()) {
+                result.repaired.incrementAndGet();
+                repaired.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.failed.incrementAndGet();
+        } catch (Exception e) {
+            result.failed.incrementAndGet();
+            failures.increment();
+            log.error("Failed to reconcile the balance of child {}", childId, e);
+        }
+    }
+
+    BalanceReconciliation reconcile(String childId, Instant through)
+            throws ExecutionException, InterruptedException {
+        BalanceReconciliation previous = reconciliationRepository.find(childId);
+        Instant from = previous != null ? previous.getReconciledThrough() : null;
+        BigDecimal ledgerTotal =
+                previous != null && previous.getLedgerTotal() != null
+                        ? previous.getLedgerTotal()
+                        : BigDecimal.ZERO;
+        if (from == null || from.isBefore(through)) {
+            ledgerTotal = ledgerTotal.add(foldLedger(childId, from, through));
+        } else {
+            through = from; // Already reconciled further than this run reaches
+        }
+
+        BigDecimal drift = measureDrift(childId, ledgerTotal, through);
+        boolean fixed = false;
+        if (drift.signum() != 0) {
+            // Confirm in a transaction: a posting may have landed between the reads above
+            drift = confirmDrift(childId, ledgerTotal, through);
+            fixed = repair && drift.signum() != 0;
+            if (fixed) {
+                userRepository.evict(childId);
+            }
+            if (drift.signum() != 0) {
+                log.warn(
+                        "Balance of child {} is off its ledger by {}{}",
+                        childId,
+                        drift,
+                        fixed ? "; repaired" : "");
+            }
+        }
+
+        BalanceReconciliation reconciliation =
+                BalanceReconciliation.builder()
+                        .reconciledThrough(through)
+                        .ledgerTotal(ledgerTotal)
+                        .checkedAt(Instant.now())
+                        .drift(drift)
+                        .repaired(fixed)
+                        .build();
+        reconciliationRepository.save(childId, reconciliation).get();
+        return reconciliation;
+    }
+
+    /** Credits minus debits of the child's entries dated in {@code [from, to)}, page by page. */
+    private BigDecimal foldLedger(String childId, Instant from, Instant to)
+            throws ExecutionException, InterruptedException {
+        BigDecimal total = BigDecimal.ZERO;
+        DocumentSnapshot cursor = null;
+        List<QueryDocumentSnapshot> page;
+        do {
+            page =
+                    transactionRepository
+                            .findRangePageByChildId(childId, from, to, pageSize, cursor)
+                            .getDocuments();
+            total = total.add(sum(page));
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == pageSize);
+        return total;
+    }
+
+    private BigDecimal measureDrift(String childId, BigDecimal ledgerTotal, Instant through)
+            throws ExecutionException, InterruptedException {
+        User child = userRepository.findByIdFresh(childId);
+        if (child == null) {
+            return BigDecimal.ZERO; // Deleted while the run was going
+        }
+        List<QueryDocumentSnapshot> recent =
+                transactionRepository
+                        .rangeByChildId(childId, through, null)
+                        .get()
+                        .get()
+                        .getDocuments();
+        List<QueryDocumentSnapshot> giftCards =
+                giftCardTransactionRepository
+                        .completedByChildId(childId)
+                        .get()
+                        .get()
+                        .getDocuments();
+        return drift(child.getBalance(), ledgerTotal.add(sum(recent)), giftCards);
+    }
+
+    private BigDecimal confirmDrift(String childId, BigDecimal ledgerTotal, Instant through)
+            throws ExecutionException, InterruptedException {
+        DocumentReference childRef = firestore.collection("users").document(childId);
+        return firestore
+                .runTransaction(
+                        transaction -> {
+                            DocumentSnapshot child = transaction.get(childRef).get();
+                            if (!child.exists()) {
+                                return BigDecimal.ZERO;
+                            }
+                            List<QueryDocumentSnapshot> recent =
+                                    transaction
+                                            .get(
+                                                    transactionRepository.rangeByChildId(
+                                                            childId, through, null))
+                                            .get()
+                                            .getDocuments();
+                            List<QueryDocumentSnapshot> giftCards =
+                                    transaction
+                                            .get(
+                                                    giftCardTransactionRepository
+                                                            .completedByChildId(childId))
+                                            .get()
+                                            .getDocuments();
+                            BigDecimal balance = child.toObject(User.class).getBalance();
+                            BigDecimal drift =
+                                    drift(balance, ledgerTotal.add(sum(recent)), giftCards);
+                            if (repair && drift.signum() != 0) {
+                                transaction.update(
+                                        childRef,
+                                        "balance",
+                                        (balance != null ? balance : BigDecimal.ZERO)
+                                                .subtract(drift));
+                            }
+                            return drift;
+                        })
+                .get();
+    }
+
+    private static BigDecimal drift(
+            BigDecimal balance, BigDecimal ledgerTotal, List<QueryDocumentSnapshot> giftCards) {
+        BigDecimal expected = ledgerTotal;
+        for (QueryDocumentSnapshot giftCard : giftCards) {
+            BigDecimal amount = giftCard.toObject(GiftCardTransaction.class).getAmount();
+            if (amount != null) {
+                expected = expected.subtract(amount);
+            }
+        }
+        return (balance != null ? balance : BigDecimal.ZERO).subtract(expected);
+    }
+
+    private static BigDecimal sum(List<QueryDocumentSnapshot> entries) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (QueryDocumentSnapshot document : entries) {
+            Transaction entry = document.toObject(Transaction.class);
+            if (entry.getAmount() == null || entry.getType() == null) {
+                continue;
+            }
+            total =
+                    entry.getType().isDebit()
+                            ? total.subtract(entry.getAmount())
+                            : total.add(entry.getAmount());
+        }
+        return total;
+    }
+}
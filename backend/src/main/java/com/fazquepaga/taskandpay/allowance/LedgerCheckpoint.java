@@ -0,0 +1,25 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Summary of one month of a child's ledger, stored at {@code
+ * users/{childId}/ledgerCheckpoints/{yyyy-MM}} and updated with every entry posted that month.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+
+    private String month; // yyyy-MM, in the family's timezone
+    private BigDecimal openingBalance; // Balance before the month's first entry
+    private BigDecimal closingBalance; // Balance after the month's last entry
+    private BigDecimal credits;
+    private BigDecimal debits; // Debits and withdrawals
+    private long count;
+}
@@ -1,6 +1,8 @@
 package com.fazquepaga.taskandpay.allowance;
 
 import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.fazquepaga.taskandpay.shared.PaginationHeaders;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -23,6 +25,37 @@ public class LedgerController {
 
     @GetMapping("/children/{childId}/ledger")
     public ResponseEntity<LedgerResponse> getChildLedger(
+            @PathVariable String childId,
+            @RequestParam("parent_id") String parentId,
+            @RequestParam(value = "page_size", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor)
+            throws ExecutionException, InterruptedException {
+
+        // Validate that the authenticated parent owns the child
+        if (!userRepository.findByIdSync(childId).getParentId().equals(parentId)) {
+            return ResponseEntity.status(403).build(); // Forbidden
+        }
+
+        // Without paging, keep returning the whole history for older clients
+        if (pageSize == null && cursor == null) {
+            return ResponseEntity.ok(ledgerService.getTransactions(childId, parentId));
+        }
+
+        LedgerResponse ledger =
+                ledgerService.getTransactionsPage(
+                        childId,
+                        parentId,
+                        pageSize != null ? pageSize : LedgerService.DEFAULT_PAGE_SIZE,
+                        cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (ledger.getNextCursor() != null) {
+            response.header(PaginationHeaders.NEXT_CURSOR, ledger.getNextCursor());
+        }
+        return response.body(ledger);
+    }
+
+    @GetMapping("/children/{childId}/ledger/checkpoints")
+    public ResponseEntity<List<LedgerCheckpoint>> getLedgerCheckpoints(
             @PathVariable String childId, @RequestParam("parent_id") String parentId)
             throws ExecutionException, InterruptedException {
 
@@ -31,8 +64,7 @@ public class LedgerController {
             return ResponseEntity.status(403).build(); // Forbidden
         }
 
-        LedgerResponse ledger = ledgerService.getTransactions(childId, parentId);
-        return ResponseEntity.ok(ledger);
+        return ResponseEntity.ok(ledgerService.getCheckpoints(childId, parentId));
     }
 
     @GetMapping("/children/{childId}/ledger/insights")
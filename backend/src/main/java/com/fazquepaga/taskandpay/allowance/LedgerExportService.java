@@ -0,0 +1,204 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.fazquepaga.taskandpay.identity.User;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Streams ledger statements. Transactions are read a page at a time with a cursor and written as
+ * they arrive, so memory use does not grow with the length of the history.
+ */
+@Service
+public class LedgerExportService {
+
+    private static final String CSV_HEADER =
+            "child_id,child_name,transaction_id,date,type,status,amount,description\n";
+
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private static final Pattern PLAIN_NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format fromParam(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private final TransactionRepository transactionRepository;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    public LedgerExportService(
+            TransactionRepository transactionRepository,
+            FamilyTimeZoneService familyTimeZoneService,
+            ObjectMapper objectMapper,
+            @Value("${ledger.export.page-size:500}") int pageSize) {
+        this.transactionRepository = transactionRepository;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Prepares a statement of the children's transactions dated from {@code from} to {@code to}
+     * (inclusive, in the family's timezone; either may be null), child by child and oldest first.
+     * The range is validated here so a bad request fails before the response starts.
+     */
+    public StreamingResponseBody export(
+            String parentId,
+            List<User> children,
+            LocalDate from,
+            LocalDate to,
+            Format format,
+            boolean gzip)
+            throws ExecutionException, InterruptedException {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        ZoneId zone = familyTimeZoneService.zoneOf(parentId);
+        Instant start = from != null ? from.atStartOfDay(zone).toInstant() : null;
+        Instant end = to != null ? to.plusDays(1).atStartOfDay(zone).toInstant() : null;
+
+        return out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out);
+                write(children, start, end, format, compressed);
+                compressed.finish();
+            } else {
+                write(children, start, end, format, out);
+            }
+        };
+    }
+
+    void write(List<User> children, Instant from, Instant to, Format format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+        }
+        try {
+            for (User child : children) {
+                DocumentSnapshot cursor = null;
+                List<QueryDocumentSnapshot> page;
+                do {
+                    page =
+                            transactionRepository
+                                    .findRangePageByChildId(
+                                            child.getId(), from, to, pageSize, cursor)
+                                    .getDocuments();
+                    for (QueryDocumentSnapshot document : page) {
+                        writeRow(writer, format, child, document.toObject(Transaction.class));
+                    }
+                    // Hand each page to the client instead of holding the statement in memory
+                    writer.flush();
+                    cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+                } while (page.size() == pageSize);
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read the ledger", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ledger export interrupted", e);
+        }
+        writer.flush();
+    }
+
+    private void writeRow(Writer writer, Format format, User child, Transaction transaction)
+            throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("child_id", child.getId());
+        row.put("child_name", child.getName());
+        row.put("transaction_id", transaction.getId());
+        row.put("date", transaction.getDate() != null ? transaction.getDate().toString() : null);
+        row.put("type", transaction.getType());
+        row.put("status", transaction.getStatus());
+        row.put(
+                "amount",
+                transaction.getAmount() != null ? transaction.getAmount().toPlainString() : null);
+        row.put("description", transaction.getDescription());
+
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+            return;
+        }
+        boolean first = true;
+        for (Object value : row.values()) {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(csvField(value));
+            first = false;
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Escapes one CSV cell. Text a spreadsheet would read as a formula (leading {@code =}, {@code
+     * +}, {@code -}, {@code @}, tab or carriage return) is prefixed with a quote so it opens as
+     * plain text; plain numbers such as negative amounts are left as they are.
+     */
+    static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!text.isEmpty()
+                && FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0
+                && !PLAIN_NUMBER.matcher(text).matches()) {
+            return "\"'" + text.replace("\"", "\"\"") + '"';
+        }
+        if (text.indexOf(',') < 0
+                && text.indexOf('"') < 0
+                && text.indexOf('\n') < 0
+                && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,247 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes ledger postings per child on this instance and hands concurrent ones to the poster as
+ * one batch. The first posting of a batch waits up to {@code maxLatencyMs} for others to join, a
+ * full batch is posted at once, and postings that arrive while a batch is being posted form the
+ * next one. Postings with {@link LedgerService.LedgerWork} do their own reads inside the
+ * transaction, so they are always posted alone. At most {@code workerThreads} children are posted
+ * at once; the rest wait for a free worker.
+ *
+ * <p>On shutdown new postings are refused, batches already being posted are allowed to commit,
+ * and only the postings still queued behind them are failed.
+ */
+class LedgerPostingQueue {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(LedgerPostingQueue.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @FunctionalInterface
+    interface BatchPoster {
+        /** Posts the batch in one transaction, completing the result of every posting. */
+        void post(String childId, List<Posting> batch) throws Exception;
+    }
+
+    static final class Posting {
+
+        final BigDecimal amount; // Null when computed by the work
+        final String description;
+        final Transaction.TransactionType type;
+        final Transaction.TransactionStatus status;
+        final LedgerService.LedgerWork work;
+        final CompletableFuture<Transaction> result = new CompletableFuture<>();
+
+        Posting(
+                BigDecimal amount,
+                String description,
+                Transaction.TransactionType type,
+                Transaction.TransactionStatus status,
+                LedgerService.LedgerWork work) {
+            this.amount = amount;
+            this.description = description;
+            this.type = type;
+            this.status = status;
+            this.work = work;
+        }
+
+        boolean isBatchable() {
+            return work == null;
+        }
+    }
+
+    private final int maxBatchSize;
+    private final long maxLatencyMs;
+    private final BatchPoster poster;
+    private final Map<String, ChildQueue> children = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService workers;
+    private volatile boolean stopped;
+
+    LedgerPostingQueue(int maxBatchSize, long maxLatencyMs, int workerThreads, BatchPoster poster) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1");
+        }
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("Worker threads must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMs = maxLatencyMs;
+        this.poster = poster;
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+    }
+
+    /** Queues the posting; its result completes once the batch holding it is committed. */
+    void submit(String childId, Posting posting) {
+        boolean[] postNow = {false};
+        boolean[] refused = {false};
+        children.compute(
+                childId,
+                (id, queue) -> {
+                    if (stopped) {
+                        refused[0] = true;
+                        return queue;
+                    }
+                    if (queue == null) {
+                        queue = new ChildQueue();
+                    }
+                    queue.postings.add(posting);
+                    if (!queue.draining) {
+                        if (maxLatencyMs <= 0
+                                || !posting.isBatchable()
+                                || queue.postings.size() >= maxBatchSize) {
+                            postNow[0] = true;
+                        } else if (queue.timer == null) {
+                            try {
+                                queue.timer =
+                                        timers.schedule(
+                                                () -> startDraining(id),
+                                                maxLatencyMs,
+                                                TimeUnit.MILLISECONDS);
+                            } catch (RejectedExecutionException e) {
+                                // Shutting down: the posting is failed with the rest of the queue
+                            }
+                        }
+                    }
+                    return queue;
+                });
+        if (refused[0]) {
+            posting.result.completeExceptionally(shuttingDown());
+        } else if (postNow[0]) {
+            startDraining(childId);
+        }
+    }
+
+    /** Number of children with postings waiting or being posted. */
+    int pending() {
+        return children.size();
+    }
+
+    private void startDraining(String childId) {
+        if (stopped) {
+            return;
+        }
+        boolean[] start = {false};
+        children.computeIfPresent(
+                childId,
+                (id, queue) -> {
+                    if (!queue.draining) {
+                        queue.draining = true;
+                        start[0] = true;
+                        if (queue.timer != null) {
+                            queue.timer.cancel(false);
+                        }
+                    }
+                    return queue;
+                });
+        if (start[0]) {
+            try {
+                workers.execute(() -> drain(childId));
+            } catch (RejectedExecutionException e) {
+                // Shutting down: leave the postings queued so shutdown fails them
+                children.computeIfPresent(
+                        childId,
+                        (id, queue) -> {
+                            queue.draining = false;
+                            return queue;
+                        });
+            }
+        }
+    }
+
+    private void drain(String childId) {
+        while (true) {
+            List<Posting> batch = new ArrayList<>();
+            children.computeIfPresent(
+                    childId,
+                    (id, queue) -> {
+                        if (stopped) {
+                            // Let the batch just posted be the last; shutdown fails the rest
+                            queue.draining = false;
+                            return queue.postings.isEmpty() ? null : queue;
+                        }
+                        Posting first = queue.postings.poll();
+                        if (first == null) {
+                            return null; // Drained: the next posting starts a new batch
+                        }
+                        batch.add(first);
+                        while (first.isBatchable()
+                                && batch.size() < maxBatchSize
+                                && queue.postings.peek() != null
+                                && queue.postings.peek().isBatchable()) {
+                            batch.add(queue.postings.poll());
+                        }
+                        return queue;
+                    });
+            if (batch.isEmpty()) {
+                return;
+            }
+            post(childId, batch);
+        }
+    }
+
+    private void post(String childId, List<Posting> batch) {
+        try {
+            poster.post(childId, batch);
+        } catch (Exception e) {
+            Throwable cause =
+                    e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            batch.forEach(posting -> posting.result.completeExceptionally(cause));
+        }
+    }
+
+    void shutdown() {
+        stopped = true;
+        timers.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Ledger batches still posting after {}s", SHUTDOWN_TIMEOUT_SECONDS);
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        IllegalStateException error = shuttingDown();
+        for (String childId : children.keySet()) {
+            children.computeIfPresent(
+                    childId,
+                    (id, queue) -> {
+                        queue.postings.forEach(
+                                posting -> posting.result.completeExceptionally(error));
+                        return null;
+                    });
+        }
+    }
+
+    private static IllegalStateException shuttingDown() {
+        return new IllegalStateException("Ledger is shutting down");
+    }
+
+    /** Guarded by the map entry: only mutated inside {@code compute} for the child. */
+    private static final class ChildQueue {
+
+        private final Deque<Posting> postings = new ArrayDeque<>();
+        private boolean draining;
+        private ScheduledFuture<?> timer;
+    }
+}
@@ -14,4 +14,5 @@ import lombok.NoArgsConstructor;
 public class LedgerResponse {
     private List<Transaction> transactions;
     private BigDecimal balance;
+    private String nextCursor; // Only set on a paged request when more transactions follow
 }
@@ -1,34 +1,55 @@
 package com.fazquepaga.taskandpay.allowance;
 
 import com.fazquepaga.taskandpay.ai.AiInsightService;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class LedgerService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String CHECKPOINTS_COLLECTION = "ledgerCheckpoints";
+
     private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
     private final AiInsightService aiInsightService;
     private final com.google.cloud.firestore.Firestore firestore;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final LedgerSummaryRepository ledgerSummaryRepository;
+    private final LedgerPostingQueue postingQueue;
 
     public LedgerService(
             TransactionRepository transactionRepository,
             UserRepository userRepository,
             AiInsightService aiInsightService,
-            com.google.cloud.firestore.Firestore firestore) {
+            com.google.cloud.firestore.Firestore firestore,
+            FamilyTimeZoneService familyTimeZoneService,
+            LedgerSummaryRepository ledgerSummaryRepository,
+            @Value("${ledger.posting.max-batch-size:25}") int maxBatchSize,
+            @Value("${ledger.posting.max-latency-ms:10}") long maxLatencyMs,
+            @Value("${ledger.posting.worker-threads:8}") int workerThreads) {
         this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
         this.aiInsightService = aiInsightService;
         this.firestore = firestore;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.ledgerSummaryRepository = ledgerSummaryRepository;
+        this.postingQueue =
+                new LedgerPostingQueue(maxBatchSize, maxLatencyMs, workerThreads, this::postBatch);
     }
 
     public Transaction addTransaction(
@@ -45,63 +66,220 @@ public class LedgerService {
             Transaction.TransactionType type,
             Transaction.TransactionStatus status)
             throws ExecutionException, InterruptedException {
+        return post(childId, amount, description, type, status, null);
+    }
+
+    /**
+     * Work committed atomically with a ledger entry. It runs inside the Firestore transaction
+     * after the child document was read, must do its own reads before its writes, and returns the
+     * amount to post, or null to post nothing.
+     */
+    @FunctionalInterface
+    public interface LedgerWork {
+        BigDecimal apply(com.google.cloud.firestore.Transaction transaction) throws Exception;
+    }
+
+    /**
+     * Posts one entry whose amount is computed by {@code work}, committing the work's writes and
+     * the balance change together. Returns null when the work posted nothing.
+     */
+    public Transaction addTransaction(
+            String childId,
+            String description,
+            Transaction.TransactionType type,
+            LedgerWork work)
+            throws ExecutionException, InterruptedException {
+        return post(
+                childId, null, description, type, Transaction.TransactionStatus.COMPLETED, work);
+    }
+
+    private Transaction post(
+            String childId,
+            BigDecimal amount,
+            String description,
+            Transaction.TransactionType type,
+            Transaction.TransactionStatus status,
+            LedgerWork work)
+            throws ExecutionException, InterruptedException {
+        LedgerPostingQueue.Posting posting =
+                new LedgerPostingQueue.Posting(amount, description, type, status, work);
+        postingQueue.submit(childId, posting);
+        return posting.result.get();
+    }
+
+    /**
+     * Commits a batch of one child's postings in a single transaction: one transaction document
+     * per posting, one balance update, and one update each of the checkpoint and summary. Entries
+     * are applied in order, and a debit the balance cannot cover fails alone without failing the
+     * rest of the batch.
+     */
+    private void postBatch(String childId, List<LedgerPostingQueue.Posting> batch)
+            throws ExecutionException, InterruptedException {
+        YearMonth month = YearMonth.now(familyTimeZoneService.zoneOf(childId));
 
-        return firestore.runTransaction(transaction -> {
-            com.google.cloud.firestore.DocumentReference userRef = firestore.collection("users").document(childId);
-            com.google.cloud.firestore.DocumentSnapshot userSnap = transaction.get(userRef).get();
+        List<Object> outcomes =
+                firestore
+                        .runTransaction(
+                                transaction -> {
+                                    com.google.cloud.firestore.DocumentReference userRef =
+                                            firestore.collection("users").document(childId);
+                                    com.google.cloud.firestore.DocumentSnapshot userSnap =
+                                            transaction.get(userRef).get();
+                                    if (!userSnap.exists()) {
+                                        throw new IllegalArgumentException("Child not found");
+                                    }
+                                    com.google.cloud.firestore.DocumentReference checkpointRef =
+                                            userRef.collection(CHECKPOINTS_COLLECTION)
+                                                    .document(month.toString());
+                                    com.google.cloud.firestore.DocumentSnapshot checkpointSnap =
+                                            transaction.get(checkpointRef).get();
+                                    com.google.cloud.firestore.DocumentReference summaryRef =
+                                            ledgerSummaryRepository.getSummaryDocument(childId);
+                                    com.google.cloud.firestore.DocumentSnapshot summarySnap =
+                                            transaction.get(summaryRef).get();
+                                    // A missing summary is built here, before any writes
+                                    LedgerSummary summary =
+                                            summarySnap.exists()
+                                                    ? summarySnap.toObject(LedgerSummary.class)
+                                                    : ledgerSummaryRepository.rebuild(
+                                                            transaction, childId);
 
-            if (!userSnap.exists()) {
-                throw new IllegalArgumentException("Child not found");
+                                    User child = userSnap.toObject(User.class);
+                                    BigDecimal balanceBefore =
+                                            child.getBalance() != null
+                                                    ? child.getBalance()
+                                                    : BigDecimal.ZERO;
+                                    LedgerBatch applied =
+                                            applyBatch(transaction, childId, balanceBefore, batch);
+                                    if (applied.count > 0) {
+                                        transaction.update(userRef, "balance", applied.balance);
+                                        transaction.set(
+                                                checkpointRef,
+                                                nextCheckpoint(
+                                                        checkpointSnap,
+                                                        month,
+                                                        balanceBefore,
+                                                        applied));
+                                        transaction.set(
+                                                summaryRef,
+                                                nextSummary(summary, applied.outcomes));
+                                    }
+                                    return applied.outcomes;
+                                })
+                        .get();
+        userRepository.evict(childId); // The balance changed outside UserRepository
+
+        for (int i = 0; i < batch.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (outcome instanceof RuntimeException) {
+                batch.get(i).result.completeExceptionally((RuntimeException) outcome);
+            } else {
+                batch.get(i).result.complete((Transaction) outcome);
             }
+        }
+    }
 
-            User child = userSnap.toObject(User.class);
-            BigDecimal currentBalance = child.getBalance() != null ? child.getBalance() : BigDecimal.ZERO;
+    /** Running totals of a batch applied inside one transaction attempt. */
+    private static final class LedgerBatch {
+
+        private final List<Object> outcomes = new ArrayList<>(); // Transaction, null or failure
+        private BigDecimal balance;
+        private BigDecimal credits = BigDecimal.ZERO;
+        private BigDecimal debits = BigDecimal.ZERO;
+        private long count;
+    }
+
+    private LedgerBatch applyBatch(
+            com.google.cloud.firestore.Transaction transaction,
+            String childId,
+            BigDecimal balance,
+            List<LedgerPostingQueue.Posting> batch)
+            throws Exception {
+        LedgerBatch applied = new LedgerBatch();
+        applied.balance = balance;
+        for (LedgerPostingQueue.Posting posting : batch) {
+            BigDecimal amount =
+                    posting.work != null ? posting.work.apply(transaction) : posting.amount;
+            if (amount == null) {
+                applied.outcomes.add(null); // Only the work's own writes are committed
+                continue;
+            }
 
             // Check for insufficient balance if it's a withdrawal or debit
-            boolean isDebit = type == Transaction.TransactionType.WITHDRAWAL || type == Transaction.TransactionType.DEBIT;
-            if (isDebit && currentBalance.compareTo(amount) < 0) {
-                throw new IllegalStateException("Insufficient balance");
+            boolean isDebit = posting.type.isDebit();
+            if (isDebit && applied.balance.compareTo(amount) < 0) {
+                if (posting.work != null) {
+                    // Posted alone: failing the transaction rolls back the work's writes
+                    throw new IllegalStateException("Insufficient balance");
+                }
+                applied.outcomes.add(new IllegalStateException("Insufficient balance"));
+                continue;
             }
 
-            BigDecimal newBalance;
-            if (type == Transaction.TransactionType.CREDIT
-                    || type == Transaction.TransactionType.TASK_EARNING) {
-                newBalance = currentBalance.add(amount);
+            if (isDebit) {
+                applied.balance = applied.balance.subtract(amount);
+                applied.debits = applied.debits.add(amount);
             } else {
-                newBalance = currentBalance.subtract(amount);
+                applied.balance = applied.balance.add(amount);
+                applied.credits = applied.credits.add(amount);
             }
+            applied.count++;
 
-            // Create transaction object
             Transaction tx =
                     Transaction.builder()
                             .id(UUID.randomUUID().toString())
                             .childId(childId)
                             .amount(amount)
-                            .description(description)
+                            .description(posting.description)
                             .date(Instant.now())
-                            .type(type)
-                            .status(status)
+                            .type(posting.type)
+                            .status(posting.status)
                             .build();
+            transaction.set(firestore.collection("transactions").document(tx.getId()), tx);
+            applied.outcomes.add(tx);
+        }
+        return applied;
+    }
 
-            // Perform updates
-            transaction.update(userRef, "balance", newBalance);
-            
-            com.google.cloud.firestore.DocumentReference txRef = firestore.collection("transactions").document(tx.getId());
-            transaction.set(txRef, tx);
+    private static LedgerCheckpoint nextCheckpoint(
+            com.google.cloud.firestore.DocumentSnapshot snapshot,
+            YearMonth month,
+            BigDecimal balanceBefore,
+            LedgerBatch applied) {
+        LedgerCheckpoint checkpoint =
+                snapshot.exists()
+                        ? snapshot.toObject(LedgerCheckpoint.class)
+                        : LedgerCheckpoint.builder()
+                                .month(month.toString())
+                                .openingBalance(balanceBefore)
+                                .credits(BigDecimal.ZERO)
+                                .debits(BigDecimal.ZERO)
+                                .build();
+        checkpoint.setCredits(checkpoint.getCredits().add(applied.credits));
+        checkpoint.setDebits(checkpoint.getDebits().add(applied.debits));
+        checkpoint.setClosingBalance(applied.balance);
+        checkpoint.setCount(checkpoint.getCount() + applied.count);
+        return checkpoint;
+    }
 
-            return tx;
-        }).get();
+    private static LedgerSummary nextSummary(LedgerSummary summary, List<Object> outcomes) {
+        for (Object outcome : outcomes) {
+            if (outcome instanceof Transaction) {
+                Transaction tx = (Transaction) outcome;
+                summary.add(tx.getType(), tx.getAmount(), tx.getDate());
+            }
+        }
+        return summary;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        postingQueue.shutdown();
     }
 
     public LedgerResponse getTransactions(String childId, String parentId)
             throws ExecutionException, InterruptedException {
-        User child = userRepository.findByIdSync(childId);
-        if (child == null) {
-            throw new IllegalArgumentException("Child not found");
-        }
-        if (!child.getParentId().equals(parentId)) {
-            throw new IllegalArgumentException("Child does not belong to this parent");
-        }
+        User child = getChild(childId, parentId);
 
         List<QueryDocumentSnapshot> documents =
                 transactionRepository.findByChildId(childId).getDocuments();
@@ -116,6 +294,65 @@ public class LedgerService {
                 .build();
     }
 
+    /**
+     * Returns one page of the child's transactions, newest first. {@code cursor} is the ID of the
+     * last transaction of the previous page.
+     */
+    public LedgerResponse getTransactionsPage(
+            String childId, String parentId, int pageSize, String cursor)
+            throws ExecutionException, InterruptedException {
+        User child = getChild(childId, parentId);
+        int size = pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        com.google.cloud.firestore.DocumentSnapshot cursorSnapshot = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            cursorSnapshot = transactionRepository.findSnapshotById(cursor);
+            if (!cursorSnapshot.exists() || !childId.equals(cursorSnapshot.getString("childId"))) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        List<QueryDocumentSnapshot> documents =
+                transactionRepository
+                        .findPageByChildId(childId, size, cursorSnapshot)
+                        .getDocuments();
+        boolean hasMore = documents.size() > size;
+        if (hasMore) {
+            documents = documents.subList(0, size);
+        }
+
+        return LedgerResponse.builder()
+                .transactions(
+                        documents.stream()
+                                .map(doc -> doc.toObject(Transaction.class))
+                                .collect(Collectors.toList()))
+                .balance(child.getBalance())
+                .nextCursor(hasMore ? documents.get(size - 1).getId() : null)
+                .build();
+    }
+
+    /** The child's monthly balance checkpoints, newest month first. */
+    public List<LedgerCheckpoint> getCheckpoints(String childId, String parentId)
+            throws ExecutionException, InterruptedException {
+        getChild(childId, parentId);
+        return transactionRepository.findCheckpoints(childId).getDocuments().stream()
+                .map(doc -> doc.toObject(LedgerCheckpoint.class))
+                .collect(Collectors.toList());
+    }
+
+    /** Loads the child uncached, since callers show its balance, checking the parent. */
+    User getChild(String childId, String parentId)
+            throws ExecutionException, InterruptedException {
+        User child = userRepository.findByIdFresh(childId);
+        if (child == null) {
+            throw new IllegalArgumentException("Child not found");
+        }
+        if (!child.getParentId().equals(parentId)) {
+            throw new IllegalArgumentException("Child does not belong to this parent");
+        }
+        return child;
+    }
+
     public String getInsights(String childId) {
         return aiInsightService.getInsights(childId);
     }
@@ -0,0 +1,44 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Running totals of a child's whole ledger, stored at {@code users/{childId}/metadata/
+ * ledgerSummary} and updated with every posting.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerSummary {
+
+    private BigDecimal totalCredits; // Credits and task earnings
+    private BigDecimal totalDebits; // Debits and withdrawals
+    private long transactionCount;
+    private Instant lastActivity; // Date of the latest entry, null when there is none
+
+    public static LedgerSummary empty() {
+        return LedgerSummary.builder()
+                .totalCredits(BigDecimal.ZERO)
+                .totalDebits(BigDecimal.ZERO)
+                .build();
+    }
+
+    /** Adds one entry to the totals. */
+    public void add(Transaction.TransactionType type, BigDecimal amount, Instant date) {
+        if (type.isDebit()) {
+            totalDebits = totalDebits.add(amount);
+        } else {
+            totalCredits = totalCredits.add(amount);
+        }
+        transactionCount++;
+        if (date != null && (lastActivity == null || date.isAfter(lastActivity))) {
+            lastActivity = date;
+        }
+    }
+}
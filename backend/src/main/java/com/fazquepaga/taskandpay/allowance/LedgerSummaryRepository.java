@@ -0,0 +1,68 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class LedgerSummaryRepository {
+
+    private final Firestore firestore;
+
+    public LedgerSummaryRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    /**
+     * Returns the child's ledger summary. A child whose history predates the summary gets it built
+     * once from the full ledger. A posting that finds the summary missing builds it too, so both
+     * write the summary document and Firestore serializes them.
+     */
+    public LedgerSummary findOrRebuild(String childId)
+            throws ExecutionException, InterruptedException {
+        DocumentReference document = getSummaryDocument(childId);
+        DocumentSnapshot snapshot = document.get().get();
+        if (snapshot.exists()) {
+            return snapshot.toObject(LedgerSummary.class);
+        }
+
+        return firestore
+                .runTransaction(
+                        transaction -> {
+                            DocumentSnapshot current = transaction.get(document).get();
+                            if (current.exists()) {
+                                return current.toObject(LedgerSummary.class);
+                            }
+                            LedgerSummary summary = rebuild(transaction, childId);
+                            transaction.set(document, summary);
+                            return summary;
+                        })
+                .get();
+    }
+
+    /** Totals the child's full ledger, reading it inside {@code transaction}. */
+    LedgerSummary rebuild(com.google.cloud.firestore.Transaction transaction, String childId)
+            throws ExecutionException, InterruptedException {
+        LedgerSummary summary = LedgerSummary.empty();
+        for (QueryDocumentSnapshot doc :
+                transaction
+                        .get(firestore.collection("transactions").whereEqualTo("childId", childId))
+                        .get()
+                        .getDocuments()) {
+            Transaction entry = doc.toObject(Transaction.class);
+            summary.add(entry.getType(), entry.getAmount(), entry.getDate());
+        }
+        return summary;
+    }
+
+    DocumentReference getSummaryDocument(String childId) {
+        return firestore
+                .collection("users")
+                .document(childId)
+                .collection("metadata")
+                .document("ledgerSummary");
+    }
+}
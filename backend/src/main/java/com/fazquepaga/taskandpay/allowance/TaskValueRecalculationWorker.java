@@ -0,0 +1,209 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Provider;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Redistributes task values off the request path. Signals for the same child within the debounce
+ * window are coalesced into one redistribution, and a signal that arrives while the child is being
+ * recalculated schedules exactly one more run. At most {@code max-concurrency} children are
+ * recalculated at the same time.
+ *
+ * <p>The signals themselves live in memory, but invalidating the plan also leaves a stale marker
+ * in Firestore that a successful run clears. A periodic sweep re-requests children whose marker is
+ * older than the sweep interval, which covers work lost in a restart or a failed run.
+ */
+@Service
+public class TaskValueRecalculationWorker {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(TaskValueRecalculationWorker.class);
+
+    private static final int SWEEP_PAGE_SIZE = 100;
+
+    private final Provider<AllowanceService> allowanceServiceProvider;
+    private final AllowancePlanRepository allowancePlanRepository;
+    private final long debounceMs;
+    private final long sweepMs;
+    private final Map<String, ChildState> children = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService workers;
+
+    private final Counter requests;
+    private final Counter failures;
+    private final Timer lag;
+    private final Timer duration;
+
+    public TaskValueRecalculationWorker(
+            Provider<AllowanceService> allowanceServiceProvider,
+            AllowancePlanRepository allowancePlanRepository,
+            MeterRegistry meterRegistry,
+            @Value("${allowance.recalculation.debounce-ms:2000}") long debounceMs,
+            @Value("${allowance.recalculation.max-concurrency:4}") int maxConcurrency,
+            @Value("${allowance.recalculation.sweep-ms:60000}") long sweepMs) {
+        this.allowanceServiceProvider = allowanceServiceProvider;
+        this.allowancePlanRepository = allowancePlanRepository;
+        this.debounceMs = debounceMs;
+        this.sweepMs = sweepMs;
+        this.workers = Executors.newFixedThreadPool(maxConcurrency);
+
+        this.requests = meterRegistry.counter("allowance.recalculation.requests");
+        this.failures = meterRegistry.counter("allowance.recalculation.failures");
+        this.lag =
+                Timer.builder("allowance.recalculation.lag")
+                        .description("Time from the first signal to the start of the run")
+                        .register(meterRegistry);
+        this.duration = meterRegistry.timer("allowance.recalculation.duration");
+        Gauge.builder("allowance.recalculation.pending", children, Map::size)
+                .description("Children waiting for or undergoing a recalculation")
+                .register(meterRegistry);
+    }
+
+    /** Signals that the child's tasks or allowance changed and its task values are stale. */
+    public void requestRecalculation(String childId) {
+        requests.increment();
+        children.compute(
+                childId,
+                (id, state) -> {
+                    if (state == null) {
+                        schedule(id);
+                        return new ChildState(System.nanoTime());
+                    }
+                    if (state.running && !state.rerun) {
+                        state.rerun = true;
+                        state.rerunRequestedAt = System.nanoTime();
+                    }
+                    return state; // Already scheduled: coalesced into that run
+                });
+    }
+
+    /**
+     * Re-requests children whose values were marked stale more than one sweep interval ago and
+     * are not queued here, e.g. because the instance that queued them stopped.
+     */
+    @Scheduled(
+            fixedDelayString = "${allowance.recalculation.sweep-ms:60000}",
+            initialDelayString = "${allowance.recalculation.sweep-ms:60000}")
+    public void sweep() {
+        Instant cutoff = Instant.now().minusMillis(sweepMs);
+        try {
+            for (String childId :
+                    allowancePlanRepository.findStaleChildIds(
+                            Timestamp.ofTimeSecondsAndNanos(
+                                    cutoff.getEpochSecond(), cutoff.getNano()),
+                            SWEEP_PAGE_SIZE)) {
+                if (!children.containsKey(childId)) {
+                    log.info("Re-running stale task value recalculation for child {}", childId);
+                    requestRecalculation(childId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Failed to look up stale task values", e);
+        }
+    }
+
+    /** Number of children waiting for or undergoing a recalculation. */
+    int pending() {
+        return children.size();
+    }
+
+    private void schedule(String childId) {
+        timers.schedule(
+                () -> workers.execute(() -> run(childId)), debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(String childId) {
+        ChildState state =
+                children.computeIfPresent(
+                        childId,
+                        (id, current) -> {
+                            current.running = true;
+                            return current;
+                        });
+        if (state == null) {
+            return;
+        }
+        lag.record(Duration.ofNanos(System.nanoTime() - state.requestedAt));
+
+        long start = System.nanoTime();
+        try {
+            DocumentSnapshot marker = allowancePlanRepository.findStaleValues(childId).get();
+            allowanceServiceProvider.get().recalculateTaskValues(childId);
+            if (marker.exists()) {
+                clearStaleValues(childId, marker);
+            }
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Failed to recalculate task values for child {}", childId, e);
+        } finally {
+            duration.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        children.computeIfPresent(
+                childId,
+                (id, current) -> {
+                    if (!current.rerun) {
+                        return null;
+                    }
+                    // Changed while running: the values just written may already be stale
+                    schedule(id);
+                    return new ChildState(current.rerunRequestedAt);
+                });
+    }
+
+    private void clearStaleValues(String childId, DocumentSnapshot marker)
+            throws InterruptedException {
+        try {
+            allowancePlanRepository.clearStaleValues(marker).get();
+        } catch (ExecutionException e) {
+            // Usually invalidated again during the run: that marker stays for the next run
+            log.debug("Stale marker of child {} not cleared", childId, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timers.shutdownNow();
+        workers.shutdownNow();
+        if (!children.isEmpty()) {
+            log.warn(
+                    "Dropping task value recalculations of {} children on shutdown; their stale"
+                            + " markers are picked up by the next sweep: {}",
+                    children.size(),
+                    children.keySet());
+        }
+    }
+
+    /** Guarded by the map entry: only mutated inside {@code compute} for the child. */
+    private static final class ChildState {
+
+        private final long requestedAt;
+        private boolean running;
+        private boolean rerun; // A signal arrived during the run
+        private long rerunRequestedAt;
+
+        ChildState(long requestedAt) {
+            this.requestedAt = requestedAt;
+        }
+    }
+}
@@ -28,7 +28,12 @@ public class Transaction {
         CREDIT,
         DEBIT,
         WITHDRAWAL,
-        TASK_EARNING
+        TASK_EARNING;
+
+        /** Whether an entry of this type takes money out of the balance. */
+        public boolean isDebit() {
+            return this == DEBIT || this == WITHDRAWAL;
+        }
     }
 
     public enum TransactionStatus {
@@ -1,9 +1,12 @@
 package com.fazquepaga.taskandpay.allowance;
 
 import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QuerySnapshot;
+import java.time.Instant;
 import java.util.concurrent.ExecutionException;
 import org.springframework.stereotype.Repository;
 
@@ -30,6 +33,72 @@ public class TransactionRepository {
         return query.get().get();
     }
 
+    /**
+     * Returns up to {@code pageSize + 1} of the child's transactions, newest first, after the
+     * {@code cursor} transaction when one is given; the extra one tells whether more follow.
+     */
+    public QuerySnapshot findPageByChildId(String childId, int pageSize, DocumentSnapshot cursor)
+            throws ExecutionException, InterruptedException {
+        Query query =
+                firestore
+                        .collection("transactions")
+                        .whereEqualTo("childId", childId)
+                        .orderBy("date", Query.Direction.DESCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                        .limit(pageSize + 1);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        return query.get().get();
+    }
+
+    /**
+     * Returns up to {@code pageSize} of the child's transactions dated in {@code [from, to)},
+     * oldest first, after the {@code cursor} document when one is given. Either bound may be null.
+     */
+    public QuerySnapshot findRangePageByChildId(
+            String childId, Instant from, Instant to, int pageSize, DocumentSnapshot cursor)
+            throws ExecutionException, InterruptedException {
+        Query query =
+                rangeByChildId(childId, from, to)
+                        .orderBy("date", Query.Direction.ASCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.ASCENDING)
+                        .limit(pageSize);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        return query.get().get();
+    }
+
+    /** The child's transactions dated in {@code [from, to)}; either bound may be null. */
+    public Query rangeByChildId(String childId, Instant from, Instant to) {
+        Query query = firestore.collection("transactions").whereEqualTo("childId", childId);
+        if (from != null) {
+            query = query.whereGreaterThanOrEqualTo("date", from);
+        }
+        if (to != null) {
+            query = query.whereLessThan("date", to);
+        }
+        return query;
+    }
+
+    public DocumentSnapshot findSnapshotById(String id)
+            throws ExecutionException, InterruptedException {
+        return firestore.collection("transactions").document(id).get().get();
+    }
+
+    /** The child's monthly checkpoints, newest month first. */
+    public QuerySnapshot findCheckpoints(String childId)
+            throws ExecutionException, InterruptedException {
+        return firestore
+                .collection("users")
+                .document(childId)
+                .collection("ledgerCheckpoints")
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .get()
+                .get();
+    }
+
     public Transaction findById(String id) throws ExecutionException, InterruptedException {
         return firestore
                 .collection("transactions")
@@ -28,7 +28,7 @@ public class WithdrawalService {
 
     public Transaction requestWithdrawal(String childId, BigDecimal amount)
             throws ExecutionException, InterruptedException {
-        User child = userRepository.findByIdSync(childId);
+        User child = userRepository.findByIdFresh(childId);
         if (child == null || child.getRole() != User.Role.CHILD) {
             throw new IllegalArgumentException("Child not found");
         }
@@ -53,6 +53,11 @@ public class SecurityConfig {
                 .authorizeHttpRequests(
                         authorize ->
                                 authorize
+                                        // Async dispatches (end of an SSE stream) were
+                                        // authorized on the original request
+                                        .dispatcherTypeMatchers(
+                                                jakarta.servlet.DispatcherType.ASYNC)
+                                        .permitAll()
                                         // Public endpoints
                                         .requestMatchers(
                                                 "/api/v1/auth/**",
@@ -158,6 +163,9 @@ public class SecurityConfig {
         configuration.setAllowedMethods(
                 java.util.Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD"));
         configuration.setAllowedHeaders(java.util.Arrays.asList("*"));
+        configuration.setExposedHeaders(
+                java.util.Collections.singletonList(
+                        com.fazquepaga.taskandpay.shared.PaginationHeaders.NEXT_CURSOR));
         configuration.setAllowCredentials(true);
 
         org.springframework.web.cors.UrlBasedCorsConfigurationSource source =
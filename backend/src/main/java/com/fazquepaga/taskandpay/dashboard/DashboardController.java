@@ -0,0 +1,37 @@
+package com.fazquepaga.taskandpay.dashboard;
+
+import com.fazquepaga.taskandpay.dashboard.dto.DashboardView;
+import com.fazquepaga.taskandpay.identity.User;
+import java.util.concurrent.ExecutionException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** One-request view of the family for the parent dashboard. */
+@RestController
+@RequestMapping("/api/v1/dashboard")
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    public DashboardController(DashboardService dashboardService) {
+        this.dashboardService = dashboardService;
+    }
+
+    @GetMapping
+    public ResponseEntity<DashboardView> getDashboard(
+            @AuthenticationPrincipal User authenticatedUser)
+            throws ExecutionException, InterruptedException {
+
+        if (authenticatedUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (authenticatedUser.getRole() != User.Role.PARENT) {
+            return ResponseEntity.status(403).build();
+        }
+
+        return ResponseEntity.ok(dashboardService.getDashboard(authenticatedUser.getId()));
+    }
+}
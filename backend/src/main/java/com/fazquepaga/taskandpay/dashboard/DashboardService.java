@@ -0,0 +1,104 @@
+package com.fazquepaga.taskandpay.dashboard;
+
+import com.fazquepaga.taskandpay.allowance.AllowanceService;
+import com.fazquepaga.taskandpay.dashboard.dto.ChildOverview;
+import com.fazquepaga.taskandpay.dashboard.dto.DashboardView;
+import com.fazquepaga.taskandpay.dashboard.dto.TaskOverview;
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.fazquepaga.taskandpay.shared.stats.StatsService;
+import com.fazquepaga.taskandpay.tasks.Task;
+import com.fazquepaga.taskandpay.tasks.TaskRepository;
+import com.fazquepaga.taskandpay.tasks.TaskService;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Builds the parent dashboard in one pass. The family stats read starts alongside the children
+ * query, and each child's active tasks are then read concurrently, so the response waits on the
+ * children query plus the slowest task read instead of one request per child and view. Balances
+ * come with the children documents.
+ */
+@Service
+public class DashboardService {
+
+    private final UserRepository userRepository;
+    private final TaskRepository taskRepository;
+    private final TaskService taskService;
+    private final AllowanceService allowanceService;
+    private final StatsService statsService;
+
+    public DashboardService(
+            UserRepository userRepository,
+            TaskRepository taskRepository,
+            TaskService taskService,
+            AllowanceService allowanceService,
+            StatsService statsService) {
+        this.userRepository = userRepository;
+        this.taskRepository = taskRepository;
+        this.taskService = taskService;
+        this.allowanceService = allowanceService;
+        this.statsService = statsService;
+    }
+
+    public DashboardView getDashboard(String parentId)
+            throws ExecutionException, InterruptedException {
+        CompletableFuture<Map<String, Object>> stats = statsService.getFamilyStats(parentId);
+        List<User> children = new ArrayList<>();
+        for (QueryDocumentSnapshot document :
+                userRepository.findByParentId(parentId).get().getDocuments()) {
+            children.add(document.toObject(User.class));
+        }
+
+        List<ApiFuture<QuerySnapshot>> taskReads = new ArrayList<>(children.size());
+        for (User child : children) {
+            taskReads.add(taskRepository.findActiveTasks(child.getId()));
+        }
+        List<QuerySnapshot> activeTasks = ApiFutures.allAsList(taskReads).get();
+
+        List<ChildOverview> overviews = new ArrayList<>(children.size());
+        for (int i = 0; i < children.size(); i++) {
+            User child = children.get(i);
+            List<Task> tasks = taskService.toActiveTasks(child.getId(), activeTasks.get(i));
+            overviews.add(toOverview(child, tasks));
+        }
+        return DashboardView.builder().stats(stats.get()).children(overviews).build();
+    }
+
+    private ChildOverview toOverview(User child, List<Task> tasks) {
+        List<TaskOverview> taskOverviews = new ArrayList<>(tasks.size());
+        long pendingApprovals = 0;
+        for (Task task : tasks) {
+            if (task.getStatus() == Task.TaskStatus.PENDING_APPROVAL) {
+                pendingApprovals++;
+            }
+            taskOverviews.add(
+                    TaskOverview.builder()
+                            .id(task.getId())
+                            .description(task.getDescription())
+                            .type(task.getType())
+                            .status(task.getStatus())
+                            .value(task.getValue())
+                            .requiresProof(task.isRequiresProof())
+                            .build());
+        }
+        return ChildOverview.builder()
+                .id(child.getId())
+                .name(child.getName())
+                .age(child.getAge())
+                .balance(child.getBalance())
+                .monthlyAllowance(child.getMonthlyAllowance())
+                .predictedAllowance(allowanceService.calculatePredictedAllowance(child, tasks))
+                .pendingApprovalCount(pendingApprovals)
+                .tasks(taskOverviews)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.fazquepaga.taskandpay.dashboard.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChildOverview {
+    private String id;
+    private String name;
+    private Integer age;
+    private BigDecimal balance;
+    private BigDecimal monthlyAllowance;
+    private BigDecimal predictedAllowance;
+    private long pendingApprovalCount;
+    private List<TaskOverview> tasks;
+}
@@ -0,0 +1,18 @@
+package com.fazquepaga.taskandpay.dashboard.dto;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Everything the parent dashboard shows on first render, in one response. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardView {
+    private Map<String, Object> stats;
+    private List<ChildOverview> children;
+}
@@ -0,0 +1,21 @@
+package com.fazquepaga.taskandpay.dashboard.dto;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskOverview {
+    private String id;
+    private String description;
+    private Task.TaskType type;
+    private Task.TaskStatus status;
+    private BigDecimal value;
+    private boolean requiresProof;
+}
@@ -55,8 +55,10 @@ public class GiftCardController {
             throw new IllegalArgumentException("User not found");
         }
 
-        // Check if user can access gift card store (must be premium)
-        if (!subscriptionService.canAccessGiftCardStore(user)) {
+        // Check if user can access gift card store (must be premium). The token's tier may
+        // predate an upgrade, so the stored subscription decides.
+        User subscriber = userRepository.findByIdSync(user.getId());
+        if (!subscriptionService.canAccessGiftCardStore(subscriber)) {
             throw new SubscriptionLimitReachedException(
                     "Gift Card store is only available for Premium users. Upgrade to access!");
         }
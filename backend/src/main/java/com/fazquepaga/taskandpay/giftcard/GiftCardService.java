@@ -37,7 +37,7 @@ public class GiftCardService {
                 productId,
                 amount);
 
-        User child = userRepository.findByIdSync(childId);
+        User child = userRepository.findByIdFresh(childId);
         if (child == null) {
             throw new IllegalArgumentException("Criança não encontrada");
         }
@@ -78,7 +78,7 @@ public class GiftCardService {
         validateApprovalRequest(parentId, transaction);
 
         User parent = userRepository.findByIdSync(parentId);
-        User child = userRepository.findByIdSync(transaction.getChildId());
+        User child = userRepository.findByIdFresh(transaction.getChildId());
         validateUsersAndBalance(parent, child, transaction);
 
         String asaasPaymentId = null;
@@ -228,6 +228,7 @@ public class GiftCardService {
                             return null;
                         })
                 .get();
+        userRepository.evict(childId);
     }
 
     private void handleApprovalFailure(
@@ -47,6 +47,14 @@ public class GiftCardTransactionRepository {
         return querySnapshot.toObjects(GiftCardTransaction.class);
     }
 
+    /** Gift cards already issued to the child, whose amounts were taken from its balance. */
+    public Query completedByChildId(String childId) {
+        return firestore
+                .collection(COLLECTION_NAME)
+                .whereEqualTo("childId", childId)
+                .whereEqualTo("status", GiftCardTransaction.Status.COMPLETED.name());
+    }
+
     public List<GiftCardTransaction> findByParentId(String parentId)
             throws ExecutionException, InterruptedException {
         QuerySnapshot querySnapshot =
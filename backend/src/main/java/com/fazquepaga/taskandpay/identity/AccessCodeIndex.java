@@ -0,0 +1,136 @@
+package com.fazquepaga.taskandpay.identity;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Instance-local set of the access codes in use, so inbound messages that are not a code are
+ * turned away without a Firestore read.
+ *
+ * <p>Codes are six upper-case hex digits, so each one maps to its own bit of a 2 MB bit set: the
+ * set is exact rather than probabilistic and never needs resizing. It is warmed from every child
+ * at startup, takes codes created on this instance as they are reserved, and every {@code
+ * refresh-ms} picks up codes reserved on other instances. Codes of deleted children stay until the
+ * next restart, which only costs a lookup that fails as before. Until the first warm-up succeeds,
+ * every well-formed code is let through.
+ */
+@Component
+public class AccessCodeIndex {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(AccessCodeIndex.class);
+
+    static final int CODE_LENGTH = 6;
+
+    // Reservation timestamps come from the server; re-reading a little of the past covers clock
+    // skew and commits that were in flight during the previous refresh.
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final AtomicLongArray bits = new AtomicLongArray((1 << (4 * CODE_LENGTH)) / 64);
+    private final UserRepository userRepository;
+    private final int pageSize;
+
+    private volatile boolean warm;
+    private Instant refreshedFrom;
+
+    public AccessCodeIndex(
+            UserRepository userRepository,
+            @Value("${users.access-codes.page-size:1000}") int pageSize) {
+        this.userRepository = userRepository;
+        this.pageSize = pageSize;
+    }
+
+    /** Whether {@code message} may be a code in use: false means it certainly is not. */
+    public boolean mightContain(String message) {
+        int index = indexOf(message);
+        if (index < 0) {
+            return false;
+        }
+        return !warm || (bits.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    public void add(String code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return;
+        }
+        bits.getAndAccumulate(index >>> 6, 1L << (index & 63), (word, bit) -> word | bit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warmUp() {
+        Instant start = Instant.now();
+        try {
+            int count = 0;
+            DocumentSnapshot cursor = null;
+            List<QueryDocumentSnapshot> page;
+            do {
+                page = userRepository.findChildAccessCodesPage(pageSize, cursor).getDocuments();
+                for (QueryDocumentSnapshot child : page) {
+                    add(child.getString("accessCode"));
+                }
+                count += page.size();
+                cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+            } while (page.size() == pageSize);
+            refreshedFrom = start.minus(REFRESH_OVERLAP);
+            warm = true;
+            log.info("Access code index warmed with {} children", count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Failed to warm the access code index; codes are checked in Firestore", e);
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${users.access-codes.refresh-ms:60000}",
+            initialDelayString = "${users.access-codes.refresh-ms:60000}")
+    public synchronized void refresh() {
+        if (!warm) {
+            warmUp();
+            return;
+        }
+        Instant start = Instant.now();
+        try {
+            for (String code : userRepository.findAccessCodesReservedSince(refreshedFrom)) {
+                add(code);
+            }
+            refreshedFrom = start.minus(REFRESH_OVERLAP);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Failed to refresh the access code index", e);
+        }
+    }
+
+    /** The bit of a well-formed code (six upper-case hex digits), or -1. */
+    static int indexOf(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            char c = code.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            index = (index << 4) | digit;
+        }
+        return index;
+    }
+}
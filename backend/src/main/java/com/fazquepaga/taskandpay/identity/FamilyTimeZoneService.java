@@ -0,0 +1,76 @@
+package com.fazquepaga.taskandpay.identity;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the local date of a family. The timezone is stored on the parent and shared by the
+ * children, so recurring tasks turn over at the family's midnight rather than the server's.
+ */
+@Service
+public class FamilyTimeZoneService {
+
+    public static final ZoneId DEFAULT_ZONE = ZoneId.of("America/Sao_Paulo");
+
+    private static final long CACHE_TTL_MINUTES = 10;
+    private static final long CACHE_MAX_SIZE = 10000;
+
+    private final UserRepository userRepository;
+
+    // userId -> family zone; a change made on another instance shows up after the TTL
+    private final Cache<String, ZoneId> zones =
+            Caffeine.newBuilder()
+                    .expireAfterWrite(CACHE_TTL_MINUTES, TimeUnit.MINUTES)
+                    .maximumSize(CACHE_MAX_SIZE)
+                    .build();
+
+    public FamilyTimeZoneService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /** Validates an IANA timezone ID such as "America/Sao_Paulo"; null means the default zone. */
+    public static ZoneId parse(String timezone) {
+        if (timezone == null || timezone.isBlank()) {
+            return DEFAULT_ZONE;
+        }
+        try {
+            return ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid timezone: " + timezone);
+        }
+    }
+
+    /** Today's date in the family of the given parent or child. */
+    public LocalDate today(String userId) throws ExecutionException, InterruptedException {
+        return LocalDate.now(zoneOf(userId));
+    }
+
+    public ZoneId zoneOf(String userId) throws ExecutionException, InterruptedException {
+        ZoneId cached = zones.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        User user = userRepository.findByIdSync(userId);
+        if (user != null && user.getRole() == User.Role.CHILD && user.getParentId() != null) {
+            user = userRepository.findByIdSync(user.getParentId());
+        }
+        ZoneId zone =
+                user != null && user.getTimezone() != null
+                        ? parse(user.getTimezone())
+                        : DEFAULT_ZONE;
+        zones.put(userId, zone);
+        return zone;
+    }
+
+    /** Drops cached zones after a parent changes timezone; the cache has no parent index. */
+    public void evictAll() {
+        zones.invalidateAll();
+    }
+}
@@ -78,9 +78,7 @@ public class IdentityController {
             throw new RecaptchaException("reCAPTCHA verification failed");
         }
         User child = identityService.authenticateChildByCode(request.getCode());
-        String token =
-                jwtService.generateToken(
-                        child.getId(), child.getId(), "CHILD"); // Simplified token for child
+        String token = jwtService.generateToken(child);
         String refreshToken = refreshTokenService.createRefreshToken(child.getId());
         ChildLoginResponse response =
                 ChildLoginResponse.builder()
@@ -110,7 +108,9 @@ public class IdentityController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Authentication required"));
         }
-        refreshTokenService.revokeAllTokens(principal.getName());
+        // Tokens with embedded claims name the user by ID; older ones by email
+        User user = getAuthenticatedUser();
+        refreshTokenService.revokeAllTokens(user != null ? user.getId() : principal.getName());
         return ResponseEntity.ok(Map.of("message", "All sessions logged out"));
     }
 
@@ -258,4 +258,17 @@ public class IdentityController {
                 identityService.updateAiContext(childId, request.getContext(), parent.getId());
         return ResponseEntity.ok(updatedChild);
     }
+
+    @PatchMapping("/users/me/timezone")
+    public ResponseEntity<User> updateTimezone(
+            @RequestBody com.fazquepaga.taskandpay.identity.dto.UpdateTimezoneRequest request)
+            throws ExecutionException, InterruptedException {
+        User parent = getAuthenticatedUser();
+        if (parent == null || parent.getRole() != User.Role.PARENT) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        User updatedParent = identityService.updateTimezone(parent.getId(), request.getTimezone());
+        return ResponseEntity.ok(updatedParent);
+    }
 }
@@ -4,7 +4,9 @@ import com.fazquepaga.taskandpay.identity.dto.CreateChildRequest;
 import com.fazquepaga.taskandpay.identity.dto.CreateParentRequest;
 import com.fazquepaga.taskandpay.identity.dto.UpdateChildRequest;
 import com.fazquepaga.taskandpay.shared.stats.StatsService;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -15,18 +17,36 @@ import org.springframework.stereotype.Service;
 public class IdentityService {
 
     private final UserRepository userRepository;
+    private final AccessCodeIndex accessCodeIndex;
     private final org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
     private final StatsService statsService;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final jakarta.inject.Provider<com.fazquepaga.taskandpay.allowance.AllowanceService>
+            allowanceServiceProvider;
+    private final com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker
+            recalculationWorker;
+    private final com.fazquepaga.taskandpay.security.RefreshTokenService refreshTokenService;
     // In-memory storage for onboarding codes: code -> childId
     private final ConcurrentHashMap<String, String> onboardingCodes = new ConcurrentHashMap<>();
 
     public IdentityService(
             UserRepository userRepository,
+            AccessCodeIndex accessCodeIndex,
             org.springframework.security.crypto.password.PasswordEncoder passwordEncoder,
-            StatsService statsService) {
+            StatsService statsService,
+            FamilyTimeZoneService familyTimeZoneService,
+            jakarta.inject.Provider<com.fazquepaga.taskandpay.allowance.AllowanceService>
+                    allowanceServiceProvider,
+            com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker recalculationWorker,
+            com.fazquepaga.taskandpay.security.RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
+        this.accessCodeIndex = accessCodeIndex;
         this.passwordEncoder = passwordEncoder;
         this.statsService = statsService;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.allowanceServiceProvider = allowanceServiceProvider;
+        this.recalculationWorker = recalculationWorker;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public String generateOnboardingCode(String childId)
@@ -96,16 +116,6 @@ public class IdentityService {
 
     public User registerParent(CreateParentRequest request)
             throws ExecutionException, InterruptedException {
-
-        // Validate uniqueness of email and phone
-        if (userRepository.findByEmail(request.getEmail()) != null) {
-            throw new IllegalArgumentException("Email already in use.");
-        }
-        if (request.getPhoneNumber() != null
-                && userRepository.findByPhoneNumber(request.getPhoneNumber()) != null) {
-            throw new IllegalArgumentException("Phone number already in use.");
-        }
-
         User parent =
                 User.builder()
                         .name(request.getName())
@@ -118,9 +128,11 @@ public class IdentityService {
                         .subscriptionTier(User.SubscriptionTier.FREE)
                         .subscriptionStatus(User.SubscriptionStatus.ACTIVE)
                         .trialStartDate(java.time.Instant.now()) // Start 3-day free trial
+                        .timezone(FamilyTimeZoneService.parse(request.getTimezone()).getId())
                         .build();
 
-        userRepository.save(parent).get();
+        // Reserves email and phone with the parent; throws if either is already in use
+        userRepository.createParent(parent);
 
         return parent;
     }
@@ -140,12 +152,6 @@ public class IdentityService {
             throw new IllegalArgumentException("Parent with ID " + parentId + " not found.");
         }
 
-        // Generate Unique Access Code
-        String accessCode;
-        do {
-            accessCode = UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-        } while (userRepository.findByAccessCode(accessCode).isPresent()); // Ensure uniqueness
-
         User child =
                 User.builder()
                         .name(request.getName())
@@ -153,18 +159,24 @@ public class IdentityService {
                         .age(request.getAge())
                         .role(User.Role.CHILD)
                         .parentId(parentId)
-                        .accessCode(accessCode) // Save access code
                         .aiContext(request.getAiContext())
                         .build();
 
-        userRepository.save(child).get();
+        // Generate a unique access code, reserved in the same transaction that creates the child
+        do {
+            child.setAccessCode(UUID.randomUUID().toString().substring(0, 6).toUpperCase());
+        } while (!userRepository.createChild(child));
+        accessCodeIndex.add(child.getAccessCode());
 
         return child;
     }
 
     public User getChild(String childId, String parentId)
             throws ExecutionException, InterruptedException {
-        User child = userRepository.findByIdSync(childId);
+        return requireChildOf(userRepository.findByIdSync(childId), parentId);
+    }
+
+    private static User requireChildOf(User child, String parentId) {
         if (child == null || child.getRole() != User.Role.CHILD) {
             throw new IllegalArgumentException("Child not found");
         }
@@ -182,15 +194,17 @@ public class IdentityService {
 
     public User updateChildAllowance(String childId, java.math.BigDecimal allowance)
             throws ExecutionException, InterruptedException {
-        User child = userRepository.findByIdSync(childId);
+        // Fresh, and only the allowance is written: the child is returned with its balance
+        User child = userRepository.findByIdFresh(childId);
         if (child == null) {
             throw new IllegalArgumentException("Child not found");
         }
         child.setMonthlyAllowance(allowance);
-        userRepository.save(child).get();
-
-        // NOVO: Recalcular valores das tarefas quando mesada mudar
-        // Note: Precisamos injetar AllowanceService - vou adicionar no constructor
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("monthlyAllowance", allowance);
+        userRepository.update(childId, fields).get();
+        allowanceServiceProvider.get().invalidateAllowancePlan(childId);
+        recalculationWorker.requestRecalculation(childId);
 
         return child;
     }
@@ -206,20 +220,26 @@ public class IdentityService {
     public User updateChild(String childId, UpdateChildRequest request, String parentId)
             throws ExecutionException, InterruptedException {
         // SECURITY: Validate child exists and belongs to parent
-        User child = getChild(childId, parentId);
+        User child = requireChildOf(userRepository.findByIdFresh(childId), parentId);
 
         // Update only the provided fields (partial update)
+        Map<String, Object> fields = new HashMap<>();
         if (request.getName() != null && !request.getName().isEmpty()) {
             child.setName(request.getName());
+            fields.put("name", request.getName());
         }
         if (request.getAge() != null) {
             child.setAge(request.getAge());
+            fields.put("age", request.getAge());
         }
         if (request.getPhoneNumber() != null && !request.getPhoneNumber().isEmpty()) {
             child.setPhoneNumber(request.getPhoneNumber());
+            fields.put("phoneNumber", request.getPhoneNumber());
         }
 
-        userRepository.save(child).get();
+        if (!fields.isEmpty()) {
+            userRepository.update(childId, fields).get();
+        }
         return child;
     }
 
@@ -239,19 +259,39 @@ public class IdentityService {
 
     public User updateAiContext(String childId, String context, String parentId)
             throws ExecutionException, InterruptedException {
-        User child = getChild(childId, parentId); // Validates existence and ownership
+        // Validates existence and ownership
+        User child = requireChildOf(userRepository.findByIdFresh(childId), parentId);
         child.setAiContext(context);
-        userRepository.save(child).get();
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("aiContext", context);
+        userRepository.update(childId, fields).get();
         return child;
     }
 
+    public User updateTimezone(String parentId, String timezone)
+            throws ExecutionException, InterruptedException {
+        User parent = userRepository.findByIdSync(parentId);
+        if (parent == null || parent.getRole() != User.Role.PARENT) {
+            throw new IllegalArgumentException("User is not a parent");
+        }
+        parent.setTimezone(FamilyTimeZoneService.parse(timezone).getId());
+        // Only the timezone: the cached parent may predate a subscription update
+        userRepository.update(parentId, Map.of("timezone", parent.getTimezone())).get();
+        familyTimeZoneService.evictAll();
+        return parent;
+    }
+
     public void deleteChild(String childId, String parentId)
             throws ExecutionException, InterruptedException {
         // SECURITY: Validate child belongs to parent before deleting
         User child = getChild(childId, parentId);
 
-        // Delete the child from database
-        userRepository.delete(childId).get();
+        // Tokens are verified from their claims alone: revoke them first, so a failure cannot
+        // leave a deleted child signed in
+        refreshTokenService.revokeAllTokens(childId);
+
+        // Delete the child and its access code reservation
+        userRepository.delete(child).get();
 
         // Recalculate family stats so dashboard totals update
         statsService.recalculateFamilyStats(parentId);
@@ -0,0 +1,24 @@
+package com.fazquepaga.taskandpay.identity;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of the backfill of reservations for users created before them, stored at {@code
+ * migrations/userReservations}. Once {@code completed}, instances stop falling back to the user
+ * queries.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBackfill {
+
+    private String lastUserId; // Users up to this ID, in document ID order, have their reservations
+    private long reserved; // Reservations written so far
+    private boolean completed;
+    private Instant completedAt;
+}
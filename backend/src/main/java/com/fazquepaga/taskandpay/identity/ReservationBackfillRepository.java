@@ -0,0 +1,32 @@
+package com.fazquepaga.taskandpay.identity;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteResult;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ReservationBackfillRepository {
+
+    private final Firestore firestore;
+
+    public ReservationBackfillRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    public ReservationBackfill find() throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = getBackfillDocument().get().get();
+        return snapshot.exists() ? snapshot.toObject(ReservationBackfill.class) : null;
+    }
+
+    public ApiFuture<WriteResult> save(ReservationBackfill backfill) {
+        return getBackfillDocument().set(backfill);
+    }
+
+    private DocumentReference getBackfillDocument() {
+        return firestore.collection("migrations").document("userReservations");
+    }
+}
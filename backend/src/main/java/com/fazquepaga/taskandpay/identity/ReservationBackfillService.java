@@ -0,0 +1,105 @@
+package com.fazquepaga.taskandpay.identity;
+
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes the access code, email and phone reservations of users created before reservations, so
+ * the user queries they were found by can be retired.
+ *
+ * <p>Users are read {@code page-size} at a time in document ID order, and the last ID of each page
+ * is saved, so a run that fails or is stopped is resumed by the next one. The last run marks the
+ * backfill completed; every instance checks for the marker at startup and every {@code check-ms},
+ * and turns the legacy fallback off once it is there. The job only runs where {@code cron} is set,
+ * which should be a single instance.
+ */
+@Service
+public class ReservationBackfillService {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(ReservationBackfillService.class);
+
+    private final UserRepository userRepository;
+    private final ReservationBackfillRepository backfillRepository;
+    private final int pageSize;
+
+    public ReservationBackfillService(
+            UserRepository userRepository,
+            ReservationBackfillRepository backfillRepository,
+            @Value("${users.reservations.backfill.page-size:500}") int pageSize) {
+        this.userRepository = userRepository;
+        this.backfillRepository = backfillRepository;
+        this.pageSize = pageSize;
+    }
+
+    @Scheduled(cron = "${users.reservations.backfill.cron:-}", zone = "UTC")
+    public void runScheduled() {
+        try {
+            backfill();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Reservation backfill run failed; the next run resumes from here", e);
+        }
+    }
+
+    /** Backfills from where the last run stopped and returns the marker it leaves. */
+    public synchronized ReservationBackfill backfill()
+            throws ExecutionException, InterruptedException {
+        ReservationBackfill backfill = backfillRepository.find();
+        if (backfill == null) {
+            backfill = new ReservationBackfill();
+        }
+        if (!backfill.isCompleted()) {
+            List<QueryDocumentSnapshot> page;
+            do {
+                page =
+                        userRepository
+                                .findUsersPage(pageSize, backfill.getLastUserId())
+                                .getDocuments();
+                if (page.isEmpty()) {
+                    break;
+                }
+                backfill.setReserved(backfill.getReserved() + userRepository.reserveMissing(page));
+                backfill.setLastUserId(page.get(page.size() - 1).getId());
+                backfillRepository.save(backfill).get();
+            } while (page.size() == pageSize);
+            backfill.setCompleted(true);
+            backfill.setCompletedAt(Instant.now());
+            backfillRepository.save(backfill).get();
+            log.info(
+                    "Reservation backfill completed with {} reservations written",
+                    backfill.getReserved());
+        }
+        userRepository.disableLegacyFallback();
+        return backfill;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            fixedDelayString = "${users.reservations.backfill.check-ms:300000}",
+            initialDelayString = "${users.reservations.backfill.check-ms:300000}")
+    public void checkCompleted() {
+        if (!userRepository.isLegacyFallback()) {
+            return;
+        }
+        try {
+            ReservationBackfill backfill = backfillRepository.find();
+            if (backfill != null && backfill.isCompleted()) {
+                userRepository.disableLegacyFallback();
+                log.info("Reservations are backfilled; legacy user queries are off");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Failed to read the reservation backfill marker", e);
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class User implements UserDetails {
     private java.math.BigDecimal balance; // Current balance for the child
     private Integer age; // Used for children
     private String aiContext; // Free text context about the child for AI prompts
+    private String timezone; // IANA timezone of the family (only for PARENT role)
     private SubscriptionTier subscriptionTier; // Subscription tier (only for PARENT role)
     private SubscriptionStatus subscriptionStatus; // Subscription status (only for PARENT role)
     private String asaasCustomerId; // Asaas Customer ID (only for PARENT role)
@@ -41,6 +42,7 @@ public class User implements UserDetails {
     private java.time.Instant cancellationDate;
     private com.fazquepaga.taskandpay.subscription.CancellationReason cancellationReason;
     private String cancellationReasonDetails;
+    private Boolean pendingApprovalsBackfilled; // Older pending tasks got parentId (PARENT only)
 
     public enum Role {
         PARENT,
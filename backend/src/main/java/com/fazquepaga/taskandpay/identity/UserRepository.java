@@ -1,51 +1,145 @@
 package com.fazquepaga.taskandpay.identity;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.CollectionReference;
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class UserRepository {
 
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(UserRepository.class);
+
     private static final String COLLECTION_NAME = "users";
+
+    // Reservation documents, one per unique value, holding the ID of the user that owns it. They
+    // are created in the same transaction as the user, so lookups and uniqueness checks are point
+    // reads and two registrations cannot claim the same value.
+    static final String ACCESS_CODES_COLLECTION = "accessCodes";
+    static final String EMAILS_COLLECTION = "emails";
+    static final String PHONES_COLLECTION = "phones";
+    private static final String OWNER_FIELD = "userId";
+    private static final String RESERVED_AT_FIELD = "reservedAt";
+
+    private final Firestore firestore;
     private final CollectionReference usersCollection;
 
-    public UserRepository(Firestore firestore) {
+    // Users created before reservations existed have none: when on, a missing reservation falls
+    // back to the old query, and a user found that way gets its reservation written. Turned off on
+    // every instance once the reservation backfill has completed.
+    private volatile boolean legacyFallback;
+
+    // userId -> last read document. Snapshots are immutable and every read deserializes a new
+    // User, so callers never share an instance. Writes through this repository (and evict) drop
+    // the entry on this instance; writes from other instances show up after the TTL.
+    private final Cache<String, DocumentSnapshot> cache;
+
+    public UserRepository(
+            Firestore firestore,
+            MeterRegistry meterRegistry,
+            @Value("${users.cache.ttl-seconds:30}") long ttlSeconds,
+            @Value("${users.cache.max-size:10000}") long maxSize,
+            @Value("${users.reservations.legacy-fallback:true}") boolean legacyFallback) {
+        this.firestore = firestore;
         this.usersCollection = firestore.collection(COLLECTION_NAME);
+        this.legacyFallback = legacyFallback;
+        this.cache =
+                Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                        .maximumSize(maxSize)
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, COLLECTION_NAME);
     }
 
     public ApiFuture<WriteResult> save(User user) {
+        ApiFuture<WriteResult> write;
         if (user.getId() == null || user.getId().isEmpty()) {
             // Create new user with a generated ID
             DocumentReference docRef = usersCollection.document();
             user.setId(docRef.getId());
-            return docRef.set(user);
+            write = docRef.set(user);
         } else {
             // Update existing user
-            return usersCollection.document(user.getId()).set(user);
+            write = usersCollection.document(user.getId()).set(user);
         }
+        return evictOnCompletion(user.getId(), write);
+    }
+
+    /**
+     * Writes only {@code fields}, so that writes to the other fields made elsewhere, such as a
+     * ledger posting's balance or a subscription webhook, are kept. Use it instead of {@link #save}
+     * for users read through the cache.
+     */
+    public ApiFuture<WriteResult> update(String userId, Map<String, Object> fields) {
+        return evictOnCompletion(userId, usersCollection.document(userId).update(fields));
     }
 
     public ApiFuture<DocumentSnapshot> findById(String userId) {
         return usersCollection.document(userId).get();
     }
 
+    /** Reads the user through the cache; may be up to the TTL behind writes on other instances. */
     public User findByIdSync(String userId) throws ExecutionException, InterruptedException {
+        DocumentSnapshot documentSnapshot = cache.getIfPresent(userId);
+        if (documentSnapshot == null) {
+            documentSnapshot = load(userId);
+        }
+        return documentSnapshot.exists() ? documentSnapshot.toObject(User.class) : null;
+    }
 
-        DocumentSnapshot documentSnapshot = findById(userId).get();
+    /**
+     * Reads the user from Firestore, bypassing the cache, for paths that act on the balance or
+     * show it. The cache is refreshed with the result.
+     */
+    public User findByIdFresh(String userId) throws ExecutionException, InterruptedException {
+        DocumentSnapshot documentSnapshot = load(userId);
+        return documentSnapshot.exists() ? documentSnapshot.toObject(User.class) : null;
+    }
 
-        if (documentSnapshot.exists()) {
+    /** Drops the cached user after a write that did not go through this repository. */
+    public void evict(String userId) {
+        cache.invalidate(userId);
+    }
 
-            return documentSnapshot.toObject(User.class);
+    private DocumentSnapshot load(String userId) throws ExecutionException, InterruptedException {
+        DocumentSnapshot documentSnapshot = findById(userId).get();
+        if (documentSnapshot.exists()) {
+            cache.put(userId, documentSnapshot);
+        } else {
+            cache.invalidate(userId); // Missing users are not cached
         }
+        return documentSnapshot;
+    }
 
-        return null;
+    /**
+     * Evicts now and again once the write lands, so a read racing the write cannot leave the old
+     * document cached.
+     */
+    private ApiFuture<WriteResult> evictOnCompletion(String userId, ApiFuture<WriteResult> write) {
+        cache.invalidate(userId);
+        write.addListener(() -> cache.invalidate(userId), Runnable::run);
+        return write;
     }
 
     public User findByPhoneNumber(String phoneNumber)
@@ -69,7 +163,109 @@ public class UserRepository {
         return null;
     }
 
+    /**
+     * Creates a parent with its email and phone reservations in one transaction. Throws
+     * IllegalArgumentException when either is already taken.
+     */
+    public void createParent(User parent) throws ExecutionException, InterruptedException {
+        if (legacyFallback
+                && parent.getEmail() != null
+                && queryByEmail(parent.getEmail()) != null) {
+            throw new IllegalArgumentException("Email already in use.");
+        }
+        // Children's phones are not reserved, so the phone is always checked against all users
+        if (parent.getPhoneNumber() != null && findByPhoneNumber(parent.getPhoneNumber()) != null) {
+            throw new IllegalArgumentException("Phone number already in use.");
+        }
+        DocumentReference userRef = usersCollection.document();
+        DocumentReference emailRef =
+                parent.getEmail() != null
+                        ? getReservation(EMAILS_COLLECTION, parent.getEmail())
+                        : null;
+        DocumentReference phoneRef =
+                parent.getPhoneNumber() != null
+                        ? getReservation(PHONES_COLLECTION, parent.getPhoneNumber())
+                        : null;
+        parent.setId(userRef.getId());
+        Map<String, Object> owner = Map.of(OWNER_FIELD, userRef.getId());
+        try {
+            firestore
+                    .runTransaction(
+                            transaction -> {
+                                if (emailRef != null && transaction.get(emailRef).get().exists()) {
+                                    throw new IllegalArgumentException("Email already in use.");
+                                }
+                                if (phoneRef != null && transaction.get(phoneRef).get().exists()) {
+                                    throw new IllegalArgumentException(
+                                            "Phone number already in use.");
+                                }
+                                if (emailRef != null) {
+                                    transaction.create(emailRef, owner);
+                                }
+                                if (phoneRef != null) {
+                                    transaction.create(phoneRef, owner);
+                                }
+                                transaction.create(userRef, parent);
+                                return null;
+                            })
+                    .get();
+        } catch (ExecutionException e) {
+            parent.setId(null);
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a child with its access code reservation in one transaction. Returns false, creating
+     * nothing, when the code is already taken.
+     */
+    public boolean createChild(User child) throws ExecutionException, InterruptedException {
+        if (legacyFallback && queryByAccessCode(child.getAccessCode()) != null) {
+            return false;
+        }
+        DocumentReference userRef = usersCollection.document();
+        DocumentReference codeRef = getReservation(ACCESS_CODES_COLLECTION, child.getAccessCode());
+        child.setId(userRef.getId());
+        boolean created =
+                firestore
+                        .runTransaction(
+                                transaction -> {
+                                    if (transaction.get(codeRef).get().exists()) {
+                                        return false;
+                                    }
+                                    transaction.create(
+                                            codeRef,
+                                            Map.of(
+                                                    OWNER_FIELD,
+                                                    userRef.getId(),
+                                                    RESERVED_AT_FIELD,
+                                                    FieldValue.serverTimestamp()));
+                                    transaction.create(userRef, child);
+                                    return true;
+                                })
+                        .get();
+        if (!created) {
+            child.setId(null);
+        }
+        return created;
+    }
+
     public User findByEmail(String email) throws ExecutionException, InterruptedException {
+        String userId = findReservationOwner(EMAILS_COLLECTION, email);
+        if (userId != null) {
+            return findByIdSync(userId);
+        }
+        User user = legacyFallback ? queryByEmail(email) : null;
+        if (user != null) {
+            backfillReservation(EMAILS_COLLECTION, email, user.getId());
+        }
+        return user;
+    }
+
+    private User queryByEmail(String email) throws ExecutionException, InterruptedException {
         ApiFuture<com.google.cloud.firestore.QuerySnapshot> future =
                 usersCollection.whereEqualTo("email", email).limit(1).get();
         List<com.google.cloud.firestore.QueryDocumentSnapshot> documents =
@@ -82,14 +278,195 @@ public class UserRepository {
 
     public java.util.Optional<User> findByAccessCode(String accessCode)
             throws ExecutionException, InterruptedException {
+        String userId = findReservationOwner(ACCESS_CODES_COLLECTION, accessCode);
+        if (userId != null) {
+            // Uncached: the child is returned to the client on login, balance included
+            return java.util.Optional.ofNullable(findByIdFresh(userId));
+        }
+        User user = legacyFallback ? queryByAccessCode(accessCode) : null;
+        if (user != null) {
+            backfillReservation(ACCESS_CODES_COLLECTION, accessCode, user.getId());
+        }
+        return java.util.Optional.ofNullable(user);
+    }
+
+    private User queryByAccessCode(String accessCode)
+            throws ExecutionException, InterruptedException {
         ApiFuture<com.google.cloud.firestore.QuerySnapshot> future =
                 usersCollection.whereEqualTo("accessCode", accessCode).limit(1).get();
         List<com.google.cloud.firestore.QueryDocumentSnapshot> documents =
                 future.get().getDocuments();
         if (!documents.isEmpty()) {
-            return java.util.Optional.of(documents.get(0).toObject(User.class));
+            return documents.get(0).toObject(User.class);
         }
-        return java.util.Optional.empty();
+        return null;
+    }
+
+    /** Returns the access codes reserved at or after {@code since}, oldest first. */
+    public List<String> findAccessCodesReservedSince(Instant since)
+            throws ExecutionException, InterruptedException {
+        List<com.google.cloud.firestore.QueryDocumentSnapshot> documents =
+                firestore
+                        .collection(ACCESS_CODES_COLLECTION)
+                        .whereGreaterThanOrEqualTo(
+                                RESERVED_AT_FIELD,
+                                com.google.cloud.Timestamp.ofTimeSecondsAndNanos(
+                                        since.getEpochSecond(), since.getNano()))
+                        .orderBy(RESERVED_AT_FIELD)
+                        .select(com.google.cloud.firestore.FieldPath.documentId())
+                        .get()
+                        .get()
+                        .getDocuments();
+        List<String> codes = new ArrayList<>(documents.size());
+        for (com.google.cloud.firestore.QueryDocumentSnapshot document : documents) {
+            codes.add(URLDecoder.decode(document.getId(), StandardCharsets.UTF_8));
+        }
+        return codes;
+    }
+
+    private String findReservationOwner(String collection, String value)
+            throws ExecutionException, InterruptedException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        DocumentSnapshot reservation = getReservation(collection, value).get().get();
+        return reservation.exists() ? reservation.getString(OWNER_FIELD) : null;
+    }
+
+    /** Stops falling back to the user queries; every user is expected to have its reservations. */
+    public void disableLegacyFallback() {
+        legacyFallback = false;
+    }
+
+    public boolean isLegacyFallback() {
+        return legacyFallback;
+    }
+
+    /**
+     * Returns up to {@code pageSize} users of any role, in document ID order, after the user
+     * {@code afterUserId} when one is given, with only the fields that are reserved.
+     */
+    public com.google.cloud.firestore.QuerySnapshot findUsersPage(int pageSize, String afterUserId)
+            throws ExecutionException, InterruptedException {
+        com.google.cloud.firestore.Query query =
+                usersCollection
+                        .orderBy(com.google.cloud.firestore.FieldPath.documentId())
+                        .select("role", "accessCode", "email", "phoneNumber")
+                        .limit(pageSize);
+        if (afterUserId != null) {
+            query = query.startAfter(afterUserId);
+        }
+        return query.get().get();
+    }
+
+    /**
+     * Writes the reservations missing for a page of {@link #findUsersPage}: every user's access
+     * code, and a parent's email and phone, as they are written when the user is created. Values
+     * already reserved are left alone, and one reserved by another user is logged, since the old
+     * queries never enforced uniqueness. Returns the number of reservations written.
+     */
+    public int reserveMissing(List<com.google.cloud.firestore.QueryDocumentSnapshot> users)
+            throws ExecutionException, InterruptedException {
+        List<DocumentReference> reservations = new ArrayList<>();
+        List<Map<String, Object>> fields = new ArrayList<>();
+        for (com.google.cloud.firestore.QueryDocumentSnapshot user : users) {
+            // Access codes carry reservedAt so the access code index picks them up
+            addReservation(
+                    reservations,
+                    fields,
+                    ACCESS_CODES_COLLECTION,
+                    user.getString("accessCode"),
+                    Map.of(
+                            OWNER_FIELD,
+                            user.getId(),
+                            RESERVED_AT_FIELD,
+                            FieldValue.serverTimestamp()));
+            if (User.Role.PARENT.name().equals(user.getString("role"))) {
+                // Children's phones are not reserved
+                Map<String, Object> owner = Map.of(OWNER_FIELD, user.getId());
+                addReservation(
+                        reservations, fields, EMAILS_COLLECTION, user.getString("email"), owner);
+                addReservation(
+                        reservations,
+                        fields,
+                        PHONES_COLLECTION,
+                        user.getString("phoneNumber"),
+                        owner);
+            }
+        }
+        if (reservations.isEmpty()) {
+            return 0;
+        }
+        List<DocumentSnapshot> existing =
+                firestore.getAll(reservations.toArray(new DocumentReference[0])).get();
+        List<ApiFuture<WriteResult>> writes = new ArrayList<>();
+        for (int i = 0; i < reservations.size(); i++) {
+            Object userId = fields.get(i).get(OWNER_FIELD);
+            DocumentSnapshot reservation = existing.get(i);
+            if (!reservation.exists()) {
+                writes.add(reservations.get(i).create(fields.get(i)));
+            } else if (!userId.equals(reservation.getString(OWNER_FIELD))) {
+                log.warn(
+                        "User {} shares a value in {} with user {}, which keeps it",
+                        userId,
+                        reservations.get(i).getParent().getId(),
+                        reservation.getString(OWNER_FIELD));
+            }
+        }
+        int written = 0;
+        for (ApiFuture<WriteResult> write : writes) {
+            try {
+                write.get();
+                written++;
+            } catch (ExecutionException e) {
+                // Reserved since it was read, by a registration or a lookup's backfill
+                if (!isAlreadyExists(e)) {
+                    throw e;
+                }
+            }
+        }
+        return written;
+    }
+
+    private void addReservation(
+            List<DocumentReference> reservations,
+            List<Map<String, Object>> fields,
+            String collection,
+            String value,
+            Map<String, Object> reservationFields) {
+        if (value != null && !value.isEmpty()) {
+            reservations.add(getReservation(collection, value));
+            fields.add(reservationFields);
+        }
+    }
+
+    private static boolean isAlreadyExists(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof com.google.api.gax.rpc.ApiException apiException
+                    && apiException.getStatusCode().getCode()
+                            == com.google.api.gax.rpc.StatusCode.Code.ALREADY_EXISTS) {
+                return true;
+            }
+            if (cause instanceof com.google.cloud.firestore.FirestoreException firestoreException
+                    && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode()
+                            == io.grpc.Status.Code.ALREADY_EXISTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backfillReservation(String collection, String value, String userId) {
+        // Best effort and not awaited: create fails harmlessly if another request got there first
+        getReservation(collection, value).create(Map.of(OWNER_FIELD, userId));
+    }
+
+    private DocumentReference getReservation(String collection, String value) {
+        // Encoded so values such as emails can never form a document path
+        return firestore
+                .collection(collection)
+                .document(URLEncoder.encode(value, StandardCharsets.UTF_8));
     }
 
     public ApiFuture<com.google.cloud.firestore.QuerySnapshot> findByParentId(String parentId) {
@@ -99,8 +476,69 @@ public class UserRepository {
                 .get();
     }
 
+    /**
+     * Returns the IDs of up to {@code pageSize} children, in document ID order, after the {@code
+     * cursor} document when one is given.
+     */
+    public com.google.cloud.firestore.QuerySnapshot findChildIdsPage(
+            int pageSize, DocumentSnapshot cursor)
+            throws ExecutionException, InterruptedException {
+        return findChildrenPage(
+                pageSize, cursor, com.google.cloud.firestore.FieldPath.documentId());
+    }
+
+    /** Like {@link #findChildIdsPage} but with each child's {@code accessCode} field as well. */
+    public com.google.cloud.firestore.QuerySnapshot findChildAccessCodesPage(
+            int pageSize, DocumentSnapshot cursor)
+            throws ExecutionException, InterruptedException {
+        return findChildrenPage(
+                pageSize,
+                cursor,
+                com.google.cloud.firestore.FieldPath.documentId(),
+                com.google.cloud.firestore.FieldPath.of("accessCode"));
+    }
+
+    private com.google.cloud.firestore.QuerySnapshot findChildrenPage(
+            int pageSize,
+            DocumentSnapshot cursor,
+            com.google.cloud.firestore.FieldPath... fields)
+            throws ExecutionException, InterruptedException {
+        com.google.cloud.firestore.Query query =
+                usersCollection
+                        .whereEqualTo("role", User.Role.CHILD.name())
+                        .orderBy(com.google.cloud.firestore.FieldPath.documentId())
+                        .select(fields)
+                        .limit(pageSize);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        return query.get().get();
+    }
+
     public ApiFuture<WriteResult> delete(String userId) {
-        return usersCollection.document(userId).delete();
+        return evictOnCompletion(userId, usersCollection.document(userId).delete());
+    }
+
+    /** Deletes the user together with the reservations of its access code, email and phone. */
+    public ApiFuture<List<WriteResult>> delete(User user) {
+        WriteBatch batch = firestore.batch();
+        batch.delete(usersCollection.document(user.getId()));
+        if (user.getAccessCode() != null) {
+            batch.delete(getReservation(ACCESS_CODES_COLLECTION, user.getAccessCode()));
+        }
+        if (user.getRole() == User.Role.PARENT) {
+            // Children's phones are not reserved
+            if (user.getEmail() != null) {
+                batch.delete(getReservation(EMAILS_COLLECTION, user.getEmail()));
+            }
+            if (user.getPhoneNumber() != null) {
+                batch.delete(getReservation(PHONES_COLLECTION, user.getPhoneNumber()));
+            }
+        }
+        cache.invalidate(user.getId());
+        ApiFuture<List<WriteResult>> write = batch.commit();
+        write.addListener(() -> cache.invalidate(user.getId()), Runnable::run);
+        return write;
     }
 
     public User findByAsaasCustomerId(String asaasCustomerId)
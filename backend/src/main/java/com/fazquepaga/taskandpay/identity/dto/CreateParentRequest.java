@@ -9,4 +9,5 @@ public class CreateParentRequest {
     private String phoneNumber;
     private String password;
     private String recaptchaToken;
+    private String timezone; // IANA ID; defaults to America/Sao_Paulo
 }
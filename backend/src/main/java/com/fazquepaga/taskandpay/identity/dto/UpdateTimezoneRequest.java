@@ -0,0 +1,14 @@
+package com.fazquepaga.taskandpay.identity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdateTimezoneRequest {
+    private String timezone; // IANA ID, e.g. "America/Sao_Paulo"
+}
@@ -27,6 +27,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
+        final VerifiedToken token;
         final String userEmailOrId;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -38,7 +39,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // We catch exception to avoid 500 on invalid token, allowing 403 later if auth
         // is missing
         try {
-            userEmailOrId = jwtService.extractUsername(jwt);
+            token = jwtService.verify(jwt);
+            userEmailOrId = token.subject();
         } catch (Exception e) {
             filterChain.doFilter(request, response);
             return;
@@ -48,15 +50,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails = null;
             try {
-                // Try to find by Email (Parent)
-                if (userEmailOrId.contains("@")) {
+                if (token.isSelfContained()) {
+                    // The principal is signed into the token; only its version is checked
+                    userDetails = jwtService.toPrincipal(token);
+                } else if (userEmailOrId.contains("@")) {
+                    // Tokens issued before claims were embedded: find by Email (Parent)
                     userDetails = userRepository.findByEmail(userEmailOrId);
                 } else {
                     // Try to find by ID (Child or Parent via ID)
                     userDetails = userRepository.findByIdSync(userEmailOrId);
                 }
 
-                if (userDetails != null && jwtService.isTokenValid(jwt, userDetails)) {
+                // The token was verified and unexpired above; no need to parse it again
+                if (userDetails != null && userEmailOrId.equals(userDetails.getUsername())) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(
                                     userDetails, null, userDetails.getAuthorities());
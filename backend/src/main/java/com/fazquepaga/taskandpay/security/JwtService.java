@@ -1,14 +1,26 @@
 package com.fazquepaga.taskandpay.security;
 
+import com.fazquepaga.taskandpay.identity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,14 +31,59 @@ public class JwtService {
 
     private static final long PARENT_TOKEN_TTL_MS = 1000L * 60 * 60 * 24; // 24 hours
 
+    private static final String ROLE_CLAIM = "role";
+    private static final String PARENT_ID_CLAIM = "parentId";
+    private static final String TIER_CLAIM = "tier";
+    private static final String TOKEN_VERSION_CLAIM = "ver";
+
+    private final TokenVersionService tokenVersionService;
+
+    // SHA-256 of the token -> its verified claims, kept until the token expires. Null when
+    // disabled. Holding digests rather than tokens keeps bearer credentials out of the heap.
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.child-token-ttl-days:30}")
     private int childTokenTtlDays;
 
+    // Built on first use: the secret is injected after construction
+    private volatile Key signInKey;
+    private volatile JwtParser parser;
+
+    public JwtService(
+            TokenVersionService tokenVersionService,
+            @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheSize) {
+        this.tokenVersionService = tokenVersionService;
+        this.verifiedTokens =
+                verifiedCacheSize > 0
+                        ? Caffeine.newBuilder()
+                                .maximumSize(verifiedCacheSize)
+                                .expireAfter(new UntilTokenExpiry())
+                                .build()
+                        : null;
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).subject();
+    }
+
+    /**
+     * Verifies the token's signature and expiry once, then serves it from the cache until it
+     * expires. Throws if the token is invalid or expired.
+     */
+    public VerifiedToken verify(String token) {
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+        String digest = digest(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified == null || verified.isExpired(Instant.now())) {
+            verified = parse(token); // Invalid tokens throw here and are never cached
+            verifiedTokens.put(digest, verified);
+        }
+        return verified;
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -75,34 +132,128 @@ public class JwtService {
                 .compact();
     }
 
+    /**
+     * Issues a self-contained token: the user's id is the subject, and role, parent and
+     * subscription tier are signed claims, so requests authenticate without reading the user.
+     */
+    public String generateToken(User user) throws ExecutionException, InterruptedException {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLE_CLAIM, user.getRole().name());
+        if (user.getParentId() != null) {
+            claims.put(PARENT_ID_CLAIM, user.getParentId());
+        }
+        if (user.getSubscriptionTier() != null) {
+            claims.put(TIER_CLAIM, user.getSubscriptionTier().name());
+        }
+        claims.put(TOKEN_VERSION_CLAIM, tokenVersionService.currentVersion(user.getId()));
+        long ttlMs =
+                user.getRole() == User.Role.CHILD
+                        ? 1000L * 60 * 60 * 24 * childTokenTtlDays
+                        : PARENT_TOKEN_TTL_MS;
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(user.getId())
+                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setExpiration(new Date(System.currentTimeMillis() + ttlMs))
+                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * Builds the principal of a self-contained token from its claims. Returns null when the
+     * user's sessions were revoked after the token was issued.
+     */
+    public User toPrincipal(VerifiedToken token) throws ExecutionException, InterruptedException {
+        if (!token.isSelfContained()
+                || !tokenVersionService.isCurrent(token.subject(), token.version())) {
+            return null;
+        }
+        return User.builder()
+                .id(token.subject())
+                .role(User.Role.valueOf(token.role()))
+                .parentId(token.parentId())
+                .subscriptionTier(
+                        token.tier() != null ? User.SubscriptionTier.valueOf(token.tier()) : null)
+                .build();
+    }
+
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        VerifiedToken verified = verify(token);
+        return verified.subject().equals(userDetails.getUsername())
+                && !verified.isExpired(Instant.now());
     }
 
     public boolean isTokenValid(String token, String userId) {
-        final String extractedId = extractUsername(token);
-        return (extractedId.equals(userId)) && !isTokenExpired(token);
+        VerifiedToken verified = verify(token);
+        return verified.subject().equals(userId) && !verified.isExpired(Instant.now());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private VerifiedToken parse(String token) {
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(
+                claims.getSubject(),
+                expiration != null ? expiration.toInstant() : null,
+                claims.get(ROLE_CLAIM, String.class),
+                claims.get(PARENT_ID_CLAIM, String.class),
+                claims.get(TIER_CLAIM, String.class),
+                claims.get(TOKEN_VERSION_CLAIM, Long.class));
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private Claims extractAllClaims(String token) {
+        return getParser().parseClaimsJws(token).getBody();
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private JwtParser getParser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parserBuilder().setSigningKey(getSignInKey()).build();
+            parser = current; // Racing first callers build equal parsers; either one is kept
+        }
+        return current;
     }
 
     private Key getSignInKey() {
-        byte[] keyBytes = java.util.HexFormat.of().parseHex(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        Key current = signInKey;
+        if (current == null) {
+            byte[] keyBytes = java.util.HexFormat.of().parseHex(secret);
+            current = Keys.hmacShaKeyFor(keyBytes);
+            signInKey = current;
+        }
+        return current;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder()
+                    .encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /** Keeps each verified token exactly until its own expiry. */
+    private static final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            if (token.expiresAt() == null) {
+                return 0; // Tokens without an expiry are not kept
+            }
+            return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(
+                String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
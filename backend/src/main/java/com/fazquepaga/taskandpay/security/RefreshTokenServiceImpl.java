@@ -29,6 +29,7 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
     private final JwtService jwtService;
+    private final TokenVersionService tokenVersionService;
     private final SecureRandom secureRandom;
 
     @Value("${jwt.refresh-token-ttl-days:30}")
@@ -37,10 +38,12 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     public RefreshTokenServiceImpl(
             RefreshTokenRepository refreshTokenRepository,
             UserRepository userRepository,
-            JwtService jwtService) {
+            JwtService jwtService,
+            TokenVersionService tokenVersionService) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
         this.jwtService = jwtService;
+        this.tokenVersionService = tokenVersionService;
         this.secureRandom = new SecureRandom();
     }
 
@@ -108,15 +111,7 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
                 log.error("User not found for refresh token: {}", token.getUserId());
                 return Optional.empty();
             }
-            String newAccessToken;
-
-            if (user.getRole() == User.Role.CHILD) {
-                newAccessToken =
-                        jwtService.generateToken(
-                                user.getId(), user.getName(), user.getRole().name());
-            } else {
-                newAccessToken = jwtService.generateToken(user);
-            }
+            String newAccessToken = jwtService.generateToken(user);
 
             log.debug("Refreshed access token for user: {}", token.getUserId());
             return Optional.of(newAccessToken);
@@ -132,6 +127,7 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     public void revokeAllTokens(String userId) {
         try {
             refreshTokenRepository.revokeAllForUser(userId);
+            tokenVersionService.revokeAll(userId); // Access tokens already issued stop working
             log.info("Revoked all refresh tokens for user: {}", userId);
         } catch (ExecutionException | InterruptedException e) {
             log.error("Failed to revoke refresh tokens for user: {}", userId, e);
@@ -0,0 +1,45 @@
+package com.fazquepaga.taskandpay.security;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteResult;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Repository;
+
+/** Access token version per user. Document: users/{userId}/metadata/session */
+@Repository
+public class TokenVersionRepository {
+
+    private static final String VERSION_FIELD = "tokenVersion";
+
+    private final Firestore firestore;
+
+    public TokenVersionRepository(Firestore firestore) {
+        this.firestore = firestore;
+    }
+
+    /** Returns the user's token version, 0 if sessions were never revoked. */
+    public long find(String userId) throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = getSessionDocument(userId).get().get();
+        Long version = snapshot.exists() ? snapshot.getLong(VERSION_FIELD) : null;
+        return version != null ? version : 0L;
+    }
+
+    public ApiFuture<WriteResult> increment(String userId) {
+        return getSessionDocument(userId)
+                .set(Map.of(VERSION_FIELD, FieldValue.increment(1)), SetOptions.merge());
+    }
+
+    private DocumentReference getSessionDocument(String userId) {
+        return firestore
+                .collection("users")
+                .document(userId)
+                .collection("metadata")
+                .document("session");
+    }
+}
@@ -0,0 +1,52 @@
+package com.fazquepaga.taskandpay.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks the version each user's access tokens are issued at. Revoking a user's sessions bumps
+ * the version, so tokens issued before stop authenticating. Versions are cached in memory; another
+ * instance honours a revocation once its cached entry expires.
+ */
+@Service
+public class TokenVersionService {
+
+    private final TokenVersionRepository tokenVersionRepository;
+    private final Cache<String, Long> versions;
+
+    public TokenVersionService(
+            TokenVersionRepository tokenVersionRepository,
+            @Value("${jwt.token-version.cache-ttl-seconds:30}") long ttlSeconds,
+            @Value("${jwt.token-version.cache-max-size:10000}") long maxSize) {
+        this.tokenVersionRepository = tokenVersionRepository;
+        this.versions =
+                Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                        .maximumSize(maxSize)
+                        .build();
+    }
+
+    public long currentVersion(String userId) throws ExecutionException, InterruptedException {
+        Long version = versions.getIfPresent(userId);
+        if (version == null) {
+            version = tokenVersionRepository.find(userId);
+            versions.put(userId, version);
+        }
+        return version;
+    }
+
+    public boolean isCurrent(String userId, long version)
+            throws ExecutionException, InterruptedException {
+        return version == currentVersion(userId);
+    }
+
+    /** Invalidates every access token issued to the user so far. */
+    public void revokeAll(String userId) throws ExecutionException, InterruptedException {
+        tokenVersionRepository.increment(userId).get();
+        versions.invalidate(userId);
+    }
+}
@@ -0,0 +1,25 @@
+package com.fazquepaga.taskandpay.security;
+
+import java.time.Instant;
+
+/**
+ * Claims of a token whose signature and expiry were checked. Immutable, so verified tokens can be
+ * cached and shared between requests.
+ */
+public record VerifiedToken(
+        String subject,
+        Instant expiresAt,
+        String role,
+        String parentId,
+        String tier,
+        Long version) {
+
+    /** Whether the principal can be built from the token alone, without reading the user. */
+    public boolean isSelfContained() {
+        return version != null;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+}
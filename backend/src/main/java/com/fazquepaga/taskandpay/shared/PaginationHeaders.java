@@ -0,0 +1,10 @@
+package com.fazquepaga.taskandpay.shared;
+
+/** Response headers shared by the cursor-paginated listing endpoints. */
+public final class PaginationHeaders {
+
+    /** Opaque cursor for the next page; absent when the current page is the last one. */
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    private PaginationHeaders() {}
+}
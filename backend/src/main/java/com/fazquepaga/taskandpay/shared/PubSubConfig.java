@@ -1,10 +1,8 @@
 package com.fazquepaga.taskandpay.shared;
 
 import com.google.cloud.spring.pubsub.core.PubSubTemplate;
-import com.google.cloud.spring.pubsub.integration.AckMode;
 import com.google.cloud.spring.pubsub.integration.inbound.PubSubInboundChannelAdapter;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.channel.DirectChannel;
@@ -13,9 +11,6 @@ import org.springframework.messaging.MessageChannel;
 @Configuration
 public class PubSubConfig {
 
-    @Value("${pubsub.task-reset-subscription}")
-    private String taskResetSubscription;
-
     @Bean
     public MessageChannel proofsChannel() {
         return new DirectChannel();
@@ -29,19 +24,4 @@ public class PubSubConfig {
         adapter.setOutputChannel(channel);
         return adapter;
     }
-
-    @Bean
-    public MessageChannel taskResetChannel() {
-        return new DirectChannel();
-    }
-
-    @Bean
-    public PubSubInboundChannelAdapter taskResetChannelAdapter(
-            @Qualifier("taskResetChannel") MessageChannel channel, PubSubTemplate pubSubTemplate) {
-        PubSubInboundChannelAdapter adapter =
-                new PubSubInboundChannelAdapter(pubSubTemplate, taskResetSubscription);
-        adapter.setOutputChannel(channel);
-        adapter.setAckMode(AckMode.MANUAL);
-        return adapter;
-    }
 }
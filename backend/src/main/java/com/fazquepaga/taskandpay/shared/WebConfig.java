@@ -14,6 +14,6 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedMethods(
                         "GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "TRACE", "CONNECT")
                 .allowedHeaders("*")
-                .exposedHeaders("Accept-Language");
+                .exposedHeaders("Accept-Language", PaginationHeaders.NEXT_CURSOR);
     }
 }
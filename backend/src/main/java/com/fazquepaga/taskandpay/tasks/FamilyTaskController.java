@@ -0,0 +1,57 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.shared.PaginationHeaders;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApproval;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApprovalPage;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Task views that span every child of a family. */
+@RestController
+@RequestMapping("/api/v1/families")
+public class FamilyTaskController {
+
+    private final TaskService taskService;
+
+    public FamilyTaskController(TaskService taskService) {
+        this.taskService = taskService;
+    }
+
+    @GetMapping("/{familyId}/pending-approvals")
+    public ResponseEntity<List<PendingApproval>> getPendingApprovals(
+            @PathVariable String familyId,
+            @RequestParam(value = "page_size", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @AuthenticationPrincipal User authenticatedUser)
+            throws ExecutionException, InterruptedException {
+
+        if (authenticatedUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+        // Only the parent approves tasks, and the family ID is the parent's ID
+        if (authenticatedUser.getRole() != User.Role.PARENT
+                || !authenticatedUser.getId().equals(familyId)) {
+            return ResponseEntity.status(403).build();
+        }
+
+        PendingApprovalPage page =
+                taskService.getPendingApprovals(
+                        familyId,
+                        pageSize != null ? pageSize : TaskService.DEFAULT_PAGE_SIZE,
+                        cursor);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PaginationHeaders.NEXT_CURSOR, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+}
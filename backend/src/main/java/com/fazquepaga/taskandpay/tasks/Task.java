@@ -28,6 +28,9 @@ public class Task {
     private Boolean aiValidated;
     private Boolean acknowledged;
     private Boolean archived;
+    private String lastCompletedPeriod; // Period a DAILY/WEEKLY task was last done for (yyyy-MM-dd)
+    private String approvedMonth; // Month (yyyy-MM) an APPROVED task is counted in
+    private String parentId; // Copied from the child so a family's tasks can be queried together
 
     public enum TaskType {
         DAILY,
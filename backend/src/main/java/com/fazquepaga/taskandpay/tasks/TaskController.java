@@ -1,11 +1,20 @@
 package com.fazquepaga.taskandpay.tasks;
 
+import com.fazquepaga.taskandpay.shared.PaginationHeaders;
+import com.fazquepaga.taskandpay.tasks.dto.BulkCreateTasksRequest;
+import com.fazquepaga.taskandpay.tasks.dto.BulkTaskReviewRequest;
 import com.fazquepaga.taskandpay.tasks.dto.CreateTaskRequest;
+import com.fazquepaga.taskandpay.tasks.dto.TaskCounterSummary;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPage;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPageRequest;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/tasks")
@@ -13,13 +22,16 @@ public class TaskController {
 
     private final TaskService taskService;
     private final com.fazquepaga.taskandpay.identity.IdentityService identityService;
+    private final TaskStreamService taskStreamService;
 
     public TaskController(
             TaskService taskService,
-            com.fazquepaga.taskandpay.identity.IdentityService identityService) {
+            com.fazquepaga.taskandpay.identity.IdentityService identityService,
+            TaskStreamService taskStreamService) {
 
         this.taskService = taskService;
         this.identityService = identityService;
+        this.taskStreamService = taskStreamService;
     }
 
     private com.fazquepaga.taskandpay.identity.User getAuthenticatedUser() {
@@ -47,8 +59,62 @@ public class TaskController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdTask);
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<Map<String, List<Task>>> createTasks(
+            @RequestBody BulkCreateTasksRequest request)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User parent = getAuthenticatedUser();
+        if (parent == null || parent.getRole() != com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.getTasksByChild() == null) {
+            throw new IllegalArgumentException("tasksByChild is required");
+        }
+
+        // Ownership of every child is checked by the service before anything is written
+        Map<String, List<Task>> createdTasks =
+                taskService.createTasks(parent.getId(), request.getTasksByChild());
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdTasks);
+    }
+
+    @PostMapping("/bulk/approve")
+    public ResponseEntity<Map<String, List<Task>>> approveTasks(
+            @RequestBody BulkTaskReviewRequest request)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User parent = getAuthenticatedUser();
+        if (parent == null || parent.getRole() != com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.getTaskIdsByChild() == null) {
+            throw new IllegalArgumentException("taskIdsByChild is required");
+        }
+
+        return ResponseEntity.ok(taskService.approveTasks(parent.getId(), request.getTaskIdsByChild()));
+    }
+
+    @PostMapping("/bulk/reject")
+    public ResponseEntity<Map<String, List<Task>>> rejectTasks(
+            @RequestBody BulkTaskReviewRequest request)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User parent = getAuthenticatedUser();
+        if (parent == null || parent.getRole() != com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.getTaskIdsByChild() == null) {
+            throw new IllegalArgumentException("taskIdsByChild is required");
+        }
+
+        return ResponseEntity.ok(taskService.rejectTasks(parent.getId(), request.getTaskIdsByChild()));
+    }
+
     @GetMapping
-    public ResponseEntity<List<Task>> getTasks(@RequestParam("child_id") String childId)
+    public ResponseEntity<List<Task>> getTasks(
+            @RequestParam("child_id") String childId,
+            @RequestParam(value = "page_size", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "status", required = false) Task.TaskStatus status,
+            @RequestParam(value = "type", required = false) Task.TaskType type,
+            @RequestParam(value = "archived", defaultValue = "false") boolean archived)
             throws ExecutionException, InterruptedException {
         com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
         if (user == null) {
@@ -62,8 +128,63 @@ public class TaskController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        List<Task> tasks = taskService.getTasksByUserId(childId);
-        return ResponseEntity.ok(tasks);
+        // Without paging or filters, keep returning every active task for older clients
+        if (pageSize == null && cursor == null && status == null && type == null && !archived) {
+            List<Task> tasks = taskService.getTasksByUserId(childId);
+            return ResponseEntity.ok(tasks);
+        }
+
+        TaskPageRequest pageRequest =
+                TaskPageRequest.builder()
+                        .pageSize(pageSize != null ? pageSize : TaskService.DEFAULT_PAGE_SIZE)
+                        .cursor(cursor)
+                        .status(status)
+                        .type(type)
+                        .archived(archived)
+                        .build();
+        TaskPage page = taskService.getTasksPage(childId, pageRequest);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(PaginationHeaders.NEXT_CURSOR, page.getNextCursor());
+        }
+        return response.body(page.getTasks());
+    }
+
+    /** Live feed of the child's tasks: a "snapshot" event, then one "task" event per change. */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTasks(@RequestParam("child_id") String childId)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        if (user.getRole() == com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            identityService.getChild(childId, user.getId());
+        } else if (!user.getId().equals(childId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(taskStreamService.subscribe(childId));
+    }
+
+    @GetMapping("/counters")
+    public ResponseEntity<TaskCounterSummary> getTaskCounters(
+            @RequestParam("child_id") String childId)
+            throws ExecutionException, InterruptedException {
+        com.fazquepaga.taskandpay.identity.User user = getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        if (user.getRole() == com.fazquepaga.taskandpay.identity.User.Role.PARENT) {
+            identityService.getChild(childId, user.getId());
+        } else if (!user.getId().equals(childId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(taskService.getTaskCounters(childId));
     }
 
     @PostMapping("/{taskId}/approve")
@@ -0,0 +1,130 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import com.google.cloud.firestore.FieldValue;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changes to a child's {@link TaskCounters} caused by one task write. Rendered as a merge of
+ * FieldValue.increment calls so it can be committed in the same batch as the task itself.
+ */
+public class TaskCounterDelta {
+
+    private long recurring;
+    private long pendingApproval;
+    private final Map<String, Long> pendingApprovalByPeriod = new HashMap<>();
+    private final Map<String, Long> approvedByMonth = new HashMap<>();
+    private long totalValueCents;
+
+    public static TaskCounterDelta none() {
+        return new TaskCounterDelta();
+    }
+
+    /** A new task was created. */
+    public TaskCounterDelta created(Task task) {
+        if (isRecurring(task)) {
+            recurring++;
+        }
+        return task.getValue() != null ? valueChanged(task.getValue()) : this;
+    }
+
+    /** The task was archived; it no longer counts anywhere except past approvals. */
+    public TaskCounterDelta archived(Task task) {
+        if (isRecurring(task)) {
+            recurring--;
+        }
+        if (task.getStatus() == Task.TaskStatus.PENDING_APPROVAL) {
+            addPendingApproval(task, -1);
+        }
+        return valueChanged(task.getValue() != null ? task.getValue().negate() : BigDecimal.ZERO);
+    }
+
+    /**
+     * Removes what the task's current (effective) status contributes, before a transition. An
+     * approval is taken off the month it was counted in.
+     */
+    public TaskCounterDelta leaving(Task task) {
+        return apply(task, -1);
+    }
+
+    /**
+     * Adds what the task's new status contributes, after a transition. An approval is counted in
+     * {@code month}, which is recorded on the task so that reversing it later charges that month.
+     */
+    public TaskCounterDelta entering(Task task, YearMonth month) {
+        task.setApprovedMonth(
+                task.getStatus() == Task.TaskStatus.APPROVED ? month.toString() : null);
+        return apply(task, 1);
+    }
+
+    public TaskCounterDelta valueChanged(BigDecimal delta) {
+        totalValueCents += TaskCounters.toCents(delta);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return recurring == 0
+                && pendingApproval == 0
+                && totalValueCents == 0
+                && pendingApprovalByPeriod.values().stream().allMatch(v -> v == 0)
+                && approvedByMonth.values().stream().allMatch(v -> v == 0);
+    }
+
+    /** Fields for a set(..., SetOptions.merge()) on the counters document. */
+    public Map<String, Object> toFields() {
+        Map<String, Object> fields = new HashMap<>();
+        if (recurring != 0) {
+            fields.put(TaskCounters.RECURRING_COUNT, FieldValue.increment(recurring));
+        }
+        if (pendingApproval != 0) {
+            fields.put(TaskCounters.PENDING_APPROVAL_COUNT, FieldValue.increment(pendingApproval));
+        }
+        if (totalValueCents != 0) {
+            fields.put(TaskCounters.TOTAL_VALUE_CENTS, FieldValue.increment(totalValueCents));
+        }
+        putIncrements(fields, TaskCounters.PENDING_APPROVAL_BY_PERIOD, pendingApprovalByPeriod);
+        putIncrements(fields, TaskCounters.APPROVED_BY_MONTH, approvedByMonth);
+        return fields;
+    }
+
+    private TaskCounterDelta apply(Task task, long amount) {
+        if (task.getStatus() == Task.TaskStatus.PENDING_APPROVAL) {
+            addPendingApproval(task, amount);
+        } else if (task.getStatus() == Task.TaskStatus.APPROVED) {
+            String approvalMonth = TaskCounters.approvalMonth(task);
+            if (approvalMonth != null) { // Otherwise counted in a month that is not known
+                approvedByMonth.merge(approvalMonth, amount, Long::sum);
+            }
+        }
+        return this;
+    }
+
+    private void addPendingApproval(Task task, long amount) {
+        String periodKey = TaskCounters.periodKey(task);
+        if (periodKey == null) {
+            pendingApproval += amount;
+        } else {
+            pendingApprovalByPeriod.merge(periodKey, amount, Long::sum);
+        }
+    }
+
+    private static void putIncrements(
+            Map<String, Object> fields, String field, Map<String, Long> amounts) {
+        Map<String, Object> increments = new HashMap<>();
+        amounts.forEach(
+                (key, amount) -> {
+                    if (amount != 0) {
+                        increments.put(key, FieldValue.increment(amount));
+                    }
+                });
+        if (!increments.isEmpty()) {
+            fields.put(field, increments);
+        }
+    }
+
+    private static boolean isRecurring(Task task) {
+        return task.getType() == Task.TaskType.DAILY || task.getType() == Task.TaskType.WEEKLY;
+    }
+}
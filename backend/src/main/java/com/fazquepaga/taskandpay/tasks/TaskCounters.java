@@ -0,0 +1,189 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.annotation.Exclude;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-child task counters stored at users/{childId}/metadata/taskCounters. Kept current with
+ * FieldValue.increment in the same batch as the task write that changes them.
+ *
+ * <p>Recurring tasks waiting for approval stop being pending once their period is over, without
+ * any write, so they are counted per period ("DAILY_2024-06-12") and only the current periods are
+ * summed when reading.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskCounters {
+
+    public static final String RECURRING_COUNT = "recurringCount";
+    public static final String PENDING_APPROVAL_COUNT = "pendingApprovalCount";
+    public static final String PENDING_APPROVAL_BY_PERIOD = "pendingApprovalByPeriod";
+    public static final String APPROVED_BY_MONTH = "approvedByMonth";
+    public static final String TOTAL_VALUE_CENTS = "totalValueCents";
+    static final String INITIALIZED = "initialized";
+    static final String VERSION = "version";
+
+    // 2: the total value is kept in cents rather than as a double of reais
+    static final long CURRENT_VERSION = 2;
+
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int APPROVED_MONTHS_KEPT = 12;
+
+    private long recurringCount;
+    private long pendingApprovalCount; // ONE_TIME tasks only
+    @Builder.Default private Map<String, Long> pendingApprovalByPeriod = new HashMap<>();
+    @Builder.Default private Map<String, Long> approvedByMonth = new HashMap<>(); // yyyy-MM
+    private long totalValueCents; // Sum of the values of active tasks
+    private boolean initialized; // false until the counters were rebuilt from a full scan
+    private long version; // Format the counters were last rebuilt in
+
+    /** Whether the stored counters were built by a full scan in the current format. */
+    static boolean isBuilt(DocumentSnapshot snapshot) {
+        Long version = snapshot.getLong(VERSION);
+        return snapshot.exists()
+                && Boolean.TRUE.equals(snapshot.getBoolean(INITIALIZED))
+                && version != null
+                && version >= CURRENT_VERSION;
+    }
+
+    /** Whole cents of a task value; values carry at most two decimals. */
+    static long toCents(BigDecimal value) {
+        return value.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    @Exclude
+    public BigDecimal getTotalValue() {
+        return BigDecimal.valueOf(totalValueCents, 2);
+    }
+
+    /** Key under which a recurring task waiting for approval is counted, or null for ONE_TIME. */
+    static String periodKey(Task task) {
+        if (task.getType() == Task.TaskType.DAILY || task.getType() == Task.TaskType.WEEKLY) {
+            return task.getType().name() + "_" + task.getLastCompletedPeriod();
+        }
+        return null;
+    }
+
+    /**
+     * Month an approved task is counted in. Tasks approved before it was recorded fall back to
+     * the month of the period they were done for; null when neither is known.
+     */
+    static String approvalMonth(Task task) {
+        if (task.getApprovedMonth() != null) {
+            return task.getApprovedMonth();
+        }
+        String period = task.getLastCompletedPeriod();
+        return period != null && period.length() >= 7 ? period.substring(0, 7) : null;
+    }
+
+    /**
+     * Counts the given (already resolved) tasks. Past approvals are not recoverable from the tasks
+     * alone, so every task currently approved is counted in its approval month, or in {@code
+     * month} when that is not known.
+     */
+    static TaskCounters fromTasks(List<Task> tasks, YearMonth month) {
+        TaskCounters counters =
+                TaskCounters.builder().initialized(true).version(CURRENT_VERSION).build();
+        for (Task task : tasks) {
+            if (Boolean.TRUE.equals(task.getArchived())) {
+                continue;
+            }
+            if (task.getType() == Task.TaskType.DAILY || task.getType() == Task.TaskType.WEEKLY) {
+                counters.recurringCount++;
+            }
+            if (task.getValue() != null) {
+                counters.totalValueCents += toCents(task.getValue());
+            }
+            if (task.getStatus() == Task.TaskStatus.PENDING_APPROVAL) {
+                String periodKey = periodKey(task);
+                if (periodKey == null) {
+                    counters.pendingApprovalCount++;
+                } else {
+                    counters.pendingApprovalByPeriod.merge(periodKey, 1L, Long::sum);
+                }
+            } else if (task.getStatus() == Task.TaskStatus.APPROVED) {
+                String approvalMonth = approvalMonth(task);
+                counters.approvedByMonth.merge(
+                        approvalMonth != null ? approvalMonth : month.toString(), 1L, Long::sum);
+            }
+        }
+        return counters;
+    }
+
+    public long pendingApprovalsOn(LocalDate today) {
+        long pending = pendingApprovalCount;
+        for (Map.Entry<String, Long> entry : pendingApprovalByPeriod.entrySet()) {
+            if (isCurrentPeriod(entry.getKey(), today)) {
+                pending += entry.getValue();
+            }
+        }
+        return Math.max(0, pending);
+    }
+
+    public long approvedIn(YearMonth month) {
+        return Math.max(0, approvedByMonth.getOrDefault(month.toString(), 0L));
+    }
+
+    /**
+     * Keys no longer read as of {@code today}, as paths to delete: periods that ended over a week
+     * ago, which nothing counts into again, and months older than a year.
+     */
+    public List<FieldPath> expiredKeys(LocalDate today) {
+        List<FieldPath> expired = new ArrayList<>();
+        LocalDate oldestPeriod = today.minusDays(DAYS_PER_WEEK);
+        for (String key : pendingApprovalByPeriod.keySet()) {
+            int separator = key.indexOf('_');
+            try {
+                if (separator < 0
+                        || LocalDate.parse(key.substring(separator + 1)).isBefore(oldestPeriod)) {
+                    expired.add(FieldPath.of(PENDING_APPROVAL_BY_PERIOD, key));
+                }
+            } catch (java.time.format.DateTimeParseException e) {
+                expired.add(FieldPath.of(PENDING_APPROVAL_BY_PERIOD, key));
+            }
+        }
+        YearMonth oldestMonth = YearMonth.from(today).minusMonths(APPROVED_MONTHS_KEPT);
+        for (String key : approvedByMonth.keySet()) {
+            try {
+                if (YearMonth.parse(key).isBefore(oldestMonth)) {
+                    expired.add(FieldPath.of(APPROVED_BY_MONTH, key));
+                }
+            } catch (java.time.format.DateTimeParseException e) {
+                expired.add(FieldPath.of(APPROVED_BY_MONTH, key));
+            }
+        }
+        return expired;
+    }
+
+    private static boolean isCurrentPeriod(String key, LocalDate today) {
+        int separator = key.indexOf('_');
+        if (separator < 0) {
+            return false;
+        }
+        LocalDate start;
+        try {
+            start = LocalDate.parse(key.substring(separator + 1));
+        } catch (java.time.format.DateTimeParseException e) {
+            return false;
+        }
+        if (key.startsWith(Task.TaskType.DAILY.name())) {
+            return start.equals(today);
+        }
+        return !start.isAfter(today) && start.isAfter(today.minusDays(DAYS_PER_WEEK));
+    }
+}
@@ -0,0 +1,97 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stamps recurring tasks that were done before periods were stored with the current period of
+ * their family, so they turn PENDING again when it is over. Until then {@link TaskPeriods} reads
+ * them as done, so they cannot be completed and credited twice.
+ *
+ * <p>Runs only where {@code cron} is set. Children are read {@code page-size} at a time, and a
+ * run only writes tasks still without a period, so it can be repeated until it reports none.
+ */
+@Component
+public class TaskPeriodBackfillJob {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(TaskPeriodBackfillJob.class);
+
+    private final UserRepository userRepository;
+    private final TaskRepository taskRepository;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final int pageSize;
+
+    public TaskPeriodBackfillJob(
+            UserRepository userRepository,
+            TaskRepository taskRepository,
+            FamilyTimeZoneService familyTimeZoneService,
+            @Value("${tasks.periods.backfill.page-size:200}") int pageSize) {
+        this.userRepository = userRepository;
+        this.taskRepository = taskRepository;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.pageSize = pageSize;
+    }
+
+    @Scheduled(cron = "${tasks.periods.backfill.cron:-}", zone = "UTC")
+    public void runScheduled() {
+        try {
+            backfill();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Task period backfill run failed", e);
+        }
+    }
+
+    /** Returns the number of tasks stamped. */
+    public synchronized int backfill() throws ExecutionException, InterruptedException {
+        int stamped = 0;
+        DocumentSnapshot cursor = null;
+        List<QueryDocumentSnapshot> page;
+        do {
+            page = userRepository.findChildIdsPage(pageSize, cursor).getDocuments();
+            for (QueryDocumentSnapshot child : page) {
+                stamped += backfillChild(child.getId());
+            }
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == pageSize);
+        log.info("Task period backfill stamped {} tasks", stamped);
+        return stamped;
+    }
+
+    private int backfillChild(String childId) throws ExecutionException, InterruptedException {
+        LocalDate today = null;
+        Map<String, String> periodsByTaskId = new HashMap<>();
+        for (QueryDocumentSnapshot document :
+                taskRepository.findTasksByUserId(childId).get().getDocuments()) {
+            Task task = document.toObject(Task.class);
+            if (task.getStatus() == null
+                    || task.getStatus() == Task.TaskStatus.PENDING
+                    || task.getLastCompletedPeriod() != null) {
+                continue;
+            }
+            if (today == null) {
+                today = familyTimeZoneService.today(childId);
+            }
+            String period = TaskPeriods.periodOf(task, today);
+            if (period != null) {
+                periodsByTaskId.put(document.getId(), period);
+            }
+        }
+        if (!periodsByTaskId.isEmpty()) {
+            taskRepository.setLastCompletedPeriods(childId, periodsByTaskId).get();
+        }
+        return periodsByTaskId.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Resolves the status of recurring tasks lazily. Completing a DAILY or WEEKLY task stamps it with
+ * the period it counted for; once that period is over the task reads as PENDING again without
+ * anything being written.
+ *
+ * <p>Tasks done before periods were stored have none. They were done since the last nightly
+ * reset, so they count as done in the current period until {@link TaskPeriodBackfillJob} stamps
+ * them with it.
+ */
+public final class TaskPeriods {
+
+    private TaskPeriods() {}
+
+    /**
+     * Returns the period a task occurrence on {@code date} belongs to, or null for ONE_TIME tasks.
+     * DAILY periods are the day itself. WEEKLY periods start on the task's day of week (Monday for
+     * older tasks without one), which is when the task used to be reset.
+     */
+    public static String periodOf(Task task, LocalDate date) {
+        if (task.getType() == Task.TaskType.DAILY) {
+            return date.toString();
+        }
+        if (task.getType() == Task.TaskType.WEEKLY) {
+            DayOfWeek start =
+                    task.getDayOfWeek() != null
+                            ? DayOfWeek.of(task.getDayOfWeek())
+                            : DayOfWeek.MONDAY;
+            return date.with(TemporalAdjusters.previousOrSame(start)).toString();
+        }
+        return null;
+    }
+
+    /** Marks the task as done for the period containing {@code date}. */
+    public static void markCompleted(Task task, LocalDate date) {
+        task.setLastCompletedPeriod(periodOf(task, date));
+    }
+
+    /**
+     * Replaces the stored status with the effective one for {@code date}: a recurring task done in
+     * an earlier period is PENDING again, unacknowledged and not AI validated. One done without a
+     * stored period keeps its status.
+     */
+    public static Task resolve(Task task, LocalDate date) {
+        String currentPeriod = periodOf(task, date);
+        if (currentPeriod == null
+                || task.getStatus() == null
+                || task.getStatus() == Task.TaskStatus.PENDING
+                || task.getLastCompletedPeriod() == null
+                || task.getLastCompletedPeriod().equals(currentPeriod)) {
+            return task;
+        }
+        task.setStatus(Task.TaskStatus.PENDING);
+        task.setAcknowledged(false);
+        task.setAiValidated(false);
+        return task;
+    }
+}
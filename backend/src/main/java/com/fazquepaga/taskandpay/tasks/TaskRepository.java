@@ -1,11 +1,33 @@
 package com.fazquepaga.taskandpay.tasks;
 
+import com.fazquepaga.taskandpay.tasks.dto.TaskPageRequest;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.CollectionReference;
 import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Filter;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -13,6 +35,14 @@ public class TaskRepository {
 
     private static final String USERS_COLLECTION = "users";
     private static final String TASKS_SUBCOLLECTION = "tasks";
+    private static final String ARCHIVED_FIELD = "archived";
+    private static final String VALUE_FIELD = "value";
+    private static final String STATUS_FIELD = "status";
+    private static final String PARENT_ID_FIELD = "parentId";
+    private static final String LAST_COMPLETED_PERIOD_FIELD = "lastCompletedPeriod";
+    private static final String METADATA_SUBCOLLECTION = "metadata";
+    private static final String COUNTERS_DOCUMENT = "taskCounters";
+    private static final int MAX_BATCH_SIZE = 500; // Firestore limit of writes per batch
     private final Firestore firestore;
 
     public TaskRepository(Firestore firestore) {
@@ -37,21 +67,306 @@ public class TaskRepository {
         }
     }
 
+    /**
+     * Updates the given fields only if the task document was not written since {@code
+     * lastUpdateTime}, together with the child's counters. A concurrent write makes the returned
+     * future fail with FAILED_PRECONDITION and neither document changes.
+     */
+    public ApiFuture<List<WriteResult>> updateIfUnchanged(
+            String userId,
+            String taskId,
+            Map<String, Object> fields,
+            Timestamp lastUpdateTime,
+            TaskCounterDelta counters) {
+        WriteBatch batch = firestore.batch();
+        batch.update(
+                getTasksCollection(userId).document(taskId),
+                fields,
+                Precondition.updatedAt(lastUpdateTime));
+        addCounters(batch, userId, counters);
+        return batch.commit();
+    }
+
+    /**
+     * Saves new tasks in batches, assigning IDs first so callers can refer to them. Each batch
+     * counts the tasks it creates.
+     */
+    public ApiFuture<List<List<WriteResult>>> saveAll(String userId, List<Task> tasks) {
+        CollectionReference tasksCollection = getTasksCollection(userId);
+        for (Task task : tasks) {
+            if (task.getId() == null || task.getId().isEmpty()) {
+                task.setId(tasksCollection.document().getId());
+            }
+        }
+        return commitInBatches(
+                userId,
+                tasks,
+                (batch, task) -> batch.set(tasksCollection.document(task.getId()), task),
+                batchTasks -> {
+                    TaskCounterDelta counters = TaskCounterDelta.none();
+                    batchTasks.forEach(counters::created);
+                    return counters;
+                });
+    }
+
+    /**
+     * Updates only the value field of the given tasks, in as few batches as Firestore allows. Each
+     * batch adds the value changes of its own tasks to the total.
+     */
+    public ApiFuture<List<List<WriteResult>>> updateValues(
+            String userId,
+            Map<String, BigDecimal> valuesByTaskId,
+            Map<String, BigDecimal> valueChangesByTaskId) {
+        CollectionReference tasksCollection = getTasksCollection(userId);
+        return commitInBatches(
+                userId,
+                List.copyOf(valuesByTaskId.entrySet()),
+                (batch, entry) ->
+                        batch.update(
+                                tasksCollection.document(entry.getKey()),
+                                VALUE_FIELD,
+                                entry.getValue()),
+                entries -> {
+                    TaskCounterDelta counters = TaskCounterDelta.none();
+                    for (Map.Entry<String, BigDecimal> entry : entries) {
+                        counters.valueChanged(
+                                valueChangesByTaskId.getOrDefault(entry.getKey(), BigDecimal.ZERO));
+                    }
+                    return counters;
+                });
+    }
+
+    /**
+     * Commits the items in batches, one after another, each with the counters change of its own
+     * items. A failed batch stops the ones after it, so the counters always match the tasks that
+     * were written. The returned future fails with the first batch that does.
+     */
+    private <T> ApiFuture<List<List<WriteResult>>> commitInBatches(
+            String userId,
+            List<T> items,
+            BiConsumer<WriteBatch, T> write,
+            Function<List<T>, TaskCounterDelta> counters) {
+        ApiFuture<List<List<WriteResult>>> commits =
+                ApiFutures.immediateFuture(new ArrayList<>());
+        for (int start = 0; start < items.size(); start += MAX_BATCH_SIZE - 1) {
+            // One slot is left free for the counters write
+            List<T> batchItems =
+                    items.subList(start, Math.min(start + MAX_BATCH_SIZE - 1, items.size()));
+            commits =
+                    ApiFutures.transformAsync(
+                            commits,
+                            results -> {
+                                WriteBatch batch = firestore.batch();
+                                for (T item : batchItems) {
+                                    write.accept(batch, item);
+                                }
+                                addCounters(batch, userId, counters.apply(batchItems));
+                                return ApiFutures.transform(
+                                        batch.commit(),
+                                        result -> {
+                                            results.add(result);
+                                            return results;
+                                        },
+                                        MoreExecutors.directExecutor());
+                            },
+                            MoreExecutors.directExecutor());
+        }
+        return commits;
+    }
+
+    /** Reads tasks inside a transaction; missing tasks come back as snapshots that do not exist. */
+    public List<DocumentSnapshot> getAll(
+            Transaction transaction, String userId, List<String> taskIds)
+            throws ExecutionException, InterruptedException {
+        CollectionReference tasksCollection = getTasksCollection(userId);
+        DocumentReference[] references =
+                taskIds.stream().map(tasksCollection::document).toArray(DocumentReference[]::new);
+        return transaction.getAll(references).get();
+    }
+
+    public void update(
+            Transaction transaction, String userId, String taskId, Map<String, Object> fields) {
+        transaction.update(getTasksCollection(userId).document(taskId), fields);
+    }
+
+    public void updateCounters(Transaction transaction, String userId, TaskCounterDelta counters) {
+        if (!counters.isEmpty()) {
+            transaction.set(getCountersDocument(userId), counters.toFields(), SetOptions.merge());
+        }
+    }
+
+    private DocumentReference getCountersDocument(String userId) {
+        return firestore
+                .collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(METADATA_SUBCOLLECTION)
+                .document(COUNTERS_DOCUMENT);
+    }
+
+    private void addCounters(WriteBatch batch, String userId, TaskCounterDelta counters) {
+        if (!counters.isEmpty()) {
+            batch.set(getCountersDocument(userId), counters.toFields(), SetOptions.merge());
+        }
+    }
+
+    /** Deletes the given keys of the counters document, such as periods no longer read. */
+    public ApiFuture<WriteResult> deleteCounterKeys(String userId, List<FieldPath> keys) {
+        Object[] moreDeletes = new Object[2 * (keys.size() - 1)];
+        for (int i = 1; i < keys.size(); i++) {
+            moreDeletes[2 * (i - 1)] = keys.get(i);
+            moreDeletes[2 * (i - 1) + 1] = FieldValue.delete();
+        }
+        return getCountersDocument(userId).update(keys.get(0), FieldValue.delete(), moreDeletes);
+    }
+
+    public ApiFuture<DocumentSnapshot> findCounters(String userId) {
+        return getCountersDocument(userId).get();
+    }
+
+    /**
+     * Rebuilds the counters from the child's active tasks in a transaction, unless another
+     * request already did. Increments committed before that are replaced by the full count, and a
+     * concurrent increment makes the transaction retry.
+     */
+    public ApiFuture<TaskCounters> rebuildCounters(
+            String userId, Function<List<Task>, TaskCounters> count) {
+        DocumentReference countersDocument = getCountersDocument(userId);
+        return firestore.runTransaction(
+                transaction -> {
+                    DocumentSnapshot current = transaction.get(countersDocument).get();
+                    if (TaskCounters.isBuilt(current)) {
+                        return current.toObject(TaskCounters.class);
+                    }
+                    List<Task> tasks =
+                            transaction
+                                    .get(whereNotArchived(getTasksCollection(userId)))
+                                    .get()
+                                    .getDocuments()
+                                    .stream()
+                                    .map(doc -> doc.toObject(Task.class))
+                                    .toList();
+                    TaskCounters counters = count.apply(tasks);
+                    if (current.exists()
+                            && Boolean.TRUE.equals(current.getBoolean(TaskCounters.INITIALIZED))
+                            && current.get(TaskCounters.APPROVED_BY_MONTH) != null) {
+                        // Built in an older format: past approvals cannot be recounted from the
+                        // tasks, so they are carried over
+                        counters.setApprovedByMonth(
+                                current.toObject(TaskCounters.class).getApprovedByMonth());
+                    }
+                    counters.setInitialized(true);
+                    counters.setVersion(TaskCounters.CURRENT_VERSION);
+                    transaction.set(countersDocument, counters);
+                    return counters;
+                });
+    }
+
     public ApiFuture<QuerySnapshot> findTasksByUserId(String userId) {
 
         return getTasksCollection(userId).get();
     }
 
-    public ApiFuture<com.google.cloud.firestore.DocumentSnapshot> findById(
-            String userId, String taskId) {
+    /** Returns the non-archived tasks of a user, filtered on the server. */
+    public ApiFuture<QuerySnapshot> findActiveTasks(String userId) {
+        return whereNotArchived(getTasksCollection(userId)).get();
+    }
 
-        return getTasksCollection(userId).document(taskId).get();
+    /**
+     * Returns one page of the tasks awaiting approval across all children of a parent, ordered by
+     * document path, plus one extra document to tell whether a next page exists. Backed by the
+     * (parentId, status) collection group index in firestore.indexes.json.
+     */
+    public ApiFuture<QuerySnapshot> findPendingApprovalsPage(
+            String parentId, int pageSize, String cursor) {
+        Query query =
+                firestore
+                        .collectionGroup(TASKS_SUBCOLLECTION)
+                        .whereEqualTo(PARENT_ID_FIELD, parentId)
+                        .whereEqualTo(STATUS_FIELD, Task.TaskStatus.PENDING_APPROVAL.name())
+                        .orderBy(FieldPath.documentId())
+                        .limit(pageSize + 1);
+        if (cursor != null) {
+            query = query.startAfter(firestore.document(cursor));
+        }
+        return query.get();
     }
 
-    public ApiFuture<QuerySnapshot> findRecurringTasks(String taskTypeString) {
-        return firestore
-                .collectionGroup(TASKS_SUBCOLLECTION)
-                .whereEqualTo("type", taskTypeString)
+    /** Returns the user's tasks stored as PENDING_APPROVAL. */
+    public ApiFuture<QuerySnapshot> findPendingApprovals(String userId) {
+        return getTasksCollection(userId)
+                .whereEqualTo(STATUS_FIELD, Task.TaskStatus.PENDING_APPROVAL.name())
                 .get();
     }
+
+    /** Stores the parent ID on the given tasks, for tasks created before it was denormalized. */
+    public ApiFuture<List<List<WriteResult>>> setParentId(
+            String userId, List<String> taskIds, String parentId) {
+        CollectionReference tasksCollection = getTasksCollection(userId);
+        return commitInBatches(
+                userId,
+                taskIds,
+                (batch, taskId) ->
+                        batch.update(tasksCollection.document(taskId), PARENT_ID_FIELD, parentId),
+                batchTaskIds -> TaskCounterDelta.none());
+    }
+
+    /** Stores the period each task was last done for, for tasks done before it was stored. */
+    public ApiFuture<List<List<WriteResult>>> setLastCompletedPeriods(
+            String userId, Map<String, String> periodsByTaskId) {
+        CollectionReference tasksCollection = getTasksCollection(userId);
+        return commitInBatches(
+                userId,
+                List.copyOf(periodsByTaskId.entrySet()),
+                (batch, entry) ->
+                        batch.update(
+                                tasksCollection.document(entry.getKey()),
+                                LAST_COMPLETED_PERIOD_FIELD,
+                                entry.getValue()),
+                entries -> TaskCounterDelta.none());
+    }
+
+    /**
+     * Listens to the user's non-archived tasks. The first event carries every task as ADDED; an
+     * archived task arrives as REMOVED.
+     */
+    public ListenerRegistration listenToActiveTasks(
+            String userId, EventListener<QuerySnapshot> listener) {
+        return whereNotArchived(getTasksCollection(userId)).addSnapshotListener(listener);
+    }
+
+    /**
+     * Returns one page of tasks ordered by document ID. Fetches one extra document so the caller
+     * can tell whether a next page exists.
+     */
+    public ApiFuture<QuerySnapshot> findTasksPage(String userId, TaskPageRequest request) {
+        Query query =
+                request.isArchived()
+                        ? getTasksCollection(userId).whereEqualTo(ARCHIVED_FIELD, true)
+                        : whereNotArchived(getTasksCollection(userId));
+        if (request.getStatus() != null) {
+            query = query.whereEqualTo(STATUS_FIELD, request.getStatus().name());
+        }
+        if (request.getType() != null) {
+            query = query.whereEqualTo("type", request.getType().name());
+        }
+        query = query.orderBy(FieldPath.documentId());
+        if (request.getCursor() != null && !request.getCursor().isEmpty()) {
+            query = query.startAfter(request.getCursor());
+        }
+        return query.limit(request.getPageSize() + 1).get();
+    }
+
+    private Query whereNotArchived(Query query) {
+        // Older tasks were saved with archived = null, so both values mean "active"
+        return query.where(
+                Filter.or(
+                        Filter.equalTo(ARCHIVED_FIELD, false),
+                        Filter.equalTo(ARCHIVED_FIELD, null)));
+    }
+
+    public ApiFuture<DocumentSnapshot> findById(
+            String userId, String taskId) {
+
+        return getTasksCollection(userId).document(taskId).get();
+    }
 }
@@ -1,15 +1,32 @@
 package com.fazquepaga.taskandpay.tasks;
 
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.fazquepaga.taskandpay.shared.stats.StatsService;
 import com.fazquepaga.taskandpay.subscription.SubscriptionLimitReachedException;
 import com.fazquepaga.taskandpay.subscription.SubscriptionService;
 import com.fazquepaga.taskandpay.tasks.dto.CreateTaskRequest;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApproval;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApprovalPage;
+import com.fazquepaga.taskandpay.tasks.dto.TaskCounterSummary;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPage;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPageRequest;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FirestoreException;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
 import jakarta.inject.Provider;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
@@ -20,6 +37,13 @@ public class TaskService {
     private static final org.slf4j.Logger log =
             org.slf4j.LoggerFactory.getLogger(TaskService.class);
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final java.util.regex.Pattern PENDING_APPROVAL_CURSOR =
+            java.util.regex.Pattern.compile("users/[^/]+/tasks/[^/]+");
+    public static final int MAX_BULK_TASKS = 200;
+    private static final int MAX_PROOF_ATTEMPTS = 3;
+
     private final TaskRepository taskRepository;
 
     private final UserRepository userRepository;
@@ -31,6 +55,9 @@ public class TaskService {
     private final Provider<com.fazquepaga.taskandpay.allowance.AllowanceService>
             allowanceServiceProvider;
     private final StatsService statsService;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker
+            recalculationWorker;
 
     public TaskService(
             TaskRepository taskRepository,
@@ -39,7 +66,9 @@ public class TaskService {
             com.fazquepaga.taskandpay.notification.NotificationService notificationService,
             com.fazquepaga.taskandpay.allowance.LedgerService ledgerService,
             Provider<com.fazquepaga.taskandpay.allowance.AllowanceService> allowanceServiceProvider,
-            StatsService statsService) {
+            StatsService statsService,
+            FamilyTimeZoneService familyTimeZoneService,
+            com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker recalculationWorker) {
 
         this.taskRepository = taskRepository;
         this.userRepository = userRepository;
@@ -48,6 +77,8 @@ public class TaskService {
         this.ledgerService = ledgerService;
         this.allowanceServiceProvider = allowanceServiceProvider;
         this.statsService = statsService;
+        this.familyTimeZoneService = familyTimeZoneService;
+        this.recalculationWorker = recalculationWorker;
     }
 
     public Task createTask(String userId, CreateTaskRequest request)
@@ -67,8 +98,8 @@ public class TaskService {
         }
 
         // Check subscription limits for recurring tasks
-        if (request.getType() == Task.TaskType.DAILY || request.getType() == Task.TaskType.WEEKLY) {
-            int currentRecurringTaskCount = countRecurringTasks(userId);
+        if (isRecurring(request.getType())) {
+            int currentRecurringTaskCount = (int) countRecurringTasks(userId);
             if (!subscriptionService.canCreateTask(parent, currentRecurringTaskCount)) {
                 throw new SubscriptionLimitReachedException(
                         "Recurring task limit reached for Free tier. Upgrade to Premium for"
@@ -76,47 +107,223 @@ public class TaskService {
             }
         }
 
-        Task task =
-                Task.builder()
-                        .description(request.getDescription())
-                        .type(request.getType())
-                        .weight(request.getWeight())
-                        .value(java.math.BigDecimal.ZERO) // Will be recalculated
-                        .requiresProof(request.isRequiresProof())
-                        .createdAt(Instant.now())
-                        .dayOfWeek(request.getDayOfWeek())
-                        .scheduledDate(request.getScheduledDate())
-                        .status(Task.TaskStatus.PENDING)
-                        .build();
-
-        taskRepository.save(userId, task).get();
+        Task task = newTask(request, parent.getId());
+        taskRepository.saveAll(userId, List.of(task)).get();
+        allowanceServiceProvider.get().invalidateAllowancePlan(userId);
 
-        // Automatically recalculate all task values based on allowance distribution
-        allowanceServiceProvider.get().recalculateTaskValues(userId);
+        // Task values are redistributed in the background; clients see them on the task stream
+        recalculationWorker.requestRecalculation(userId);
 
         // Incrementa contador analítico de forma assíncrona (fire-and-forget)
         statsService.incrementFamilyStat(parent.getId(), "totalTasksCreated", 1);
 
-        // Return updated task with calculated value
-        List<Task> updatedTasks = getTasksByUserId(userId);
-        return updatedTasks.stream()
-                .filter(t -> t.getId().equals(task.getId()))
-                .findFirst()
-                .orElse(task);
+        return task;
+    }
+
+    /**
+     * Creates many tasks for one or more children of the parent. Limits are checked for every
+     * child before anything is written, tasks are saved in batches and values are redistributed
+     * once per child in the background.
+     */
+    public Map<String, List<Task>> createTasks(
+            String parentId, Map<String, List<CreateTaskRequest>> requestsByChild)
+            throws ExecutionException, InterruptedException {
+        int total = requestsByChild.values().stream().mapToInt(List::size).sum();
+        if (total == 0 || total > MAX_BULK_TASKS) {
+            throw new IllegalArgumentException(
+                    "Between 1 and " + MAX_BULK_TASKS + " tasks can be created at once");
+        }
+
+        User parent = userRepository.findByIdSync(parentId);
+        if (parent == null || parent.getRole() != User.Role.PARENT) {
+            throw new IllegalArgumentException("User is not a parent");
+        }
+        for (Map.Entry<String, List<CreateTaskRequest>> entry : requestsByChild.entrySet()) {
+            checkBulkLimits(parent, entry.getKey(), entry.getValue());
+        }
+
+        Map<String, List<Task>> created = new LinkedHashMap<>();
+        for (Map.Entry<String, List<CreateTaskRequest>> entry : requestsByChild.entrySet()) {
+            List<Task> tasks =
+                    entry.getValue().stream().map(request -> newTask(request, parentId)).toList();
+            taskRepository.saveAll(entry.getKey(), tasks).get();
+            allowanceServiceProvider.get().invalidateAllowancePlan(entry.getKey());
+            recalculationWorker.requestRecalculation(entry.getKey());
+            created.put(entry.getKey(), tasks);
+        }
+
+        statsService.incrementFamilyStat(parentId, "totalTasksCreated", total);
+        return created;
+    }
+
+    private void checkBulkLimits(User parent, String childId, List<CreateTaskRequest> requests)
+            throws ExecutionException, InterruptedException {
+        User child = userRepository.findByIdSync(childId);
+        if (child == null
+                || child.getRole() != User.Role.CHILD
+                || !parent.getId().equals(child.getParentId())) {
+            throw new IllegalArgumentException("Child not found or does not belong to this parent");
+        }
+
+        long newRecurring = requests.stream().filter(r -> isRecurring(r.getType())).count();
+        if (newRecurring == 0) {
+            return;
+        }
+        // canCreateTask checks room for one more task, so ask about the last one of the bulk
+        int countBeforeLast = (int) (countRecurringTasks(childId) + newRecurring - 1);
+        if (!subscriptionService.canCreateTask(parent, countBeforeLast)) {
+            throw new SubscriptionLimitReachedException(
+                    "Recurring task limit reached for Free tier. Upgrade to Premium for"
+                            + " unlimited tasks.");
+        }
+    }
+
+    private static boolean isRecurring(Task.TaskType type) {
+        return type == Task.TaskType.DAILY || type == Task.TaskType.WEEKLY;
+    }
+
+    private Task newTask(CreateTaskRequest request, String parentId) {
+        return Task.builder()
+                .description(request.getDescription())
+                .type(request.getType())
+                .weight(request.getWeight())
+                .value(java.math.BigDecimal.ZERO) // Will be recalculated
+                .requiresProof(request.isRequiresProof())
+                .createdAt(Instant.now())
+                .dayOfWeek(request.getDayOfWeek())
+                .scheduledDate(request.getScheduledDate())
+                .status(Task.TaskStatus.PENDING)
+                .archived(false)
+                .parentId(parentId)
+                .build();
     }
 
     public List<Task> getTasksByUserId(String userId)
             throws ExecutionException, InterruptedException {
-        return getAllTasksRaw(userId).stream()
+        return toActiveTasks(userId, taskRepository.findActiveTasks(userId).get());
+    }
+
+    /**
+     * Resolves a result of {@link TaskRepository#findActiveTasks} into the user's tasks with their
+     * effective status today, for callers that started the read themselves.
+     */
+    public List<Task> toActiveTasks(String userId, QuerySnapshot activeTasks)
+            throws ExecutionException, InterruptedException {
+        List<QueryDocumentSnapshot> documents = activeTasks.getDocuments();
+        LocalDate today = familyTimeZoneService.today(userId);
+        return documents.stream()
+                .map(doc -> toEffectiveTask(doc, today))
                 .filter(task -> task.getArchived() == null || !task.getArchived())
                 .collect(Collectors.toList());
     }
 
-    private List<Task> getAllTasksRaw(String userId)
+    /**
+     * Returns one page of the child's tasks. Archived, status and type filters run in Firestore, so
+     * read cost follows the page size instead of the child's whole task history. The stored status
+     * of a recurring task may be stale, so for those the status filter is applied after resolving
+     * the effective status and a page can come back shorter than requested.
+     */
+    public TaskPage getTasksPage(String userId, TaskPageRequest request)
             throws ExecutionException, InterruptedException {
+        int pageSize =
+                request.getPageSize() <= 0
+                        ? DEFAULT_PAGE_SIZE
+                        : Math.min(request.getPageSize(), MAX_PAGE_SIZE);
+        Task.TaskStatus status = request.getStatus();
+        boolean storedStatusIsEffective = request.getType() == Task.TaskType.ONE_TIME;
+        TaskPageRequest query =
+                request.toBuilder()
+                        .pageSize(pageSize)
+                        .status(storedStatusIsEffective ? status : null)
+                        .build();
+
         List<QueryDocumentSnapshot> documents =
-                taskRepository.findTasksByUserId(userId).get().getDocuments();
-        return documents.stream().map(doc -> doc.toObject(Task.class)).collect(Collectors.toList());
+                taskRepository.findTasksPage(userId, query).get().getDocuments();
+        boolean hasMore = documents.size() > pageSize;
+        if (hasMore) {
+            documents = documents.subList(0, pageSize);
+        }
+
+        LocalDate today = familyTimeZoneService.today(userId);
+        List<Task> tasks =
+                documents.stream()
+                        .map(doc -> toEffectiveTask(doc, today))
+                        .filter(task -> status == null || task.getStatus() == status)
+                        .collect(Collectors.toList());
+        return TaskPage.builder()
+                .tasks(tasks)
+                .nextCursor(hasMore ? documents.get(pageSize - 1).getId() : null)
+                .build();
+    }
+
+    /**
+     * Returns one page of the tasks awaiting approval across all of the parent's children, from a
+     * single collection group query. Recurring tasks whose period is over are dropped after
+     * resolving their status, so a page can come back shorter than requested.
+     */
+    public PendingApprovalPage getPendingApprovals(String parentId, int pageSize, String cursor)
+            throws ExecutionException, InterruptedException {
+        User parent = userRepository.findByIdSync(parentId);
+        if (parent == null || parent.getRole() != User.Role.PARENT) {
+            throw new IllegalArgumentException("User is not a parent");
+        }
+        if (cursor != null && !PENDING_APPROVAL_CURSOR.matcher(cursor).matches()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int size = pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+        if (cursor == null) {
+            backfillPendingApprovals(parent);
+        }
+
+        List<QueryDocumentSnapshot> documents =
+                taskRepository
+                        .findPendingApprovalsPage(parentId, size, cursor)
+                        .get()
+                        .getDocuments();
+        boolean hasMore = documents.size() > size;
+        if (hasMore) {
+            documents = documents.subList(0, size);
+        }
+
+        LocalDate today = familyTimeZoneService.today(parentId);
+        List<PendingApproval> items = new ArrayList<>();
+        for (QueryDocumentSnapshot document : documents) {
+            Task task = toEffectiveTask(document, today);
+            if (task.getStatus() == Task.TaskStatus.PENDING_APPROVAL
+                    && !Boolean.TRUE.equals(task.getArchived())) {
+                String childId = document.getReference().getParent().getParent().getId();
+                items.add(PendingApproval.builder().childId(childId).task(task).build());
+            }
+        }
+        return PendingApprovalPage.builder()
+                .items(items)
+                .nextCursor(hasMore ? documents.get(size - 1).getReference().getPath() : null)
+                .build();
+    }
+
+    /**
+     * Tasks that were already waiting for approval when parentId started being stored are not
+     * found by the family query. Copies it onto them once per family.
+     */
+    private void backfillPendingApprovals(User parent)
+            throws ExecutionException, InterruptedException {
+        if (Boolean.TRUE.equals(parent.getPendingApprovalsBackfilled())) {
+            return;
+        }
+        for (QueryDocumentSnapshot child :
+                userRepository.findByParentId(parent.getId()).get().getDocuments()) {
+            List<String> taskIds =
+                    taskRepository.findPendingApprovals(child.getId()).get().getDocuments().stream()
+                            .filter(task -> task.getString("parentId") == null)
+                            .map(QueryDocumentSnapshot::getId)
+                            .toList();
+            if (!taskIds.isEmpty()) {
+                taskRepository.setParentId(child.getId(), taskIds, parent.getId()).get();
+            }
+        }
+        parent.setPendingApprovalsBackfilled(true);
+        // Only the flag: the parent may be cached and behind a subscription update
+        userRepository.update(parent.getId(), Map.of("pendingApprovalsBackfilled", true)).get();
     }
 
     public Task approveTask(String taskId, String parentId)
@@ -137,25 +344,30 @@ public class TaskService {
             throw new IllegalArgumentException("Child not found or does not belong to this parent");
         }
 
-        List<Task> tasks = getAllTasksRaw(childId);
-        Task task =
-                tasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
-
-        if (task.getStatus() == Task.TaskStatus.APPROVED) {
-            throw new IllegalStateException("Task is already approved");
-        }
+        DocumentSnapshot snapshot = findTaskSnapshot(childId, taskId);
+        LocalDate today = familyTimeZoneService.today(childId);
+        Task current = toEffectiveTask(snapshot, today);
+        TaskTransition.APPROVE.check(current); // Fail fast before valuing the task
 
         // Calculate value
         java.math.BigDecimal value =
                 allowanceServiceProvider.get().calculateValueForTask(childId, taskId);
 
-        // Update task status
-        task.setStatus(Task.TaskStatus.APPROVED);
-        task.setAcknowledged(true); // Manually approved, so acknowledged
-        taskRepository.save(childId, task).get();
+        // The status change commits with the credit, so a concurrent approval is paid once
+        Task task =
+                postTaskChange(
+                        childId,
+                        taskId,
+                        "Task approved: " + current.getDescription(),
+                        com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                        today,
+                        TaskTransition.APPROVE,
+                        approved -> {
+                            approved.setStatus(Task.TaskStatus.APPROVED);
+                            approved.setAcknowledged(true); // Manually approved, so acknowledged
+                            TaskPeriods.markCompleted(approved, today);
+                            return value;
+                        });
 
         // Send notification
         try {
@@ -164,13 +376,6 @@ public class TaskService {
             log.error("Failed to send task approved notification", e);
         }
 
-        // Add transaction
-        ledgerService.addTransaction(
-                childId,
-                value,
-                "Task approved: " + task.getDescription(),
-                com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT);
-
         // Incrementa contadores analíticos de forma assíncrona (fire-and-forget)
         statsService.incrementFamilyStat(parentId, "totalTasksApproved", 1);
         double valueAsDouble = value != null ? value.doubleValue() : 0.0;
@@ -190,37 +395,42 @@ public class TaskService {
 
         String familyId = child.getParentId();
 
-        // Find task
-        List<Task> tasks = getAllTasksRaw(childId);
-        Task task =
-                tasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
-
-        // Check if task is already completed or approved
-        if (task.getStatus() == Task.TaskStatus.COMPLETED
-                || task.getStatus() == Task.TaskStatus.PENDING_APPROVAL
-                || task.getStatus() == Task.TaskStatus.APPROVED) {
-            throw new IllegalStateException("Task is already completed");
-        }
+        DocumentSnapshot snapshot = findTaskSnapshot(childId, taskId);
+        LocalDate today = familyTimeZoneService.today(childId);
+        Task task = toEffectiveTask(snapshot, today);
+        TaskTransition.COMPLETE.check(task);
 
-        // Update status based on proof requirement
         if (task.isRequiresProof()) {
+            TaskCounterDelta counters = TaskCounterDelta.none().leaving(task);
             task.setStatus(Task.TaskStatus.PENDING_APPROVAL);
+            TaskPeriods.markCompleted(task, today);
+            task.setParentId(familyId); // Tasks created before parentId was stored get it here
+            commitStatusChange(
+                    childId, snapshot, task, counters.entering(task, YearMonth.from(today)));
         } else {
-            // Auto-approve tasks that don't require proof
-            task.setStatus(Task.TaskStatus.APPROVED);
-            task.setAcknowledged(false);
-
-            // Calculate value and add transaction
+            // Auto-approve tasks that don't require proof. The status change commits with the
+            // credit, so a double tap from the child app cannot credit the ledger twice.
             java.math.BigDecimal value =
                     allowanceServiceProvider.get().calculateValueForTask(childId, taskId);
-            ledgerService.addTransaction(
-                    childId,
-                    value,
-                    "Task completed: " + task.getDescription(),
-                    com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT);
+            task =
+                    postTaskChange(
+                            childId,
+                            taskId,
+                            "Task completed: " + task.getDescription(),
+                            com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                            today,
+                            TaskTransition.COMPLETE,
+                            completed -> {
+                                if (completed.isRequiresProof()) {
+                                    throw new IllegalStateException(
+                                            "Task was modified concurrently, please retry");
+                                }
+                                completed.setStatus(Task.TaskStatus.APPROVED);
+                                completed.setAcknowledged(false);
+                                TaskPeriods.markCompleted(completed, today);
+                                completed.setParentId(familyId);
+                                return value;
+                            });
 
             // Incrementa estatísticas analíticas de aprovação automática
             statsService.incrementFamilyStat(familyId, "totalTasksApproved", 1);
@@ -228,8 +438,6 @@ public class TaskService {
             statsService.incrementFamilyStat(familyId, "totalAllowancePaid", valueAsDouble);
         }
 
-        taskRepository.save(childId, task).get();
-
         // Incrementa contador analítico de forma assíncrona (fire-and-forget)
         statsService.incrementFamilyStat(familyId, "totalTasksCompleted", 1);
 
@@ -246,6 +454,56 @@ public class TaskService {
         return task;
     }
 
+    /**
+     * Records a proof checked by {@code validator}: the task goes to PENDING_APPROVAL for the
+     * current period with the validation result. The validator runs once; the update is retried
+     * when the task changes between the read and the write. Returns null when the task does not
+     * exist.
+     */
+    public Task submitProof(
+            String childId, String taskId, java.util.function.Predicate<Task> validator)
+            throws ExecutionException, InterruptedException {
+        Boolean aiValidated = null;
+        for (int attempt = 1; ; attempt++) {
+            DocumentSnapshot snapshot = taskRepository.findById(childId, taskId).get();
+            if (snapshot == null || !snapshot.exists()) {
+                return null;
+            }
+            LocalDate today = familyTimeZoneService.today(childId);
+            YearMonth month = YearMonth.from(today);
+            Task task = toEffectiveTask(snapshot, today);
+            TaskTransition.SUBMIT_PROOF.check(task);
+            if (aiValidated == null) {
+                aiValidated = validator.test(task);
+            }
+
+            TaskCounterDelta counters = TaskCounterDelta.none().leaving(task);
+            task.setAiValidated(aiValidated);
+            task.setStatus(Task.TaskStatus.PENDING_APPROVAL);
+            TaskPeriods.markCompleted(task, today);
+            counters.entering(task, month);
+            try {
+                taskRepository
+                        .updateIfUnchanged(
+                                childId,
+                                taskId,
+                                statusFields(task),
+                                snapshot.getUpdateTime(),
+                                counters)
+                        .get();
+                return task;
+            } catch (ExecutionException e) {
+                if (!isConcurrentModification(e)) {
+                    throw e;
+                }
+                if (attempt == MAX_PROOF_ATTEMPTS) {
+                    throw new IllegalStateException(
+                            "Task was modified concurrently, please retry");
+                }
+            }
+        }
+    }
+
     public Task acknowledgeTask(String childId, String taskId, String parentId)
             throws ExecutionException, InterruptedException {
         // Verify parent rights (simplified for now, ideally check parent-child
@@ -255,15 +513,12 @@ public class TaskService {
             throw new IllegalArgumentException("User is not a parent");
         }
 
-        List<Task> tasks = getAllTasksRaw(childId);
-        Task task =
-                tasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
+        DocumentSnapshot snapshot = findTaskSnapshot(childId, taskId);
+        LocalDate today = familyTimeZoneService.today(childId);
+        Task task = toEffectiveTask(snapshot, today);
 
         task.setAcknowledged(true);
-        taskRepository.save(childId, task).get();
+        commitChanges(childId, snapshot, Map.of("acknowledged", true), TaskCounterDelta.none());
         return task;
     }
 
@@ -274,64 +529,422 @@ public class TaskService {
             throw new IllegalArgumentException("User is not a parent");
         }
 
-        List<Task> tasks = getAllTasksRaw(childId);
-        Task task =
-                tasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
+        DocumentSnapshot snapshot = findTaskSnapshot(childId, taskId);
+        LocalDate today = familyTimeZoneService.today(childId);
+        Task task = toEffectiveTask(snapshot, today);
 
         // Allow rejecting APPROVED and PENDING_APPROVAL tasks
-        if (task.getStatus() != Task.TaskStatus.APPROVED
-                && task.getStatus() != Task.TaskStatus.PENDING_APPROVAL) {
-            throw new IllegalStateException("Can only reject approved or pending tasks");
-        }
+        TaskTransition.REJECT.check(task);
 
-        // If it was APPROVED, we must reverse the financial transaction and the approved stat
         if (task.getStatus() == Task.TaskStatus.APPROVED) {
-            // Calculate value to reverse
+            // Reverse the credit with a debit committed together with the status change; if the
+            // balance does not cover it, the task stays APPROVED
             java.math.BigDecimal value =
                     allowanceServiceProvider.get().calculateValueForTask(childId, taskId);
+            boolean[] reversed = {false};
+            task =
+                    postTaskChange(
+                            childId,
+                            taskId,
+                            "Task rejected by parent: " + task.getDescription(),
+                            com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT,
+                            today,
+                            TaskTransition.REJECT,
+                            rejected -> {
+                                reversed[0] = rejected.getStatus() == Task.TaskStatus.APPROVED;
+                                rejected.setStatus(Task.TaskStatus.PENDING);
+                                rejected.setAcknowledged(true); // Logic: Parent acted on it.
+                                return reversed[0] ? value : null;
+                            });
+
+            if (reversed[0]) {
+                statsService.incrementFamilyStat(parentId, "totalTasksApproved", -1);
+                double valueAsDouble = value != null ? value.doubleValue() : 0.0;
+                statsService.incrementFamilyStat(parentId, "totalAllowancePaid", -valueAsDouble);
+            }
+        } else {
+            TaskCounterDelta counters = TaskCounterDelta.none().leaving(task);
+            task.setStatus(Task.TaskStatus.PENDING);
+            task.setAcknowledged(true); // Logic: Parent acted on it.
+            commitStatusChange(
+                    childId, snapshot, task, counters.entering(task, YearMonth.from(today)));
+        }
 
-            // Reverse transaction (Debit)
-            ledgerService.addTransaction(
+        // Decrement totalTasksCompleted because it went from PENDING_APPROVAL or APPROVED back to
+        // PENDING
+        statsService.incrementFamilyStat(parentId, "totalTasksCompleted", -1);
+
+        return task;
+    }
+
+    /**
+     * Approves many tasks of one or more children of the parent. Ownership is checked for every
+     * child before anything is written. Each child's task updates and a single aggregated ledger
+     * credit are committed in one Firestore transaction, so either all of a child's tasks are
+     * approved and paid or none is.
+     */
+    public Map<String, List<Task>> approveTasks(
+            String parentId, Map<String, List<String>> taskIdsByChild)
+            throws ExecutionException, InterruptedException {
+        Map<String, User> children = checkBulkReview(parentId, taskIdsByChild);
+
+        Map<String, List<Task>> approved = new LinkedHashMap<>();
+        int approvedCount = 0;
+        java.math.BigDecimal totalPaid = java.math.BigDecimal.ZERO;
+        for (Map.Entry<String, List<String>> entry : taskIdsByChild.entrySet()) {
+            String childId = entry.getKey();
+            List<String> taskIds = List.copyOf(new java.util.LinkedHashSet<>(entry.getValue()));
+            Map<String, java.math.BigDecimal> values =
+                    allowanceServiceProvider.get().calculateValuesForTasks(childId, taskIds);
+            LocalDate today = familyTimeZoneService.today(childId);
+            YearMonth month = YearMonth.from(today);
+
+            List<Task> tasks = new ArrayList<>();
+            java.math.BigDecimal[] credit = {java.math.BigDecimal.ZERO};
+            postReview(
                     childId,
-                    value,
-                    "Task rejected by parent: " + task.getDescription(),
-                    com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT);
+                    "Tasks approved: " + taskIds.size(),
+                    com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                    transaction -> {
+                        tasks.clear(); // The transaction may be retried
+                        credit[0] = java.math.BigDecimal.ZERO;
+                        TaskCounterDelta counters = TaskCounterDelta.none();
+                        for (DocumentSnapshot snapshot :
+                                taskRepository.getAll(transaction, childId, taskIds)) {
+                            Task task = toExistingTask(snapshot, today);
+                            TaskTransition.APPROVE.check(task);
+                            counters.leaving(task);
+                            task.setStatus(Task.TaskStatus.APPROVED);
+                            task.setAcknowledged(true);
+                            TaskPeriods.markCompleted(task, today);
+                            counters.entering(task, month);
+                            taskRepository.update(
+                                    transaction, childId, snapshot.getId(), statusFields(task));
+                            credit[0] =
+                                    credit[0].add(
+                                            values.getOrDefault(
+                                                    snapshot.getId(), java.math.BigDecimal.ZERO));
+                            tasks.add(task);
+                        }
+                        taskRepository.updateCounters(transaction, childId, counters);
+                        return credit[0];
+                    });
+
+            for (Task task : tasks) {
+                try {
+                    notificationService.sendTaskApproved(task, children.get(childId));
+                } catch (Exception e) {
+                    log.error("Failed to send task approved notification", e);
+                }
+            }
+            approved.put(childId, tasks);
+            approvedCount += tasks.size();
+            totalPaid = totalPaid.add(credit[0]);
+        }
 
-            statsService.incrementFamilyStat(parentId, "totalTasksApproved", -1);
-            double valueAsDouble = value != null ? value.doubleValue() : 0.0;
-            statsService.incrementFamilyStat(parentId, "totalAllowancePaid", -valueAsDouble);
+        statsService.incrementFamilyStat(parentId, "totalTasksApproved", approvedCount);
+        statsService.incrementFamilyStat(parentId, "totalAllowancePaid", totalPaid.doubleValue());
+        return approved;
+    }
+
+    /**
+     * Rejects many tasks of one or more children of the parent, sending them back to PENDING.
+     * Approved tasks are reversed with a single aggregated debit per child, committed in the same
+     * Firestore transaction as the task updates; if the balance does not cover it, none of that
+     * child's tasks change.
+     */
+    public Map<String, List<Task>> rejectTasks(
+            String parentId, Map<String, List<String>> taskIdsByChild)
+            throws ExecutionException, InterruptedException {
+        checkBulkReview(parentId, taskIdsByChild);
+
+        Map<String, List<Task>> rejected = new LinkedHashMap<>();
+        int rejectedCount = 0;
+        int reversedCount = 0;
+        java.math.BigDecimal totalReversed = java.math.BigDecimal.ZERO;
+        for (Map.Entry<String, List<String>> entry : taskIdsByChild.entrySet()) {
+            String childId = entry.getKey();
+            List<String> taskIds = List.copyOf(new java.util.LinkedHashSet<>(entry.getValue()));
+            Map<String, java.math.BigDecimal> values =
+                    allowanceServiceProvider.get().calculateValuesForTasks(childId, taskIds);
+            LocalDate today = familyTimeZoneService.today(childId);
+            YearMonth month = YearMonth.from(today);
+
+            List<Task> tasks = new ArrayList<>();
+            java.math.BigDecimal[] debit = {java.math.BigDecimal.ZERO};
+            int[] reversed = {0};
+            postReview(
+                    childId,
+                    "Tasks rejected by parent: " + taskIds.size(),
+                    com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT,
+                    transaction -> {
+                        tasks.clear(); // The transaction may be retried
+                        debit[0] = java.math.BigDecimal.ZERO;
+                        reversed[0] = 0;
+                        TaskCounterDelta counters = TaskCounterDelta.none();
+                        for (DocumentSnapshot snapshot :
+                                taskRepository.getAll(transaction, childId, taskIds)) {
+                            Task task = toExistingTask(snapshot, today);
+                            TaskTransition.REJECT.check(task);
+                            if (task.getStatus() == Task.TaskStatus.APPROVED) {
+                                debit[0] =
+                                        debit[0].add(
+                                                values.getOrDefault(
+                                                        snapshot.getId(),
+                                                        java.math.BigDecimal.ZERO));
+                                reversed[0]++;
+                            }
+                            counters.leaving(task);
+                            task.setStatus(Task.TaskStatus.PENDING);
+                            task.setAcknowledged(true); // Logic: Parent acted on it.
+                            counters.entering(task, month);
+                            taskRepository.update(
+                                    transaction, childId, snapshot.getId(), statusFields(task));
+                            tasks.add(task);
+                        }
+                        taskRepository.updateCounters(transaction, childId, counters);
+                        return reversed[0] > 0 ? debit[0] : null;
+                    });
+
+            rejected.put(childId, tasks);
+            rejectedCount += tasks.size();
+            reversedCount += reversed[0];
+            totalReversed = totalReversed.add(debit[0]);
         }
 
-        task.setStatus(Task.TaskStatus.PENDING);
-        task.setAcknowledged(true); // Logic: Parent acted on it.
+        statsService.incrementFamilyStat(parentId, "totalTasksCompleted", -rejectedCount);
+        if (reversedCount > 0) {
+            statsService.incrementFamilyStat(parentId, "totalTasksApproved", -reversedCount);
+            statsService.incrementFamilyStat(
+                    parentId, "totalAllowancePaid", -totalReversed.doubleValue());
+        }
+        return rejected;
+    }
 
-        taskRepository.save(childId, task).get();
+    /** Validates a bulk review request once and returns the children it touches by ID. */
+    private Map<String, User> checkBulkReview(
+            String parentId, Map<String, List<String>> taskIdsByChild)
+            throws ExecutionException, InterruptedException {
+        int total = taskIdsByChild.values().stream().mapToInt(List::size).sum();
+        if (total == 0 || total > MAX_BULK_TASKS) {
+            throw new IllegalArgumentException(
+                    "Between 1 and " + MAX_BULK_TASKS + " tasks can be reviewed at once");
+        }
 
-        // Decrement totalTasksCompleted because it went from PENDING_APPROVAL or APPROVED back to
-        // PENDING
-        statsService.incrementFamilyStat(parentId, "totalTasksCompleted", -1);
+        User parent = userRepository.findByIdSync(parentId);
+        if (parent == null || parent.getRole() != User.Role.PARENT) {
+            throw new IllegalArgumentException("User is not a parent");
+        }
+        Map<String, User> children = new HashMap<>();
+        for (String childId : taskIdsByChild.keySet()) {
+            User child = userRepository.findByIdSync(childId);
+            if (child == null || !parentId.equals(child.getParentId())) {
+                throw new IllegalArgumentException(
+                        "Child not found or does not belong to this parent");
+            }
+            children.put(childId, child);
+        }
+        return children;
+    }
 
-        return task;
+    /** Runs the ledger transaction, surfacing validation failures from inside it unwrapped. */
+    private void postReview(
+            String childId,
+            String description,
+            com.fazquepaga.taskandpay.allowance.Transaction.TransactionType type,
+            com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork work)
+            throws ExecutionException, InterruptedException {
+        try {
+            ledgerService.addTransaction(childId, description, type, work);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException
+                    || e.getCause() instanceof IllegalStateException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
-    private int countRecurringTasks(String userId) throws ExecutionException, InterruptedException {
-        List<Task> tasks = getTasksByUserId(userId);
-        return (int)
-                tasks.stream()
-                        .filter(
-                                task ->
-                                        task.getType() == Task.TaskType.DAILY
-                                                || task.getType() == Task.TaskType.WEEKLY)
-                        .count();
+    /**
+     * Re-reads one task inside the ledger transaction, checks the transition and applies {@code
+     * change}, writing the task and its counters with the entry. {@code change} returns the amount
+     * to post, or null to post nothing.
+     */
+    private Task postTaskChange(
+            String childId,
+            String taskId,
+            String description,
+            com.fazquepaga.taskandpay.allowance.Transaction.TransactionType type,
+            LocalDate today,
+            TaskTransition transition,
+            java.util.function.Function<Task, java.math.BigDecimal> change)
+            throws ExecutionException, InterruptedException {
+        YearMonth month = YearMonth.from(today);
+        Task[] changed = new Task[1];
+        postReview(
+                childId,
+                description,
+                type,
+                transaction -> {
+                    DocumentSnapshot snapshot =
+                            taskRepository.getAll(transaction, childId, List.of(taskId)).get(0);
+                    Task task = toExistingTask(snapshot, today);
+                    transition.check(task);
+                    TaskCounterDelta counters = TaskCounterDelta.none().leaving(task);
+                    java.math.BigDecimal amount = change.apply(task);
+                    counters.entering(task, month); // Before the fields: it stamps approvedMonth
+                    taskRepository.update(transaction, childId, taskId, statusFields(task));
+                    taskRepository.updateCounters(transaction, childId, counters);
+                    changed[0] = task;
+                    return amount;
+                });
+        return changed[0];
+    }
+
+    private Task toExistingTask(DocumentSnapshot snapshot, LocalDate today) {
+        if (!snapshot.exists()) {
+            throw new IllegalArgumentException("Task not found");
+        }
+        return toEffectiveTask(snapshot, today);
+    }
+
+    /** Converts a task document and resolves the status recurring tasks have on the given day. */
+    private Task toEffectiveTask(DocumentSnapshot snapshot, LocalDate today) {
+        return TaskPeriods.resolve(snapshot.toObject(Task.class), today);
+    }
+
+    /** Reads a single task document instead of scanning the child's whole subcollection. */
+    private DocumentSnapshot findTaskSnapshot(String childId, String taskId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = taskRepository.findById(childId, taskId).get();
+        if (snapshot == null || !snapshot.exists()) {
+            throw new IllegalArgumentException("Task not found");
+        }
+        return snapshot;
+    }
+
+    private void commitStatusChange(
+            String childId, DocumentSnapshot snapshot, Task task, TaskCounterDelta counters)
+            throws ExecutionException, InterruptedException {
+        commitChanges(childId, snapshot, statusFields(task), counters);
+    }
+
+    private static Map<String, Object> statusFields(Task task) {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("status", task.getStatus().name());
+        changes.put("acknowledged", task.getAcknowledged());
+        changes.put("aiValidated", task.getAiValidated());
+        changes.put("lastCompletedPeriod", task.getLastCompletedPeriod());
+        changes.put("approvedMonth", task.getApprovedMonth());
+        if (task.getParentId() != null) {
+            changes.put("parentId", task.getParentId());
+        }
+        return changes;
+    }
+
+    /**
+     * Writes the changes, and the counters they affect, only if the task was not modified since it
+     * was read, so concurrent transitions on the same task fail fast instead of being applied
+     * twice.
+     */
+    private void commitChanges(
+            String childId,
+            DocumentSnapshot snapshot,
+            Map<String, Object> changes,
+            TaskCounterDelta counters)
+            throws ExecutionException, InterruptedException {
+        try {
+            taskRepository
+                    .updateIfUnchanged(
+                            childId,
+                            snapshot.getId(),
+                            changes,
+                            snapshot.getUpdateTime(),
+                            counters)
+                    .get();
+        } catch (ExecutionException e) {
+            if (isConcurrentModification(e)) {
+                throw new IllegalStateException("Task was modified concurrently, please retry");
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isConcurrentModification(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException
+                    && apiException.getStatusCode().getCode()
+                            == StatusCode.Code.FAILED_PRECONDITION) {
+                return true;
+            }
+            if (cause instanceof FirestoreException firestoreException
+                    && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode()
+                            == io.grpc.Status.Code.FAILED_PRECONDITION) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the child's task counters: one point read once they have been built. */
+    public TaskCounterSummary getTaskCounters(String childId)
+            throws ExecutionException, InterruptedException {
+        LocalDate today = familyTimeZoneService.today(childId);
+        TaskCounters counters = findCounters(childId, today);
+        return TaskCounterSummary.builder()
+                .recurringCount(counters.getRecurringCount())
+                .pendingApprovalCount(counters.pendingApprovalsOn(today))
+                .approvedThisMonthCount(counters.approvedIn(YearMonth.from(today)))
+                .totalValue(counters.getTotalValue())
+                .build();
     }
 
-    /** Updates the value of a task (used by automatic redistribution). */
-    public void updateTaskValue(String childId, Task task)
+    private TaskCounters findCounters(String childId, LocalDate today)
             throws ExecutionException, InterruptedException {
-        taskRepository.save(childId, task).get();
+        DocumentSnapshot snapshot = taskRepository.findCounters(childId).get();
+        if (TaskCounters.isBuilt(snapshot)) {
+            TaskCounters counters = snapshot.toObject(TaskCounters.class);
+            List<com.google.cloud.firestore.FieldPath> expired = counters.expiredKeys(today);
+            if (!expired.isEmpty()) {
+                // Not awaited: trimming only keeps the document from growing
+                taskRepository.deleteCounterKeys(childId, expired);
+            }
+            return counters;
+        }
+        // Children created before the counters existed, or whose counters are in an older
+        // format, get them from one full scan
+        return taskRepository
+                .rebuildCounters(
+                        childId,
+                        tasks ->
+                                TaskCounters.fromTasks(
+                                        tasks.stream()
+                                                .map(task -> TaskPeriods.resolve(task, today))
+                                                .toList(),
+                                        YearMonth.from(today)))
+                .get();
+    }
+
+    private long countRecurringTasks(String userId)
+            throws ExecutionException, InterruptedException {
+        return findCounters(userId, familyTimeZoneService.today(userId)).getRecurringCount();
+    }
+
+    /**
+     * Writes new values for the given tasks (used by automatic redistribution). Only the value
+     * field is touched, so concurrent status changes are not overwritten. {@code
+     * valueChangesByTaskId} holds how much each new value differs from the old one.
+     */
+    public void updateTaskValues(
+            String childId,
+            Map<String, java.math.BigDecimal> valuesByTaskId,
+            Map<String, java.math.BigDecimal> valueChangesByTaskId)
+            throws ExecutionException, InterruptedException {
+        if (valuesByTaskId.isEmpty()) {
+            return;
+        }
+        taskRepository.updateValues(childId, valuesByTaskId, valueChangesByTaskId).get();
     }
 
     public void deleteTask(String childId, String taskId, String parentId)
@@ -341,18 +954,18 @@ public class TaskService {
             throw new IllegalArgumentException("User is not a parent");
         }
 
-        List<Task> tasks = getAllTasksRaw(childId);
-        Task task =
-                tasks.stream()
-                        .filter(t -> t.getId().equals(taskId))
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("Task not found"));
+        DocumentSnapshot snapshot = findTaskSnapshot(childId, taskId);
+        LocalDate today = familyTimeZoneService.today(childId);
+        Task task = toEffectiveTask(snapshot, today);
 
         if (Boolean.TRUE.equals(task.getArchived())) {
             return; // Already deleted
         }
 
         task.setArchived(true);
-        taskRepository.save(childId, task).get();
+        TaskCounterDelta counters = TaskCounterDelta.none().archived(task);
+        commitChanges(childId, snapshot, Map.of("archived", true), counters);
+        allowanceServiceProvider.get().invalidateAllowancePlan(childId);
+        recalculationWorker.requestRecalculation(childId);
     }
 }
@@ -0,0 +1,270 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.fazquepaga.taskandpay.tasks.dto.TaskChange;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes task changes to connected clients over Server-Sent Events. All clients watching the same
+ * child on this instance share one Firestore snapshot listener, which is removed when the last of
+ * them disconnects.
+ *
+ * <p>Each client gets a "snapshot" event with every active task when it connects, then one "task"
+ * event per changed document. Events are sent from a separate pool so a slow client never blocks
+ * the listener; undelivered changes to the same task are coalesced, and a client that falls too
+ * far behind is disconnected so it reconnects and starts from a fresh snapshot.
+ */
+@Service
+public class TaskStreamService {
+
+    private static final org.slf4j.Logger log =
+            org.slf4j.LoggerFactory.getLogger(TaskStreamService.class);
+
+    static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L; // Clients reconnect after this
+    static final int MAX_PENDING_EVENTS = 500;
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String TASK_EVENT = "task";
+    private static final String SNAPSHOT_KEY = ""; // Never a Firestore document ID
+
+    private final TaskRepository taskRepository;
+    private final FamilyTimeZoneService familyTimeZoneService;
+    private final Map<String, ChildFeed> feeds = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newCachedThreadPool();
+
+    public TaskStreamService(
+            TaskRepository taskRepository, FamilyTimeZoneService familyTimeZoneService) {
+        this.taskRepository = taskRepository;
+        this.familyTimeZoneService = familyTimeZoneService;
+    }
+
+    public SseEmitter subscribe(String childId) throws ExecutionException, InterruptedException {
+        ZoneId zone = familyTimeZoneService.zoneOf(childId);
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(childId, subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(childId, subscriber));
+
+        feeds.compute(
+                childId,
+                (id, feed) -> {
+                    ChildFeed current = feed != null ? feed : new ChildFeed(id, zone);
+                    current.add(subscriber);
+                    return current;
+                });
+        return emitter;
+    }
+
+    /** Number of children with an open Firestore listener on this instance. */
+    int activeFeeds() {
+        return feeds.size();
+    }
+
+    private void unsubscribe(String childId, Subscriber subscriber) {
+        subscriber.close();
+        feeds.computeIfPresent(
+                childId,
+                (id, feed) -> {
+                    feed.remove(subscriber);
+                    if (feed.isEmpty()) {
+                        feed.close();
+                        return null;
+                    }
+                    return feed;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        feeds.values().forEach(ChildFeed::close);
+        feeds.clear();
+        sender.shutdownNow();
+    }
+
+    /** The shared listener for one child and the last known state of its tasks. */
+    private final class ChildFeed implements EventListener<QuerySnapshot> {
+
+        private final String childId;
+        private final ZoneId zone;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final Map<String, Task> tasks = new LinkedHashMap<>(); // Guarded by this
+        private final ListenerRegistration registration;
+        private boolean loaded; // Guarded by this
+
+        ChildFeed(String childId, ZoneId zone) {
+            this.childId = childId;
+            this.zone = zone;
+            this.registration = taskRepository.listenToActiveTasks(childId, this);
+        }
+
+        synchronized void add(Subscriber subscriber) {
+            subscribers.add(subscriber);
+            if (loaded) {
+                subscriber.offer(SNAPSHOT_KEY, snapshotEvent());
+            }
+        }
+
+        void remove(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+        }
+
+        boolean isEmpty() {
+            return subscribers.isEmpty();
+        }
+
+        void close() {
+            registration.remove();
+        }
+
+        @Override
+        public void onEvent(QuerySnapshot snapshot, FirestoreException error) {
+            if (error != null) {
+                // The listener is dead after an error; clients reconnect and open a new one
+                log.warn("Task listener failed for child {}", childId, error);
+                feeds.remove(childId, this);
+                subscribers.forEach(Subscriber::close);
+                return;
+            }
+            synchronized (this) {
+                apply(snapshot);
+            }
+        }
+
+        private void apply(QuerySnapshot snapshot) {
+            LocalDate today = LocalDate.now(zone);
+            List<TaskChange> changes = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot document = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    tasks.remove(document.getId());
+                    changes.add(
+                            TaskChange.builder()
+                                    .type(TaskChange.ChangeType.REMOVED)
+                                    .taskId(document.getId())
+                                    .build());
+                } else {
+                    Task task = TaskPeriods.resolve(document.toObject(Task.class), today);
+                    tasks.put(document.getId(), task);
+                    changes.add(
+                            TaskChange.builder()
+                                    .type(
+                                            change.getType() == DocumentChange.Type.ADDED
+                                                    ? TaskChange.ChangeType.ADDED
+                                                    : TaskChange.ChangeType.MODIFIED)
+                                    .taskId(document.getId())
+                                    .task(task)
+                                    .build());
+                }
+            }
+
+            if (!loaded) {
+                // The first event holds every task; send it as one snapshot
+                loaded = true;
+                PendingEvent event = snapshotEvent();
+                subscribers.forEach(subscriber -> subscriber.offer(SNAPSHOT_KEY, event));
+                return;
+            }
+            for (TaskChange change : changes) {
+                PendingEvent event = new PendingEvent(TASK_EVENT, change);
+                subscribers.forEach(subscriber -> subscriber.offer(change.getTaskId(), event));
+            }
+        }
+
+        private PendingEvent snapshotEvent() {
+            // Recurring tasks turn PENDING at the period boundary without any write
+            LocalDate today = LocalDate.now(zone);
+            tasks.values().forEach(task -> TaskPeriods.resolve(task, today));
+            return new PendingEvent(SNAPSHOT_EVENT, List.copyOf(tasks.values()));
+        }
+    }
+
+    /** Event builders are not thread-safe, so each subscriber builds its own at send time. */
+    private record PendingEvent(String name, Object data) {}
+
+    /** One connected client with its own queue of events not yet written to the connection. */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Map<String, PendingEvent> pending =
+                new LinkedHashMap<>(); // Keyed by task ID, guarded by this
+        private boolean sending; // Guarded by this
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(String key, PendingEvent event) {
+            if (closed) {
+                return;
+            }
+            if (SNAPSHOT_KEY.equals(key)) {
+                pending.clear(); // A snapshot supersedes every earlier change
+            }
+            pending.remove(key);
+            pending.put(key, event);
+            if (pending.size() > MAX_PENDING_EVENTS) {
+                log.warn("Disconnecting slow task stream client");
+                close();
+                return;
+            }
+            if (!sending) {
+                sending = true;
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                PendingEvent event;
+                synchronized (this) {
+                    Iterator<PendingEvent> events = pending.values().iterator();
+                    if (closed || !events.hasNext()) {
+                        sending = false;
+                        return;
+                    }
+                    event = events.next();
+                    events.remove();
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                } catch (IOException | IllegalStateException e) {
+                    close(); // Client went away; completion triggers the unsubscribe
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+            }
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Allowed status transitions for a task. Each transition lists the statuses it may start from; a
+ * task without status is treated as PENDING.
+ */
+enum TaskTransition {
+    COMPLETE(EnumSet.of(Task.TaskStatus.PENDING), "Task is already completed"),
+    APPROVE(
+            EnumSet.of(
+                    Task.TaskStatus.PENDING,
+                    Task.TaskStatus.COMPLETED,
+                    Task.TaskStatus.PENDING_APPROVAL),
+            "Task is already approved"),
+    REJECT(
+            EnumSet.of(Task.TaskStatus.APPROVED, Task.TaskStatus.PENDING_APPROVAL),
+            "Can only reject approved or pending tasks"),
+    SUBMIT_PROOF(
+            EnumSet.of(Task.TaskStatus.PENDING, Task.TaskStatus.PENDING_APPROVAL),
+            "Task is already approved");
+
+    private final Set<Task.TaskStatus> allowedSources;
+    private final String rejectionMessage;
+
+    TaskTransition(Set<Task.TaskStatus> allowedSources, String rejectionMessage) {
+        this.allowedSources = allowedSources;
+        this.rejectionMessage = rejectionMessage;
+    }
+
+    void check(Task task) {
+        Task.TaskStatus current =
+                task.getStatus() != null ? task.getStatus() : Task.TaskStatus.PENDING;
+        if (!allowedSources.contains(current)) {
+            throw new IllegalStateException(rejectionMessage);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateTasksRequest {
+    private Map<String, List<CreateTaskRequest>> tasksByChild; // childId -> tasks to create
+}
@@ -0,0 +1,16 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTaskReviewRequest {
+    private Map<String, List<String>> taskIdsByChild; // childId -> IDs of tasks to review
+}
@@ -0,0 +1,16 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingApproval {
+    private String childId;
+    private Task task;
+}
@@ -0,0 +1,16 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingApprovalPage {
+    private List<PendingApproval> items;
+    private String nextCursor; // Path of the last task read; null when there are no more pages
+}
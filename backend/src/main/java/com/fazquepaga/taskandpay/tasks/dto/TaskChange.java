@@ -0,0 +1,25 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One task delta pushed on the task stream. {@code task} is null when it was removed. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskChange {
+
+    private ChangeType type;
+    private String taskId;
+    private Task task;
+
+    public enum ChangeType {
+        ADDED,
+        MODIFIED,
+        REMOVED // Deleted or archived
+    }
+}
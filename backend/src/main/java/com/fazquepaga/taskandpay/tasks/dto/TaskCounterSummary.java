@@ -0,0 +1,18 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskCounterSummary {
+    private long recurringCount;
+    private long pendingApprovalCount;
+    private long approvedThisMonthCount;
+    private BigDecimal totalValue;
+}
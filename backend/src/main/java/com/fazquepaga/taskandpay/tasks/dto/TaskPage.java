@@ -0,0 +1,17 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskPage {
+    private List<Task> tasks;
+    private String nextCursor; // null when there are no more pages
+}
@@ -0,0 +1,19 @@
+package com.fazquepaga.taskandpay.tasks.dto;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskPageRequest {
+    private Task.TaskStatus status; // Optional server-side status filter
+    private Task.TaskType type; // Optional server-side type filter
+    private boolean archived; // false = active tasks (default), true = archived only
+    private int pageSize;
+    private String cursor; // ID of the last task of the previous page
+}
@@ -1,5 +1,6 @@
 package com.fazquepaga.taskandpay.whatsapp;
 
+import com.fazquepaga.taskandpay.identity.AccessCodeIndex;
 import com.fazquepaga.taskandpay.identity.IdentityService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
@@ -23,6 +24,7 @@ public class WhatsAppService {
     private static final Logger logger = LoggerFactory.getLogger(WhatsAppService.class);
 
     private final IdentityService identityService;
+    private final AccessCodeIndex accessCodeIndex;
     private final UserRepository userRepository;
     private final TaskService taskService;
     private final PubSubTemplate pubSubTemplate;
@@ -30,11 +32,13 @@ public class WhatsAppService {
 
     public WhatsAppService(
             IdentityService identityService,
+            AccessCodeIndex accessCodeIndex,
             UserRepository userRepository,
             TaskService taskService,
             PubSubTemplate pubSubTemplate,
             @Value("${pubsub.topic-name}") String topicName) {
         this.identityService = identityService;
+        this.accessCodeIndex = accessCodeIndex;
         this.userRepository = userRepository;
         this.taskService = taskService;
         this.pubSubTemplate = pubSubTemplate;
@@ -53,8 +57,9 @@ public class WhatsAppService {
 
         String cleanPhoneNumber = fromNumber.replace("whatsapp:", "");
 
-        // If there is a message body, it might be an onboarding code
-        if (messageBody != null && !messageBody.isEmpty()) {
+        // If there is a message body, it might be an onboarding code. Ordinary chat is ruled out
+        // in memory so it does not cost a Firestore read per message.
+        if (messageBody != null && accessCodeIndex.mightContain(messageBody)) {
             try {
                 identityService.completeOnboarding(messageBody, cleanPhoneNumber);
                 logger.info(
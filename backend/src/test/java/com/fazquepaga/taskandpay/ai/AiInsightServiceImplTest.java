@@ -2,23 +2,25 @@ package com.fazquepaga.taskandpay.ai;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.fazquepaga.taskandpay.allowance.Transaction;
-import com.fazquepaga.taskandpay.allowance.TransactionRepository;
+import com.fazquepaga.taskandpay.allowance.LedgerSummary;
+import com.fazquepaga.taskandpay.allowance.LedgerSummaryRepository;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.cloud.firestore.QuerySnapshot;
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.ai.chat.messages.AssistantMessage;
@@ -29,11 +31,10 @@ import org.springframework.ai.chat.prompt.Prompt;
 
 class AiInsightServiceImplTest {
 
-    @Mock private TransactionRepository transactionRepository;
+    @Mock private LedgerSummaryRepository ledgerSummaryRepository;
     @Mock private UserRepository userRepository;
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
     @Mock private ChatModel chatModel;
-    @Mock private QuerySnapshot querySnapshot;
-    @Mock private QueryDocumentSnapshot queryDocumentSnapshot;
 
     private AiInsightServiceImpl aiInsightService;
 
@@ -41,7 +42,8 @@ class AiInsightServiceImplTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         aiInsightService =
-                new AiInsightServiceImpl(transactionRepository, userRepository, chatModel);
+                new AiInsightServiceImpl(
+                        ledgerSummaryRepository, userRepository, familyTimeZoneService, chatModel);
     }
 
     @Test
@@ -51,9 +53,8 @@ class AiInsightServiceImplTest {
         String childId = "child123";
         User child = User.builder().id(childId).name("Maria").balance(BigDecimal.ZERO).build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(transactionRepository.findByChildId(childId)).thenReturn(querySnapshot);
-        when(querySnapshot.getDocuments()).thenReturn(new ArrayList<>());
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(ledgerSummaryRepository.findOrRebuild(childId)).thenReturn(LedgerSummary.empty());
 
         // Act
         String insight = aiInsightService.getInsights(childId);
@@ -73,33 +74,17 @@ class AiInsightServiceImplTest {
         User child =
                 User.builder().id(childId).name("Maria").balance(new BigDecimal("70.00")).build();
 
-        Transaction transaction1 =
-                Transaction.builder()
-                        .id("tx1")
-                        .childId(childId)
-                        .amount(new BigDecimal("50.00"))
-                        .description("Limpou o quarto")
-                        .date(Instant.now())
-                        .type(Transaction.TransactionType.CREDIT)
+        LedgerSummary summary =
+                LedgerSummary.builder()
+                        .totalCredits(new BigDecimal("100.00"))
+                        .totalDebits(new BigDecimal("30.00"))
+                        .transactionCount(2)
+                        .lastActivity(Instant.parse("2024-03-02T01:00:00Z"))
                         .build();
 
-        Transaction transaction2 =
-                Transaction.builder()
-                        .id("tx2")
-                        .childId(childId)
-                        .amount(new BigDecimal("30.00"))
-                        .description("Comprou um brinquedo")
-                        .date(Instant.now())
-                        .type(Transaction.TransactionType.DEBIT)
-                        .build();
-
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(transactionRepository.findByChildId(childId)).thenReturn(querySnapshot);
-        when(querySnapshot.getDocuments())
-                .thenReturn(List.of(queryDocumentSnapshot, queryDocumentSnapshot));
-        when(queryDocumentSnapshot.toObject(Transaction.class))
-                .thenReturn(transaction1)
-                .thenReturn(transaction2);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(ledgerSummaryRepository.findOrRebuild(childId)).thenReturn(summary);
+        when(familyTimeZoneService.zoneOf(childId)).thenReturn(ZoneId.of("America/Sao_Paulo"));
 
         String aiResponse = "Parabéns Maria! Você economizou 70% do que ganhou. Continue assim! 🎉";
         Generation generation = new Generation(new AssistantMessage(aiResponse));
@@ -112,6 +97,13 @@ class AiInsightServiceImplTest {
         // Assert
         assertNotNull(insight);
         assertEquals(aiResponse, insight);
+        ArgumentCaptor<Prompt> prompt = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel).call(prompt.capture());
+        String contents = prompt.getValue().getContents();
+        assertTrue(contents.contains("Total ganho: R$ 100.00"));
+        assertTrue(contents.contains("Taxa de economia: 70%"));
+        // 01:00 UTC on the 2nd is still the 1st in the family's zone
+        assertTrue(contents.contains("Última movimentação: 2024-03-01"));
     }
 
     @Test
@@ -119,7 +111,7 @@ class AiInsightServiceImplTest {
             throws ExecutionException, InterruptedException {
         // Arrange
         String childId = "nonexistent";
-        when(userRepository.findByIdSync(anyString())).thenReturn(null);
+        when(userRepository.findByIdFresh(anyString())).thenReturn(null);
 
         // Act
         String insight = aiInsightService.getInsights(childId);
@@ -132,7 +124,7 @@ class AiInsightServiceImplTest {
     void shouldReturnErrorMessageOnException() throws ExecutionException, InterruptedException {
         // Arrange
         String childId = "child123";
-        when(userRepository.findByIdSync(childId))
+        when(userRepository.findByIdFresh(childId))
                 .thenThrow(new ExecutionException("Firestore error", new RuntimeException()));
 
         // Act
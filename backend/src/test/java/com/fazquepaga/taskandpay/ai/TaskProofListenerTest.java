@@ -6,15 +6,14 @@ import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fazquepaga.taskandpay.tasks.Task;
-import com.fazquepaga.taskandpay.tasks.TaskRepository;
+import com.fazquepaga.taskandpay.tasks.TaskService;
 import com.fazquepaga.taskandpay.whatsapp.events.ProofSubmittedEvent;
-import com.google.api.core.ApiFutures;
-import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.spring.pubsub.support.BasicAcknowledgeablePubsubMessage;
 import com.google.cloud.spring.pubsub.support.GcpPubSubHeaders;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -29,14 +28,12 @@ class TaskProofListenerTest {
 
     @Mock private AiValidator aiValidator;
 
-    @Mock private TaskRepository taskRepository;
+    @Mock private TaskService taskService;
 
     @Mock private Message<?> message;
 
     @Mock private BasicAcknowledgeablePubsubMessage pubsubMessage;
 
-    @Mock private DocumentSnapshot documentSnapshot;
-
     private TaskProofListener taskProofListener;
 
     private MessageHandler messageHandler;
@@ -44,7 +41,7 @@ class TaskProofListenerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        taskProofListener = new TaskProofListener(objectMapper, aiValidator, taskRepository);
+        taskProofListener = new TaskProofListener(objectMapper, aiValidator, taskService);
         messageHandler = taskProofListener.proofMessageReceiver();
     }
 
@@ -80,22 +77,17 @@ class TaskProofListenerTest {
         doReturn(payload.getBytes()).when(message).getPayload();
         when(message.getHeaders()).thenReturn(new MessageHeaders(headers));
         when(objectMapper.readValue(payload, ProofSubmittedEvent.class)).thenReturn(event);
-        when(taskRepository.findById(childId, taskId))
-                .thenReturn(ApiFutures.immediateFuture(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockSubmitProof(childId, taskId, task);
         when(aiValidator.validateTaskCompletionImage(any(byte[].class), eq("Clean room")))
                 .thenReturn(true);
-        when(taskRepository.save(eq(childId), any(Task.class)))
-                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         messageHandler.handleMessage(message);
 
         // Then
         verify(objectMapper).readValue(payload, ProofSubmittedEvent.class);
-        verify(taskRepository).findById(childId, taskId);
         verify(aiValidator).validateTaskCompletionImage(any(byte[].class), eq("Clean room"));
-        verify(taskRepository).save(eq(childId), any(Task.class));
+        verify(taskService).submitProof(eq(childId), eq(taskId), any());
         verify(pubsubMessage).ack();
     }
 
@@ -118,15 +110,13 @@ class TaskProofListenerTest {
         doReturn(payload.getBytes()).when(message).getPayload();
         when(message.getHeaders()).thenReturn(new MessageHeaders(headers));
         when(objectMapper.readValue(payload, ProofSubmittedEvent.class)).thenReturn(event);
-        when(taskRepository.findById(childId, taskId))
-                .thenReturn(ApiFutures.immediateFuture(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(null);
+        when(taskService.submitProof(eq(childId), eq(taskId), any())).thenReturn(null);
 
         // When
         messageHandler.handleMessage(message);
 
         // Then
-        verify(taskRepository).findById(childId, taskId);
+        verify(taskService).submitProof(eq(childId), eq(taskId), any());
         verify(aiValidator, never()).validateTaskCompletionImage(any(), any());
         verify(pubsubMessage).ack();
     }
@@ -163,20 +153,40 @@ class TaskProofListenerTest {
         doReturn(payload.getBytes()).when(message).getPayload();
         when(message.getHeaders()).thenReturn(new MessageHeaders(headers));
         when(objectMapper.readValue(payload, ProofSubmittedEvent.class)).thenReturn(event);
-        when(taskRepository.findById(childId, taskId))
-                .thenReturn(ApiFutures.immediateFuture(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockSubmitProof(childId, taskId, task);
         when(aiValidator.validateTaskCompletionImage(any(byte[].class), eq("Do homework")))
                 .thenReturn(false);
-        when(taskRepository.save(eq(childId), any(Task.class)))
-                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         messageHandler.handleMessage(message);
 
         // Then
         verify(aiValidator).validateTaskCompletionImage(any(byte[].class), eq("Do homework"));
-        verify(taskRepository).save(eq(childId), any(Task.class));
+        assertFalse(task.getAiValidated());
+        verify(pubsubMessage).ack();
+    }
+
+    @Test
+    void shouldAckMessageWhenTaskWasAlreadyApproved() throws Exception {
+        // Given
+        String childId = "child-123";
+        String taskId = "task-456";
+        String payload = "{\"childId\":\"" + childId + "\",\"taskId\":\"" + taskId + "\"}";
+        ProofSubmittedEvent event = new ProofSubmittedEvent(childId, taskId, "url");
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(GcpPubSubHeaders.ORIGINAL_MESSAGE, pubsubMessage);
+
+        doReturn(payload.getBytes()).when(message).getPayload();
+        when(message.getHeaders()).thenReturn(new MessageHeaders(headers));
+        when(objectMapper.readValue(payload, ProofSubmittedEvent.class)).thenReturn(event);
+        when(taskService.submitProof(eq(childId), eq(taskId), any()))
+                .thenThrow(new IllegalStateException("Task is already approved"));
+
+        // When
+        messageHandler.handleMessage(message);
+
+        // Then: a redelivery could not succeed either
         verify(pubsubMessage).ack();
     }
 
@@ -198,7 +208,19 @@ class TaskProofListenerTest {
 
         // Then
         verify(objectMapper).readValue(invalidPayload, ProofSubmittedEvent.class);
-        verify(taskRepository, never()).findById(any(), any());
+        verify(taskService, never()).submitProof(any(), any(), any());
         verify(pubsubMessage).ack();
     }
+
+    /** Records the proof the way TaskService does, running the validator on the stored task. */
+    private void mockSubmitProof(String childId, String taskId, Task task) throws Exception {
+        when(taskService.submitProof(eq(childId), eq(taskId), any()))
+                .thenAnswer(
+                        invocation -> {
+                            Predicate<Task> validator = invocation.getArgument(2);
+                            task.setAiValidated(validator.test(task));
+                            task.setStatus(Task.TaskStatus.PENDING_APPROVAL);
+                            return task;
+                        });
+    }
 }
@@ -0,0 +1,150 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import com.fazquepaga.taskandpay.tasks.Task;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Values every task of a child with the previous calculator (one month total per task, day walk
+ * per weekly task, {@link BigDecimal} throughout) and with {@link AllowanceCalculatorImpl}.
+ *
+ * <p>Run with {@code ./mvnw test-compile exec:exec -Dexec.executable=java
+ * -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.openjdk.jmh.Main
+ * AllowanceCalculatorBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllowanceCalculatorBenchmark {
+
+    private static final YearMonth MONTH = YearMonth.of(2024, 2);
+    private static final BigDecimal ALLOWANCE = new BigDecimal("250.00");
+
+    @Param({"10", "100", "1000"})
+    public int taskCount;
+
+    private List<Task> tasks;
+    private final LegacyAllowanceCalculator legacy = new LegacyAllowanceCalculator();
+    private final AllowanceCalculatorImpl calculator = new AllowanceCalculatorImpl();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Task.TaskType[] types = Task.TaskType.values();
+        Task.TaskWeight[] weights = Task.TaskWeight.values();
+        tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(
+                    Task.builder()
+                            .id("task-" + i)
+                            .type(types[random.nextInt(types.length)])
+                            .weight(weights[random.nextInt(weights.length)])
+                            .dayOfWeek(random.nextInt(7) + 1)
+                            .build());
+        }
+    }
+
+    @Benchmark
+    public void legacyPerTask(Blackhole blackhole) {
+        for (Task task : tasks) {
+            blackhole.consume(legacy.calculateTaskValue(task, ALLOWANCE, tasks, MONTH));
+        }
+    }
+
+    @Benchmark
+    public void currentPerTask(Blackhole blackhole) {
+        for (Task task : tasks) {
+            blackhole.consume(calculator.calculateTaskValue(task, ALLOWANCE, tasks, MONTH));
+        }
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> currentAllTasks() {
+        return calculator.calculateTaskValues(tasks, ALLOWANCE, tasks, MONTH);
+    }
+
+    /** The calculator as it was before the integer rewrite, kept as the baseline. */
+    static class LegacyAllowanceCalculator {
+
+        BigDecimal calculateTaskValue(
+                Task task, BigDecimal monthlyAllowance, List<Task> allTasks, YearMonth yearMonth) {
+            long totalPointsPossible = calculateTotalPointsPossible(allTasks, yearMonth);
+            if (totalPointsPossible == 0) {
+                return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_EVEN);
+            }
+            BigDecimal valuePerPoint =
+                    monthlyAllowance.divide(
+                            BigDecimal.valueOf(totalPointsPossible), 4, RoundingMode.HALF_EVEN);
+            return valuePerPoint
+                    .multiply(BigDecimal.valueOf(getPointsForWeight(task.getWeight())))
+                    .setScale(2, RoundingMode.HALF_EVEN);
+        }
+
+        long calculateTotalPointsPossible(List<Task> tasks, YearMonth yearMonth) {
+            long totalPoints = 0;
+            for (Task t : tasks) {
+                long occurrences = 0;
+                switch (t.getType()) {
+                    case DAILY:
+                        occurrences = yearMonth.lengthOfMonth();
+                        break;
+                    case WEEKLY:
+                        occurrences = countDayOfWeekInMonth(t.getDayOfWeek(), yearMonth);
+                        break;
+                    case ONE_TIME:
+                        occurrences = 1;
+                        break;
+                }
+                totalPoints += getPointsForWeight(t.getWeight()) * occurrences;
+            }
+            return totalPoints;
+        }
+
+        int getPointsForWeight(Task.TaskWeight weight) {
+            switch (weight) {
+                case LOW:
+                    return 1;
+                case MEDIUM:
+                    return 5;
+                case HIGH:
+                    return 20;
+                default:
+                    return 0;
+            }
+        }
+
+        long countDayOfWeekInMonth(int dayOfWeekIso, YearMonth yearMonth) {
+            long count = 0;
+            LocalDate date = yearMonth.atDay(1);
+            for (int i = 0; i < yearMonth.lengthOfMonth(); i++) {
+                if (date.getDayOfWeek().getValue() == dayOfWeekIso) {
+                    count++;
+                }
+                date = date.plusDays(1);
+            }
+            return count;
+        }
+    }
+}
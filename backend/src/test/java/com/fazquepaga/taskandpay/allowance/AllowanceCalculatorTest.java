@@ -8,6 +8,7 @@ import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -223,4 +224,43 @@ class AllowanceCalculatorTest {
                 new BigDecimal("3.33"),
                 calculator.calculateTaskValue(daily, allowance, tasks, nov2023));
     }
+
+    @Test
+    void calculateTaskValues_MatchesSingleTaskValues() {
+        YearMonth nov2023 = YearMonth.of(2023, 11);
+        BigDecimal allowance = new BigDecimal("100.00");
+        Task daily =
+                Task.builder()
+                        .id("daily")
+                        .type(Task.TaskType.DAILY)
+                        .weight(Task.TaskWeight.LOW)
+                        .build();
+        Task weekly =
+                Task.builder()
+                        .id("weekly")
+                        .type(Task.TaskType.WEEKLY)
+                        .weight(Task.TaskWeight.HIGH)
+                        .dayOfWeek(3)
+                        .build();
+        List<Task> tasks = Arrays.asList(daily, weekly);
+        // Total points = 30 + 20 * 5 = 130
+
+        Map<String, BigDecimal> values =
+                calculator.calculateTaskValues(tasks, allowance, tasks, nov2023);
+
+        assertEquals(new BigDecimal("0.77"), values.get("daily"));
+        assertEquals(new BigDecimal("15.38"), values.get("weekly"));
+        assertEquals(
+                calculator.calculateTaskValue(weekly, allowance, tasks, nov2023),
+                values.get("weekly"));
+    }
+
+    @Test
+    void countDaysOfWeek_LeapFebruaryStartingOnThursday() {
+        int[] counts = AllowanceCalculatorImpl.countDaysOfWeek(YearMonth.of(2024, 2));
+
+        assertEquals(5, counts[4]); // Thursday
+        assertEquals(4, counts[5]); // Friday
+        assertEquals(29, Arrays.stream(counts).sum());
+    }
 }
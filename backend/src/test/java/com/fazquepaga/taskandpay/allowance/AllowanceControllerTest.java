@@ -2,6 +2,7 @@ package com.fazquepaga.taskandpay.allowance;
 
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -28,6 +29,8 @@ class AllowanceControllerTest {
 
     @MockitoBean private WithdrawalService withdrawalService;
 
+    @MockitoBean private LedgerExportService ledgerExportService;
+
     @MockitoBean private com.fazquepaga.taskandpay.identity.IdentityService identityService;
 
     @MockitoBean private com.fazquepaga.taskandpay.identity.UserRepository userRepository;
@@ -104,19 +107,38 @@ class AllowanceControllerTest {
     }
 
     @Test
-    void shouldGetLedgerInsights() throws Exception {
+    void shouldGetLedgerPageWithCursorHeader() throws Exception {
         // Given
         String childId = "child-id";
         String parentId = "parent-id";
-        String aiInsight = "Parabéns! Você está economizando muito bem! 🎉";
-
         LedgerResponse response =
                 LedgerResponse.builder()
-                        .transactions(List.of())
+                        .transactions(List.of(Transaction.builder().id("tx-2").build()))
                         .balance(BigDecimal.valueOf(50.0))
+                        .nextCursor("tx-2")
                         .build();
 
-        when(ledgerService.getTransactions(childId, parentId)).thenReturn(response);
+        when(ledgerService.getTransactionsPage(childId, parentId, 1, null)).thenReturn(response);
+
+        setAuthentication(parentId, com.fazquepaga.taskandpay.identity.User.Role.PARENT);
+
+        // When & Then
+        mockMvc.perform(
+                        get("/api/v1/allowance/children/{childId}/ledger", childId)
+                                .param("page_size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "tx-2"))
+                .andExpect(jsonPath("$.transactions[0].id").value("tx-2"))
+                .andExpect(jsonPath("$.nextCursor").value("tx-2"));
+    }
+
+    @Test
+    void shouldGetLedgerInsights() throws Exception {
+        // Given
+        String childId = "child-id";
+        String parentId = "parent-id";
+        String aiInsight = "Parabéns! Você está economizando muito bem! 🎉";
+
         when(ledgerService.getInsights(childId)).thenReturn(aiInsight);
 
         setAuthentication(parentId, com.fazquepaga.taskandpay.identity.User.Role.PARENT);
@@ -127,6 +149,47 @@ class AllowanceControllerTest {
                                 .param("parent_id", parentId))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.insight").value(aiInsight));
+        // Ownership is checked once
+        org.mockito.Mockito.verify(identityService).getChild(childId, parentId);
+        org.mockito.Mockito.verify(ledgerService, org.mockito.Mockito.never())
+                .getChild(childId, parentId);
+    }
+
+    @Test
+    void shouldExportChildsOwnLedgerWithTheirName() throws Exception {
+        // Given: the authenticated principal only carries the token claims
+        String childId = "child-id";
+        com.fazquepaga.taskandpay.identity.User child =
+                com.fazquepaga.taskandpay.identity.User.builder()
+                        .id(childId)
+                        .name("Ana")
+                        .role(com.fazquepaga.taskandpay.identity.User.Role.CHILD)
+                        .parentId("parent-id")
+                        .build();
+        when(identityService.getUserById(childId)).thenReturn(child);
+        when(ledgerExportService.export(
+                        org.mockito.ArgumentMatchers.eq("parent-id"),
+                        org.mockito.ArgumentMatchers.eq(java.util.List.of(child)),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.anyBoolean()))
+                .thenReturn(outputStream -> {});
+
+        setAuthentication(
+                childId, com.fazquepaga.taskandpay.identity.User.Role.CHILD, "parent-id");
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/allowance/ledger/export")).andExpect(status().isOk());
+        org.mockito.Mockito.verify(ledgerExportService)
+                .export(
+                        org.mockito.ArgumentMatchers.eq("parent-id"),
+                        org.mockito.ArgumentMatchers.argThat(
+                                children -> "Ana".equals(children.get(0).getName())),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.any(),
+                        org.mockito.ArgumentMatchers.anyBoolean());
     }
 
     @Test
@@ -4,15 +4,20 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.fazquepaga.taskandpay.tasks.Task;
 import com.fazquepaga.taskandpay.tasks.TaskService;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentSnapshot;
 import java.math.BigDecimal;
 import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,12 +32,30 @@ class AllowanceServiceTest {
 
     @Mock private AllowanceCalculator allowanceCalculator;
 
+    @Mock private AllowancePlanRepository allowancePlanRepository;
+
+    @Mock private DocumentSnapshot planDocument;
+
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
     private AllowanceService allowanceService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
-        allowanceService = new AllowanceService(allowanceCalculator, taskService, userRepository);
+        when(allowancePlanRepository.find(anyString()))
+                .thenReturn(ApiFutures.immediateFuture(planDocument));
+        when(allowancePlanRepository.saveIfCurrent(anyString(), any())).thenReturn(true);
+        when(familyTimeZoneService.zoneOf(anyString())).thenReturn(ZoneId.systemDefault());
+        allowanceService =
+                new AllowanceService(
+                        allowanceCalculator,
+                        taskService,
+                        userRepository,
+                        allowancePlanRepository,
+                        familyTimeZoneService,
+                        30,
+                        10000);
     }
 
     @Test
@@ -118,9 +141,9 @@ class AllowanceServiceTest {
 
         when(userRepository.findByIdSync(childId)).thenReturn(child);
         when(taskService.getTasksByUserId(childId)).thenReturn(tasks);
-        when(allowanceCalculator.calculateTaskValue(
-                        task, child.getMonthlyAllowance(), tasks, YearMonth.now()))
-                .thenReturn(new BigDecimal("10.00"));
+        when(allowanceCalculator.calculateTaskValues(
+                        tasks, child.getMonthlyAllowance(), tasks, YearMonth.now()))
+                .thenReturn(Map.of(taskId, new BigDecimal("10.00")));
 
         // When
         BigDecimal taskValue = allowanceService.calculateValueForTask(childId, taskId);
@@ -129,6 +152,126 @@ class AllowanceServiceTest {
         assertEquals(new BigDecimal("10.00"), taskValue);
     }
 
+    @Test
+    void testCalculateValueForTaskUsesTheFamilysMonth()
+            throws ExecutionException, InterruptedException {
+        // Given: a family whose month can differ from the server's
+        String childId = "child1";
+        ZoneId familyZone = ZoneId.of("Pacific/Kiritimati");
+        User child = User.builder().id(childId).monthlyAllowance(new BigDecimal("100.00")).build();
+        Task task = Task.builder().id("task1").type(Task.TaskType.DAILY).build();
+        List<Task> tasks = Collections.singletonList(task);
+
+        when(familyTimeZoneService.zoneOf(childId)).thenReturn(familyZone);
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(taskService.getTasksByUserId(childId)).thenReturn(tasks);
+        when(allowanceCalculator.calculateTaskValues(
+                        tasks, child.getMonthlyAllowance(), tasks, YearMonth.now(familyZone)))
+                .thenReturn(Map.of("task1", new BigDecimal("10.00")));
+
+        // When
+        BigDecimal taskValue = allowanceService.calculateValueForTask(childId, "task1");
+
+        // Then
+        assertEquals(new BigDecimal("10.00"), taskValue);
+    }
+
+    @Test
+    void testCalculateValueForTaskReusesCachedPlan()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child1";
+        User child = User.builder().id(childId).monthlyAllowance(new BigDecimal("100.00")).build();
+        List<Task> tasks =
+                Arrays.asList(
+                        Task.builder().id("task1").type(Task.TaskType.DAILY).build(),
+                        Task.builder().id("task2").type(Task.TaskType.DAILY).build());
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(taskService.getTasksByUserId(childId)).thenReturn(tasks);
+        when(allowanceCalculator.calculateTaskValues(
+                        tasks, child.getMonthlyAllowance(), tasks, YearMonth.now()))
+                .thenReturn(
+                        Map.of("task1", new BigDecimal("10.00"), "task2", new BigDecimal("5.00")));
+
+        // When
+        allowanceService.calculateValueForTask(childId, "task1");
+        BigDecimal taskValue = allowanceService.calculateValueForTask(childId, "task2");
+
+        // Then: the child and its tasks are read once
+        assertEquals(new BigDecimal("5.00"), taskValue);
+        verify(taskService, times(1)).getTasksByUserId(childId);
+        verify(userRepository, times(1)).findByIdSync(childId);
+    }
+
+    @Test
+    void testCalculateValueForTaskUsesStoredPlan() throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child1";
+        when(planDocument.exists()).thenReturn(true);
+        when(planDocument.toObject(AllowancePlan.class))
+                .thenReturn(
+                        AllowancePlan.builder()
+                                .version(3L)
+                                .planVersion(3L)
+                                .month(YearMonth.now().toString())
+                                .taskValues(Map.of("task1", new BigDecimal("7.50")))
+                                .build());
+
+        // When
+        BigDecimal taskValue = allowanceService.calculateValueForTask(childId, "task1");
+
+        // Then
+        assertEquals(new BigDecimal("7.50"), taskValue);
+        verifyNoInteractions(taskService, userRepository);
+    }
+
+    @Test
+    void testCalculateValueForTaskRebuildsInvalidatedPlan()
+            throws ExecutionException, InterruptedException {
+        // Given: the stored plan was computed before version 4
+        String childId = "child1";
+        User child = User.builder().id(childId).monthlyAllowance(new BigDecimal("100.00")).build();
+        Task task = Task.builder().id("task1").type(Task.TaskType.DAILY).build();
+        List<Task> tasks = Collections.singletonList(task);
+        when(planDocument.exists()).thenReturn(true);
+        when(planDocument.getLong("version")).thenReturn(4L);
+        when(planDocument.toObject(AllowancePlan.class))
+                .thenReturn(
+                        AllowancePlan.builder()
+                                .version(4L)
+                                .planVersion(3L)
+                                .month(YearMonth.now().toString())
+                                .taskValues(Map.of("task1", new BigDecimal("7.50")))
+                                .build());
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(taskService.getTasksByUserId(childId)).thenReturn(tasks);
+        when(allowanceCalculator.calculateTaskValues(
+                        tasks, child.getMonthlyAllowance(), tasks, YearMonth.now()))
+                .thenReturn(Map.of("task1", new BigDecimal("10.00")));
+
+        // When
+        BigDecimal taskValue = allowanceService.calculateValueForTask(childId, "task1");
+
+        // Then
+        assertEquals(new BigDecimal("10.00"), taskValue);
+        verify(allowancePlanRepository)
+                .saveIfCurrent(eq(childId), argThat(plan -> plan.getPlanVersion() == 4L));
+    }
+
+    @Test
+    void testInvalidateAllowancePlan() throws ExecutionException, InterruptedException {
+        // Given
+        when(allowancePlanRepository.invalidate("child1"))
+                .thenReturn(ApiFutures.immediateFuture(null));
+
+        // When
+        allowanceService.invalidateAllowancePlan("child1");
+
+        // Then
+        verify(allowancePlanRepository).invalidate("child1");
+    }
+
     @Test
     void testCalculateValueForTaskChildNotFound() throws ExecutionException, InterruptedException {
         // Given
@@ -171,9 +314,18 @@ class AllowanceServiceTest {
         // Given
         String childId = "child1";
         User child = User.builder().id(childId).monthlyAllowance(new BigDecimal("100.00")).build();
-        Task task1 = Task.builder().type(Task.TaskType.DAILY).weight(Task.TaskWeight.LOW).build();
+        Task task1 =
+                Task.builder()
+                        .id("task1")
+                        .type(Task.TaskType.DAILY)
+                        .weight(Task.TaskWeight.LOW)
+                        .build();
         Task task2 =
-                Task.builder().type(Task.TaskType.WEEKLY).weight(Task.TaskWeight.MEDIUM).build();
+                Task.builder()
+                        .id("task2")
+                        .type(Task.TaskType.WEEKLY)
+                        .weight(Task.TaskWeight.MEDIUM)
+                        .build();
         List<Task> tasks = Arrays.asList(task1, task2);
 
         when(userRepository.findByIdSync(childId)).thenReturn(child);
@@ -182,8 +334,53 @@ class AllowanceServiceTest {
         // When
         allowanceService.recalculateTaskValues(childId);
 
+        // Then: 30 + 8 points share 100.00
+        verify(taskService, times(1))
+                .updateTaskValues(
+                        eq(childId),
+                        eq(
+                                Map.of(
+                                        "task1", new BigDecimal("78.95"),
+                                        "task2", new BigDecimal("21.05"))),
+                        eq(
+                                Map.of(
+                                        "task1", new BigDecimal("78.95"),
+                                        "task2", new BigDecimal("21.05"))));
+    }
+
+    @Test
+    void testRecalculateTaskValuesWritesOnlyChangedTasks()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child1";
+        User child = User.builder().id(childId).monthlyAllowance(new BigDecimal("100.00")).build();
+        Task unchanged =
+                Task.builder()
+                        .id("task1")
+                        .type(Task.TaskType.DAILY)
+                        .weight(Task.TaskWeight.LOW)
+                        .value(new BigDecimal("78.950"))
+                        .build();
+        Task changed =
+                Task.builder()
+                        .id("task2")
+                        .type(Task.TaskType.WEEKLY)
+                        .weight(Task.TaskWeight.MEDIUM)
+                        .value(BigDecimal.ZERO)
+                        .build();
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(taskService.getTasksByUserId(childId)).thenReturn(Arrays.asList(unchanged, changed));
+
+        // When
+        allowanceService.recalculateTaskValues(childId);
+
         // Then
-        verify(taskService, times(2)).updateTaskValue(eq(childId), any(Task.class));
+        verify(taskService)
+                .updateTaskValues(
+                        eq(childId),
+                        eq(Map.of("task2", new BigDecimal("21.05"))),
+                        eq(Map.of("task2", new BigDecimal("21.05"))));
     }
 
     @Test
@@ -196,7 +393,7 @@ class AllowanceServiceTest {
         allowanceService.recalculateTaskValues(childId);
 
         // Then
-        verify(taskService, never()).updateTaskValue(any(), any());
+        verify(taskService, never()).updateTaskValues(any(), any(), any());
     }
 
     @Test
@@ -211,7 +408,7 @@ class AllowanceServiceTest {
         allowanceService.recalculateTaskValues(childId);
 
         // Then
-        verify(taskService, never()).updateTaskValue(any(), any());
+        verify(taskService, never()).updateTaskValues(any(), any(), any());
     }
 
     @Test
@@ -226,7 +423,7 @@ class AllowanceServiceTest {
         allowanceService.recalculateTaskValues(childId);
 
         // Then
-        verify(taskService, never()).updateTaskValue(any(), any());
+        verify(taskService, never()).updateTaskValues(any(), any(), any());
     }
 
     @Test
@@ -244,7 +441,7 @@ class AllowanceServiceTest {
         allowanceService.recalculateTaskValues(childId);
 
         // Then
-        verify(taskService, times(1)).updateTaskValue(eq(childId), any(Task.class));
+        verify(taskService, times(1)).updateTaskValues(eq(childId), anyMap(), any());
     }
 
     @Test
@@ -262,6 +459,6 @@ class AllowanceServiceTest {
         allowanceService.recalculateTaskValues(childId);
 
         // Then
-        verify(taskService, times(1)).updateTaskValue(eq(childId), any(Task.class));
+        verify(taskService, times(1)).updateTaskValues(eq(childId), anyMap(), any());
     }
 }
@@ -0,0 +1,200 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fazquepaga.taskandpay.giftcard.GiftCardTransaction;
+import com.fazquepaga.taskandpay.giftcard.GiftCardTransactionRepository;
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class BalanceReconciliationServiceTest {
+
+    private static final String CHILD_ID = "child-1";
+    private static final Instant THROUGH = Instant.parse("2024-06-01T00:00:00Z");
+
+    @Mock private UserRepository userRepository;
+    @Mock private TransactionRepository transactionRepository;
+    @Mock private GiftCardTransactionRepository giftCardTransactionRepository;
+    @Mock private BalanceReconciliationRepository reconciliationRepository;
+    @Mock private Firestore firestore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(reconciliationRepository.save(eq(CHILD_ID), any()))
+                .thenReturn(ApiFutures.immediateFuture(null));
+    }
+
+    private BalanceReconciliationService service(boolean repair) {
+        return new BalanceReconciliationService(
+                userRepository,
+                transactionRepository,
+                giftCardTransactionRepository,
+                reconciliationRepository,
+                firestore,
+                new SimpleMeterRegistry(),
+                200,
+                2,
+                2,
+                300,
+                repair);
+    }
+
+    private static QueryDocumentSnapshot entry(Transaction.TransactionType type, String amount) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.toObject(Transaction.class))
+                .thenReturn(
+                        Transaction.builder().type(type).amount(new BigDecimal(amount)).build());
+        return document;
+    }
+
+    private static QuerySnapshot snapshot(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    private static Query query(QuerySnapshot result) {
+        Query query = mock(Query.class);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(result));
+        return query;
+    }
+
+    @Test
+    void shouldFoldOnlyEntriesSinceTheLastRun() throws Exception {
+        // Given: 40.00 reconciled before, 15.00 credited and 5.00 debited since
+        Instant previous = Instant.parse("2024-05-01T00:00:00Z");
+        when(reconciliationRepository.find(CHILD_ID))
+                .thenReturn(
+                        BalanceReconciliation.builder()
+                                .reconciledThrough(previous)
+                                .ledgerTotal(new BigDecimal("40.00"))
+                                .build());
+        QueryDocumentSnapshot credit = entry(Transaction.TransactionType.TASK_EARNING, "15.00");
+        QueryDocumentSnapshot debit = entry(Transaction.TransactionType.WITHDRAWAL, "5.00");
+        QuerySnapshot fullPage = snapshot(credit, debit);
+        QuerySnapshot lastPage = snapshot();
+        when(transactionRepository.findRangePageByChildId(CHILD_ID, previous, THROUGH, 2, null))
+                .thenReturn(fullPage);
+        when(transactionRepository.findRangePageByChildId(CHILD_ID, previous, THROUGH, 2, debit))
+                .thenReturn(lastPage);
+        Query recent = query(snapshot());
+        when(transactionRepository.rangeByChildId(CHILD_ID, THROUGH, null)).thenReturn(recent);
+        Query giftCards = query(snapshot());
+        when(giftCardTransactionRepository.completedByChildId(CHILD_ID)).thenReturn(giftCards);
+        when(userRepository.findByIdFresh(CHILD_ID))
+                .thenReturn(User.builder().id(CHILD_ID).balance(new BigDecimal("50")).build());
+
+        // When
+        BalanceReconciliation result = service(false).reconcile(CHILD_ID, THROUGH);
+
+        // Then
+        assertEquals(0, result.getDrift().signum());
+        assertEquals(0, new BigDecimal("50.00").compareTo(result.getLedgerTotal()));
+        assertEquals(THROUGH, result.getReconciledThrough());
+        verify(reconciliationRepository).save(CHILD_ID, result);
+        verify(firestore, never()).runTransaction(any());
+    }
+
+    @Test
+    void shouldConfirmAndRepairDriftInATransaction() throws Exception {
+        // Given: the ledger says 20.00 and a 5.00 gift card was issued, but the balance is 30.00
+        when(reconciliationRepository.find(CHILD_ID)).thenReturn(null);
+        QueryDocumentSnapshot credit = entry(Transaction.TransactionType.CREDIT, "20.00");
+        QuerySnapshot page = snapshot(credit);
+        when(transactionRepository.findRangePageByChildId(CHILD_ID, null, THROUGH, 2, null))
+                .thenReturn(page);
+        QuerySnapshot noRecent = snapshot();
+        Query recent = query(noRecent);
+        when(transactionRepository.rangeByChildId(CHILD_ID, THROUGH, null)).thenReturn(recent);
+        QueryDocumentSnapshot giftCard = mock(QueryDocumentSnapshot.class);
+        when(giftCard.toObject(GiftCardTransaction.class))
+                .thenReturn(GiftCardTransaction.builder().amount(new BigDecimal("5.00")).build());
+        QuerySnapshot issued = snapshot(giftCard);
+        Query giftCards = query(issued);
+        when(giftCardTransactionRepository.completedByChildId(CHILD_ID)).thenReturn(giftCards);
+        User child = User.builder().id(CHILD_ID).balance(new BigDecimal("30.00")).build();
+        when(userRepository.findByIdFresh(CHILD_ID)).thenReturn(child);
+
+        CollectionReference users = mock(CollectionReference.class);
+        DocumentReference childRef = mock(DocumentReference.class);
+        DocumentSnapshot childSnapshot = mock(DocumentSnapshot.class);
+        com.google.cloud.firestore.Transaction firestoreTx =
+                mock(com.google.cloud.firestore.Transaction.class);
+        when(firestore.collection("users")).thenReturn(users);
+        when(users.document(CHILD_ID)).thenReturn(childRef);
+        when(firestoreTx.get(childRef)).thenReturn(ApiFutures.immediateFuture(childSnapshot));
+        when(firestoreTx.get(recent)).thenReturn(ApiFutures.immediateFuture(noRecent));
+        when(firestoreTx.get(giftCards)).thenReturn(ApiFutures.immediateFuture(issued));
+        when(childSnapshot.exists()).thenReturn(true);
+        when(childSnapshot.toObject(User.class)).thenReturn(child);
+        when(firestore.runTransaction(any()))
+                .thenAnswer(
+                        invocation -> {
+                            com.google.cloud.firestore.Transaction.Function<?> function =
+                                    invocation.getArgument(0);
+                            return ApiFutures.immediateFuture(function.updateCallback(firestoreTx));
+                        });
+
+        // When
+        BalanceReconciliation result = service(true).reconcile(CHILD_ID, THROUGH);
+
+        // Then
+        assertEquals(0, new BigDecimal("15.00").compareTo(result.getDrift()));
+        assertTrue(result.isRepaired());
+        ArgumentCaptor<Object> balance = ArgumentCaptor.forClass(Object.class);
+        verify(firestoreTx).update(eq(childRef), eq("balance"), balance.capture());
+        assertEquals(0, new BigDecimal("15.00").compareTo((BigDecimal) balance.getValue()));
+    }
+
+    @Test
+    void shouldWalkChildrenInPartitions() throws Exception {
+        // Given: one partial partition whose child was already reconciled past this run
+        QueryDocumentSnapshot first = mock(QueryDocumentSnapshot.class);
+        when(first.getId()).thenReturn(CHILD_ID);
+        QuerySnapshot onlyPartition = snapshot(first);
+        when(userRepository.findChildIdsPage(200, null)).thenReturn(onlyPartition);
+        Instant future = Instant.now().plusSeconds(3600);
+        when(reconciliationRepository.find(CHILD_ID))
+                .thenReturn(
+                        BalanceReconciliation.builder()
+                                .reconciledThrough(future)
+                                .ledgerTotal(BigDecimal.ZERO)
+                                .build());
+        Query recent = query(snapshot());
+        when(transactionRepository.rangeByChildId(CHILD_ID, future, null)).thenReturn(recent);
+        Query giftCards = query(snapshot());
+        when(giftCardTransactionRepository.completedByChildId(CHILD_ID)).thenReturn(giftCards);
+        when(userRepository.findByIdFresh(CHILD_ID))
+                .thenReturn(User.builder().id(CHILD_ID).balance(BigDecimal.ZERO).build());
+
+        // When
+        BalanceReconciliationService.Result result = service(false).reconcileAll();
+
+        // Then
+        assertEquals(1, result.getChecked());
+        assertEquals(0, result.getDrifted());
+        assertEquals(0, result.getFailed());
+        verify(transactionRepository, never())
+                .findRangePageByChildId(any(), any(), any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,168 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.fazquepaga.taskandpay.identity.User;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class LedgerExportServiceTest {
+
+    @Mock private TransactionRepository transactionRepository;
+
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
+    private LedgerExportService ledgerExportService;
+
+    private final User child = User.builder().id("child-1").name("Ana").build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(familyTimeZoneService.zoneOf("parent-1")).thenReturn(ZoneId.of("America/Sao_Paulo"));
+        ledgerExportService =
+                new LedgerExportService(
+                        transactionRepository, familyTimeZoneService, new ObjectMapper(), 2);
+    }
+
+    private QueryDocumentSnapshot document(String id, String amount, String description) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.toObject(Transaction.class))
+                .thenReturn(
+                        Transaction.builder()
+                                .id(id)
+                                .childId("child-1")
+                                .amount(new BigDecimal(amount))
+                                .description(description)
+                                .date(Instant.parse("2024-03-01T12:00:00Z"))
+                                .type(Transaction.TransactionType.CREDIT)
+                                .status(Transaction.TransactionStatus.COMPLETED)
+                                .build());
+        return document;
+    }
+
+    private static QuerySnapshot page(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    @Test
+    void shouldPageThroughTransactionsWithCursorAndWriteCsv() throws Exception {
+        // Given
+        QueryDocumentSnapshot first = document("tx-1", "10.00", "Task Reward");
+        QueryDocumentSnapshot second = document("tx-2", "5.50", "Lunch, \"snacks\"");
+        QueryDocumentSnapshot third = document("tx-3", "1", "Bonus");
+        Instant from = Instant.parse("2024-01-01T03:00:00Z");
+        Instant to = Instant.parse("2025-01-01T03:00:00Z");
+        QuerySnapshot firstPage = page(first, second);
+        QuerySnapshot lastPage = page(third);
+        when(transactionRepository.findRangePageByChildId("child-1", from, to, 2, null))
+                .thenReturn(firstPage);
+        when(transactionRepository.findRangePageByChildId("child-1", from, to, 2, second))
+                .thenReturn(lastPage);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        ledgerExportService
+                .export(
+                        "parent-1",
+                        List.of(child),
+                        LocalDate.of(2024, 1, 1),
+                        LocalDate.of(2024, 12, 31),
+                        LedgerExportService.Format.CSV,
+                        false)
+                .writeTo(out);
+
+        // Then
+        assertEquals(
+                "child_id,child_name,transaction_id,date,type,status,amount,description\n"
+                        + "child-1,Ana,tx-1,2024-03-01T12:00:00Z,CREDIT,COMPLETED,10.00,"
+                        + "Task Reward\n"
+                        + "child-1,Ana,tx-2,2024-03-01T12:00:00Z,CREDIT,COMPLETED,5.50,"
+                        + "\"Lunch, \"\"snacks\"\"\"\n"
+                        + "child-1,Ana,tx-3,2024-03-01T12:00:00Z,CREDIT,COMPLETED,1,Bonus\n",
+                out.toString(StandardCharsets.UTF_8));
+        verify(transactionRepository, times(2))
+                .findRangePageByChildId(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void shouldNeutralizeCsvCellsThatLookLikeFormulas() {
+        assertEquals(
+                "\"'=HYPERLINK(\"\"x\"\")\"", LedgerExportService.csvField("=HYPERLINK(\"x\")"));
+        assertEquals("\"'+1+2\"", LedgerExportService.csvField("+1+2"));
+        assertEquals("\"'-2+3\"", LedgerExportService.csvField("-2+3"));
+        assertEquals("\"'@SUM(A1)\"", LedgerExportService.csvField("@SUM(A1)"));
+        assertEquals("\"'\tcmd\"", LedgerExportService.csvField("\tcmd"));
+        assertEquals("\"'\rcmd\"", LedgerExportService.csvField("\rcmd"));
+        assertEquals("-5.50", LedgerExportService.csvField("-5.50"));
+        assertEquals("Lunch", LedgerExportService.csvField("Lunch"));
+    }
+
+    @Test
+    void shouldWriteGzippedNdjson() throws Exception {
+        // Given
+        QueryDocumentSnapshot first = document("tx-1", "10.00", "Task Reward");
+        QuerySnapshot onlyPage = page(first);
+        when(transactionRepository.findRangePageByChildId("child-1", null, null, 2, null))
+                .thenReturn(onlyPage);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        ledgerExportService
+                .export(
+                        "parent-1",
+                        List.of(child),
+                        null,
+                        null,
+                        LedgerExportService.Format.NDJSON,
+                        true)
+                .writeTo(out);
+
+        // Then
+        String json =
+                new String(
+                        new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))
+                                .readAllBytes(),
+                        StandardCharsets.UTF_8);
+        assertEquals(
+                "{\"child_id\":\"child-1\",\"child_name\":\"Ana\",\"transaction_id\":\"tx-1\","
+                        + "\"date\":\"2024-03-01T12:00:00Z\",\"type\":\"CREDIT\","
+                        + "\"status\":\"COMPLETED\",\"amount\":\"10.00\","
+                        + "\"description\":\"Task Reward\"}\n",
+                json);
+    }
+
+    @Test
+    void shouldRejectInvertedRangeBeforeStreaming() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        ledgerExportService.export(
+                                "parent-1",
+                                List.of(child),
+                                LocalDate.of(2024, 12, 31),
+                                LocalDate.of(2024, 1, 1),
+                                LedgerExportService.Format.CSV,
+                                false));
+        verifyNoInteractions(transactionRepository);
+    }
+}
@@ -0,0 +1,211 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class LedgerPostingQueueTest {
+
+    private final List<List<LedgerPostingQueue.Posting>> batches = new CopyOnWriteArrayList<>();
+
+    private LedgerPostingQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    private static LedgerPostingQueue.Posting credit() {
+        return new LedgerPostingQueue.Posting(
+                BigDecimal.ONE,
+                "Task Reward",
+                Transaction.TransactionType.CREDIT,
+                Transaction.TransactionStatus.COMPLETED,
+                null);
+    }
+
+    private void record(List<LedgerPostingQueue.Posting> batch) {
+        batches.add(List.copyOf(batch));
+        batch.forEach(posting -> posting.result.complete(Transaction.builder().build()));
+    }
+
+    @Test
+    void shouldGroupPostingsWithinLatencyIntoOneBatch() throws Exception {
+        // Given
+        queue = new LedgerPostingQueue(10, 100, 4, (childId, batch) -> record(batch));
+        LedgerPostingQueue.Posting first = credit();
+        LedgerPostingQueue.Posting second = credit();
+        LedgerPostingQueue.Posting third = credit();
+
+        // When
+        queue.submit("child-1", first);
+        queue.submit("child-1", second);
+        queue.submit("child-1", third);
+        third.result.get(2, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(List.of(first, second, third)), batches);
+        assertEquals(0, queue.pending());
+    }
+
+    @Test
+    void shouldSplitBatchesAtMaxSizeAndQueueWhilePosting() throws Exception {
+        // Given
+        CountDownLatch posting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue =
+                new LedgerPostingQueue(
+                        2,
+                        0,
+                        4,
+                        (childId, batch) -> {
+                            posting.countDown();
+                            release.await(2, TimeUnit.SECONDS);
+                            record(batch);
+                        });
+        LedgerPostingQueue.Posting first = credit();
+        List<LedgerPostingQueue.Posting> queued = List.of(credit(), credit(), credit());
+
+        // When: three postings arrive while the first one is being committed
+        queue.submit("child-1", first);
+        assertTrue(posting.await(2, TimeUnit.SECONDS));
+        queued.forEach(p -> queue.submit("child-1", p));
+        release.countDown();
+        queued.get(2).result.get(2, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(
+                List.of(List.of(first), queued.subList(0, 2), queued.subList(2, 3)), batches);
+    }
+
+    @Test
+    void shouldQueueChildrenBeyondTheWorkerPool() throws Exception {
+        // Given: a single worker, busy posting for the first child
+        CountDownLatch posting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue =
+                new LedgerPostingQueue(
+                        10,
+                        0,
+                        1,
+                        (childId, batch) -> {
+                            posting.countDown();
+                            if (childId.equals("child-1")) {
+                                release.await(2, TimeUnit.SECONDS);
+                            }
+                            record(batch);
+                        });
+        LedgerPostingQueue.Posting first = credit();
+        LedgerPostingQueue.Posting second = credit();
+        queue.submit("child-1", first);
+        assertTrue(posting.await(2, TimeUnit.SECONDS));
+
+        // When
+        queue.submit("child-2", second);
+        Thread.sleep(50);
+
+        // Then: the second child waits for the worker instead of getting a new thread
+        assertFalse(second.result.isDone());
+        release.countDown();
+        second.result.get(2, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of(first), List.of(second)), batches);
+    }
+
+    @Test
+    void shouldPostWorkAlone() throws Exception {
+        // Given
+        queue = new LedgerPostingQueue(10, 100, 4, (childId, batch) -> record(batch));
+        LedgerPostingQueue.Posting before = credit();
+        LedgerPostingQueue.Posting work =
+                new LedgerPostingQueue.Posting(
+                        null,
+                        "Tasks approved by parent: 2",
+                        Transaction.TransactionType.TASK_EARNING,
+                        Transaction.TransactionStatus.COMPLETED,
+                        transaction -> BigDecimal.TEN);
+
+        // When
+        queue.submit("child-1", before);
+        queue.submit("child-1", work);
+        work.result.get(2, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(List.of(before), List.of(work)), batches);
+    }
+
+    @Test
+    void shouldFailEveryPostingOfAFailedBatch() {
+        // Given
+        queue =
+                new LedgerPostingQueue(
+                        10,
+                        0,
+                        4,
+                        (childId, batch) -> {
+                            throw new ExecutionException(
+                                    new IllegalArgumentException("Child not found"));
+                        });
+        LedgerPostingQueue.Posting posting = credit();
+
+        // When
+        queue.submit("child-1", posting);
+
+        // Then
+        ExecutionException thrown =
+                assertThrows(
+                        ExecutionException.class, () -> posting.result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, thrown.getCause());
+    }
+
+    @Test
+    void shouldFinishPostingBatchAndFailOnlyQueuedOnShutdown() throws Exception {
+        // Given: one batch being committed and one posting queued behind it
+        CountDownLatch posting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue =
+                new LedgerPostingQueue(
+                        1,
+                        0,
+                        4,
+                        (childId, batch) -> {
+                            posting.countDown();
+                            release.await(2, TimeUnit.SECONDS);
+                            record(batch);
+                        });
+        LedgerPostingQueue.Posting inFlight = credit();
+        LedgerPostingQueue.Posting queued = credit();
+        queue.submit("child-1", inFlight);
+        assertTrue(posting.await(2, TimeUnit.SECONDS));
+        queue.submit("child-1", queued);
+
+        // When: shutdown starts while the batch is still being committed
+        Thread stopping = new Thread(queue::shutdown);
+        stopping.start();
+        LedgerPostingQueue.Posting late = credit();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!late.result.isDone() && System.nanoTime() < deadline) {
+            late = credit();
+            queue.submit("child-1", late);
+            Thread.sleep(10);
+        }
+        release.countDown();
+        stopping.join(5000);
+
+        // Then
+        assertNotNull(inFlight.result.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(inFlight)), batches);
+        ExecutionException thrown =
+                assertThrows(
+                        ExecutionException.class, () -> queued.result.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertTrue(late.result.isCompletedExceptionally());
+        assertEquals(0, queue.pending());
+    }
+}
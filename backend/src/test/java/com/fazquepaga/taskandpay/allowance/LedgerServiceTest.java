@@ -5,14 +5,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.fazquepaga.taskandpay.ai.AiInsightService;
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
 import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -28,14 +35,73 @@ class LedgerServiceTest {
 
     @Mock private com.google.cloud.firestore.Firestore firestore;
 
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
+    @Mock private LedgerSummaryRepository ledgerSummaryRepository;
+
     private LedgerService ledgerService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        when(familyTimeZoneService.zoneOf(anyString())).thenReturn(ZoneId.of("UTC"));
         ledgerService =
                 new LedgerService(
-                        transactionRepository, userRepository, aiInsightService, firestore);
+                        transactionRepository,
+                        userRepository,
+                        aiInsightService,
+                        firestore,
+                        familyTimeZoneService,
+                        ledgerSummaryRepository,
+                        25,
+                        0,
+                        4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgerService.shutdown();
+    }
+
+    /**
+     * Stubs the child's ledger summary document, returning its reference. A missing summary is
+     * rebuilt as empty.
+     */
+    private com.google.cloud.firestore.DocumentReference stubSummary(
+            String childId,
+            com.google.cloud.firestore.Transaction firestoreTx,
+            LedgerSummary existing) {
+        com.google.cloud.firestore.DocumentReference summaryRef =
+                mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.DocumentSnapshot summarySnap =
+                mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        when(ledgerSummaryRepository.getSummaryDocument(childId)).thenReturn(summaryRef);
+        when(firestoreTx.get(summaryRef)).thenReturn(ApiFutures.immediateFuture(summarySnap));
+        when(summarySnap.exists()).thenReturn(existing != null);
+        when(summarySnap.toObject(LedgerSummary.class)).thenReturn(existing);
+        when(ledgerSummaryRepository.rebuild(firestoreTx, childId))
+                .thenReturn(LedgerSummary.empty());
+        return summaryRef;
+    }
+
+    /** Stubs the current month's checkpoint document, returning its reference. */
+    private com.google.cloud.firestore.DocumentReference stubCheckpoint(
+            com.google.cloud.firestore.DocumentReference userRef,
+            com.google.cloud.firestore.Transaction firestoreTx,
+            LedgerCheckpoint existing) {
+        com.google.cloud.firestore.CollectionReference checkpointsCol =
+                mock(com.google.cloud.firestore.CollectionReference.class);
+        com.google.cloud.firestore.DocumentReference checkpointRef =
+                mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.DocumentSnapshot checkpointSnap =
+                mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        when(userRef.collection("ledgerCheckpoints")).thenReturn(checkpointsCol);
+        when(checkpointsCol.document(YearMonth.now(ZoneId.of("UTC")).toString()))
+                .thenReturn(checkpointRef);
+        when(firestoreTx.get(checkpointRef)).thenReturn(ApiFutures.immediateFuture(checkpointSnap));
+        when(checkpointSnap.exists()).thenReturn(existing != null);
+        when(checkpointSnap.toObject(LedgerCheckpoint.class)).thenReturn(existing);
+        return checkpointRef;
     }
 
     @Test
@@ -60,6 +126,10 @@ class LedgerServiceTest {
         when(usersCol.document(childId)).thenReturn(userRef);
         when(firestore.collection("transactions")).thenReturn(txCol);
         when(txCol.document(anyString())).thenReturn(txRef);
+        com.google.cloud.firestore.DocumentReference checkpointRef =
+                stubCheckpoint(userRef, firestoreTx, null);
+        com.google.cloud.firestore.DocumentReference summaryRef =
+                stubSummary(childId, firestoreTx, null);
         
         when(firestoreTx.get(userRef)).thenReturn(ApiFutures.immediateFuture(userSnap));
         when(userSnap.exists()).thenReturn(true);
@@ -76,6 +146,97 @@ class LedgerServiceTest {
         // Then
         verify(firestoreTx).update(eq(userRef), eq("balance"), argThat(val -> ((BigDecimal)val).compareTo(BigDecimal.valueOf(10.0)) == 0));
         verify(firestoreTx).set(eq(txRef), any(Transaction.class));
+        verify(firestoreTx)
+                .set(
+                        eq(checkpointRef),
+                        argThat(
+                                (LedgerCheckpoint checkpoint) ->
+                                        checkpoint.getOpeningBalance().signum() == 0
+                                                && checkpoint.getClosingBalance().compareTo(amount)
+                                                        == 0
+                                                && checkpoint.getCredits().compareTo(amount) == 0
+                                                && checkpoint.getCount() == 1));
+        verify(ledgerSummaryRepository).rebuild(firestoreTx, childId);
+        verify(firestoreTx)
+                .set(
+                        eq(summaryRef),
+                        argThat(
+                                (LedgerSummary summary) ->
+                                        summary.getTransactionCount() == 1
+                                                && summary.getTotalCredits().compareTo(amount)
+                                                        == 0));
+    }
+
+    @Test
+    void addTransaction_Debit_ShouldUpdateExistingCheckpoint()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-1";
+        User child = User.builder().id(childId).balance(BigDecimal.valueOf(30)).build();
+        LedgerCheckpoint existing =
+                LedgerCheckpoint.builder()
+                        .openingBalance(BigDecimal.valueOf(10))
+                        .closingBalance(BigDecimal.valueOf(30))
+                        .credits(BigDecimal.valueOf(20))
+                        .debits(BigDecimal.ZERO)
+                        .count(2)
+                        .build();
+
+        com.google.cloud.firestore.DocumentReference userRef = mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.DocumentSnapshot userSnap = mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        com.google.cloud.firestore.Transaction firestoreTx = mock(com.google.cloud.firestore.Transaction.class);
+        com.google.cloud.firestore.CollectionReference usersCol = mock(com.google.cloud.firestore.CollectionReference.class);
+        com.google.cloud.firestore.CollectionReference txCol = mock(com.google.cloud.firestore.CollectionReference.class);
+
+        when(firestore.collection("users")).thenReturn(usersCol);
+        when(usersCol.document(childId)).thenReturn(userRef);
+        when(firestore.collection("transactions")).thenReturn(txCol);
+        when(txCol.document(anyString()))
+                .thenReturn(mock(com.google.cloud.firestore.DocumentReference.class));
+        com.google.cloud.firestore.DocumentReference checkpointRef =
+                stubCheckpoint(userRef, firestoreTx, existing);
+        LedgerSummary summary = LedgerSummary.empty();
+        summary.add(Transaction.TransactionType.CREDIT, BigDecimal.valueOf(30), null);
+        com.google.cloud.firestore.DocumentReference summaryRef =
+                stubSummary(childId, firestoreTx, summary);
+        when(firestoreTx.get(userRef)).thenReturn(ApiFutures.immediateFuture(userSnap));
+        when(userSnap.exists()).thenReturn(true);
+        when(userSnap.toObject(User.class)).thenReturn(child);
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> {
+            com.google.cloud.firestore.Transaction.Function<?> function = invocation.getArgument(0);
+            return ApiFutures.immediateFuture(function.updateCallback(firestoreTx));
+        });
+
+        // When
+        ledgerService.addTransaction(
+                childId, BigDecimal.valueOf(5), "Gift", Transaction.TransactionType.DEBIT);
+
+        // Then
+        verify(firestoreTx)
+                .set(
+                        eq(checkpointRef),
+                        argThat(
+                                (LedgerCheckpoint checkpoint) ->
+                                        checkpoint.getOpeningBalance().compareTo(BigDecimal.TEN)
+                                                        == 0
+                                                && checkpoint
+                                                                .getClosingBalance()
+                                                                .compareTo(BigDecimal.valueOf(25))
+                                                        == 0
+                                                && checkpoint
+                                                                .getDebits()
+                                                                .compareTo(BigDecimal.valueOf(5))
+                                                        == 0
+                                                && checkpoint.getCount() == 3));
+        verify(firestoreTx)
+                .set(
+                        eq(summaryRef),
+                        argThat(
+                                (LedgerSummary updated) ->
+                                        updated.getTotalDebits().compareTo(BigDecimal.valueOf(5))
+                                                        == 0
+                                                && updated.getTransactionCount() == 2
+                                                && updated.getLastActivity() != null));
     }
 
     @Test
@@ -93,6 +254,8 @@ class LedgerServiceTest {
 
         when(firestore.collection("users")).thenReturn(usersCol);
         when(usersCol.document(childId)).thenReturn(userRef);
+        stubCheckpoint(userRef, firestoreTx, null);
+        stubSummary(childId, firestoreTx, null);
         when(firestoreTx.get(userRef)).thenReturn(ApiFutures.immediateFuture(userSnap));
         when(userSnap.exists()).thenReturn(true);
         when(userSnap.toObject(User.class)).thenReturn(child);
@@ -111,4 +274,170 @@ class LedgerServiceTest {
                 ExecutionException.class,
                 () -> ledgerService.addTransaction(childId, amount, "Test", Transaction.TransactionType.WITHDRAWAL));
     }
+
+    @Test
+    void addTransaction_WorkPostsNothing_ShouldOnlyCommitWorkWrites()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-1";
+        User child = User.builder().id(childId).balance(BigDecimal.ZERO).build();
+
+        com.google.cloud.firestore.DocumentReference userRef = mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.DocumentSnapshot userSnap = mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        com.google.cloud.firestore.Transaction firestoreTx = mock(com.google.cloud.firestore.Transaction.class);
+        com.google.cloud.firestore.CollectionReference usersCol = mock(com.google.cloud.firestore.CollectionReference.class);
+
+        when(firestore.collection("users")).thenReturn(usersCol);
+        when(usersCol.document(childId)).thenReturn(userRef);
+        stubCheckpoint(userRef, firestoreTx, null);
+        stubSummary(childId, firestoreTx, null);
+        when(firestoreTx.get(userRef)).thenReturn(ApiFutures.immediateFuture(userSnap));
+        when(userSnap.exists()).thenReturn(true);
+        when(userSnap.toObject(User.class)).thenReturn(child);
+
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> {
+            com.google.cloud.firestore.Transaction.Function<?> function = invocation.getArgument(0);
+            return ApiFutures.immediateFuture(function.updateCallback(firestoreTx));
+        });
+        boolean[] workRan = {false};
+
+        // When
+        Transaction result =
+                ledgerService.addTransaction(
+                        childId,
+                        "Tasks rejected by parent: 1",
+                        Transaction.TransactionType.DEBIT,
+                        tx -> {
+                            workRan[0] = true;
+                            return null;
+                        });
+
+        // Then
+        assertTrue(workRan[0]);
+        assertNull(result);
+        verify(firestoreTx, never()).update(any(com.google.cloud.firestore.DocumentReference.class), anyString(), any());
+    }
+
+    @Test
+    void addTransaction_ConcurrentPostings_ShouldShareOneTransaction() throws Exception {
+        // Given: postings wait up to 200ms for others of the same child
+        ledgerService.shutdown();
+        ledgerService =
+                new LedgerService(
+                        transactionRepository,
+                        userRepository,
+                        aiInsightService,
+                        firestore,
+                        familyTimeZoneService,
+                        ledgerSummaryRepository,
+                        25,
+                        200,
+                        4);
+        String childId = "child-1";
+        User child = User.builder().id(childId).balance(BigDecimal.ZERO).build();
+
+        com.google.cloud.firestore.DocumentReference userRef = mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.DocumentSnapshot userSnap = mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        com.google.cloud.firestore.Transaction firestoreTx = mock(com.google.cloud.firestore.Transaction.class);
+        com.google.cloud.firestore.CollectionReference usersCol = mock(com.google.cloud.firestore.CollectionReference.class);
+        com.google.cloud.firestore.CollectionReference txCol = mock(com.google.cloud.firestore.CollectionReference.class);
+        com.google.cloud.firestore.DocumentReference txRef = mock(com.google.cloud.firestore.DocumentReference.class);
+
+        when(firestore.collection("users")).thenReturn(usersCol);
+        when(usersCol.document(childId)).thenReturn(userRef);
+        when(firestore.collection("transactions")).thenReturn(txCol);
+        when(txCol.document(anyString())).thenReturn(txRef);
+        stubCheckpoint(userRef, firestoreTx, null);
+        stubSummary(childId, firestoreTx, null);
+        when(firestoreTx.get(userRef)).thenReturn(ApiFutures.immediateFuture(userSnap));
+        when(userSnap.exists()).thenReturn(true);
+        when(userSnap.toObject(User.class)).thenReturn(child);
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> {
+            com.google.cloud.firestore.Transaction.Function<?> function = invocation.getArgument(0);
+            return ApiFutures.immediateFuture(function.updateCallback(firestoreTx));
+        });
+
+        // When: a credit and a debit the balance can never cover arrive together
+        CompletableFuture<Transaction> credit =
+                CompletableFuture.supplyAsync(
+                        () -> post(childId, BigDecimal.TEN, Transaction.TransactionType.CREDIT));
+        CompletableFuture<Transaction> debit =
+                CompletableFuture.supplyAsync(
+                        () ->
+                                post(
+                                        childId,
+                                        BigDecimal.valueOf(50),
+                                        Transaction.TransactionType.DEBIT));
+
+        // Then
+        assertNotNull(credit.get(2, TimeUnit.SECONDS));
+        ExecutionException failure =
+                assertThrows(ExecutionException.class, () -> debit.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause().getCause());
+        verify(firestore, times(1)).runTransaction(any());
+        verify(firestoreTx, times(1)).set(eq(txRef), any(Transaction.class));
+        verify(firestoreTx)
+                .update(
+                        eq(userRef),
+                        eq("balance"),
+                        argThat(val -> ((BigDecimal) val).compareTo(BigDecimal.TEN) == 0));
+    }
+
+    private Transaction post(String childId, BigDecimal amount, Transaction.TransactionType type) {
+        try {
+            return ledgerService.addTransaction(childId, amount, "Test", type);
+        } catch (ExecutionException | InterruptedException e) {
+            throw new java.util.concurrent.CompletionException(e);
+        }
+    }
+
+    @Test
+    void getTransactionsPage_ShouldReturnCursorWhenMoreRemain()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-1";
+        String parentId = "parent-1";
+        when(userRepository.findByIdFresh(childId))
+                .thenReturn(User.builder().id(childId).parentId(parentId).build());
+        QueryDocumentSnapshot first = mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot second = mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot extra = mock(QueryDocumentSnapshot.class);
+        when(first.toObject(Transaction.class))
+                .thenReturn(Transaction.builder().id("tx-1").build());
+        when(second.toObject(Transaction.class))
+                .thenReturn(Transaction.builder().id("tx-2").build());
+        when(second.getId()).thenReturn("tx-2");
+        QuerySnapshot page = mock(QuerySnapshot.class);
+        when(page.getDocuments()).thenReturn(List.of(first, second, extra));
+        when(transactionRepository.findPageByChildId(childId, 2, null)).thenReturn(page);
+
+        // When
+        LedgerResponse response = ledgerService.getTransactionsPage(childId, parentId, 2, null);
+
+        // Then
+        assertEquals(2, response.getTransactions().size());
+        assertEquals("tx-2", response.getNextCursor());
+        verify(extra, never()).toObject(Transaction.class);
+    }
+
+    @Test
+    void getTransactionsPage_CursorOfAnotherChild_ShouldThrow()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-1";
+        String parentId = "parent-1";
+        when(userRepository.findByIdFresh(childId))
+                .thenReturn(User.builder().id(childId).parentId(parentId).build());
+        com.google.cloud.firestore.DocumentSnapshot cursor =
+                mock(com.google.cloud.firestore.DocumentSnapshot.class);
+        when(cursor.exists()).thenReturn(true);
+        when(cursor.getString("childId")).thenReturn("child-2");
+        when(transactionRepository.findSnapshotById("tx-9")).thenReturn(cursor);
+
+        // When & Then
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ledgerService.getTransactionsPage(childId, parentId, 20, "tx-9"));
+        verify(transactionRepository, never()).findPageByChildId(anyString(), anyInt(), any());
+    }
 }
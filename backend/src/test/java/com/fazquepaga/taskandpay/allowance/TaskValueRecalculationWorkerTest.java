@@ -0,0 +1,164 @@
+package com.fazquepaga.taskandpay.allowance;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.inject.Provider;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class TaskValueRecalculationWorkerTest {
+
+    @Mock private AllowanceService allowanceService;
+
+    @Mock private Provider<AllowanceService> allowanceServiceProvider;
+
+    @Mock private AllowancePlanRepository allowancePlanRepository;
+
+    @Mock private DocumentSnapshot staleMarker;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TaskValueRecalculationWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(allowanceServiceProvider.get()).thenReturn(allowanceService);
+        when(allowancePlanRepository.findStaleValues(any()))
+                .thenReturn(ApiFutures.immediateFuture(staleMarker));
+        meterRegistry = new SimpleMeterRegistry();
+        worker =
+                new TaskValueRecalculationWorker(
+                        allowanceServiceProvider,
+                        allowancePlanRepository,
+                        meterRegistry,
+                        50,
+                        2,
+                        60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void shouldCoalesceBurstIntoOneRecalculationPerChild() throws Exception {
+        // When
+        worker.requestRecalculation("child-1");
+        worker.requestRecalculation("child-1");
+        worker.requestRecalculation("child-1");
+        worker.requestRecalculation("child-2");
+
+        // Then
+        verify(allowanceService, timeout(2000)).recalculateTaskValues("child-1");
+        verify(allowanceService, timeout(2000)).recalculateTaskValues("child-2");
+        Thread.sleep(200);
+        verify(allowanceService, times(1)).recalculateTaskValues("child-1");
+        assertEquals(0, worker.pending());
+        assertEquals(
+                4.0, meterRegistry.counter("allowance.recalculation.requests").count(), 0.0);
+        assertEquals(2, meterRegistry.timer("allowance.recalculation.lag").count());
+    }
+
+    @Test
+    void shouldRunAgainWhenSignalledDuringRecalculation() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(allowanceService.recalculateTaskValues("child-1"))
+                .thenAnswer(
+                        invocation -> {
+                            started.countDown();
+                            release.await(2, TimeUnit.SECONDS);
+                            return Map.of();
+                        })
+                .thenReturn(Map.of());
+
+        // When
+        worker.requestRecalculation("child-1");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        worker.requestRecalculation("child-1");
+        worker.requestRecalculation("child-1");
+        release.countDown();
+
+        // Then: the two signals during the run are coalesced into one more run
+        verify(allowanceService, timeout(2000).times(2)).recalculateTaskValues("child-1");
+        Thread.sleep(200);
+        verify(allowanceService, times(2)).recalculateTaskValues("child-1");
+        assertEquals(0, worker.pending());
+    }
+
+    @Test
+    void shouldCountFailures() throws Exception {
+        // Given
+        when(allowanceService.recalculateTaskValues("child-1"))
+                .thenThrow(new IllegalStateException("boom"));
+
+        // When
+        worker.requestRecalculation("child-1");
+
+        // Then
+        verify(allowanceService, timeout(2000)).recalculateTaskValues("child-1");
+        Thread.sleep(100);
+        assertEquals(
+                1.0, meterRegistry.counter("allowance.recalculation.failures").count(), 0.0);
+        assertEquals(0, worker.pending());
+    }
+
+    @Test
+    void shouldClearStaleMarkerAfterSuccessfulRun() throws Exception {
+        // Given
+        when(staleMarker.exists()).thenReturn(true);
+        when(allowancePlanRepository.clearStaleValues(staleMarker))
+                .thenReturn(ApiFutures.immediateFuture(null));
+
+        // When
+        worker.requestRecalculation("child-1");
+
+        // Then
+        verify(allowancePlanRepository, timeout(2000)).clearStaleValues(staleMarker);
+    }
+
+    @Test
+    void shouldKeepStaleMarkerWhenRunFails() throws Exception {
+        // Given
+        when(staleMarker.exists()).thenReturn(true);
+        when(allowanceService.recalculateTaskValues("child-1"))
+                .thenThrow(new IllegalStateException("boom"));
+
+        // When
+        worker.requestRecalculation("child-1");
+
+        // Then: the sweep finds the marker again
+        verify(allowanceService, timeout(2000)).recalculateTaskValues("child-1");
+        Thread.sleep(100);
+        verify(allowancePlanRepository, never()).clearStaleValues(any());
+    }
+
+    @Test
+    void shouldRerunChildrenLeftStale() throws Exception {
+        // Given: a marker left by an instance that stopped before its run
+        when(allowancePlanRepository.findStaleChildIds(any(), anyInt()))
+                .thenReturn(List.of("child-1"));
+
+        // When
+        worker.sweep();
+
+        // Then
+        verify(allowanceService, timeout(2000)).recalculateTaskValues("child-1");
+    }
+}
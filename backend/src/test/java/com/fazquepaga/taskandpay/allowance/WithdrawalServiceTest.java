@@ -58,7 +58,7 @@ class WithdrawalServiceTest {
                         .status(Transaction.TransactionStatus.PENDING)
                         .build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
         when(userRepository.findByIdSync("parent-1")).thenReturn(parent);
         when(ledgerService.addTransaction(
                         eq(childId),
@@ -91,7 +91,7 @@ class WithdrawalServiceTest {
                         .balance(BigDecimal.valueOf(100))
                         .build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
 
         // Act & Assert
         assertThrows(
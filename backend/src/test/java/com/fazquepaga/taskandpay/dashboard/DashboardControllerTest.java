@@ -0,0 +1,87 @@
+package com.fazquepaga.taskandpay.dashboard;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fazquepaga.taskandpay.dashboard.dto.ChildOverview;
+import com.fazquepaga.taskandpay.dashboard.dto.DashboardView;
+import com.fazquepaga.taskandpay.identity.User;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock private DashboardService dashboardService;
+
+    private User currentUser;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc =
+                MockMvcBuilders.standaloneSetup(new DashboardController(dashboardService))
+                        .setCustomArgumentResolvers(
+                                new HandlerMethodArgumentResolver() {
+                                    @Override
+                                    public boolean supportsParameter(MethodParameter parameter) {
+                                        return parameter.hasParameterAnnotation(
+                                                AuthenticationPrincipal.class);
+                                    }
+
+                                    @Override
+                                    public Object resolveArgument(
+                                            MethodParameter parameter,
+                                            ModelAndViewContainer mavContainer,
+                                            NativeWebRequest webRequest,
+                                            WebDataBinderFactory binderFactory) {
+                                        return currentUser;
+                                    }
+                                })
+                        .setMessageConverters(new MappingJackson2HttpMessageConverter())
+                        .build();
+    }
+
+    @Test
+    void getDashboard_whenUserIsChild_shouldReturnForbidden() throws Exception {
+        currentUser =
+                User.builder().id("child-1").role(User.Role.CHILD).parentId("parent-123").build();
+
+        mockMvc.perform(get("/api/v1/dashboard")).andExpect(status().isForbidden());
+        verifyNoInteractions(dashboardService);
+    }
+
+    @Test
+    void getDashboard_whenUserIsParent_shouldReturnTheirFamily() throws Exception {
+        currentUser = User.builder().id("parent-123").role(User.Role.PARENT).build();
+        DashboardView view =
+                DashboardView.builder()
+                        .stats(Map.of("totalTasksCreated", 3))
+                        .children(
+                                List.of(ChildOverview.builder().id("child-1").name("Ana").build()))
+                        .build();
+        when(dashboardService.getDashboard("parent-123")).thenReturn(view);
+
+        mockMvc.perform(get("/api/v1/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stats.totalTasksCreated").value(3))
+                .andExpect(jsonPath("$.children[0].name").value("Ana"));
+    }
+}
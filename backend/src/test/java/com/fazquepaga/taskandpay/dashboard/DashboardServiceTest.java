@@ -0,0 +1,135 @@
+package com.fazquepaga.taskandpay.dashboard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fazquepaga.taskandpay.allowance.AllowanceService;
+import com.fazquepaga.taskandpay.dashboard.dto.ChildOverview;
+import com.fazquepaga.taskandpay.dashboard.dto.DashboardView;
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.fazquepaga.taskandpay.shared.stats.StatsService;
+import com.fazquepaga.taskandpay.tasks.Task;
+import com.fazquepaga.taskandpay.tasks.TaskRepository;
+import com.fazquepaga.taskandpay.tasks.TaskService;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class DashboardServiceTest {
+
+    private static final String PARENT_ID = "parent-1";
+
+    @Mock private UserRepository userRepository;
+    @Mock private TaskRepository taskRepository;
+    @Mock private TaskService taskService;
+    @Mock private AllowanceService allowanceService;
+    @Mock private StatsService statsService;
+
+    private DashboardService dashboardService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        dashboardService =
+                new DashboardService(
+                        userRepository,
+                        taskRepository,
+                        taskService,
+                        allowanceService,
+                        statsService);
+        when(statsService.getFamilyStats(PARENT_ID))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("totalTasksCreated", 3L)));
+    }
+
+    private static QuerySnapshot snapshot(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    private static QueryDocumentSnapshot document(User user) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.toObject(User.class)).thenReturn(user);
+        return document;
+    }
+
+    @Test
+    void shouldReadEveryChildsTasksBeforeWaitingOnAny() throws Exception {
+        // Given: two children whose task reads are still in flight when both are issued
+        User ana = User.builder().id("child-1").name("Ana").balance(new BigDecimal("12")).build();
+        User bia = User.builder().id("child-2").name("Bia").build();
+        QuerySnapshot children = snapshot(document(ana), document(bia));
+        when(userRepository.findByParentId(PARENT_ID))
+                .thenReturn(ApiFutures.immediateFuture(children));
+        SettableApiFuture<QuerySnapshot> anaRead = SettableApiFuture.create();
+        SettableApiFuture<QuerySnapshot> biaRead = SettableApiFuture.create();
+        QuerySnapshot anaTasks = snapshot();
+        QuerySnapshot biaTasks = snapshot();
+        when(taskRepository.findActiveTasks("child-1"))
+                .thenAnswer(
+                        invocation -> {
+                            assertFalse(biaRead.isDone());
+                            return anaRead;
+                        });
+        when(taskRepository.findActiveTasks("child-2"))
+                .thenAnswer(
+                        invocation -> {
+                            // Complete both only once every read has been issued
+                            anaRead.set(anaTasks);
+                            biaRead.set(biaTasks);
+                            return biaRead;
+                        });
+        Task pending =
+                Task.builder()
+                        .id("task-1")
+                        .description("Make the bed")
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .value(new BigDecimal("2.00"))
+                        .build();
+        when(taskService.toActiveTasks("child-1", anaTasks)).thenReturn(List.of(pending));
+        when(taskService.toActiveTasks("child-2", biaTasks)).thenReturn(List.of());
+        when(allowanceService.calculatePredictedAllowance(ana, List.of(pending)))
+                .thenReturn(new BigDecimal("14.00"));
+
+        // When
+        DashboardView view = dashboardService.getDashboard(PARENT_ID);
+
+        // Then
+        assertEquals(3L, view.getStats().get("totalTasksCreated"));
+        assertEquals(2, view.getChildren().size());
+        ChildOverview first = view.getChildren().get(0);
+        assertEquals("Ana", first.getName());
+        assertEquals(new BigDecimal("12"), first.getBalance());
+        assertEquals(new BigDecimal("14.00"), first.getPredictedAllowance());
+        assertEquals(1, first.getPendingApprovalCount());
+        assertEquals("Make the bed", first.getTasks().get(0).getDescription());
+        assertEquals("Bia", view.getChildren().get(1).getName());
+        verify(userRepository, never()).findByIdSync(anyString());
+    }
+
+    @Test
+    void shouldReturnStatsForAFamilyWithoutChildren() throws Exception {
+        // Given
+        QuerySnapshot noChildren = snapshot();
+        when(userRepository.findByParentId(PARENT_ID))
+                .thenReturn(ApiFutures.immediateFuture(noChildren));
+
+        // When
+        DashboardView view = dashboardService.getDashboard(PARENT_ID);
+
+        // Then
+        assertTrue(view.getChildren().isEmpty());
+        assertEquals(3L, view.getStats().get("totalTasksCreated"));
+        verifyNoInteractions(taskRepository);
+    }
+}
@@ -59,7 +59,7 @@ class GiftCardServiceTest {
                             DocumentSnapshot childSnapshot = mock(DocumentSnapshot.class);
                             // Dynamically fetch whatever child user is mock-configured in
                             // userRepository for child-123
-                            User currentChild = userRepository.findByIdSync("child-123");
+                            User currentChild = userRepository.findByIdFresh("child-123");
                             when(childSnapshot.toObject(User.class)).thenReturn(currentChild);
                             doReturn(com.google.api.core.ApiFutures.immediateFuture(childSnapshot))
                                     .when(mockTx)
@@ -85,7 +85,7 @@ class GiftCardServiceTest {
                         .balance(BigDecimal.valueOf(50.00))
                         .build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
 
         // When
         GiftCardTransaction tx = service.requestGiftCard(childId, parentId, productId, amount);
@@ -104,7 +104,7 @@ class GiftCardServiceTest {
     @Test
     void shouldFailRequestWhenChildNotFound() throws ExecutionException, InterruptedException {
         // Given
-        when(userRepository.findByIdSync("nonexistent")).thenReturn(null);
+        when(userRepository.findByIdFresh("nonexistent")).thenReturn(null);
 
         // When & Then
         assertThrows(
@@ -123,7 +123,7 @@ class GiftCardServiceTest {
                         .balance(BigDecimal.valueOf(50.00))
                         .build();
 
-        when(userRepository.findByIdSync("child-123")).thenReturn(child);
+        when(userRepository.findByIdFresh("child-123")).thenReturn(child);
 
         // When & Then
         assertThrows(
@@ -142,7 +142,7 @@ class GiftCardServiceTest {
                         .balance(BigDecimal.valueOf(5.00))
                         .build();
 
-        when(userRepository.findByIdSync("child-123")).thenReturn(child);
+        when(userRepository.findByIdFresh("child-123")).thenReturn(child);
 
         // When & Then
         assertThrows(
@@ -175,7 +175,7 @@ class GiftCardServiceTest {
 
         when(transactionRepository.findById(txId)).thenReturn(tx);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
 
         // Mock Asaas
         when(asaasService.createAdHocCharge(parent, tx.getAmount(), txId))
@@ -234,7 +234,7 @@ class GiftCardServiceTest {
 
         when(transactionRepository.findById(txId)).thenReturn(tx);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
 
         // Mock Asaas
         when(asaasService.createAdHocCharge(parent, tx.getAmount(), txId))
@@ -0,0 +1,88 @@
+package com.fazquepaga.taskandpay.identity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class AccessCodeIndexTest {
+
+    @Mock private UserRepository userRepository;
+
+    private AccessCodeIndex accessCodeIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        accessCodeIndex = new AccessCodeIndex(userRepository, 2);
+    }
+
+    private static QueryDocumentSnapshot child(String accessCode) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getString("accessCode")).thenReturn(accessCode);
+        return document;
+    }
+
+    private static QuerySnapshot page(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    @Test
+    void shouldRejectMessagesThatAreNotCodesBeforeWarmUp() {
+        assertFalse(accessCodeIndex.mightContain("hello"));
+        assertFalse(accessCodeIndex.mightContain("abc123"));
+        assertFalse(accessCodeIndex.mightContain("ABC1234"));
+        assertFalse(accessCodeIndex.mightContain(null));
+        // Not warm yet: any well-formed code has to be looked up
+        assertTrue(accessCodeIndex.mightContain("ABC123"));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void shouldContainOnlyCodesOfExistingChildrenOnceWarm() throws Exception {
+        // Given: two pages of children, one of them created before access codes
+        QueryDocumentSnapshot first = child("ABC123");
+        QueryDocumentSnapshot second = child(null);
+        QueryDocumentSnapshot third = child("0F0F0F");
+        QuerySnapshot fullPage = page(first, second);
+        QuerySnapshot lastPage = page(third);
+        when(userRepository.findChildAccessCodesPage(2, null)).thenReturn(fullPage);
+        when(userRepository.findChildAccessCodesPage(2, second)).thenReturn(lastPage);
+
+        // When
+        accessCodeIndex.warmUp();
+
+        // Then
+        assertTrue(accessCodeIndex.mightContain("ABC123"));
+        assertTrue(accessCodeIndex.mightContain("0F0F0F"));
+        assertFalse(accessCodeIndex.mightContain("ABC124"));
+        assertFalse(accessCodeIndex.mightContain("000000"));
+    }
+
+    @Test
+    void shouldPickUpCodesAddedHereAndReservedElsewhere() throws Exception {
+        // Given
+        QuerySnapshot noChildren = page();
+        when(userRepository.findChildAccessCodesPage(2, null)).thenReturn(noChildren);
+        when(userRepository.findAccessCodesReservedSince(any())).thenReturn(List.of("FFFFFF"));
+        accessCodeIndex.warmUp();
+
+        // When
+        accessCodeIndex.add("123ABC");
+        accessCodeIndex.refresh();
+
+        // Then
+        assertTrue(accessCodeIndex.mightContain("123ABC"));
+        assertTrue(accessCodeIndex.mightContain("FFFFFF"));
+        assertFalse(accessCodeIndex.mightContain("ABC123"));
+    }
+}
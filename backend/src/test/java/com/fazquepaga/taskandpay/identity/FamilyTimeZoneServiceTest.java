@@ -0,0 +1,66 @@
+package com.fazquepaga.taskandpay.identity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class FamilyTimeZoneServiceTest {
+
+    @Mock private UserRepository userRepository;
+
+    @InjectMocks private FamilyTimeZoneService familyTimeZoneService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void shouldUseParentTimezoneForChildAndCacheIt()
+            throws ExecutionException, InterruptedException {
+        // Given
+        User child =
+                User.builder().id("child-id").role(User.Role.CHILD).parentId("parent-id").build();
+        User parent =
+                User.builder()
+                        .id("parent-id")
+                        .role(User.Role.PARENT)
+                        .timezone("Asia/Tokyo")
+                        .build();
+        when(userRepository.findByIdSync("child-id")).thenReturn(child);
+        when(userRepository.findByIdSync("parent-id")).thenReturn(parent);
+
+        // When
+        ZoneId first = familyTimeZoneService.zoneOf("child-id");
+        ZoneId second = familyTimeZoneService.zoneOf("child-id");
+
+        // Then
+        assertEquals(ZoneId.of("Asia/Tokyo"), first);
+        assertEquals(first, second);
+        verify(userRepository, times(1)).findByIdSync("child-id");
+    }
+
+    @Test
+    void shouldFallBackToDefaultZone() throws ExecutionException, InterruptedException {
+        // Given
+        User parent = User.builder().id("parent-id").role(User.Role.PARENT).build();
+        when(userRepository.findByIdSync("parent-id")).thenReturn(parent);
+
+        // When / Then
+        assertEquals(FamilyTimeZoneService.DEFAULT_ZONE, familyTimeZoneService.zoneOf("parent-id"));
+    }
+
+    @Test
+    void shouldRejectUnknownTimezone() {
+        assertThrows(IllegalArgumentException.class, () -> FamilyTimeZoneService.parse("Nowhere"));
+    }
+}
@@ -2,11 +2,18 @@ package com.fazquepaga.taskandpay.identity;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fazquepaga.taskandpay.identity.dto.CreateChildRequest;
 import com.fazquepaga.taskandpay.identity.dto.CreateParentRequest;
 import com.google.api.core.ApiFutures;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,16 +25,32 @@ class IdentityServiceTest {
 
     @Mock private UserRepository userRepository;
 
+    @Mock private AccessCodeIndex accessCodeIndex;
+
     @Mock private org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
 
     @Mock private com.fazquepaga.taskandpay.shared.stats.StatsService statsService;
 
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
+    @Mock
+    private jakarta.inject.Provider<com.fazquepaga.taskandpay.allowance.AllowanceService>
+            allowanceServiceProvider;
+
+    @Mock private com.fazquepaga.taskandpay.allowance.AllowanceService allowanceService;
+
+    @Mock
+    private com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker recalculationWorker;
+
+    @Mock private com.fazquepaga.taskandpay.security.RefreshTokenService refreshTokenService;
+
     @InjectMocks private IdentityService identityService;
 
     @BeforeEach
     void setUp() {
 
         MockitoAnnotations.openMocks(this);
+        when(allowanceServiceProvider.get()).thenReturn(allowanceService);
     }
 
     @Test
@@ -56,6 +79,40 @@ class IdentityServiceTest {
         assertEquals(User.Role.PARENT, result.getRole());
 
         assertEquals("Test Parent", result.getName());
+
+        assertEquals("America/Sao_Paulo", result.getTimezone());
+    }
+
+    @Test
+    void shouldUpdateParentTimezone() throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.update(eq(parentId), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(null));
+
+        // When
+        User result = identityService.updateTimezone(parentId, "Europe/Lisbon");
+
+        // Then: only the timezone is written over the cached parent
+        assertEquals("Europe/Lisbon", result.getTimezone());
+        verify(userRepository).update(parentId, Map.of("timezone", "Europe/Lisbon"));
+        verify(userRepository, never()).save(any(User.class));
+        verify(familyTimeZoneService).evictAll();
+    }
+
+    @Test
+    void shouldRejectInvalidTimezone() throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+
+        // When / Then
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> identityService.updateTimezone(parentId, "Mars/Olympus"));
     }
 
     @Test
@@ -78,7 +135,7 @@ class IdentityServiceTest {
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
         when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
-        when(userRepository.findByAccessCode(any())).thenReturn(java.util.Optional.empty());
+        when(userRepository.createChild(any(User.class))).thenReturn(true);
 
         // When
 
@@ -108,7 +165,7 @@ class IdentityServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
-        when(userRepository.findByAccessCode(any())).thenReturn(java.util.Optional.empty());
+        when(userRepository.createChild(any(User.class))).thenReturn(true);
 
         // When
         User result = identityService.createChild(request);
@@ -118,6 +175,27 @@ class IdentityServiceTest {
         assertEquals("Loves coding and robots", result.getAiContext());
     }
 
+    @Test
+    void shouldDrawAnotherAccessCodeWhenTaken() throws ExecutionException, InterruptedException {
+        // Given: the first code drawn is already reserved
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        CreateChildRequest request = new CreateChildRequest();
+        request.setName("Test Child");
+        request.setParentId(parentId);
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.createChild(any(User.class))).thenReturn(false, true);
+
+        // When
+        User result = identityService.createChild(request);
+
+        // Then
+        assertEquals(6, result.getAccessCode().length());
+        verify(userRepository, times(2)).createChild(result);
+        verify(accessCodeIndex).add(result.getAccessCode());
+        verify(userRepository, never()).findByAccessCode(any());
+    }
+
     @Test
     void shouldThrowExceptionWhenParentNotFoundForChildCreation()
             throws ExecutionException, InterruptedException {
@@ -275,15 +353,21 @@ class IdentityServiceTest {
         java.math.BigDecimal allowance = new java.math.BigDecimal("50.00");
         User child = User.builder().id(childId).build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(userRepository.update(eq(childId), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         User result = identityService.updateChildAllowance(childId, allowance);
 
-        // Then
+        // Then: the balance posted elsewhere is not written back
         assertNotNull(result);
         assertEquals(allowance, result.getMonthlyAllowance());
+        verify(userRepository).update(childId, Map.of("monthlyAllowance", allowance));
+        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).findByIdSync(childId);
+        verify(allowanceService).invalidateAllowancePlan(childId);
+        verify(recalculationWorker).requestRecalculation(childId);
     }
 
     @Test
@@ -307,8 +391,9 @@ class IdentityServiceTest {
         request.setAge(9);
         request.setPhoneNumber("222222222");
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(userRepository.update(eq(childId), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         User result = identityService.updateChild(childId, request, parentId);
@@ -318,6 +403,11 @@ class IdentityServiceTest {
         assertEquals("New Name", result.getName());
         assertEquals(9, result.getAge());
         assertEquals("222222222", result.getPhoneNumber());
+        verify(userRepository)
+                .update(
+                        childId,
+                        Map.of("name", "New Name", "age", 9, "phoneNumber", "222222222"));
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -339,8 +429,9 @@ class IdentityServiceTest {
                 new com.fazquepaga.taskandpay.identity.dto.UpdateChildRequest();
         request.setName("New Name"); // Only update name
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(userRepository.update(eq(childId), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         User result = identityService.updateChild(childId, request, parentId);
@@ -350,6 +441,7 @@ class IdentityServiceTest {
         assertEquals("New Name", result.getName());
         assertEquals(8, result.getAge()); // Unchanged
         assertEquals("111111111", result.getPhoneNumber()); // Unchanged
+        verify(userRepository).update(childId, Map.of("name", "New Name"));
     }
 
     @Test
@@ -370,7 +462,7 @@ class IdentityServiceTest {
                 new com.fazquepaga.taskandpay.identity.dto.UpdateChildRequest();
         request.setName("New Name");
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
 
         // When & Then
         IllegalArgumentException exception =
@@ -389,10 +481,11 @@ class IdentityServiceTest {
         User child = User.builder().id(childId).parentId(parentId).role(User.Role.CHILD).build();
 
         when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(userRepository.delete(childId)).thenReturn(ApiFutures.immediateFuture(null));
+        when(userRepository.delete(child)).thenReturn(ApiFutures.immediateFuture(null));
 
         // When & Then (should not throw)
         assertDoesNotThrow(() -> identityService.deleteChild(childId, parentId));
+        verify(refreshTokenService).revokeAllTokens(childId);
     }
 
     @Test
@@ -418,6 +511,7 @@ class IdentityServiceTest {
                         () -> identityService.deleteChild(childId, parentId));
 
         assertEquals("Child does not belong to this parent", exception.getMessage());
+        verify(refreshTokenService, never()).revokeAllTokens(anyString());
     }
 
     @Test
@@ -446,8 +540,9 @@ class IdentityServiceTest {
         String context = "Loves dinosaurs and space.";
         User child = User.builder().id(childId).parentId(parentId).role(User.Role.CHILD).build();
 
-        when(userRepository.findByIdSync(childId)).thenReturn(child);
-        when(userRepository.save(any(User.class))).thenReturn(ApiFutures.immediateFuture(null));
+        when(userRepository.findByIdFresh(childId)).thenReturn(child);
+        when(userRepository.update(eq(childId), anyMap()))
+                .thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         User result = identityService.updateAiContext(childId, context, parentId);
@@ -455,5 +550,7 @@ class IdentityServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(context, result.getAiContext());
+        verify(userRepository).update(childId, Map.of("aiContext", context));
+        verify(userRepository, never()).save(any(User.class));
     }
 }
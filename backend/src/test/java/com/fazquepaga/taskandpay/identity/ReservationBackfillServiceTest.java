@@ -0,0 +1,127 @@
+package com.fazquepaga.taskandpay.identity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class ReservationBackfillServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private ReservationBackfillRepository backfillRepository;
+
+    private ReservationBackfillService backfillService;
+    private final List<String> savedCursors = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        backfillService = new ReservationBackfillService(userRepository, backfillRepository, 2);
+        when(backfillRepository.save(any()))
+                .thenAnswer(
+                        invocation -> {
+                            ReservationBackfill backfill = invocation.getArgument(0);
+                            savedCursors.add(backfill.getLastUserId());
+                            return ApiFutures.immediateFuture(null);
+                        });
+    }
+
+    private static QueryDocumentSnapshot user(String id) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        return document;
+    }
+
+    private static QuerySnapshot page(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    @Test
+    void shouldResumeAfterTheLastPageAndMarkTheBackfillCompleted() throws Exception {
+        // Given: an earlier run stopped after user-2
+        when(backfillRepository.find())
+                .thenReturn(ReservationBackfill.builder().lastUserId("user-2").reserved(3).build());
+        QueryDocumentSnapshot third = user("user-3");
+        QueryDocumentSnapshot fourth = user("user-4");
+        QueryDocumentSnapshot fifth = user("user-5");
+        QuerySnapshot fullPage = page(third, fourth);
+        QuerySnapshot lastPage = page(fifth);
+        when(userRepository.findUsersPage(2, "user-2")).thenReturn(fullPage);
+        when(userRepository.findUsersPage(2, "user-4")).thenReturn(lastPage);
+        when(userRepository.reserveMissing(List.of(third, fourth))).thenReturn(2);
+        when(userRepository.reserveMissing(List.of(fifth))).thenReturn(1);
+
+        // When
+        ReservationBackfill backfill = backfillService.backfill();
+
+        // Then: progress is saved per page before the marker
+        assertTrue(backfill.isCompleted());
+        assertNotNull(backfill.getCompletedAt());
+        assertEquals(6, backfill.getReserved());
+        assertEquals(List.of("user-4", "user-5", "user-5"), savedCursors);
+        verify(userRepository, never()).findUsersPage(eq(2), isNull());
+        verify(userRepository).disableLegacyFallback();
+    }
+
+    @Test
+    void shouldKeepTheFallbackWhenARunFailsMidway() throws Exception {
+        // Given
+        QueryDocumentSnapshot first = user("user-1");
+        QueryDocumentSnapshot second = user("user-2");
+        QuerySnapshot fullPage = page(first, second);
+        when(userRepository.findUsersPage(2, null)).thenReturn(fullPage);
+        when(userRepository.reserveMissing(List.of(first, second))).thenReturn(2);
+        when(userRepository.findUsersPage(2, "user-2"))
+                .thenThrow(new java.util.concurrent.ExecutionException(new RuntimeException()));
+
+        // When
+        backfillService.runScheduled();
+
+        // Then: the next run resumes after user-2
+        assertEquals(List.of("user-2"), savedCursors);
+        verify(userRepository, never()).disableLegacyFallback();
+    }
+
+    @Test
+    void shouldTurnOffTheFallbackOnceAnotherInstanceCompletedTheBackfill() throws Exception {
+        // Given
+        when(userRepository.isLegacyFallback()).thenReturn(true);
+        ReservationBackfill completed =
+                ReservationBackfill.builder().lastUserId("user-9").completed(true).build();
+        when(backfillRepository.find()).thenReturn(completed);
+
+        // When
+        backfillService.checkCompleted();
+        backfillService.backfill();
+
+        // Then
+        verify(userRepository, times(2)).disableLegacyFallback();
+        verify(userRepository, never()).findUsersPage(anyInt(), any());
+        verify(backfillRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldKeepTheFallbackUntilTheBackfillIsCompleted() throws Exception {
+        // Given
+        when(userRepository.isLegacyFallback()).thenReturn(true);
+        when(backfillRepository.find())
+                .thenReturn(ReservationBackfill.builder().lastUserId("user-2").build());
+
+        // When
+        backfillService.checkCompleted();
+
+        // Then
+        verify(userRepository, never()).disableLegacyFallback();
+    }
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 
 import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -36,7 +37,7 @@ class UserRepositoryTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         when(firestore.collection("users")).thenReturn(collectionReference);
-        userRepository = new UserRepository(firestore);
+        userRepository = new UserRepository(firestore, new SimpleMeterRegistry(), 30, 100, false);
     }
 
     @Test
@@ -122,6 +123,65 @@ class UserRepositoryTest {
         assertNull(result);
     }
 
+    @Test
+    void shouldServeRepeatedReadsFromCache() throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-123";
+        when(collectionReference.document(userId)).thenReturn(documentReference);
+        when(documentReference.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.toObject(User.class))
+                .thenAnswer(invocation -> User.builder().id(userId).build());
+
+        // When
+        User first = userRepository.findByIdSync(userId);
+        User second = userRepository.findByIdSync(userId);
+
+        // Then: one read, and callers do not share an instance
+        verify(documentReference, times(1)).get();
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldEvictCachedUserOnSave() throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-123";
+        User user = User.builder().id(userId).name("Test User").build();
+        when(collectionReference.document(userId)).thenReturn(documentReference);
+        when(documentReference.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.toObject(User.class)).thenReturn(user);
+        when(documentReference.set(any(User.class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        userRepository.findByIdSync(userId);
+
+        // When
+        userRepository.save(user);
+        userRepository.findByIdSync(userId);
+
+        // Then
+        verify(documentReference, times(2)).get();
+    }
+
+    @Test
+    void shouldBypassCacheForFreshReads() throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-123";
+        when(collectionReference.document(userId)).thenReturn(documentReference);
+        when(documentReference.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.toObject(User.class)).thenReturn(User.builder().id(userId).build());
+        userRepository.findByIdSync(userId);
+
+        // When
+        userRepository.findByIdFresh(userId);
+        userRepository.findByIdSync(userId);
+
+        // Then: the fresh read refreshed the cache for the next cached read
+        verify(documentReference, times(2)).get();
+    }
+
     @Test
     void shouldFindByPhoneNumberWhenUserExists() throws ExecutionException, InterruptedException {
         // Given
@@ -164,6 +224,24 @@ class UserRepositoryTest {
         assertNull(result);
     }
 
+    @Test
+    void shouldRejectParentWhosePhoneBelongsToAChild() {
+        // Given: the legacy fallback is off, but children's phones are never reserved
+        String phoneNumber = "+1234567890";
+        User parent = User.builder().name("Parent").phoneNumber(phoneNumber).build();
+
+        when(collectionReference.whereEqualTo("phoneNumber", phoneNumber)).thenReturn(query);
+        when(query.limit(1)).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.getDocuments()).thenReturn(List.of(queryDocumentSnapshot));
+        when(queryDocumentSnapshot.toObject(User.class))
+                .thenReturn(User.builder().id("child-1").role(User.Role.CHILD).build());
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> userRepository.createParent(parent));
+        verify(firestore, never()).runTransaction(any());
+    }
+
     @Test
     void shouldHandleEmptyUserId() {
         // Given
@@ -181,4 +259,115 @@ class UserRepositoryTest {
         assertEquals("generated-id", user.getId());
         verify(documentReference).set(user);
     }
+
+    @Test
+    void shouldFindByAccessCodeThroughItsReservation()
+            throws ExecutionException, InterruptedException {
+        // Given
+        CollectionReference accessCodes = mock(CollectionReference.class);
+        DocumentReference reservationRef = mock(DocumentReference.class);
+        DocumentSnapshot reservation = mock(DocumentSnapshot.class);
+        User child = User.builder().id("child-1").accessCode("ABC123").build();
+        when(firestore.collection("accessCodes")).thenReturn(accessCodes);
+        when(accessCodes.document("ABC123")).thenReturn(reservationRef);
+        when(reservationRef.get()).thenReturn(ApiFutures.immediateFuture(reservation));
+        when(reservation.exists()).thenReturn(true);
+        when(reservation.getString("userId")).thenReturn("child-1");
+        when(collectionReference.document("child-1")).thenReturn(documentReference);
+        when(documentReference.get()).thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.toObject(User.class)).thenReturn(child);
+
+        // When
+        java.util.Optional<User> result = userRepository.findByAccessCode("ABC123");
+
+        // Then
+        assertEquals(child, result.orElseThrow());
+        verify(collectionReference, never()).whereEqualTo(anyString(), any());
+    }
+
+    @Test
+    void shouldNotCreateChildWhenAccessCodeIsReserved()
+            throws ExecutionException, InterruptedException {
+        // Given
+        User child = User.builder().name("Child").accessCode("ABC123").build();
+        CollectionReference accessCodes = mock(CollectionReference.class);
+        DocumentReference codeRef = mock(DocumentReference.class);
+        DocumentSnapshot reservation = mock(DocumentSnapshot.class);
+        Transaction transaction = mock(Transaction.class);
+        when(collectionReference.document()).thenReturn(documentReference);
+        when(documentReference.getId()).thenReturn("generated-id");
+        when(firestore.collection("accessCodes")).thenReturn(accessCodes);
+        when(accessCodes.document("ABC123")).thenReturn(codeRef);
+        when(transaction.get(codeRef)).thenReturn(ApiFutures.immediateFuture(reservation));
+        when(reservation.exists()).thenReturn(true);
+        when(firestore.runTransaction(any()))
+                .thenAnswer(
+                        invocation -> {
+                            Transaction.Function<?> function = invocation.getArgument(0);
+                            return ApiFutures.immediateFuture(function.updateCallback(transaction));
+                        });
+
+        // When
+        boolean created = userRepository.createChild(child);
+
+        // Then
+        assertFalse(created);
+        assertNull(child.getId());
+        verify(transaction, never()).create(eq(documentReference), any(Object.class));
+    }
+
+    @Test
+    void shouldReserveOnlyTheMissingValuesOfLegacyUsers()
+            throws ExecutionException, InterruptedException {
+        // Given: a parent whose email is already reserved, and a child without any reservation
+        QueryDocumentSnapshot parent = mock(QueryDocumentSnapshot.class);
+        when(parent.getId()).thenReturn("parent-1");
+        when(parent.getString("role")).thenReturn("PARENT");
+        when(parent.getString("email")).thenReturn("ana@example.com");
+        when(parent.getString("phoneNumber")).thenReturn("+5511999999999");
+        QueryDocumentSnapshot child = mock(QueryDocumentSnapshot.class);
+        when(child.getId()).thenReturn("child-1");
+        when(child.getString("role")).thenReturn("CHILD");
+        when(child.getString("accessCode")).thenReturn("ABC123");
+        when(child.getString("phoneNumber")).thenReturn("+5511888888888");
+        CollectionReference emails = mock(CollectionReference.class);
+        CollectionReference phones = mock(CollectionReference.class);
+        CollectionReference accessCodes = mock(CollectionReference.class);
+        DocumentReference emailRef = mock(DocumentReference.class);
+        DocumentReference phoneRef = mock(DocumentReference.class);
+        DocumentReference codeRef = mock(DocumentReference.class);
+        when(firestore.collection("emails")).thenReturn(emails);
+        when(firestore.collection("phones")).thenReturn(phones);
+        when(firestore.collection("accessCodes")).thenReturn(accessCodes);
+        when(emails.document("ana%40example.com")).thenReturn(emailRef);
+        when(phones.document("%2B5511999999999")).thenReturn(phoneRef);
+        when(accessCodes.document("ABC123")).thenReturn(codeRef);
+        DocumentSnapshot emailReservation = mock(DocumentSnapshot.class);
+        when(emailReservation.exists()).thenReturn(true);
+        when(emailReservation.getString("userId")).thenReturn("parent-1");
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(firestore.getAll(emailRef, phoneRef, codeRef))
+                .thenReturn(
+                        ApiFutures.immediateFuture(List.of(emailReservation, missing, missing)));
+        when(phoneRef.create(any(java.util.Map.class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        when(codeRef.create(any(java.util.Map.class)))
+                .thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+
+        // When
+        int reserved = userRepository.reserveMissing(List.of(parent, child));
+
+        // Then: the child's phone is not reserved, as on registration
+        assertEquals(2, reserved);
+        verify(emailRef, never()).create(any(java.util.Map.class));
+        verify(phoneRef).create(java.util.Map.of("userId", "parent-1"));
+        verify(codeRef)
+                .create(
+                        argThat(
+                                (java.util.Map<String, Object> fields) ->
+                                        "child-1".equals(fields.get("userId"))
+                                                && fields.containsKey("reservedAt")));
+        verify(phones, never()).document("%2B5511888888888");
+    }
 }
@@ -0,0 +1,127 @@
+package com.fazquepaga.taskandpay.security;
+
+import com.fazquepaga.taskandpay.identity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Authentication cost of one request: the previous verification (three parses, each decoding the
+ * key and building a parser), a single parse with the cached parser, a verified-token cache hit,
+ * and the whole {@link JwtAuthenticationFilter} on a self-contained token.
+ *
+ * <p>Run with {@code ./mvnw test-compile exec:exec -Dexec.executable=java
+ * -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.openjdk.jmh.Main
+ * JwtAuthenticationBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET =
+            "746573742D7365637265742D6B65792D666F722D756E69742D74657374732D6D757374";
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {};
+
+    private String token;
+    private JwtService uncached;
+    private JwtService cached;
+    private JwtAuthenticationFilter filter;
+
+    @Setup
+    public void setUp() throws Exception {
+        TokenVersionService tokenVersionService =
+                new TokenVersionService(
+                        new TokenVersionRepository(null) {
+                            @Override
+                            public long find(String userId) {
+                                return 0L;
+                            }
+                        },
+                        30,
+                        100);
+        uncached = jwtService(tokenVersionService, 0);
+        cached = jwtService(tokenVersionService, 100);
+        filter = new JwtAuthenticationFilter(cached, null);
+        token =
+                cached.generateToken(
+                        User.builder()
+                                .id("parent-1")
+                                .role(User.Role.PARENT)
+                                .subscriptionTier(User.SubscriptionTier.PREMIUM)
+                                .build());
+    }
+
+    private static JwtService jwtService(TokenVersionService tokenVersionService, long cacheSize) {
+        JwtService jwtService = new JwtService(tokenVersionService, cacheSize);
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        return jwtService;
+    }
+
+    @Benchmark
+    public boolean legacyTripleParse() {
+        String subject = LegacyJwtVerifier.extractAllClaims(token).getSubject();
+        // isTokenValid parsed the token twice more: once for the subject, once for the expiry
+        return LegacyJwtVerifier.extractAllClaims(token).getSubject().equals(subject)
+                && !LegacyJwtVerifier.extractAllClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public VerifiedToken singleParse() {
+        return uncached.verify(token);
+    }
+
+    @Benchmark
+    public VerifiedToken cachedVerification() {
+        return cached.verify(token);
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    /** Verification as it was before the key and parser were cached, kept as the baseline. */
+    static class LegacyJwtVerifier {
+
+        static Claims extractAllClaims(String token) {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSignInKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        }
+
+        static Key getSignInKey() {
+            byte[] keyBytes = java.util.HexFormat.of().parseHex(SECRET);
+            return Keys.hmacShaKeyFor(keyBytes);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.fazquepaga.taskandpay.security;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
+import com.fazquepaga.taskandpay.identity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -28,9 +32,11 @@ class JwtServiceTest {
 
     @Mock private UserDetails userDetails;
 
+    @Mock private TokenVersionService tokenVersionService;
+
     @BeforeEach
     void setUp() {
-        jwtService = new JwtService();
+        jwtService = new JwtService(tokenVersionService, 100);
         ReflectionTestUtils.setField(jwtService, "secret", TEST_SECRET);
         ReflectionTestUtils.setField(jwtService, "childTokenTtlDays", TEST_CHILD_TTL_DAYS);
     }
@@ -116,6 +122,110 @@ class JwtServiceTest {
         assertThat(jwtService.isTokenValid(token, userDetails)).isFalse();
     }
 
+    @Test
+    void shouldBuildPrincipalFromSelfContainedToken() throws Exception {
+        User child =
+                User.builder()
+                        .id("child-123")
+                        .role(User.Role.CHILD)
+                        .parentId("parent-1")
+                        .subscriptionTier(User.SubscriptionTier.PREMIUM)
+                        .build();
+        when(tokenVersionService.currentVersion("child-123")).thenReturn(2L);
+        when(tokenVersionService.isCurrent("child-123", 2L)).thenReturn(true);
+
+        VerifiedToken token = jwtService.verify(jwtService.generateToken(child));
+        User principal = jwtService.toPrincipal(token);
+
+        assertThat(token.isSelfContained()).isTrue();
+        assertThat(principal.getId()).isEqualTo("child-123");
+        assertThat(principal.getUsername()).isEqualTo("child-123");
+        assertThat(principal.getRole()).isEqualTo(User.Role.CHILD);
+        assertThat(principal.getParentId()).isEqualTo("parent-1");
+        assertThat(principal.getSubscriptionTier()).isEqualTo(User.SubscriptionTier.PREMIUM);
+        // Children get the longer child TTL
+        assertThat(token.expiresAt())
+                .isAfter(java.time.Instant.now().plusSeconds(60 * 60 * 24));
+    }
+
+    @Test
+    void shouldRejectTokenIssuedBeforeRevocation() throws Exception {
+        User parent = User.builder().id("parent-1").role(User.Role.PARENT).build();
+        when(tokenVersionService.currentVersion("parent-1")).thenReturn(0L);
+        when(tokenVersionService.isCurrent("parent-1", 0L)).thenReturn(false);
+
+        VerifiedToken token = jwtService.verify(jwtService.generateToken(parent));
+
+        assertThat(jwtService.toPrincipal(token)).isNull();
+    }
+
+    @Test
+    void shouldRejectTokenOfDeletedChild() throws Exception {
+        // Given: a real version service, as deleting a child revokes all its tokens
+        TokenVersionRepository repository = org.mockito.Mockito.mock(TokenVersionRepository.class);
+        when(repository.find("child-123")).thenReturn(0L, 1L);
+        when(repository.increment("child-123"))
+                .thenReturn(com.google.api.core.ApiFutures.immediateFuture(null));
+        TokenVersionService versions = new TokenVersionService(repository, 30, 100);
+        JwtService service = new JwtService(versions, 100);
+        ReflectionTestUtils.setField(service, "secret", TEST_SECRET);
+        ReflectionTestUtils.setField(service, "childTokenTtlDays", TEST_CHILD_TTL_DAYS);
+        User child =
+                User.builder().id("child-123").role(User.Role.CHILD).parentId("parent-1").build();
+        String token = service.generateToken(child);
+        assertThat(service.toPrincipal(service.verify(token))).isNotNull();
+
+        // When
+        versions.revokeAll("child-123");
+
+        // Then
+        assertThat(service.toPrincipal(service.verify(token))).isNull();
+    }
+
+    @Test
+    void shouldTreatTokensWithoutVersionAsLegacy() {
+        when(userDetails.getUsername()).thenReturn("test-user");
+
+        String token = jwtService.generateToken(userDetails);
+
+        assertThat(jwtService.verify(token).isSelfContained()).isFalse();
+    }
+
+    @Test
+    void shouldServeRepeatedVerificationsFromCache() {
+        when(userDetails.getUsername()).thenReturn("test-user");
+        String token = jwtService.generateToken(userDetails);
+
+        VerifiedToken first = jwtService.verify(token);
+
+        assertThat(jwtService.verify(token)).isSameAs(first);
+        assertThat(jwtService.isTokenValid(token, userDetails)).isTrue();
+    }
+
+    @Test
+    void shouldNotCacheTokensWithBadSignature() {
+        when(userDetails.getUsername()).thenReturn("test-user");
+        String token = jwtService.generateToken(userDetails);
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertThatThrownBy(() -> jwtService.verify(tampered)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> jwtService.verify(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void shouldRejectExpiredToken() {
+        Key key = Keys.hmacShaKeyFor(java.util.HexFormat.of().parseHex(TEST_SECRET));
+        String expired =
+                Jwts.builder()
+                        .setSubject("test-user")
+                        .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                        .signWith(key)
+                        .compact();
+
+        assertThatThrownBy(() -> jwtService.verify(expired))
+                .isInstanceOf(ExpiredJwtException.class);
+    }
+
     private Claims parseToken(String token) {
         byte[] keyBytes = java.util.HexFormat.of().parseHex(TEST_SECRET);
         Key key = Keys.hmacShaKeyFor(keyBytes);
@@ -29,12 +29,15 @@ class RefreshTokenServiceTest {
 
     @Mock private JwtService jwtService;
 
+    @Mock private TokenVersionService tokenVersionService;
+
     private RefreshTokenServiceImpl refreshTokenService;
 
     @BeforeEach
     void setUp() throws Exception {
         refreshTokenService =
-                new RefreshTokenServiceImpl(refreshTokenRepository, userRepository, jwtService);
+                new RefreshTokenServiceImpl(
+                        refreshTokenRepository, userRepository, jwtService, tokenVersionService);
         ReflectionTestUtils.setField(refreshTokenService, "refreshTokenTtlDays", 30);
     }
 
@@ -159,6 +162,7 @@ class RefreshTokenServiceTest {
 
         // Then
         verify(refreshTokenRepository).revokeAllForUser(userId);
+        verify(tokenVersionService).revokeAll(userId);
     }
 
     @Test
@@ -180,14 +184,13 @@ class RefreshTokenServiceTest {
         when(refreshTokenRepository.findByTokenHash(anyString()))
                 .thenReturn(Optional.of(storedToken));
         when(userRepository.findByIdSync(userId)).thenReturn(child);
-        when(jwtService.generateToken(userId, "Child User", "CHILD"))
-                .thenReturn("new-child-access-token");
+        when(jwtService.generateToken(child)).thenReturn("new-child-access-token");
 
         // When
         Optional<String> result = refreshTokenService.validateAndRefresh(rawToken);
 
         // Then
         assertThat(result).isPresent().contains("new-child-access-token");
-        verify(jwtService).generateToken(userId, "Child User", "CHILD");
+        verify(jwtService).generateToken(child);
     }
 }
@@ -0,0 +1,54 @@
+package com.fazquepaga.taskandpay.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.api.core.ApiFutures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class TokenVersionServiceTest {
+
+    @Mock private TokenVersionRepository tokenVersionRepository;
+
+    private TokenVersionService tokenVersionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tokenVersionService = new TokenVersionService(tokenVersionRepository, 30, 100);
+    }
+
+    @Test
+    void shouldCacheVersionBetweenChecks() throws Exception {
+        // Given
+        when(tokenVersionRepository.find("user-1")).thenReturn(3L);
+
+        // When
+        boolean current = tokenVersionService.isCurrent("user-1", 3L);
+        boolean stale = tokenVersionService.isCurrent("user-1", 2L);
+
+        // Then
+        assertTrue(current);
+        assertFalse(stale);
+        verify(tokenVersionRepository, times(1)).find("user-1");
+    }
+
+    @Test
+    void shouldReloadVersionAfterRevokingOnThisInstance() throws Exception {
+        // Given
+        when(tokenVersionRepository.find("user-1")).thenReturn(0L, 1L);
+        when(tokenVersionRepository.increment("user-1"))
+                .thenReturn(ApiFutures.immediateFuture(null));
+        assertTrue(tokenVersionService.isCurrent("user-1", 0L));
+
+        // When
+        tokenVersionService.revokeAll("user-1");
+
+        // Then
+        assertFalse(tokenVersionService.isCurrent("user-1", 0L));
+        assertEquals(1L, tokenVersionService.currentVersion("user-1"));
+    }
+}
@@ -9,14 +9,15 @@ import static org.mockito.Mockito.when;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.fazquepaga.taskandpay.tasks.Task;
+import com.fazquepaga.taskandpay.tasks.TaskCounters;
 import com.fazquepaga.taskandpay.tasks.TaskRepository;
 import com.fazquepaga.taskandpay.tasks.TaskService;
 import com.fazquepaga.taskandpay.tasks.dto.CreateTaskRequest;
 import com.google.api.core.ApiFutures;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.cloud.firestore.QuerySnapshot;
-import java.util.Arrays;
+import com.google.cloud.firestore.DocumentSnapshot;
+import java.time.LocalDate;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -43,12 +44,15 @@ class TaskServiceSubscriptionTest {
 
     @Mock private com.fazquepaga.taskandpay.shared.stats.StatsService statsService;
 
+    @Mock private com.fazquepaga.taskandpay.identity.FamilyTimeZoneService familyTimeZoneService;
+
     private TaskService taskService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
         when(allowanceServiceProvider.get()).thenReturn(allowanceService);
+        when(familyTimeZoneService.today(Mockito.anyString())).thenReturn(LocalDate.now());
         taskService =
                 new TaskService(
                         taskRepository,
@@ -60,7 +64,11 @@ class TaskServiceSubscriptionTest {
                         // mock
                         ledgerService,
                         allowanceServiceProvider,
-                        statsService);
+                        statsService,
+                        familyTimeZoneService,
+                        Mockito.mock(
+                                com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker
+                                        .class));
     }
 
     @Test
@@ -86,28 +94,20 @@ class TaskServiceSubscriptionTest {
         request.setWeight(Task.TaskWeight.MEDIUM);
         request.setRequiresProof(false);
 
-        Task createdTask = Task.builder().id("new-task-id").description("Daily Task").build();
-
         when(userRepository.findByIdSync(childId)).thenReturn(child);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(subscriptionService.canCreateTask(parent, 0)).thenReturn(true);
 
         doAnswer(
                         invocation -> {
-                            Task taskToSave = invocation.getArgument(1);
-                            taskToSave.setId("new-task-id");
-                            return ApiFutures.immediateFuture(null);
+                            List<Task> tasksToSave = invocation.getArgument(1);
+                            tasksToSave.get(0).setId("new-task-id");
+                            return ApiFutures.immediateFuture(Collections.emptyList());
                         })
                 .when(taskRepository)
-                .save(eq(childId), any(Task.class));
+                .saveAll(eq(childId), any());
 
-        // Mock task list for counting and for returning the created task
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(createdTask);
+        mockRecurringCount(childId, 0);
 
         // When
         Task result = taskService.createTask(childId, request);
@@ -144,25 +144,8 @@ class TaskServiceSubscriptionTest {
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(subscriptionService.canCreateTask(parent, 5)).thenReturn(false);
 
-        // Mock 5 existing recurring tasks
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-
-        QueryDocumentSnapshot doc1 = Mockito.mock(QueryDocumentSnapshot.class);
-        QueryDocumentSnapshot doc2 = Mockito.mock(QueryDocumentSnapshot.class);
-        QueryDocumentSnapshot doc3 = Mockito.mock(QueryDocumentSnapshot.class);
-        QueryDocumentSnapshot doc4 = Mockito.mock(QueryDocumentSnapshot.class);
-        QueryDocumentSnapshot doc5 = Mockito.mock(QueryDocumentSnapshot.class);
-
-        when(querySnapshot.getDocuments()).thenReturn(Arrays.asList(doc1, doc2, doc3, doc4, doc5));
-
-        Task dailyTask = Task.builder().type(Task.TaskType.DAILY).build();
-        when(doc1.toObject(Task.class)).thenReturn(dailyTask);
-        when(doc2.toObject(Task.class)).thenReturn(dailyTask);
-        when(doc3.toObject(Task.class)).thenReturn(dailyTask);
-        when(doc4.toObject(Task.class)).thenReturn(dailyTask);
-        when(doc5.toObject(Task.class)).thenReturn(dailyTask);
+        // 5 existing recurring tasks
+        mockRecurringCount(childId, 5);
 
         // When & Then
         SubscriptionLimitReachedException exception =
@@ -195,27 +178,17 @@ class TaskServiceSubscriptionTest {
         request.setWeight(Task.TaskWeight.HIGH);
         request.setRequiresProof(true);
 
-        Task createdTask =
-                Task.builder().id("one-time-task-id").description("One-time Task").build();
-
         when(userRepository.findByIdSync(childId)).thenReturn(child);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
         doAnswer(
                         invocation -> {
-                            Task taskToSave = invocation.getArgument(1);
-                            taskToSave.setId("one-time-task-id");
-                            return ApiFutures.immediateFuture(null);
+                            List<Task> tasksToSave = invocation.getArgument(1);
+                            tasksToSave.get(0).setId("one-time-task-id");
+                            return ApiFutures.immediateFuture(Collections.emptyList());
                         })
                 .when(taskRepository)
-                .save(eq(childId), any(Task.class));
-
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(createdTask);
+                .saveAll(eq(childId), any());
 
         // When
         Task result = taskService.createTask(childId, request);
@@ -252,38 +225,21 @@ class TaskServiceSubscriptionTest {
         request.setRequiresProof(false);
         request.setDayOfWeek(1);
 
-        Task createdTask =
-                Task.builder().id("100th-task-id").description("100th Weekly Task").build();
-
         when(userRepository.findByIdSync(childId)).thenReturn(child);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(subscriptionService.canCreateTask(parent, 99)).thenReturn(true);
 
         doAnswer(
                         invocation -> {
-                            Task taskToSave = invocation.getArgument(1);
-                            taskToSave.setId("100th-task-id");
-                            return ApiFutures.immediateFuture(null);
+                            List<Task> tasksToSave = invocation.getArgument(1);
+                            tasksToSave.get(0).setId("100th-task-id");
+                            return ApiFutures.immediateFuture(Collections.emptyList());
                         })
                 .when(taskRepository)
-                .save(eq(childId), any(Task.class));
-
-        // Mock for counting recurring tasks
-        QuerySnapshot countQuerySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot mockDoc = Mockito.mock(QueryDocumentSnapshot.class);
-        Task weeklyTask = Task.builder().type(Task.TaskType.WEEKLY).build();
-        when(mockDoc.toObject(Task.class)).thenReturn(weeklyTask);
-        when(countQuerySnapshot.getDocuments()).thenReturn(Collections.nCopies(99, mockDoc));
+                .saveAll(eq(childId), any());
 
-        // Mock for getting the created task
-        QuerySnapshot getQuerySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot getDocSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(getDocSnapshot.toObject(Task.class)).thenReturn(createdTask);
-        when(getQuerySnapshot.getDocuments()).thenReturn(Collections.singletonList(getDocSnapshot));
-
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(countQuerySnapshot))
-                .thenReturn(ApiFutures.immediateFuture(getQuerySnapshot));
+        // 99 existing recurring tasks
+        mockRecurringCount(childId, 99);
 
         // When
         Task result = taskService.createTask(childId, request);
@@ -292,4 +248,19 @@ class TaskServiceSubscriptionTest {
         assertNotNull(result);
         assertEquals("100th Weekly Task", result.getDescription());
     }
+
+    private void mockRecurringCount(String childId, long recurringCount) {
+        DocumentSnapshot countersDocument = Mockito.mock(DocumentSnapshot.class);
+        when(countersDocument.exists()).thenReturn(true);
+        when(countersDocument.getBoolean("initialized")).thenReturn(true);
+        when(countersDocument.getLong("version")).thenReturn(2L);
+        when(countersDocument.toObject(TaskCounters.class))
+                .thenReturn(
+                        TaskCounters.builder()
+                                .recurringCount(recurringCount)
+                                .initialized(true)
+                                .build());
+        when(taskRepository.findCounters(childId))
+                .thenReturn(ApiFutures.immediateFuture(countersDocument));
+    }
 }
@@ -0,0 +1,105 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fazquepaga.taskandpay.identity.User;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApproval;
+import com.fazquepaga.taskandpay.tasks.dto.PendingApprovalPage;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+@ExtendWith(MockitoExtension.class)
+class FamilyTaskControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock private TaskService taskService;
+
+    private User currentUser;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc =
+                MockMvcBuilders.standaloneSetup(new FamilyTaskController(taskService))
+                        .setCustomArgumentResolvers(
+                                new HandlerMethodArgumentResolver() {
+                                    @Override
+                                    public boolean supportsParameter(MethodParameter parameter) {
+                                        return parameter.hasParameterAnnotation(
+                                                AuthenticationPrincipal.class);
+                                    }
+
+                                    @Override
+                                    public Object resolveArgument(
+                                            MethodParameter parameter,
+                                            ModelAndViewContainer mavContainer,
+                                            NativeWebRequest webRequest,
+                                            WebDataBinderFactory binderFactory) {
+                                        return currentUser;
+                                    }
+                                })
+                        .setMessageConverters(new MappingJackson2HttpMessageConverter())
+                        .build();
+    }
+
+    @Test
+    void getPendingApprovals_whenUserIsParentOfDifferentFamily_shouldReturnForbidden()
+            throws Exception {
+        currentUser = User.builder().id("parent-456").role(User.Role.PARENT).build();
+
+        mockMvc.perform(get("/api/v1/families/parent-123/pending-approvals"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(taskService);
+    }
+
+    @Test
+    void getPendingApprovals_whenUserIsChild_shouldReturnForbidden() throws Exception {
+        currentUser =
+                User.builder().id("child-1").role(User.Role.CHILD).parentId("parent-123").build();
+
+        mockMvc.perform(get("/api/v1/families/parent-123/pending-approvals"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getPendingApprovals_whenUserIsParent_shouldReturnPageWithCursor() throws Exception {
+        String familyId = "parent-123";
+        currentUser = User.builder().id(familyId).role(User.Role.PARENT).build();
+        PendingApprovalPage page =
+                PendingApprovalPage.builder()
+                        .items(
+                                List.of(
+                                        PendingApproval.builder()
+                                                .childId("child-1")
+                                                .task(Task.builder().id("task-1").build())
+                                                .build()))
+                        .nextCursor("users/child-1/tasks/task-1")
+                        .build();
+        when(taskService.getPendingApprovals(familyId, 1, null)).thenReturn(page);
+
+        mockMvc.perform(
+                        get("/api/v1/families/" + familyId + "/pending-approvals")
+                                .param("page_size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "users/child-1/tasks/task-1"))
+                .andExpect(jsonPath("$[0].childId").value("child-1"))
+                .andExpect(jsonPath("$[0].task.id").value("task-1"));
+    }
+}
@@ -8,10 +8,16 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fazquepaga.taskandpay.tasks.dto.BulkCreateTasksRequest;
+import com.fazquepaga.taskandpay.tasks.dto.BulkTaskReviewRequest;
 import com.fazquepaga.taskandpay.tasks.dto.CreateTaskRequest;
+import com.fazquepaga.taskandpay.tasks.dto.TaskCounterSummary;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPage;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPageRequest;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -29,6 +35,7 @@ class TaskControllerTest {
     @Autowired private ObjectMapper objectMapper;
 
     @MockBean private TaskService taskService;
+    @MockBean private TaskStreamService taskStreamService;
     @MockBean private com.fazquepaga.taskandpay.identity.IdentityService identityService;
     @MockBean private com.fazquepaga.taskandpay.identity.UserRepository userRepository;
     @MockBean private com.fazquepaga.taskandpay.security.JwtService jwtService;
@@ -125,6 +132,82 @@ class TaskControllerTest {
                 .andExpect(jsonPath("$.weight").value("HIGH"));
     }
 
+    @Test
+    void shouldCreateTasksInBulk() throws Exception {
+        // Given
+        CreateTaskRequest request = new CreateTaskRequest();
+        request.setDescription("Feed the dog");
+        request.setType(Task.TaskType.DAILY);
+        request.setWeight(Task.TaskWeight.LOW);
+        BulkCreateTasksRequest bulkRequest =
+                BulkCreateTasksRequest.builder()
+                        .tasksByChild(Map.of("child-id", List.of(request)))
+                        .build();
+
+        setAuthentication("parent-id", com.fazquepaga.taskandpay.identity.User.Role.PARENT);
+
+        Task createdTask =
+                Task.builder()
+                        .id("task-id")
+                        .description("Feed the dog")
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.PENDING)
+                        .build();
+        when(taskService.createTasks(eq("parent-id"), any()))
+                .thenReturn(Map.of("child-id", List.of(createdTask)));
+
+        // When & Then
+        mockMvc.perform(
+                        post("/api/v1/tasks/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(bulkRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$['child-id'][0].id").value("task-id"))
+                .andExpect(jsonPath("$['child-id'][0].type").value("DAILY"));
+    }
+
+    @Test
+    void shouldApproveTasksInBulk() throws Exception {
+        // Given
+        BulkTaskReviewRequest reviewRequest =
+                BulkTaskReviewRequest.builder()
+                        .taskIdsByChild(Map.of("child-id", List.of("task-id")))
+                        .build();
+
+        setAuthentication("parent-id", com.fazquepaga.taskandpay.identity.User.Role.PARENT);
+
+        Task approvedTask =
+                Task.builder().id("task-id").status(Task.TaskStatus.APPROVED).build();
+        when(taskService.approveTasks("parent-id", Map.of("child-id", List.of("task-id"))))
+                .thenReturn(Map.of("child-id", List.of(approvedTask)));
+
+        // When & Then
+        mockMvc.perform(
+                        post("/api/v1/tasks/bulk/approve")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(reviewRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['child-id'][0].status").value("APPROVED"));
+    }
+
+    @Test
+    void shouldNotRejectTasksInBulkAsChild() throws Exception {
+        // Given
+        BulkTaskReviewRequest reviewRequest =
+                BulkTaskReviewRequest.builder()
+                        .taskIdsByChild(Map.of("child-id", List.of("task-id")))
+                        .build();
+
+        setAuthentication("child-id", com.fazquepaga.taskandpay.identity.User.Role.CHILD);
+
+        // When & Then
+        mockMvc.perform(
+                        post("/api/v1/tasks/bulk/reject")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(reviewRequest)))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void shouldGetTasksForChild() throws Exception {
         // Given
@@ -173,6 +256,76 @@ class TaskControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    @Test
+    void shouldReturnTaskPageWithNextCursorHeader() throws Exception {
+        // Given
+        String childId = "child-id";
+        setAuthentication(childId, com.fazquepaga.taskandpay.identity.User.Role.CHILD);
+        TaskPage page =
+                TaskPage.builder()
+                        .tasks(List.of(Task.builder().id("task-1").build()))
+                        .nextCursor("task-1")
+                        .build();
+        when(taskService.getTasksPage(eq(childId), any(TaskPageRequest.class))).thenReturn(page);
+
+        // When & Then
+        mockMvc.perform(
+                        get("/api/v1/tasks")
+                                .param("child_id", childId)
+                                .param("page_size", "1")
+                                .param("status", "PENDING_APPROVAL"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "task-1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("task-1"));
+    }
+
+    @Test
+    void shouldOpenTaskStreamForChild() throws Exception {
+        // Given
+        String childId = "child-id";
+        setAuthentication(childId, com.fazquepaga.taskandpay.identity.User.Role.CHILD);
+        when(taskStreamService.subscribe(childId))
+                .thenReturn(
+                        new org.springframework.web.servlet.mvc.method.annotation.SseEmitter());
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/tasks/stream").param("child_id", childId))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void shouldNotOpenTaskStreamForAnotherChild() throws Exception {
+        // Given
+        setAuthentication("child-id", com.fazquepaga.taskandpay.identity.User.Role.CHILD);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/tasks/stream").param("child_id", "other-child"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void shouldGetTaskCountersForChild() throws Exception {
+        // Given
+        String childId = "child-id";
+        setAuthentication(childId, com.fazquepaga.taskandpay.identity.User.Role.CHILD);
+        when(taskService.getTaskCounters(childId))
+                .thenReturn(
+                        TaskCounterSummary.builder()
+                                .recurringCount(2)
+                                .pendingApprovalCount(1)
+                                .approvedThisMonthCount(4)
+                                .totalValue(new java.math.BigDecimal("50.00"))
+                                .build());
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/tasks/counters").param("child_id", childId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recurringCount").value(2))
+                .andExpect(jsonPath("$.pendingApprovalCount").value(1))
+                .andExpect(jsonPath("$.approvedThisMonthCount").value(4));
+    }
+
     @Test
     void shouldReturnBadRequestWhenChildNotFound() throws Exception {
         // Given
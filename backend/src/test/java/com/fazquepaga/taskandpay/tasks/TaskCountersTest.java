@@ -0,0 +1,121 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.cloud.firestore.FieldPath;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TaskCountersTest {
+
+    private static final LocalDate WEDNESDAY = LocalDate.of(2024, 6, 12);
+
+    @Test
+    void pendingApprovalsOfPastPeriodsAreNotCounted() {
+        TaskCounters counters =
+                TaskCounters.builder()
+                        .pendingApprovalCount(1)
+                        .pendingApprovalByPeriod(
+                                new HashMap<>(
+                                        Map.of(
+                                                "DAILY_2024-06-12", 2L,
+                                                "DAILY_2024-06-11", 3L,
+                                                "WEEKLY_2024-06-07", 4L,
+                                                "WEEKLY_2024-06-05", 5L)))
+                        .build();
+
+        assertEquals(7, counters.pendingApprovalsOn(WEDNESDAY));
+    }
+
+    @Test
+    void approvalMovesPendingCountToApprovedMonth() {
+        Task task =
+                Task.builder()
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .lastCompletedPeriod("2024-06-12")
+                        .build();
+        YearMonth june = YearMonth.from(WEDNESDAY);
+
+        TaskCounterDelta delta = TaskCounterDelta.none().leaving(task);
+        task.setStatus(Task.TaskStatus.APPROVED);
+        delta.entering(task, june);
+        assertEquals("2024-06", task.getApprovedMonth());
+
+        Map<String, Object> fields = delta.toFields();
+        Map<?, ?> pendingByPeriod = (Map<?, ?>) fields.get(TaskCounters.PENDING_APPROVAL_BY_PERIOD);
+        Map<?, ?> approvedByMonth = (Map<?, ?>) fields.get(TaskCounters.APPROVED_BY_MONTH);
+        assertEquals(Set.of("DAILY_2024-06-12"), pendingByPeriod.keySet());
+        assertEquals(Set.of("2024-06"), approvedByMonth.keySet());
+        assertFalse(fields.containsKey(TaskCounters.RECURRING_COUNT));
+    }
+
+    @Test
+    void statusChangeWithinSameBucketIsEmpty() {
+        Task task =
+                Task.builder().type(Task.TaskType.ONE_TIME).status(Task.TaskStatus.PENDING).build();
+        YearMonth june = YearMonth.from(WEDNESDAY);
+
+        TaskCounterDelta delta = TaskCounterDelta.none().leaving(task).entering(task, june);
+
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    void totalValueIsKeptInWholeCents() {
+        Task dime =
+                Task.builder().type(Task.TaskType.ONE_TIME).value(new BigDecimal("0.10")).build();
+
+        TaskCounters counters =
+                TaskCounters.fromTasks(List.of(dime, dime, dime), YearMonth.from(WEDNESDAY));
+
+        assertEquals(30, counters.getTotalValueCents());
+        assertEquals(new BigDecimal("0.30"), counters.getTotalValue());
+        assertEquals(TaskCounters.CURRENT_VERSION, counters.getVersion());
+    }
+
+    @Test
+    void reversingAnApprovalChargesTheMonthItWasCountedIn() {
+        Task task =
+                Task.builder()
+                        .type(Task.TaskType.ONE_TIME)
+                        .status(Task.TaskStatus.APPROVED)
+                        .approvedMonth("2024-05")
+                        .build();
+
+        TaskCounterDelta delta = TaskCounterDelta.none().leaving(task);
+        task.setStatus(Task.TaskStatus.PENDING);
+        delta.entering(task, YearMonth.from(WEDNESDAY));
+
+        Map<?, ?> approvedByMonth =
+                (Map<?, ?>) delta.toFields().get(TaskCounters.APPROVED_BY_MONTH);
+        assertEquals(Set.of("2024-05"), approvedByMonth.keySet());
+        assertNull(task.getApprovedMonth());
+    }
+
+    @Test
+    void periodsAndMonthsNoLongerReadExpire() {
+        TaskCounters counters =
+                TaskCounters.builder()
+                        .pendingApprovalByPeriod(
+                                new HashMap<>(
+                                        Map.of(
+                                                "DAILY_2024-06-11", 1L,
+                                                "WEEKLY_2024-06-05", 1L,
+                                                "DAILY_2024-06-04", 0L)))
+                        .approvedByMonth(new HashMap<>(Map.of("2024-06", 3L, "2023-05", 2L)))
+                        .build();
+
+        assertEquals(
+                Set.of(
+                        FieldPath.of(TaskCounters.PENDING_APPROVAL_BY_PERIOD, "DAILY_2024-06-04"),
+                        FieldPath.of(TaskCounters.APPROVED_BY_MONTH, "2023-05")),
+                Set.copyOf(counters.expiredKeys(WEDNESDAY)));
+    }
+}
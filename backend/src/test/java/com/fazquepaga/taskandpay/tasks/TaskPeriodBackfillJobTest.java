@@ -0,0 +1,97 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.fazquepaga.taskandpay.identity.UserRepository;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class TaskPeriodBackfillJobTest {
+
+    private static final LocalDate FAMILY_DAY = LocalDate.of(2024, 6, 12);
+
+    @Mock private UserRepository userRepository;
+    @Mock private TaskRepository taskRepository;
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
+    private TaskPeriodBackfillJob job;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        job = new TaskPeriodBackfillJob(userRepository, taskRepository, familyTimeZoneService, 2);
+    }
+
+    private static QueryDocumentSnapshot document(String id, Task task) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        when(document.toObject(Task.class)).thenReturn(task);
+        return document;
+    }
+
+    private static QuerySnapshot snapshot(QueryDocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(List.of(documents));
+        return snapshot;
+    }
+
+    @Test
+    void shouldStampOnlyDoneRecurringTasksWithoutAPeriod() throws Exception {
+        // Given
+        QueryDocumentSnapshot child = mock(QueryDocumentSnapshot.class);
+        when(child.getId()).thenReturn("child-1");
+        QuerySnapshot children = snapshot(child);
+        when(userRepository.findChildIdsPage(2, null)).thenReturn(children);
+        Task legacyDaily =
+                Task.builder().type(Task.TaskType.DAILY).status(Task.TaskStatus.APPROVED).build();
+        Task legacyWeekly =
+                Task.builder()
+                        .type(Task.TaskType.WEEKLY)
+                        .dayOfWeek(5)
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .build();
+        Task stamped =
+                Task.builder()
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.APPROVED)
+                        .lastCompletedPeriod("2024-06-11")
+                        .build();
+        Task pending =
+                Task.builder().type(Task.TaskType.DAILY).status(Task.TaskStatus.PENDING).build();
+        Task oneTime =
+                Task.builder()
+                        .type(Task.TaskType.ONE_TIME)
+                        .status(Task.TaskStatus.APPROVED)
+                        .build();
+        QuerySnapshot tasks =
+                snapshot(
+                        document("daily", legacyDaily),
+                        document("weekly", legacyWeekly),
+                        document("stamped", stamped),
+                        document("pending", pending),
+                        document("one-time", oneTime));
+        when(taskRepository.findTasksByUserId("child-1"))
+                .thenReturn(ApiFutures.immediateFuture(tasks));
+        when(familyTimeZoneService.today("child-1")).thenReturn(FAMILY_DAY);
+        Map<String, String> periods = Map.of("daily", "2024-06-12", "weekly", "2024-06-07");
+        when(taskRepository.setLastCompletedPeriods("child-1", periods))
+                .thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // When
+        int count = job.backfill();
+
+        // Then
+        assertEquals(2, count);
+        verify(taskRepository).setLastCompletedPeriods("child-1", periods);
+    }
+}
@@ -0,0 +1,67 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class TaskPeriodsTest {
+
+    private static final LocalDate WEDNESDAY = LocalDate.of(2024, 6, 12);
+
+    @Test
+    void dailyPeriodIsTheDay() {
+        Task task = Task.builder().type(Task.TaskType.DAILY).build();
+
+        assertEquals("2024-06-12", TaskPeriods.periodOf(task, WEDNESDAY));
+    }
+
+    @Test
+    void weeklyPeriodStartsOnTheTaskDayOfWeek() {
+        Task fridayTask = Task.builder().type(Task.TaskType.WEEKLY).dayOfWeek(5).build();
+        Task legacyTask = Task.builder().type(Task.TaskType.WEEKLY).build();
+
+        assertEquals("2024-06-07", TaskPeriods.periodOf(fridayTask, WEDNESDAY));
+        assertEquals("2024-06-10", TaskPeriods.periodOf(legacyTask, WEDNESDAY));
+    }
+
+    @Test
+    void oneTimeTasksKeepTheirStoredStatus() {
+        Task task =
+                Task.builder()
+                        .type(Task.TaskType.ONE_TIME)
+                        .status(Task.TaskStatus.APPROVED)
+                        .build();
+
+        assertNull(TaskPeriods.periodOf(task, WEDNESDAY));
+        assertEquals(Task.TaskStatus.APPROVED, TaskPeriods.resolve(task, WEDNESDAY).getStatus());
+    }
+
+    @Test
+    void weeklyTaskStaysDoneUntilItsNextDay() {
+        Task task =
+                Task.builder()
+                        .type(Task.TaskType.WEEKLY)
+                        .dayOfWeek(5)
+                        .status(Task.TaskStatus.APPROVED)
+                        .aiValidated(true)
+                        .build();
+        TaskPeriods.markCompleted(task, WEDNESDAY);
+
+        assertEquals(
+                Task.TaskStatus.APPROVED,
+                TaskPeriods.resolve(task, WEDNESDAY.plusDays(1)).getStatus());
+
+        Task resolved = TaskPeriods.resolve(task, WEDNESDAY.plusDays(2));
+        assertEquals(Task.TaskStatus.PENDING, resolved.getStatus());
+        assertFalse(resolved.getAiValidated());
+    }
+
+    @Test
+    void recurringTaskDoneBeforePeriodsWereStoredStaysDone() {
+        Task task =
+                Task.builder().type(Task.TaskType.DAILY).status(Task.TaskStatus.APPROVED).build();
+
+        assertEquals(Task.TaskStatus.APPROVED, TaskPeriods.resolve(task, WEDNESDAY).getStatus());
+    }
+}
@@ -2,6 +2,7 @@ package com.fazquepaga.taskandpay.tasks;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
@@ -12,13 +13,22 @@ import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
 import com.fazquepaga.taskandpay.subscription.SubscriptionLimitReachedException;
 import com.fazquepaga.taskandpay.tasks.dto.CreateTaskRequest;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPage;
+import com.fazquepaga.taskandpay.tasks.dto.TaskPageRequest;
 import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
+import io.grpc.Status;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -47,12 +57,18 @@ class TaskServiceTest {
 
     @Mock private com.fazquepaga.taskandpay.shared.stats.StatsService statsService;
 
+    @Mock private com.fazquepaga.taskandpay.identity.FamilyTimeZoneService familyTimeZoneService;
+
+    @Mock
+    private com.fazquepaga.taskandpay.allowance.TaskValueRecalculationWorker recalculationWorker;
+
     @InjectMocks private TaskService taskService;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
         when(allowanceServiceProvider.get()).thenReturn(allowanceService);
+        when(familyTimeZoneService.today(anyString())).thenReturn(LocalDate.now());
     }
 
     @Test
@@ -82,31 +98,12 @@ class TaskServiceTest {
 
         doAnswer(
                         invocation -> {
-                            Task taskToSave = invocation.getArgument(1);
-                            taskToSave.setId("new-task-id");
-                            return ApiFutures.immediateFuture(null);
+                            List<Task> tasksToSave = invocation.getArgument(1);
+                            tasksToSave.get(0).setId("new-task-id");
+                            return ApiFutures.immediateFuture(Collections.emptyList());
                         })
                 .when(taskRepository)
-                .save(eq(userId), any(Task.class));
-
-        // Mock the behavior of getTasksByUserId to return the newly created task
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(userId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-
-        Task createdTask =
-                Task.builder()
-                        .id("new-task-id")
-                        .description("Test Task")
-                        .type(Task.TaskType.ONE_TIME)
-                        .weight(Task.TaskWeight.MEDIUM)
-                        .requiresProof(false)
-                        .status(Task.TaskStatus.PENDING)
-                        .createdAt(Instant.now())
-                        .build();
-        when(documentSnapshot.toObject(Task.class)).thenReturn(createdTask);
+                .saveAll(eq(userId), any());
 
         // When
         Task result = taskService.createTask(userId, request);
@@ -140,7 +137,7 @@ class TaskServiceTest {
 
         QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
 
-        when(taskRepository.findTasksByUserId(userId))
+        when(taskRepository.findActiveTasks(userId))
                 .thenReturn(ApiFutures.immediateFuture(querySnapshot));
 
         when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
@@ -176,7 +173,7 @@ class TaskServiceTest {
         QueryDocumentSnapshot doc2 = Mockito.mock(QueryDocumentSnapshot.class);
         QueryDocumentSnapshot doc3 = Mockito.mock(QueryDocumentSnapshot.class);
 
-        when(taskRepository.findTasksByUserId(userId))
+        when(taskRepository.findActiveTasks(userId))
                 .thenReturn(ApiFutures.immediateFuture(querySnapshot));
         when(querySnapshot.getDocuments()).thenReturn(List.of(doc1, doc2, doc3));
 
@@ -203,7 +200,7 @@ class TaskServiceTest {
 
         QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
 
-        when(taskRepository.findTasksByUserId(userId))
+        when(taskRepository.findActiveTasks(userId))
                 .thenReturn(ApiFutures.immediateFuture(querySnapshot));
 
         when(querySnapshot.getDocuments()).thenReturn(Collections.emptyList());
@@ -220,7 +217,150 @@ class TaskServiceTest {
     }
 
     @Test
-    void shouldApproveTask() throws ExecutionException, InterruptedException {
+    void shouldReturnTaskPageWithNextCursor() throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-id";
+        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
+        QueryDocumentSnapshot doc1 = Mockito.mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot doc2 = Mockito.mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot doc3 = Mockito.mock(QueryDocumentSnapshot.class);
+        when(doc1.toObject(Task.class))
+                .thenReturn(
+                        Task.builder()
+                                .id("task-1")
+                                .status(Task.TaskStatus.PENDING_APPROVAL)
+                                .build());
+        when(doc2.toObject(Task.class))
+                .thenReturn(
+                        Task.builder()
+                                .id("task-2")
+                                .status(Task.TaskStatus.PENDING_APPROVAL)
+                                .build());
+        when(doc2.getId()).thenReturn("task-2");
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc1, doc2, doc3));
+        when(taskRepository.findTasksPage(eq(userId), any(TaskPageRequest.class)))
+                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
+
+        // When
+        TaskPage page =
+                taskService.getTasksPage(
+                        userId,
+                        TaskPageRequest.builder()
+                                .pageSize(2)
+                                .status(Task.TaskStatus.PENDING_APPROVAL)
+                                .build());
+
+        // Then
+        assertEquals(2, page.getTasks().size());
+        assertEquals("task-2", page.getNextCursor());
+    }
+
+    @Test
+    void shouldReturnLastTaskPageWithoutCursor() throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-id";
+        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
+        QueryDocumentSnapshot doc1 = Mockito.mock(QueryDocumentSnapshot.class);
+        when(doc1.toObject(Task.class)).thenReturn(Task.builder().id("task-1").build());
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc1));
+        when(taskRepository.findTasksPage(eq(userId), any(TaskPageRequest.class)))
+                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
+
+        // When
+        TaskPage page =
+                taskService.getTasksPage(
+                        userId, TaskPageRequest.builder().pageSize(500).cursor("task-0").build());
+
+        // Then
+        assertEquals(1, page.getTasks().size());
+        assertNull(page.getNextCursor());
+        verify(taskRepository)
+                .findTasksPage(
+                        eq(userId),
+                        Mockito.argThat(r -> r.getPageSize() == TaskService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void shouldReadRecurringTaskDoneInEarlierPeriodAsPending()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String userId = "user-id";
+        LocalDate today = LocalDate.now();
+        Task doneYesterday =
+                Task.builder()
+                        .id("daily-1")
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.APPROVED)
+                        .acknowledged(true)
+                        .lastCompletedPeriod(today.minusDays(1).toString())
+                        .build();
+        Task doneToday =
+                Task.builder()
+                        .id("daily-2")
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.APPROVED)
+                        .acknowledged(true)
+                        .lastCompletedPeriod(today.toString())
+                        .build();
+
+        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
+        QueryDocumentSnapshot doc1 = Mockito.mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot doc2 = Mockito.mock(QueryDocumentSnapshot.class);
+        when(taskRepository.findActiveTasks(userId))
+                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc1, doc2));
+        when(doc1.toObject(Task.class)).thenReturn(doneYesterday);
+        when(doc2.toObject(Task.class)).thenReturn(doneToday);
+
+        // When
+        List<Task> result = taskService.getTasksByUserId(userId);
+
+        // Then
+        assertEquals(Task.TaskStatus.PENDING, result.get(0).getStatus());
+        assertFalse(result.get(0).getAcknowledged());
+        assertEquals(Task.TaskStatus.APPROVED, result.get(1).getStatus());
+    }
+
+    @Test
+    void shouldCompleteRecurringTaskAgainInNewPeriod()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+        LocalDate today = LocalDate.now();
+        User child =
+                User.builder().id(childId).role(User.Role.CHILD).parentId("parent-id").build();
+        Task task =
+                Task.builder()
+                        .id(taskId)
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .requiresProof(true)
+                        .lastCompletedPeriod(today.minusDays(1).toString())
+                        .build();
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        mockTaskDocument(childId, task);
+
+        // When
+        Task result = taskService.completeTask(taskId, childId);
+
+        // Then
+        assertEquals(Task.TaskStatus.PENDING_APPROVAL, result.getStatus());
+        assertEquals(today.toString(), result.getLastCompletedPeriod());
+        verify(taskRepository)
+                .updateIfUnchanged(
+                        eq(childId),
+                        eq(taskId),
+                        Mockito.argThat(
+                                fields ->
+                                        today.toString().equals(fields.get("lastCompletedPeriod"))),
+                        any(),
+                        any());
+    }
+
+    @Test
+    void shouldApproveTask() throws Exception {
         // Given
         String childId = "child-id";
         String taskId = "task-id";
@@ -233,30 +373,29 @@ class TaskServiceTest {
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(userRepository.findByIdSync(childId)).thenReturn(child);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
         when(allowanceServiceProvider.get().calculateValueForTask(childId, taskId))
                 .thenReturn(new BigDecimal("10.00"));
-        when(taskRepository.save(childId, task)).thenReturn(ApiFutures.immediateFuture(null));
+        com.google.cloud.firestore.Transaction transaction =
+                Mockito.mock(com.google.cloud.firestore.Transaction.class);
+        BigDecimal[] credited =
+                mockLedgerWork(
+                        childId,
+                        com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                        transaction);
 
         // When
         Task result = taskService.approveTask(childId, taskId, parentId);
 
-        // Then
+        // Then: the status change is written in the ledger transaction that credits the child
         assertEquals(Task.TaskStatus.APPROVED, result.getStatus());
         assertTrue(result.getAcknowledged());
-        verify(taskRepository).save(childId, task);
-        verify(ledgerService)
-                .addTransaction(
-                        eq(childId),
-                        any(BigDecimal.class),
-                        anyString(),
-                        eq(com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT));
+        assertEquals(new BigDecimal("10.00"), credited[0]);
+        verify(taskRepository).update(eq(transaction), eq(childId), eq(taskId), anyMap());
+        verify(taskRepository).updateCounters(eq(transaction), eq(childId), any());
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
     }
 
     @Test
@@ -277,26 +416,20 @@ class TaskServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
-        // Mock getTasksByUserId
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
-        when(taskRepository.save(childId, task)).thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         Task result = taskService.acknowledgeTask(childId, taskId, parentId);
 
         // Then
         assertTrue(result.getAcknowledged());
-        verify(taskRepository).save(childId, task);
+        verify(taskRepository)
+                .updateIfUnchanged(eq(childId), eq(taskId), anyMap(), any(), any());
     }
 
     @Test
-    void shouldRejectTask() throws ExecutionException, InterruptedException {
+    void shouldRejectTask() throws Exception {
         // Given
         String childId = "child-id";
         String taskId = "task-id";
@@ -313,17 +446,17 @@ class TaskServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
-        // Mock getTasksByUserId
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
         when(allowanceServiceProvider.get().calculateValueForTask(childId, taskId))
                 .thenReturn(new BigDecimal("10.00"));
-        when(taskRepository.save(childId, task)).thenReturn(ApiFutures.immediateFuture(null));
+        com.google.cloud.firestore.Transaction transaction =
+                Mockito.mock(com.google.cloud.firestore.Transaction.class);
+        BigDecimal[] debited =
+                mockLedgerWork(
+                        childId,
+                        com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT,
+                        transaction);
 
         // When
         Task result = taskService.rejectTask(childId, taskId, parentId);
@@ -331,13 +464,76 @@ class TaskServiceTest {
         // Then
         assertEquals(Task.TaskStatus.PENDING, result.getStatus());
         assertTrue(result.getAcknowledged());
-        verify(taskRepository).save(childId, task);
-        verify(ledgerService)
-                .addTransaction(
+        assertEquals(new BigDecimal("10.00"), debited[0]);
+        verify(taskRepository).update(eq(transaction), eq(childId), eq(taskId), anyMap());
+        verify(statsService).incrementFamilyStat(parentId, "totalTasksApproved", -1);
+    }
+
+    @Test
+    void shouldKeepTaskApprovedWhenBalanceDoesNotCoverReversal() throws Exception {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+        String parentId = "parent-id";
+
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        Task task = Task.builder().id(taskId).status(Task.TaskStatus.APPROVED).build();
+
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        mockTaskDocument(childId, task);
+        when(allowanceServiceProvider.get().calculateValueForTask(childId, taskId))
+                .thenReturn(new BigDecimal("10.00"));
+        when(ledgerService.addTransaction(
                         eq(childId),
-                        any(BigDecimal.class),
                         anyString(),
-                        eq(com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT));
+                        eq(com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.DEBIT),
+                        any(com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork.class)))
+                .thenThrow(
+                        new ExecutionException(new IllegalStateException("Insufficient balance")));
+
+        // When & Then: the rolled back transaction leaves nothing to compensate
+        assertThrows(
+                IllegalStateException.class,
+                () -> taskService.rejectTask(childId, taskId, parentId));
+        verify(taskRepository, Mockito.never()).save(anyString(), any());
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
+        verify(statsService, Mockito.never())
+                .incrementFamilyStat(parentId, "totalTasksApproved", -1);
+    }
+
+    @Test
+    void shouldCreditAutoApprovedTaskWithItsStatusChange() throws Exception {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+        User child =
+                User.builder().id(childId).role(User.Role.CHILD).parentId("parent-id").build();
+        Task task = Task.builder().id(taskId).status(Task.TaskStatus.PENDING).build();
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        mockTaskDocument(childId, task);
+        when(allowanceService.calculateValueForTask(childId, taskId))
+                .thenReturn(new BigDecimal("3.00"));
+        com.google.cloud.firestore.Transaction transaction =
+                Mockito.mock(com.google.cloud.firestore.Transaction.class);
+        BigDecimal[] credited =
+                mockLedgerWork(
+                        childId,
+                        com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                        transaction);
+
+        // When
+        Task result = taskService.completeTask(taskId, childId);
+
+        // Then
+        assertEquals(Task.TaskStatus.APPROVED, result.getStatus());
+        assertFalse(result.getAcknowledged());
+        assertEquals("parent-id", result.getParentId());
+        assertEquals(new BigDecimal("3.00"), credited[0]);
+        verify(taskRepository).update(eq(transaction), eq(childId), eq(taskId), anyMap());
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
     }
 
     @Test
@@ -371,12 +567,7 @@ class TaskServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
         // When & Then
         assertThrows(
@@ -421,10 +612,10 @@ class TaskServiceTest {
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(userRepository.findByIdSync(childId)).thenReturn(child);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.emptyList());
+        DocumentSnapshot missing = Mockito.mock(DocumentSnapshot.class);
+        when(missing.exists()).thenReturn(false);
+        when(taskRepository.findById(childId, taskId))
+                .thenReturn(ApiFutures.immediateFuture(missing));
 
         // When & Then
         assertThrows(
@@ -449,12 +640,7 @@ class TaskServiceTest {
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(userRepository.findByIdSync(childId)).thenReturn(child);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
         // When & Then
         assertThrows(
@@ -515,11 +701,7 @@ class TaskServiceTest {
         when(userRepository.findByIdSync(userId)).thenReturn(child);
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
         when(subscriptionService.canCreateTask(parent, 0)).thenReturn(false);
-
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        when(taskRepository.findTasksByUserId(userId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.emptyList());
+        mockCounters(userId, TaskCounters.builder().initialized(true).build());
 
         // When & Then
         assertThrows(
@@ -530,17 +712,195 @@ class TaskServiceTest {
     }
 
     @Test
-    void shouldUpdateTaskValue() throws ExecutionException, InterruptedException {
+    void shouldCreateTasksInBulkWithOneRedistributionPerChild()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        User child1 =
+                User.builder().id("child-1").role(User.Role.CHILD).parentId(parentId).build();
+        User child2 =
+                User.builder().id("child-2").role(User.Role.CHILD).parentId(parentId).build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.findByIdSync("child-1")).thenReturn(child1);
+        when(userRepository.findByIdSync("child-2")).thenReturn(child2);
+
+        CreateTaskRequest oneTime = new CreateTaskRequest();
+        oneTime.setDescription("Clean room");
+        oneTime.setType(Task.TaskType.ONE_TIME);
+        doAnswer(
+                        invocation -> {
+                            List<Task> tasks = invocation.getArgument(1);
+                            for (int i = 0; i < tasks.size(); i++) {
+                                tasks.get(i).setId(invocation.getArgument(0) + "-task-" + i);
+                            }
+                            return ApiFutures.immediateFuture(Collections.emptyList());
+                        })
+                .when(taskRepository)
+                .saveAll(anyString(), any());
+
+        // When
+        Map<String, List<Task>> created =
+                taskService.createTasks(
+                        parentId,
+                        Map.of("child-1", List.of(oneTime, oneTime), "child-2", List.of(oneTime)));
+
+        // Then
+        assertEquals(2, created.get("child-1").size());
+        verify(recalculationWorker).requestRecalculation("child-1");
+        verify(recalculationWorker).requestRecalculation("child-2");
+        verify(statsService).incrementFamilyStat(parentId, "totalTasksCreated", 3);
+    }
+
+    @Test
+    void shouldNotWriteAnyTaskWhenBulkExceedsRecurringLimit()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        User child =
+                User.builder().id("child-1").role(User.Role.CHILD).parentId(parentId).build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.findByIdSync("child-1")).thenReturn(child);
+
+        mockCounters("child-1", TaskCounters.builder().initialized(true).build());
+        // Two new recurring tasks: the check is made for the second one
+        when(subscriptionService.canCreateTask(parent, 1)).thenReturn(false);
+
+        CreateTaskRequest daily = new CreateTaskRequest();
+        daily.setType(Task.TaskType.DAILY);
+
+        // When & Then
+        assertThrows(
+                SubscriptionLimitReachedException.class,
+                () -> taskService.createTasks(parentId, Map.of("child-1", List.of(daily, daily))));
+        verify(taskRepository, Mockito.never()).saveAll(anyString(), any());
+    }
+
+    @Test
+    void shouldRejectBulkForChildOfAnotherParent() throws ExecutionException, InterruptedException {
+        // Given
+        User parent = User.builder().id("parent-id").role(User.Role.PARENT).build();
+        User child =
+                User.builder().id("child-1").role(User.Role.CHILD).parentId("other-parent").build();
+        when(userRepository.findByIdSync("parent-id")).thenReturn(parent);
+        when(userRepository.findByIdSync("child-1")).thenReturn(child);
+
+        // When & Then
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        taskService.createTasks(
+                                "parent-id", Map.of("child-1", List.of(new CreateTaskRequest()))));
+    }
+
+    @Test
+    void shouldApproveTasksInBulkWithOneLedgerEntryPerChild() throws Exception {
+        // Given
+        String parentId = "parent-id";
+        String childId = "child-1";
+        when(userRepository.findByIdSync(parentId))
+                .thenReturn(User.builder().id(parentId).role(User.Role.PARENT).build());
+        User child = User.builder().id(childId).role(User.Role.CHILD).parentId(parentId).build();
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        when(allowanceService.calculateValuesForTasks(childId, List.of("task-1", "task-2")))
+                .thenReturn(
+                        Map.of("task-1", new BigDecimal("2.50"), "task-2", new BigDecimal("1.50")));
+        DocumentSnapshot first = completedTaskSnapshot("task-1");
+        DocumentSnapshot second = completedTaskSnapshot("task-2");
+        when(taskRepository.getAll(any(), eq(childId), eq(List.of("task-1", "task-2"))))
+                .thenReturn(List.of(first, second));
+
+        com.google.cloud.firestore.Transaction transaction =
+                Mockito.mock(com.google.cloud.firestore.Transaction.class);
+        BigDecimal[] credited = new BigDecimal[1];
+        doAnswer(
+                        invocation -> {
+                            com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork work =
+                                    invocation.getArgument(3);
+                            credited[0] = work.apply(transaction);
+                            return null;
+                        })
+                .when(ledgerService)
+                .addTransaction(
+                        eq(childId),
+                        anyString(),
+                        eq(com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT),
+                        any(com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork.class));
+
+        // When: the duplicate ID is reviewed once
+        Map<String, List<Task>> approved =
+                taskService.approveTasks(
+                        parentId, Map.of(childId, List.of("task-1", "task-2", "task-1")));
+
+        // Then
+        assertEquals(2, approved.get(childId).size());
+        assertEquals(Task.TaskStatus.APPROVED, approved.get(childId).get(0).getStatus());
+        assertEquals(new BigDecimal("4.00"), credited[0]);
+        verify(taskRepository).update(eq(transaction), eq(childId), eq("task-1"), anyMap());
+        verify(taskRepository).update(eq(transaction), eq(childId), eq("task-2"), anyMap());
+        verify(taskRepository).updateCounters(eq(transaction), eq(childId), any());
+        verify(statsService).incrementFamilyStat(parentId, "totalTasksApproved", 2);
+        verify(statsService).incrementFamilyStat(parentId, "totalAllowancePaid", 4.0);
+    }
+
+    @Test
+    void shouldNotReviewAnyTaskWhenOneChildBelongsToAnotherParent() throws Exception {
+        // Given
+        String parentId = "parent-id";
+        when(userRepository.findByIdSync(parentId))
+                .thenReturn(User.builder().id(parentId).role(User.Role.PARENT).build());
+        when(userRepository.findByIdSync("child-1"))
+                .thenReturn(
+                        User.builder()
+                                .id("child-1")
+                                .role(User.Role.CHILD)
+                                .parentId(parentId)
+                                .build());
+        when(userRepository.findByIdSync("child-2"))
+                .thenReturn(
+                        User.builder()
+                                .id("child-2")
+                                .role(User.Role.CHILD)
+                                .parentId("other-parent")
+                                .build());
+
+        // When & Then
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        taskService.rejectTasks(
+                                parentId,
+                                Map.of(
+                                        "child-1", List.of("task-1"),
+                                        "child-2", List.of("task-2"))));
+        Mockito.verifyNoInteractions(ledgerService);
+    }
+
+    @Test
+    void shouldUpdateTaskValues() throws ExecutionException, InterruptedException {
         // Given
         String childId = "child-id";
-        Task task = Task.builder().id("task-id").build();
-        when(taskRepository.save(childId, task)).thenReturn(ApiFutures.immediateFuture(null));
+        Map<String, BigDecimal> values = Map.of("task-id", new BigDecimal("12.50"));
+        when(taskRepository.updateValues(eq(childId), eq(values), any()))
+                .thenReturn(ApiFutures.immediateFuture(Collections.emptyList()));
+
+        // When
+        taskService.updateTaskValues(
+                childId, values, Map.of("task-id", new BigDecimal("2.50")));
+
+        // Then
+        verify(taskRepository)
+                .updateValues(childId, values, Map.of("task-id", new BigDecimal("2.50")));
+    }
 
+    @Test
+    void shouldSkipWriteWhenNoTaskValueChanged() throws ExecutionException, InterruptedException {
         // When
-        taskService.updateTaskValue(childId, task);
+        taskService.updateTaskValues("child-id", Collections.emptyMap(), Collections.emptyMap());
 
         // Then
-        verify(taskRepository).save(childId, task);
+        verify(taskRepository, Mockito.never()).updateValues(anyString(), anyMap(), any());
     }
 
     @Test
@@ -555,21 +915,16 @@ class TaskServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
-        when(taskRepository.save(childId, task)).thenReturn(ApiFutures.immediateFuture(null));
 
         // When
         taskService.deleteTask(childId, taskId, parentId);
 
         // Then
         assertTrue(task.getArchived());
-        verify(taskRepository).save(childId, task);
+        verify(taskRepository)
+                .updateIfUnchanged(eq(childId), eq(taskId), anyMap(), any(), any());
     }
 
     @Test
@@ -584,18 +939,461 @@ class TaskServiceTest {
 
         when(userRepository.findByIdSync(parentId)).thenReturn(parent);
 
-        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
-        QueryDocumentSnapshot documentSnapshot = Mockito.mock(QueryDocumentSnapshot.class);
-        when(taskRepository.findTasksByUserId(childId))
-                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
-        when(querySnapshot.getDocuments()).thenReturn(Collections.singletonList(documentSnapshot));
-        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        mockTaskDocument(childId, task);
 
         // When
         taskService.deleteTask(childId, taskId, parentId);
 
         // Then
         // Should simply return without saving
-        verify(taskRepository, Mockito.never()).save(anyString(), any(Task.class));
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
+    }
+
+    @Test
+    void shouldNotCreditTaskApprovedConcurrently() throws Exception {
+        // Given: the task reads as pending approval, but is approved before the ledger
+        // transaction reads it again
+        String childId = "child-id";
+        String taskId = "task-id";
+        String parentId = "parent-id";
+
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        User child = User.builder().id(childId).parentId(parentId).build();
+        Task task = Task.builder().id(taskId).status(Task.TaskStatus.PENDING_APPROVAL).build();
+
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        mockTaskDocument(childId, task);
+        DocumentSnapshot approved = Mockito.mock(DocumentSnapshot.class);
+        when(approved.exists()).thenReturn(true);
+        when(approved.toObject(Task.class))
+                .thenReturn(Task.builder().id(taskId).status(Task.TaskStatus.APPROVED).build());
+        when(taskRepository.getAll(any(), eq(childId), eq(List.of(taskId))))
+                .thenReturn(List.of(approved));
+        com.google.cloud.firestore.Transaction transaction =
+                Mockito.mock(com.google.cloud.firestore.Transaction.class);
+        BigDecimal[] credited =
+                mockLedgerWork(
+                        childId,
+                        com.fazquepaga.taskandpay.allowance.Transaction.TransactionType.CREDIT,
+                        transaction);
+
+        // When & Then
+        assertThrows(
+                IllegalStateException.class,
+                () -> taskService.approveTask(childId, taskId, parentId));
+        assertNull(credited[0]);
+        verify(taskRepository, Mockito.never())
+                .update(any(), anyString(), anyString(), anyMap());
+        verify(statsService, Mockito.never())
+                .incrementFamilyStat(parentId, "totalTasksApproved", 1);
+    }
+
+    @Test
+    void shouldFailFastWhenTaskWasModifiedConcurrently()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+
+        User child = User.builder().id(childId).role(User.Role.CHILD).parentId("p").build();
+        Task task = Task.builder().id(taskId).requiresProof(true).build();
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        mockTaskDocument(childId, task);
+        when(taskRepository.updateIfUnchanged(eq(childId), eq(taskId), anyMap(), any(), any()))
+                .thenReturn(
+                        ApiFutures.immediateFailedFuture(
+                                ApiExceptionFactory.createException(
+                                        new RuntimeException("stale update time"),
+                                        GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION),
+                                        false)));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> taskService.completeTask(taskId, childId));
+        Mockito.verifyNoInteractions(ledgerService);
+    }
+
+    @Test
+    void shouldRecordProofForTheFamilyDayAndRetryAfterConcurrentChange() throws Exception {
+        // Given: the first write loses to a concurrent change of the task
+        String childId = "child-id";
+        String taskId = "task-id";
+        LocalDate familyDay = LocalDate.of(2026, 1, 31);
+        Task task =
+                Task.builder()
+                        .id(taskId)
+                        .description("Clean room")
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.PENDING)
+                        .requiresProof(true)
+                        .build();
+        mockTaskDocument(childId, task);
+        when(familyTimeZoneService.today(childId)).thenReturn(familyDay);
+        when(taskRepository.updateIfUnchanged(eq(childId), eq(taskId), anyMap(), any(), any()))
+                .thenReturn(
+                        ApiFutures.immediateFailedFuture(
+                                ApiExceptionFactory.createException(
+                                        new RuntimeException("stale update time"),
+                                        GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION),
+                                        false)))
+                .thenReturn(ApiFutures.immediateFuture(null));
+        int[] validations = {0};
+
+        // When
+        Task result =
+                taskService.submitProof(
+                        childId,
+                        taskId,
+                        proofTask -> {
+                            validations[0]++;
+                            return true;
+                        });
+
+        // Then
+        assertEquals(Task.TaskStatus.PENDING_APPROVAL, result.getStatus());
+        assertTrue(result.getAiValidated());
+        assertEquals(familyDay.toString(), result.getLastCompletedPeriod());
+        assertEquals(1, validations[0]);
+        verify(taskRepository, Mockito.times(2))
+                .updateIfUnchanged(
+                        eq(childId),
+                        eq(taskId),
+                        Mockito.argThat(
+                                fields ->
+                                        "PENDING_APPROVAL".equals(fields.get("status"))
+                                                && familyDay
+                                                        .toString()
+                                                        .equals(fields.get("lastCompletedPeriod"))),
+                        any(),
+                        any());
+        verify(taskRepository, Mockito.never()).save(anyString(), any());
+    }
+
+    @Test
+    void shouldCountProofInTheSameBatchUnderItsFamilyPeriod() throws Exception {
+        // Given: a daily task approved yesterday, so it is effectively pending today
+        String childId = "child-id";
+        String taskId = "task-id";
+        LocalDate familyDay = LocalDate.of(2026, 2, 1);
+        Task task =
+                Task.builder()
+                        .id(taskId)
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.APPROVED)
+                        .lastCompletedPeriod(familyDay.minusDays(1).toString())
+                        .build();
+        mockTaskDocument(childId, task);
+        when(familyTimeZoneService.today(childId)).thenReturn(familyDay);
+
+        // When
+        taskService.submitProof(childId, taskId, proofTask -> true);
+
+        // Then: yesterday's approval stays counted in January, and today's proof is pending
+        org.mockito.ArgumentCaptor<TaskCounterDelta> counters =
+                org.mockito.ArgumentCaptor.forClass(TaskCounterDelta.class);
+        verify(taskRepository)
+                .updateIfUnchanged(eq(childId), eq(taskId), anyMap(), any(), counters.capture());
+        Map<String, Object> fields = counters.getValue().toFields();
+        assertFalse(fields.containsKey(TaskCounters.APPROVED_BY_MONTH));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> byPeriod =
+                (Map<String, Object>) fields.get(TaskCounters.PENDING_APPROVAL_BY_PERIOD);
+        assertEquals(java.util.Set.of("DAILY_2026-02-01"), byPeriod.keySet());
+    }
+
+    @Test
+    void shouldNotReopenApprovedTaskForProof() throws Exception {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+        Task task = Task.builder().id(taskId).status(Task.TaskStatus.APPROVED).build();
+        mockTaskDocument(childId, task);
+
+        // When & Then
+        assertThrows(
+                IllegalStateException.class,
+                () -> taskService.submitProof(childId, taskId, proofTask -> true));
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
+    }
+
+    @Test
+    void shouldNotCompleteTaskTwice() throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-id";
+        String taskId = "task-id";
+
+        User child = User.builder().id(childId).role(User.Role.CHILD).parentId("p").build();
+        Task task = Task.builder().id(taskId).status(Task.TaskStatus.APPROVED).build();
+
+        when(userRepository.findByIdSync(childId)).thenReturn(child);
+        mockTaskDocument(childId, task);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> taskService.completeTask(taskId, childId));
+        verify(taskRepository, Mockito.never())
+                .updateIfUnchanged(anyString(), anyString(), anyMap(), any(), any());
+    }
+
+    @Test
+    void shouldReadTaskCountersFromCountersDocument()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-id";
+        LocalDate today = LocalDate.now();
+        TaskCounters counters =
+                TaskCounters.builder()
+                        .recurringCount(3)
+                        .pendingApprovalCount(1)
+                        .pendingApprovalByPeriod(
+                                new java.util.HashMap<>(
+                                        Map.of(
+                                                "DAILY_" + today, 2L,
+                                                "DAILY_" + today.minusDays(1), 5L)))
+                        .approvedByMonth(
+                                new java.util.HashMap<>(
+                                        Map.of(java.time.YearMonth.from(today).toString(), 4L)))
+                        .totalValueCents(10000)
+                        .initialized(true)
+                        .build();
+        mockCounters(childId, counters);
+
+        // When
+        com.fazquepaga.taskandpay.tasks.dto.TaskCounterSummary summary =
+                taskService.getTaskCounters(childId);
+
+        // Then
+        assertEquals(3, summary.getRecurringCount());
+        assertEquals(3, summary.getPendingApprovalCount());
+        assertEquals(4, summary.getApprovedThisMonthCount());
+        assertEquals(new BigDecimal("100.00"), summary.getTotalValue());
+        verify(taskRepository, Mockito.never()).rebuildCounters(anyString(), any());
+    }
+
+    @Test
+    void shouldRebuildTaskCountersWhenNotInitialized()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String childId = "child-id";
+        LocalDate today = LocalDate.now();
+        DocumentSnapshot countersDocument = Mockito.mock(DocumentSnapshot.class);
+        when(countersDocument.exists()).thenReturn(false);
+        when(taskRepository.findCounters(childId))
+                .thenReturn(ApiFutures.immediateFuture(countersDocument));
+        List<Task> tasks =
+                List.of(
+                        Task.builder()
+                                .type(Task.TaskType.DAILY)
+                                .status(Task.TaskStatus.PENDING_APPROVAL)
+                                .lastCompletedPeriod(today.minusDays(1).toString())
+                                .value(new BigDecimal("10.00"))
+                                .build(),
+                        Task.builder()
+                                .type(Task.TaskType.ONE_TIME)
+                                .status(Task.TaskStatus.APPROVED)
+                                .value(new BigDecimal("5.00"))
+                                .build());
+        when(taskRepository.rebuildCounters(eq(childId), any()))
+                .thenAnswer(
+                        invocation -> {
+                            java.util.function.Function<List<Task>, TaskCounters> count =
+                                    invocation.getArgument(1);
+                            return ApiFutures.immediateFuture(count.apply(tasks));
+                        });
+
+        // When
+        com.fazquepaga.taskandpay.tasks.dto.TaskCounterSummary summary =
+                taskService.getTaskCounters(childId);
+
+        // Then
+        assertEquals(1, summary.getRecurringCount());
+        assertEquals(0, summary.getPendingApprovalCount()); // Yesterday's daily reads as pending
+        assertEquals(1, summary.getApprovedThisMonthCount());
+        assertEquals(new BigDecimal("15.00"), summary.getTotalValue());
+    }
+
+    @Test
+    void shouldListPendingApprovalsAcrossChildren()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent =
+                User.builder()
+                        .id(parentId)
+                        .role(User.Role.PARENT)
+                        .pendingApprovalsBackfilled(true)
+                        .build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        Task oneTime =
+                Task.builder()
+                        .id("task-1")
+                        .type(Task.TaskType.ONE_TIME)
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .build();
+        Task dailyFromYesterday =
+                Task.builder()
+                        .id("task-2")
+                        .type(Task.TaskType.DAILY)
+                        .status(Task.TaskStatus.PENDING_APPROVAL)
+                        .lastCompletedPeriod(LocalDate.now().minusDays(1).toString())
+                        .build();
+        QueryDocumentSnapshot doc1 = mockChildTaskDocument("child-1", oneTime);
+        QueryDocumentSnapshot doc2 = mockChildTaskDocument("child-2", dailyFromYesterday);
+        QueryDocumentSnapshot doc3 = Mockito.mock(QueryDocumentSnapshot.class);
+        QuerySnapshot querySnapshot = Mockito.mock(QuerySnapshot.class);
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc1, doc2, doc3));
+        when(taskRepository.findPendingApprovalsPage(parentId, 2, null))
+                .thenReturn(ApiFutures.immediateFuture(querySnapshot));
+
+        // When
+        com.fazquepaga.taskandpay.tasks.dto.PendingApprovalPage page =
+                taskService.getPendingApprovals(parentId, 2, null);
+
+        // Then: yesterday's daily task is no longer awaiting approval
+        assertEquals(1, page.getItems().size());
+        assertEquals("child-1", page.getItems().get(0).getChildId());
+        assertEquals("task-1", page.getItems().get(0).getTask().getId());
+        assertEquals("users/child-2/tasks/task-2", page.getNextCursor());
+        verify(userRepository, Mockito.never()).findByParentId(anyString());
+    }
+
+    @Test
+    void shouldBackfillParentIdOnPendingTasksOnce()
+            throws ExecutionException, InterruptedException {
+        // Given
+        String parentId = "parent-id";
+        User parent = User.builder().id(parentId).role(User.Role.PARENT).build();
+        when(userRepository.findByIdSync(parentId)).thenReturn(parent);
+        when(userRepository.update(parentId, Map.of("pendingApprovalsBackfilled", true)))
+                .thenReturn(ApiFutures.immediateFuture(null));
+
+        QueryDocumentSnapshot child = Mockito.mock(QueryDocumentSnapshot.class);
+        when(child.getId()).thenReturn("child-1");
+        QuerySnapshot children = Mockito.mock(QuerySnapshot.class);
+        when(children.getDocuments()).thenReturn(List.of(child));
+        when(userRepository.findByParentId(parentId))
+                .thenReturn(ApiFutures.immediateFuture(children));
+
+        QueryDocumentSnapshot legacyTask = Mockito.mock(QueryDocumentSnapshot.class);
+        when(legacyTask.getId()).thenReturn("legacy-task");
+        QueryDocumentSnapshot newTask = Mockito.mock(QueryDocumentSnapshot.class);
+        when(newTask.getString("parentId")).thenReturn(parentId);
+        QuerySnapshot pendingTasks = Mockito.mock(QuerySnapshot.class);
+        when(pendingTasks.getDocuments()).thenReturn(List.of(legacyTask, newTask));
+        when(taskRepository.findPendingApprovals("child-1"))
+                .thenReturn(ApiFutures.immediateFuture(pendingTasks));
+        when(taskRepository.setParentId("child-1", List.of("legacy-task"), parentId))
+                .thenReturn(ApiFutures.immediateFuture(Collections.emptyList()));
+
+        QuerySnapshot emptyPage = Mockito.mock(QuerySnapshot.class);
+        when(emptyPage.getDocuments()).thenReturn(Collections.emptyList());
+        when(taskRepository.findPendingApprovalsPage(eq(parentId), Mockito.anyInt(), any()))
+                .thenReturn(ApiFutures.immediateFuture(emptyPage));
+
+        // When
+        taskService.getPendingApprovals(parentId, 20, null);
+        taskService.getPendingApprovals(parentId, 20, null);
+
+        // Then
+        verify(taskRepository, Mockito.times(1))
+                .setParentId("child-1", List.of("legacy-task"), parentId);
+        assertTrue(parent.getPendingApprovalsBackfilled());
+        // Only the flag is written over the cached parent
+        verify(userRepository, Mockito.times(1))
+                .update(parentId, Map.of("pendingApprovalsBackfilled", true));
+        verify(userRepository, Mockito.never()).save(any());
+    }
+
+    @Test
+    void shouldRejectMalformedPendingApprovalsCursor() {
+        // Given
+        User parent = User.builder().id("parent-id").role(User.Role.PARENT).build();
+        when(userRepository.findByIdSync("parent-id")).thenReturn(parent);
+
+        // When & Then
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> taskService.getPendingApprovals("parent-id", 20, "users/other"));
+    }
+
+    private QueryDocumentSnapshot mockChildTaskDocument(String childId, Task task) {
+        QueryDocumentSnapshot document = Mockito.mock(QueryDocumentSnapshot.class);
+        com.google.cloud.firestore.DocumentReference taskReference =
+                Mockito.mock(com.google.cloud.firestore.DocumentReference.class);
+        com.google.cloud.firestore.CollectionReference tasksCollection =
+                Mockito.mock(com.google.cloud.firestore.CollectionReference.class);
+        com.google.cloud.firestore.DocumentReference childReference =
+                Mockito.mock(com.google.cloud.firestore.DocumentReference.class);
+        when(document.toObject(Task.class)).thenReturn(task);
+        when(document.getReference()).thenReturn(taskReference);
+        when(taskReference.getParent()).thenReturn(tasksCollection);
+        when(taskReference.getPath()).thenReturn("users/" + childId + "/tasks/" + task.getId());
+        when(tasksCollection.getParent()).thenReturn(childReference);
+        when(childReference.getId()).thenReturn(childId);
+        return document;
+    }
+
+    private DocumentSnapshot completedTaskSnapshot(String taskId) {
+        DocumentSnapshot snapshot = Mockito.mock(DocumentSnapshot.class);
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getId()).thenReturn(taskId);
+        when(snapshot.toObject(Task.class))
+                .thenReturn(
+                        Task.builder()
+                                .id(taskId)
+                                .type(Task.TaskType.ONE_TIME)
+                                .status(Task.TaskStatus.COMPLETED)
+                                .build());
+        return snapshot;
+    }
+
+    /** Runs ledger work of the given type against the mock transaction, capturing its amount. */
+    private BigDecimal[] mockLedgerWork(
+            String childId,
+            com.fazquepaga.taskandpay.allowance.Transaction.TransactionType type,
+            com.google.cloud.firestore.Transaction transaction)
+            throws Exception {
+        BigDecimal[] posted = new BigDecimal[1];
+        doAnswer(
+                        invocation -> {
+                            com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork work =
+                                    invocation.getArgument(3);
+                            posted[0] = work.apply(transaction);
+                            return null;
+                        })
+                .when(ledgerService)
+                .addTransaction(
+                        eq(childId),
+                        anyString(),
+                        eq(type),
+                        any(com.fazquepaga.taskandpay.allowance.LedgerService.LedgerWork.class));
+        return posted;
+    }
+
+    private void mockCounters(String childId, TaskCounters counters) {
+        DocumentSnapshot countersDocument = Mockito.mock(DocumentSnapshot.class);
+        when(countersDocument.exists()).thenReturn(true);
+        when(countersDocument.getBoolean("initialized")).thenReturn(true);
+        when(countersDocument.getLong("version")).thenReturn(TaskCounters.CURRENT_VERSION);
+        when(countersDocument.toObject(TaskCounters.class)).thenReturn(counters);
+        when(taskRepository.findCounters(childId))
+                .thenReturn(ApiFutures.immediateFuture(countersDocument));
+    }
+
+    private void mockTaskDocument(String childId, Task task) {
+        DocumentSnapshot documentSnapshot = Mockito.mock(DocumentSnapshot.class);
+        when(documentSnapshot.exists()).thenReturn(true);
+        when(documentSnapshot.getId()).thenReturn(task.getId());
+        when(documentSnapshot.getUpdateTime()).thenReturn(Timestamp.now());
+        when(documentSnapshot.toObject(Task.class)).thenReturn(task);
+        when(taskRepository.findById(childId, task.getId()))
+                .thenReturn(ApiFutures.immediateFuture(documentSnapshot));
+        when(taskRepository.getAll(any(), eq(childId), eq(List.of(task.getId()))))
+                .thenReturn(List.of(documentSnapshot));
+        when(taskRepository.updateIfUnchanged(
+                        eq(childId), eq(task.getId()), anyMap(), any(), any()))
+                .thenReturn(ApiFutures.immediateFuture(null));
     }
 }
@@ -0,0 +1,91 @@
+package com.fazquepaga.taskandpay.tasks;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fazquepaga.taskandpay.identity.FamilyTimeZoneService;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+import java.time.ZoneId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+class TaskStreamServiceTest {
+
+    @Mock private TaskRepository taskRepository;
+
+    @Mock private FamilyTimeZoneService familyTimeZoneService;
+
+    @Mock private ListenerRegistration registration;
+
+    private TaskStreamService taskStreamService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(familyTimeZoneService.zoneOf(anyString())).thenReturn(ZoneId.of("UTC"));
+        when(taskRepository.listenToActiveTasks(anyString(), any())).thenReturn(registration);
+        taskStreamService = new TaskStreamService(taskRepository, familyTimeZoneService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskStreamService.shutdown();
+    }
+
+    @Test
+    void shouldShareOneListenerPerChild() throws Exception {
+        // When
+        taskStreamService.subscribe("child-1");
+        taskStreamService.subscribe("child-1");
+        taskStreamService.subscribe("child-2");
+
+        // Then
+        verify(taskRepository, times(1)).listenToActiveTasks(eq("child-1"), any());
+        verify(taskRepository, times(1)).listenToActiveTasks(eq("child-2"), any());
+        assertEquals(2, taskStreamService.activeFeeds());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldDropFeedWhenListenerFails() throws Exception {
+        // Given
+        taskStreamService.subscribe("child-1");
+        ArgumentCaptor<EventListener<QuerySnapshot>> listener =
+                ArgumentCaptor.forClass(EventListener.class);
+        verify(taskRepository).listenToActiveTasks(eq("child-1"), listener.capture());
+
+        // When
+        listener.getValue().onEvent(null, Mockito.mock(FirestoreException.class));
+
+        // Then: the next client opens a new listener
+        assertEquals(0, taskStreamService.activeFeeds());
+        taskStreamService.subscribe("child-1");
+        verify(taskRepository, times(2)).listenToActiveTasks(eq("child-1"), any());
+    }
+
+    @Test
+    void shouldRemoveListenerOnShutdown() throws Exception {
+        // Given
+        taskStreamService.subscribe("child-1");
+
+        // When
+        taskStreamService.shutdown();
+
+        // Then
+        verify(registration).remove();
+        assertEquals(0, taskStreamService.activeFeeds());
+    }
+}
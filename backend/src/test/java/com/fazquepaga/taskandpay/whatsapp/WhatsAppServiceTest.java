@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.fazquepaga.taskandpay.identity.AccessCodeIndex;
 import com.fazquepaga.taskandpay.identity.IdentityService;
 import com.fazquepaga.taskandpay.identity.User;
 import com.fazquepaga.taskandpay.identity.UserRepository;
@@ -27,6 +28,8 @@ class WhatsAppServiceTest {
 
     @Mock private IdentityService identityService;
 
+    @Mock private AccessCodeIndex accessCodeIndex;
+
     @Mock private UserRepository userRepository;
 
     @Mock private TaskService taskService;
@@ -42,7 +45,12 @@ class WhatsAppServiceTest {
         MockitoAnnotations.openMocks(this);
         whatsAppService =
                 new WhatsAppService(
-                        identityService, userRepository, taskService, pubSubTemplate, TOPIC_NAME);
+                        identityService,
+                        accessCodeIndex,
+                        userRepository,
+                        taskService,
+                        pubSubTemplate,
+                        TOPIC_NAME);
     }
 
     @Test
@@ -52,6 +60,7 @@ class WhatsAppServiceTest {
         String phoneNumber = "+1234567890";
         Map<String, String> payload =
                 Map.of("Body", onboardingCode, "From", "whatsapp:" + phoneNumber);
+        when(accessCodeIndex.mightContain(onboardingCode)).thenReturn(true);
 
         // completeOnboarding is void, so we don't need to mock its return value
         // Just verify it's called
@@ -64,6 +73,21 @@ class WhatsAppServiceTest {
         verifyNoInteractions(userRepository, taskService, pubSubTemplate);
     }
 
+    @Test
+    void shouldNotLookUpMessagesThatCannotBeACode() {
+        // Given
+        String phoneNumber = "+1234567890";
+        Map<String, String> payload =
+                Map.of("Body", "see you at dinner", "From", "whatsapp:" + phoneNumber);
+
+        // When
+        whatsAppService.handleWebhook(payload);
+
+        // Then
+        verify(accessCodeIndex).mightContain("see you at dinner");
+        verifyNoInteractions(identityService, userRepository, taskService, pubSubTemplate);
+    }
+
     @Test
     void shouldHandleInvalidOnboardingCode() throws ExecutionException, InterruptedException {
         // Given
@@ -71,6 +95,7 @@ class WhatsAppServiceTest {
         String phoneNumber = "+1234567890";
         Map<String, String> payload =
                 Map.of("Body", invalidCode, "From", "whatsapp:" + phoneNumber);
+        when(accessCodeIndex.mightContain(invalidCode)).thenReturn(true);
 
         doThrow(new IllegalArgumentException("Invalid code"))
                 .when(identityService)